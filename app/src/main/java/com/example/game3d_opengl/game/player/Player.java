@@ -2,10 +2,7 @@ package com.example.game3d_opengl.game.player;
 
 import static com.example.game3d_opengl.rendering.util3d.FColor.CLR;
 import static com.example.game3d_opengl.game.util.GameMath.PI;
-import static com.example.game3d_opengl.game.util.GameMath.getNormal;
-import static com.example.game3d_opengl.game.util.GameMath.rayTriangleDistance;
 import static com.example.game3d_opengl.game.util.GameMath.rotY;
-import static com.example.game3d_opengl.rendering.util3d.vector.Vector3D.V3;
 
 import static java.lang.Float.max;
 import static java.lang.Math.abs;
@@ -73,7 +70,8 @@ public class Player implements WorldActor , PlayerAllInfoVisitor {
     // Instance fields
     private final UnbatchedObject3DWithOutline object3D;
     private Vector3D dir;
-    private Vector3D move;
+    // Per-millisecond move, kept as components so that updating it each frame does not allocate
+    private final float[] move = new float[3];
 
     // Rotation state
     private float stickyRotationTime = 0.0f;
@@ -141,7 +139,6 @@ public class Player implements WorldActor , PlayerAllInfoVisitor {
     private Player(UnbatchedObject3DWithOutline object3D) {
         this.object3D = object3D;
         this.dir = new Vector3D(INITIAL_DIRECTION_X, INITIAL_DIRECTION_Y, INITIAL_DIRECTION_Z);
-        this.move = new Vector3D(0, 0, 0);
         this.jumpLogicImplementation = new PlayerAllJumpLogicImplementation();
         this.interactableAPI = new InteractableAPI(this);
     }
@@ -183,43 +180,28 @@ public class Player implements WorldActor , PlayerAllInfoVisitor {
      */
     private void handleFallingMovement(float dtMillis) {
         // Maintain horizontal movement while falling
-        Vector3D dwl = dir.withLen(PLAYER_SPEED * dtMillis);
-        move = V3(dwl.x, move.y, dwl.z);
+        float fallingY = move[1];
+        setMoveAlongDir(PLAYER_SPEED * dtMillis);
         
         // Apply gravity
-        move = V3(move.x, move.y - fallSpeed * dtMillis, move.z);
+        move[1] = fallingY - fallSpeed * dtMillis;
         fallSpeed += FALL_ACCELERATION * dtMillis;
     }
 
     /**
-     * Calculates the determinant of the 3x3 matrix formed by three vectors.
-     * Used for solving the surface projection equation.
-     * 
-     * @param n normal vector
-     * @param u first tangent vector
-     * @param w second tangent vector
-     * @return the determinant value
+     * Writes the direction vector, scaled to the given length, into the move components.
+     *
+     * @param len length of the resulting move
      */
-    private float calculateDeterminant(Vector3D n, Vector3D u, Vector3D w) {
-        return n.x * u.y * w.z - n.x * u.z * w.y
-                - n.y * u.x * w.z + n.y * u.z * w.x
-                + n.z * u.x * w.y - n.z * u.y * w.x;
-    }
-
-    private float calculateBeta(Vector3D n, Vector3D tangent2, Vector3D dir, float det) {
-        return (n.x * dir.y * tangent2.z - n.x * dir.z * tangent2.y
-                - n.y * dir.x * tangent2.z + n.y * dir.z * tangent2.x
-                + n.z * dir.x * tangent2.y - n.z * dir.y * tangent2.x) / det;
+    private void setMoveAlongDir(float len) {
+        float scale = (float) ((double) len / Math.sqrt(dir.sqlen()));
+        move[0] = dir.x * scale;
+        move[1] = dir.y * scale;
+        move[2] = dir.z * scale;
     }
 
-    /**
-     * Calculates the gamma coefficient for surface projection.
-     */
-    private float calculateGamma(Vector3D n, Vector3D tangent1, Vector3D dir, float det) {
-        return (n.x * tangent1.y * dir.z - n.x * tangent1.z * dir.y
-                - n.y * tangent1.x * dir.z + n.y * tangent1.z * dir.x
-                + n.z * tangent1.x * dir.y - n.z * tangent1.y * dir.x) / det;
-    }
+    // Slide direction on the footing triangle, written by Tile.projectOnto()
+    private final float[] slide = new float[3];
 
     @Override
     public void visit(PlayerJumpInfo.PlayerHasFooting info){
@@ -229,39 +211,31 @@ public class Player implements WorldActor , PlayerAllInfoVisitor {
             this.nearestTileId = info.tile.getID();
         }
 
-        // Compute ground sliding move using the provided contact triangles
+        // Compute ground sliding move on the footing tile's precomputed triangle planes
         // Choose the closest triangle under the player
-        Vector3D origin = V3(object3D.objX, object3D.objY, object3D.objZ);
+        Tile tile = info.tile;
+        int hitTri = -1;
         float bestDist = Float.POSITIVE_INFINITY;
-        Vector3D[] hitTri = null;
-        for (Vector3D[] tri : info.triangles) {
-            Vector3D nUnit = getNormal(tri);
-            float d = rayTriangleDistance(
-                    origin,
-                    nUnit.mult(-signum(nUnit.y)),
-                    tri[0], tri[1], tri[2]
-            );
+        for (int tri = 0; tile != null && tri < 2; ++tri) {
+            float d = tile.footingDistance(tri, object3D.objX, object3D.objY, object3D.objZ);
             if (!Float.isInfinite(d) && d < bestDist) {
                 bestDist = d;
                 hitTri = tri;
             }
         }
 
-        if (hitTri != null) {
-            // We are grounded on a triangle -> cancel falling and compute slide direction
+        if (hitTri >= 0) {
+            // We are grounded on a triangle -> cancel falling and slide along it in the move direction
             fallSpeed = 0f;
-
-            Vector3D u = hitTri[1].sub(hitTri[0]);
-            Vector3D w = hitTri[2].sub(hitTri[0]);
-            Vector3D n = u.crossProduct(w);
-
-            float det = calculateDeterminant(n, u, w);
-            if (Math.abs(det) > 1e-6f) {
-                float beta = calculateBeta(n,  w, dir, det);
-                float gamma = calculateGamma(n, u, dir, det);
-                move = u.mult(beta).add(w.mult(gamma)).withLen(PLAYER_SPEED);
+            tile.projectOnto(hitTri, dir.x, dir.y, dir.z, slide);
+            float len = (float) Math.sqrt(slide[0] * slide[0] + slide[1] * slide[1] + slide[2] * slide[2]);
+            if (len > 1e-6f) {
+                float scale = PLAYER_SPEED / len;
+                move[0] = slide[0] * scale;
+                move[1] = slide[1] * scale;
+                move[2] = slide[2] * scale;
             } else {
-                move = dir.withLen(PLAYER_SPEED);
+                setMoveAlongDir(PLAYER_SPEED);
             }
         }
 
@@ -321,9 +295,9 @@ public class Player implements WorldActor , PlayerAllInfoVisitor {
 
 
         // Apply movement to position
-        object3D.objX += move.x * dtMillis;
-        object3D.objY += move.y * dtMillis;
-        object3D.objZ += move.z * dtMillis;
+        object3D.objX += move[0] * dtMillis;
+        object3D.objY += move[1] * dtMillis;
+        object3D.objZ += move[2] * dtMillis;
 
         // Update visual rotation based on movement
         object3D.objPitch -= dtMillis * PLAYER_SPEED / (PI * PLAYER_HEIGHT) * 2 * PI;
@@ -380,6 +354,13 @@ public class Player implements WorldActor , PlayerAllInfoVisitor {
         return nearestTileId;
     }
 
+    /**
+     * Whether a tile has reported footing since the last frame ended.
+     */
+    public boolean hasFooting() {
+        return tileBelow != null;
+    }
+
     /**
      * Handles touch input for player rotation.
      * Applies rotation based on horizontal swipe distance and updates
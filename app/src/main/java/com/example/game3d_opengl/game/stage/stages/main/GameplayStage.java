@@ -22,6 +22,7 @@ import com.example.game3d_opengl.rendering.util3d.FColor;
 import com.example.game3d_opengl.rendering.util3d.vector.Vector3D;
 import com.example.game3d_opengl.game.player.Player;
 import com.example.game3d_opengl.game.terrain.terrain_api.main.Terrain;
+import com.example.game3d_opengl.game.terrain.terrain_api.main.Tile;
 import com.example.game3d_opengl.game.LightSource;
 
 /**
@@ -63,6 +64,40 @@ public class GameplayStage extends Stage {
 
     public static boolean __DEBUG_IS_TERRAIN_GENERATING = false;
 
+    // Interpret terrain commands on a worker thread; the GL thread only applies finished geometry
+    private static final boolean GENERATE_TERRAIN_IN_BACKGROUND = true;
+
+    // Fuse repeated turn + segment commands (stairs, curves) into single run commands
+    private static final boolean FUSE_SEGMENT_RUNS = true;
+
+    // Per-frame time budget for terrain generation, adapted to how long frames take
+    private static final long MIN_GENERATION_BUDGET_NS = 250_000L;
+    private static final long MAX_GENERATION_BUDGET_NS = 4_000_000L;
+    private static final float TARGET_FRAME_MS = 1000f / 60f;
+    private long generationBudgetNanos = 1_000_000L;
+    private long lastGenerationNanos = 0;
+
+    // Background generation: geometry events applied per frame (finishing the command that reaches it)
+    private static final int MAX_DRAINED_EVENTS_PER_FRAME = 256;
+
+    // Collision broadphase: tiles tested around the one the player last stood on
+    private static final int TILES_BEHIND_PLAYER = 2;
+    private static final int TILES_AHEAD_OF_PLAYER = 4;
+    private static final int TILES_AROUND_PLAYER_WIDE = 32; // when those give no footing
+    private final Tile[] nearbyTiles = new Tile[2 * TILES_AROUND_PLAYER_WIDE + 1];
+
+    /**
+     * Shrinks the generation budget quickly when frames run late and grows it slowly otherwise.
+     * Only grows if the last call actually used most of its budget (i.e. there was more to do).
+     */
+    private void adaptGenerationBudget(float dtMs) {
+        if (dtMs > TARGET_FRAME_MS) {
+            generationBudgetNanos = Math.max(MIN_GENERATION_BUDGET_NS, generationBudgetNanos / 2);
+        } else if (lastGenerationNanos >= generationBudgetNanos * 3 / 4) {
+            generationBudgetNanos = Math.min(MAX_GENERATION_BUDGET_NS, generationBudgetNanos + 100_000L);
+        }
+    }
+
     @Override
     protected void initScene(Context context, int screenWidth, int screenHeight) {
         // --- Camera Setup ---
@@ -91,6 +126,7 @@ public class GameplayStage extends Stage {
                 segLength,
                 1f
         );
+        terrain.setSegmentRunFusion(FUSE_SEGMENT_RUNS);
         terrain.enqueueStructure(new TerrainLineWithSpikeRect(30));
         terrain.enqueueStructure(new TerrainLineWithSpikeRect(30));
         terrain.enqueueStructure(new TerrainStairs(100,4,2, PI/6,-1f));
@@ -98,6 +134,9 @@ public class GameplayStage extends Stage {
         terrain.enqueueStructure(new Terrain2DCurve(50,0,PI/8f));
 
         terrain.generateChunks(-1);
+        if (GENERATE_TERRAIN_IN_BACKGROUND) {
+            terrain.startBackgroundGeneration();
+        }
 
         System.out.println("GAMEPLAY STAGE INIT");
 
@@ -107,26 +146,55 @@ public class GameplayStage extends Stage {
     public void updateThenDraw(float dt) {
 
         terrain.removeOldTerrainElements(player.getNearestTileId());
-        if (terrain.getTileCount() < 400) {
+        // Only once the previous batch is generated, so structures don't pile up while generation lags
+        if (terrain.getTileCount() < 400 && !terrain.isGenerationPending()) {
             terrain.enqueueStructure(new TerrainLineWithSpikeRect(30));
             terrain.enqueueStructure(new TerrainLineWithSpikeRect(30));
             terrain.enqueueStructure(new TerrainStairs(50,4,2, PI/6,-1f));
             terrain.enqueueStructure(new Terrain2DCurve(50,0,PI/4f));
 
         }
-        if (terrain.getTileCount() < 300) {
+        if (terrain.isGeneratingInBackground()) {
+            GameplayStage.__DEBUG_IS_TERRAIN_GENERATING = terrain.drainGeneratedGeometry(MAX_DRAINED_EVENTS_PER_FRAME) > 0;
+        } else if (terrain.getTileCount() < 300) {
             GameplayStage.__DEBUG_IS_TERRAIN_GENERATING = true;
-            terrain.generateChunks(1);
+            lastGenerationNanos = terrain.generateFor(generationBudgetNanos);
+            adaptGenerationBudget(dt);
         }
 
 
-        // Collision moved into Tile.interactWithPlayer via jump info
-
-        for(int i=0;i<terrain.getTileCount();++i){
-            terrain.getTile(i).interactWithPlayer(player.getInteractableAPI());
+        // Collision moved into Tile.interactWithPlayer via jump info.
+        // Only tiles around the last footing are tested; a wider window if none of them holds the player,
+        // and every tile while the player hasn't stood on any yet.
+        int nearby = terrain.queryTilesNear(player.getNearestTileId(),
+                TILES_BEHIND_PLAYER, TILES_AHEAD_OF_PLAYER, nearbyTiles);
+        for (int i = 0; i < nearby; ++i) {
+            nearbyTiles[i].interactWithPlayer(player.getInteractableAPI());
+        }
+        if (!player.hasFooting()) {
+            nearby = terrain.queryTilesNear(player.getNearestTileId(),
+                    TILES_AROUND_PLAYER_WIDE, TILES_AROUND_PLAYER_WIDE, nearbyTiles);
+            if (nearby > 0) {
+                for (int i = 0; i < nearby; ++i) {
+                    nearbyTiles[i].interactWithPlayer(player.getInteractableAPI());
+                }
+            } else {
+                for (int i = 0; i < terrain.getTileCount(); ++i) {
+                    terrain.getTile(i).interactWithPlayer(player.getInteractableAPI());
+                }
+            }
         }
-        for(int i=0;i<terrain.getAddonCount();++i){
-            terrain.getAddon(i).interactWithPlayer(player.getInteractableAPI());
+        // Addons are bucketed by tile, so only those on the tiles just tested are looked at, and all of them
+        // when every tile was. One query only: an addon must not interact with the player twice in a frame.
+        if (nearby > 0) {
+            int nearbyAddons = terrain.queryAddonsOnTiles(nearbyTiles[0].getID(), nearbyTiles[nearby - 1].getID());
+            for (int i = 0; i < nearbyAddons; ++i) {
+                terrain.getNearbyAddon(i).interactWithPlayer(player.getInteractableAPI());
+            }
+        } else {
+            for (int i = 0; i < terrain.getAddonCount(); ++i) {
+                terrain.getAddon(i).interactWithPlayer(player.getInteractableAPI());
+            }
         }
 
 
@@ -154,7 +222,8 @@ public class GameplayStage extends Stage {
         terrain.updateAfterDraw(dt);
 
         if ((frameCounter++ & 127) == 0) {
-            Log.d("Perf", "dt=" + dt + " visible=" + terrain.getTileCount() + ","+ terrain.getAddonCount());
+            Log.d("Perf", "dt=" + dt + " visible=" + terrain.getTileCount() + ","+ terrain.getAddonCount()
+                    + " gen=" + lastGenerationNanos + "/" + generationBudgetNanos + "ns");
         }
 
 
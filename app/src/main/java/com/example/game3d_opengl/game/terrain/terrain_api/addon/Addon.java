@@ -13,6 +13,10 @@ public abstract class Addon implements TerrainElement, PlayerInteractable {
         this.tileId = tileId;
     }
 
+    public long getTileId() {
+        return tileId;
+    }
+
     public Addon() {
         this.ready = false;
     }
@@ -44,5 +48,6 @@ public abstract class Addon implements TerrainElement, PlayerInteractable {
 
     private boolean ready;
     private long tileId = -1L;
+    int storeIndex = -1; // slot in the AddonStore holding this addon, -1 if none
 
 }
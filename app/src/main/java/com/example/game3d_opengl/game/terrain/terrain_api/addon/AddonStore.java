@@ -0,0 +1,204 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.addon;
+
+import java.util.Arrays;
+
+/**
+ * Placed addons, bucketed by the ID of the tile they stand on.
+ * <p>
+ * The buckets form a ring: tile ID t uses bucket {@code t & (tileSlots - 1)}, so tileSlots must
+ * cover the range of tile IDs with live addons (like the tile store's capacity does for tiles).
+ * Each bucket is a doubly linked list through the slots of a dense array, which also keeps
+ * {@link #get(int)} and {@link #size()} for code that walks all addons. Removing an addon moves
+ * the last one into its slot, so the order of get(i) is only insertion order until the first removal.
+ */
+public class AddonStore {
+    private final int maxAddons;
+    private final int mask;
+
+    // Dense array of addons, and per slot the links of the slot's tile bucket (-1 = none)
+    private final Addon[] addons;
+    private final int[] next, prev;
+    private int size = 0;
+
+    // Per bucket: first slot of the list (-1 = empty) and the tile ID it holds
+    private final int[] head;
+    private final long[] headTile;
+
+    // Tile IDs that may still have addons; oldestTile > newestTile when there are none
+    private long oldestTile = Long.MAX_VALUE, newestTile = Long.MIN_VALUE;
+
+    /**
+     * @param tileSlots number of tile buckets, rounded up to a power of two
+     */
+    public AddonStore(int maxAddons, int tileSlots) {
+        if (maxAddons <= 0 || tileSlots <= 0) {
+            throw new IllegalArgumentException("Invalid addon store size: " + maxAddons + " addons, "
+                    + tileSlots + " tile slots");
+        }
+        int slots = Integer.highestOneBit(tileSlots);
+        if (slots < tileSlots) {
+            slots <<= 1;
+        }
+        this.maxAddons = maxAddons;
+        this.mask = slots - 1;
+        this.addons = new Addon[maxAddons];
+        this.next = new int[maxAddons];
+        this.prev = new int[maxAddons];
+        this.head = new int[slots];
+        this.headTile = new long[slots];
+        Arrays.fill(head, -1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == maxAddons;
+    }
+
+    public int getMaxSize() {
+        return maxAddons;
+    }
+
+    public Addon get(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Invalid addon index: " + i);
+        }
+        return addons[i];
+    }
+
+    /**
+     * Adds a placed addon to the bucket of its tile.
+     */
+    public void add(Addon addon) {
+        long tile = addon.getTileId();
+        if (tile < 0) {
+            throw new IllegalArgumentException("Addon has no tile");
+        }
+        if (addon.storeIndex >= 0) {
+            throw new IllegalStateException("Addon is already in a store");
+        }
+        if (size == maxAddons) {
+            throw new IllegalStateException("Addon store full");
+        }
+        int bucket = (int) (tile & mask);
+        int first = head[bucket];
+        if (first >= 0 && headTile[bucket] != tile) {
+            throw new IllegalStateException("Addons on tiles " + headTile[bucket] + " and " + tile
+                    + " share a bucket, the store needs more than " + (mask + 1) + " tile slots");
+        }
+        int slot = size++;
+        addons[slot] = addon;
+        addon.storeIndex = slot;
+        prev[slot] = -1;
+        next[slot] = first;
+        if (first >= 0) {
+            prev[first] = slot;
+        }
+        head[bucket] = slot;
+        headTile[bucket] = tile;
+        oldestTile = Math.min(oldestTile, tile);
+        newestTile = Math.max(newestTile, tile);
+    }
+
+    /**
+     * Removes an addon in O(1), e.g. once it was collected.
+     */
+    public void remove(Addon addon) {
+        int slot = addon.storeIndex;
+        if (slot < 0 || slot >= size || addons[slot] != addon) {
+            throw new IllegalArgumentException("Addon is not in this store");
+        }
+        unlink(slot);
+        addon.storeIndex = -1;
+        int last = --size;
+        if (slot != last) {
+            // Move the last addon into the freed slot and repoint its neighbours
+            Addon moved = addons[last];
+            addons[slot] = moved;
+            moved.storeIndex = slot;
+            next[slot] = next[last];
+            prev[slot] = prev[last];
+            if (prev[slot] >= 0) {
+                next[prev[slot]] = slot;
+            } else {
+                head[(int) (moved.getTileId() & mask)] = slot;
+            }
+            if (next[slot] >= 0) {
+                prev[next[slot]] = slot;
+            }
+        }
+        addons[last] = null;
+    }
+
+    private void unlink(int slot) {
+        if (prev[slot] >= 0) {
+            next[prev[slot]] = next[slot];
+        } else {
+            head[(int) (addons[slot].getTileId() & mask)] = next[slot];
+        }
+        if (next[slot] >= 0) {
+            prev[next[slot]] = prev[slot];
+        }
+    }
+
+    /**
+     * Writes the addons on tiles tileId - before .. tileId + after to out, as many as fit.
+     *
+     * @return number of addons on those tiles, which may be more than out holds
+     */
+    public int queryNear(long tileId, int before, int after, Addon[] out) {
+        int count = 0;
+        long from = Math.max(tileId - before, oldestTile), to = Math.min(tileId + after, newestTile);
+        for (long tile = from; tile <= to; ++tile) {
+            int bucket = (int) (tile & mask);
+            if (headTile[bucket] != tile) {
+                continue;
+            }
+            for (int slot = head[bucket]; slot >= 0; slot = next[slot]) {
+                if (count < out.length) {
+                    out[count] = addons[slot];
+                }
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Removes the addons of every tile, oldest first, up to the first one whose addons are not gone
+     * by the given player tile (see {@link Addon#isGoneBy}). Costs the number of tile IDs passed
+     * plus the addons removed.
+     */
+    public void evictGone(long playerTileId) {
+        while (oldestTile <= newestTile) {
+            int bucket = (int) (oldestTile & mask);
+            if (head[bucket] >= 0 && headTile[bucket] == oldestTile) {
+                if (!addons[head[bucket]].isGoneBy(playerTileId)) {
+                    return;
+                }
+                while (head[bucket] >= 0) {
+                    remove(addons[head[bucket]]);
+                }
+            }
+            ++oldestTile;
+        }
+        oldestTile = Long.MAX_VALUE;
+        newestTile = Long.MIN_VALUE;
+    }
+
+    /**
+     * Removes every addon.
+     */
+    public void clear() {
+        for (int i = 0; i < size; ++i) {
+            addons[i].storeIndex = -1;
+            head[(int) (addons[i].getTileId() & mask)] = -1;
+            addons[i] = null;
+        }
+        size = 0;
+        oldestTile = Long.MAX_VALUE;
+        newestTile = Long.MIN_VALUE;
+    }
+}
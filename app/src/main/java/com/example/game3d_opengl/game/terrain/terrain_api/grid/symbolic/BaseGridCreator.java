@@ -10,6 +10,16 @@ public interface BaseGridCreator {
 
 	GridSegment reserveHorizontal(int row, int col, int length);
 
+	/**
+	 * Reserves rows row..row+height-1 of columns col..col+width-1.
+	 */
+	GridRect reserveRect(int row, int col, int width, int height);
+
+	/**
+	 * @return whether reserveRect(row, col, width, height) would succeed, here and in every ancestor
+	 */
+	boolean isFreeRect(int row, int col, int width, int height);
+
 	void destroy();
 
 	void printGrid();
@@ -0,0 +1,40 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Rectangle of cells: rows row..row+height-1, columns col..col+width-1.
+ */
+public class GridRect {
+    public final int row, col, width, height;
+    public GridRect(int row, int col, int width, int height) {
+        this.row = row;
+        this.col = col;
+        this.width = width;
+        this.height = height;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "(r" + row + ", c" + col + ", w" + width + ", h" + height + ")";
+    }
+
+    public static GridRect GR(int row, int col, int width, int height) {
+        return new GridRect(row, col, width, height);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if(!(other instanceof GridRect)){
+            return false;
+        }
+        GridRect o = (GridRect) other;
+        return row == o.row && col == o.col && width == o.width && height == o.height;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (31 * row + col) + width) + height;
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic;
+
+/**
+ * Thrown when a reservation is well-formed but its cells, or every place it could go, are taken.
+ * Positions out of the grid and bad sizes or weights are plain IllegalArgumentExceptions.
+ */
+public class NoFittingSpaceException extends IllegalArgumentException {
+
+    public NoFittingSpaceException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,1082 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic;
+
+import java.util.Arrays;
+
+/**
+ * Which cells of a grid (rows 1..nRows, columns 1..nCols) are taken, kept as bits twice:
+ * every row is a run of longs (bit c-1 = column c) and so is every column (bit r-1 = row r).
+ * A reservation sets a range in its own line and one bit in each line it crosses; free space
+ * is never split into segments, and both orientations are always up to date.
+ * <p>
+ * Random-fitting queries go through one FitIndex per orientation: for every line, the number of
+ * positions where a strip of the last asked length fits, summed in a Fenwick tree. Reservations
+ * only mark the lines they touched as dirty; those are recounted (a word at a time) on the next query.
+ * A third FitIndex does the same for rectangles, with one line per top row: the fitting top-left
+ * columns of a row are the AND of its rows' "w free cells from here" masks.
+ * <p>
+ * A window is a grid over a run of another grid's rows that shares its cells: a reservation
+ * made through either is seen by both, and by every other window of the same owner.
+ * Each window keeps its own fit counts; a reservation only marks the overlapping lines dirty.
+ * <p>
+ * Weighted queries weigh each position by the weight of its (first cell's) column times the
+ * weight of its row; weighted FitIndexes sum those instead of counting, so sampling by weight
+ * costs the same as sampling uniformly.
+ * <p>
+ * Lines nothing was reserved in since the last clear are "untouched": they are known to be empty
+ * without reading them, so they are counted in closed form and skipped when clearing. A grid that
+ * only ever gets a few reservations costs next to nothing to set up, count and reuse.
+ */
+public class OccupancyGrid {
+    private final OccupancyGrid owner; // grid holding the cells: this one, unless a window
+    private final int rowBase;         // row r of this grid is row rowBase + r of the owner
+    private boolean open = true;
+    private OccupancyGrid[] windows = new OccupancyGrid[0]; // owner only
+    private int nWindows = 0;
+
+    private int nRows, nCols;
+    private int rowWords, colWords; // colWords is per owner column
+    private long[] rowBits = new long[0]; // owner row r occupies words [(r-1)*rowWords, r*rowWords)
+    private long[] colBits = new long[0]; // col c occupies words [(c-1)*colWords, c*colWords)
+    private long[] touchedRows = new long[0], touchedCols = new long[0]; // owner only; bit l-1 = line l
+
+    private final FitIndex verticalFits = new FitIndex(FitIndex.VERTICAL, false);
+    private final FitIndex horizontalFits = new FitIndex(FitIndex.HORIZONTAL, false);
+    private final FitIndex rectFits = new FitIndex(FitIndex.RECT, false);
+    private final FitIndex weightedVerticalFits = new FitIndex(FitIndex.VERTICAL, true);
+    private final FitIndex weightedHorizontalFits = new FitIndex(FitIndex.HORIZONTAL, true);
+    private final FitIndex weightedRectFits = new FitIndex(FitIndex.RECT, true);
+    private final FitIndex[] fitIndexes = {verticalFits, horizontalFits, rectFits,
+            weightedVerticalFits, weightedHorizontalFits, weightedRectFits};
+
+    public static final int MAX_WEIGHT = 1 << 20;
+    private int[] rowWeights = new int[1], colWeights = new int[1]; // 1-based
+    private long[] rowWeightSums = new long[1], colWeightSums = new long[1]; // [i] = weights of lines 1..i
+    private long[] maskScratch = new long[0], runScratch = new long[0]; // rowWords each
+    int nearestLinesScanned; // lines the last findNearest* call looked at
+
+    public OccupancyGrid(int nRows, int nCols) {
+        this.owner = this;
+        this.rowBase = 0;
+        reset(nRows, nCols);
+    }
+
+    private OccupancyGrid(OccupancyGrid owner, int rowBase, int nRows) {
+        this.owner = owner;
+        this.rowBase = rowBase;
+        this.nRows = nRows;
+        this.nCols = owner.nCols;
+        this.rowWords = owner.rowWords;
+        this.colWords = owner.colWords;
+        this.rowBits = owner.rowBits;
+        this.colBits = owner.colBits;
+        this.maskScratch = new long[rowWords];
+        this.runScratch = new long[rowWords];
+        resetWeights();
+        resetFitIndexes();
+    }
+
+    /**
+     * @return grid over rows firstRow..firstRow+nRows-1 of this one, sharing its cells.
+     * It stays usable until closed, or until the owning grid is reset.
+     */
+    public OccupancyGrid window(int firstRow, int nRows) {
+        checkOpen();
+        if (firstRow < 1 || nRows < 0 || firstRow + nRows - 1 > this.nRows) {
+            throw new IllegalArgumentException("Window of " + nRows + " rows from row " + firstRow
+                    + " doesn't fit in " + this.nRows + " rows");
+        }
+        OccupancyGrid window = new OccupancyGrid(owner, rowBase + firstRow - 1, nRows);
+        if (owner.nWindows == owner.windows.length) {
+            owner.windows = Arrays.copyOf(owner.windows, Math.max(4, 2 * owner.nWindows));
+        }
+        owner.windows[owner.nWindows++] = window;
+        return window;
+    }
+
+    /**
+     * Detaches this window from its owner. Its cells stay as they are.
+     */
+    public void close() {
+        if (owner == this) {
+            throw new IllegalStateException("Only a window can be closed");
+        }
+        checkOpen();
+        for (int i = 0; i < owner.nWindows; ++i) {
+            if (owner.windows[i] == this) {
+                owner.windows[i] = owner.windows[--owner.nWindows];
+                owner.windows[owner.nWindows] = null;
+                break;
+            }
+        }
+        open = false;
+    }
+
+    private void checkOpen() {
+        if (!open) {
+            throw new IllegalStateException("Grid window used after it was closed or its grid was reset");
+        }
+    }
+
+    /**
+     * Frees every cell and switches to a grid of the given size. Closes all windows.
+     * Arrays are only reallocated if they are too small for it.
+     */
+    public void reset(int nRows, int nCols) {
+        if (owner != this) {
+            throw new IllegalStateException("Only the owning grid can be reset");
+        }
+        if (nRows < 0 || nCols < 0) {
+            throw new IllegalArgumentException("Invalid grid size: " + nRows + "x" + nCols);
+        }
+        for (int i = 0; i < nWindows; ++i) {
+            windows[i].open = false;
+            windows[i] = null;
+        }
+        nWindows = 0;
+        clear(); // while the old layout still describes the touched lines
+        this.nRows = nRows;
+        this.nCols = nCols;
+        this.rowWords = (nCols + 63) >>> 6;
+        this.colWords = (nRows + 63) >>> 6;
+        if (rowBits.length < nRows * rowWords) {
+            rowBits = new long[nRows * rowWords];
+        }
+        if (colBits.length < nCols * colWords) {
+            colBits = new long[nCols * colWords];
+        }
+        if (maskScratch.length < rowWords) {
+            maskScratch = new long[rowWords];
+            runScratch = new long[rowWords];
+        }
+        if (touchedRows.length < colWords) {
+            touchedRows = new long[colWords];
+        }
+        if (touchedCols.length < rowWords) {
+            touchedCols = new long[rowWords];
+        }
+        resetWeights();
+        resetFitIndexes();
+    }
+
+    /**
+     * Frees every cell (of the window only, for a window).
+     */
+    public void clear() {
+        checkOpen();
+        resetFitIndexes();
+        if (nRows == 0) {
+            return;
+        }
+        long[] touchedRows = owner.touchedRows, touchedCols = owner.touchedCols;
+        int end = rowBase + nRows;
+        for (int r = nextSet(touchedRows, 0, end, rowBase); r < end; r = nextSet(touchedRows, 0, end, r + 1)) {
+            Arrays.fill(rowBits, r * rowWords, (r + 1) * rowWords, 0L);
+        }
+        clearRange(touchedRows, 0, rowBase, end);
+        for (int c = nextSet(touchedCols, 0, nCols, 0); c < nCols; c = nextSet(touchedCols, 0, nCols, c + 1)) {
+            clearRange(colBits, c * colWords, rowBase, end);
+        }
+        if (owner == this && nCols > 0) {
+            clearRange(touchedCols, 0, 0, nCols);
+        }
+        owner.cellsChanged(rowBase + 1, end, 1, nCols);
+    }
+
+    /**
+     * Cells in the given owner rows and columns were reserved.
+     */
+    private void cellsTaken(int fromRow, int toRow, int fromCol, int toCol) {
+        setRange(touchedRows, 0, fromRow - 1, toRow);
+        setRange(touchedCols, 0, fromCol - 1, toCol);
+        cellsChanged(fromRow, toRow, fromCol, toCol);
+    }
+
+    /**
+     * Tells this grid and all windows of it that cells in the given owner rows and columns changed.
+     */
+    private void cellsChanged(int fromRow, int toRow, int fromCol, int toCol) {
+        markDirty(fromRow, toRow, fromCol, toCol);
+        for (int i = 0; i < nWindows; ++i) {
+            windows[i].markDirty(fromRow, toRow, fromCol, toCol);
+        }
+    }
+
+    private void markDirty(int fromRow, int toRow, int fromCol, int toCol) {
+        int from = Math.max(1, fromRow - rowBase), to = Math.min(nRows, toRow - rowBase);
+        if (from <= to) {
+            for (FitIndex index : fitIndexes) {
+                index.markDirty(index.kind == FitIndex.VERTICAL ? fromCol : from,
+                        index.kind == FitIndex.VERTICAL ? toCol : to);
+            }
+        }
+    }
+
+    private void resetFitIndexes() {
+        for (FitIndex index : fitIndexes) {
+            index.reset(index.kind == FitIndex.VERTICAL ? nCols : nRows);
+        }
+    }
+
+    private void resetWeights() {
+        if (rowWeights.length < nRows + 1) {
+            rowWeights = new int[nRows + 1];
+            rowWeightSums = new long[nRows + 1];
+        }
+        if (colWeights.length < nCols + 1) {
+            colWeights = new int[nCols + 1];
+            colWeightSums = new long[nCols + 1];
+        }
+        Arrays.fill(rowWeights, 1, nRows + 1, 1);
+        Arrays.fill(colWeights, 1, nCols + 1, 1);
+        sumWeights(rowWeights, rowWeightSums, nRows);
+        sumWeights(colWeights, colWeightSums, nCols);
+    }
+
+    private static void sumWeights(int[] weights, long[] sums, int n) {
+        for (int i = 1; i <= n; ++i) {
+            sums[i] = sums[i - 1] + weights[i];
+        }
+    }
+
+    private static void checkWeight(int weight) {
+        if (weight < 0 || weight > MAX_WEIGHT) {
+            throw new IllegalArgumentException("Weight out of range [0, " + MAX_WEIGHT + "]: " + weight);
+        }
+    }
+
+    /**
+     * Weight of the positions starting in this column, for weighted queries. Weights start at 1.
+     */
+    public void setColumnWeight(int col, int weight) {
+        checkOpen();
+        checkWeight(weight);
+        if (col < 1 || col > nCols) {
+            throw new IllegalArgumentException("Column out of grid: " + col);
+        }
+        colWeights[col] = weight;
+        sumWeights(colWeights, colWeightSums, nCols);
+        weightedVerticalFits.invalidate();
+        weightedHorizontalFits.invalidate();
+        weightedRectFits.invalidate();
+    }
+
+    /**
+     * Weight of the positions starting in rows fromRow..toRow, for weighted queries. Weights start at 1.
+     */
+    public void setRowWeights(int fromRow, int toRow, int weight) {
+        checkOpen();
+        checkWeight(weight);
+        if (fromRow < 1 || toRow > nRows || fromRow > toRow) {
+            throw new IllegalArgumentException("Rows out of grid: " + fromRow + ".." + toRow);
+        }
+        Arrays.fill(rowWeights, fromRow, toRow + 1, weight);
+        sumWeights(rowWeights, rowWeightSums, nRows);
+        weightedVerticalFits.invalidate();
+        weightedHorizontalFits.invalidate();
+        weightedRectFits.invalidate();
+    }
+
+    /**
+     * @return index of the first word of the given row in rowBits
+     */
+    private int rowStart(int row) {
+        return (rowBase + row - 1) * rowWords;
+    }
+
+    public int getRowCount() {
+        return nRows;
+    }
+
+    public int getColCount() {
+        return nCols;
+    }
+
+    private boolean inGrid(int row, int col) {
+        return row >= 1 && row <= nRows && col >= 1 && col <= nCols;
+    }
+
+    public boolean isFree(int row, int col) {
+        return inGrid(row, col) && (rowBits[rowStart(row) + ((col - 1) >>> 6)] & (1L << ((col - 1) & 63))) == 0;
+    }
+
+    public boolean isFreeVertical(int row, int col, int length) {
+        return length > 0 && inGrid(row, col) && row + length - 1 <= nRows
+                && isClear(colBits, (col - 1) * colWords, rowBase + row - 1, rowBase + row - 1 + length);
+    }
+
+    public boolean isFreeHorizontal(int row, int col, int length) {
+        return length > 0 && inGrid(row, col) && col + length - 1 <= nCols
+                && isClear(rowBits, rowStart(row), col - 1, col - 1 + length);
+    }
+
+    public void reserveVertical(int row, int col, int length) {
+        checkOpen();
+        if (!isFreeVertical(row, col, length)) {
+            throw new IllegalArgumentException("No space available for this segment");
+        }
+        setRange(colBits, (col - 1) * colWords, rowBase + row - 1, rowBase + row - 1 + length);
+        long bit = 1L << ((col - 1) & 63);
+        for (int i = rowStart(row) + ((col - 1) >>> 6), n = 0; n < length; ++n, i += rowWords) {
+            rowBits[i] |= bit;
+        }
+        owner.cellsTaken(rowBase + row, rowBase + row + length - 1, col, col);
+    }
+
+    public void reserveHorizontal(int row, int col, int length) {
+        checkOpen();
+        if (!isFreeHorizontal(row, col, length)) {
+            throw new IllegalArgumentException("No space available for this segment");
+        }
+        setRange(rowBits, rowStart(row), col - 1, col - 1 + length);
+        int at = rowBase + row - 1;
+        long bit = 1L << (at & 63);
+        for (int i = (col - 1) * colWords + (at >>> 6), n = 0; n < length; ++n, i += colWords) {
+            colBits[i] |= bit;
+        }
+        owner.cellsTaken(rowBase + row, rowBase + row, col, col + length - 1);
+    }
+
+    /**
+     * @param width  number of columns
+     * @param height number of rows
+     */
+    public boolean isFreeRect(int row, int col, int width, int height) {
+        if (width <= 0 || height <= 0 || !inGrid(row, col) || row + height - 1 > nRows || col + width - 1 > nCols) {
+            return false;
+        }
+        for (int r = row; r < row + height; ++r) {
+            if (!isClear(rowBits, rowStart(r), col - 1, col - 1 + width)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void reserveRect(int row, int col, int width, int height) {
+        checkOpen();
+        if (!isFreeRect(row, col, width, height)) {
+            throw new IllegalArgumentException("No space available for this rectangle");
+        }
+        for (int r = row; r < row + height; ++r) {
+            setRange(rowBits, rowStart(r), col - 1, col - 1 + width);
+        }
+        for (int c = col; c < col + width; ++c) {
+            setRange(colBits, (c - 1) * colWords, rowBase + row - 1, rowBase + row - 1 + height);
+        }
+        owner.cellsTaken(rowBase + row, rowBase + row + height - 1, col, col + width - 1);
+    }
+
+    /**
+     * Frees the cells of the rectangle (taken or not), e.g. to undo a reservation.
+     */
+    public void releaseRect(int row, int col, int width, int height) {
+        checkOpen();
+        if (width <= 0 || height <= 0 || !inGrid(row, col) || row + height - 1 > nRows || col + width - 1 > nCols) {
+            throw new IllegalArgumentException("Rectangle out of grid: " + GridRect.GR(row, col, width, height));
+        }
+        for (int r = row; r < row + height; ++r) {
+            clearRange(rowBits, rowStart(r), col - 1, col - 1 + width);
+        }
+        for (int c = col; c < col + width; ++c) {
+            clearRange(colBits, (c - 1) * colWords, rowBase + row - 1, rowBase + row - 1 + height);
+        }
+        owner.cellsChanged(rowBase + row, rowBase + row + height - 1, col, col + width - 1);
+    }
+
+    /**
+     * @return first row at or after the given one where a vertical strip fits in this column, or -1
+     */
+    public int firstFitVertical(int row, int col, int length) {
+        if (length <= 0 || !inGrid(row, col)) {
+            return -1;
+        }
+        int at = firstFit(colBits, (col - 1) * colWords, rowBase + nRows, rowBase + row - 1, length);
+        return at < 0 ? -1 : at - rowBase + 1;
+    }
+
+    /**
+     * @return first column at or after the given one where a horizontal strip fits in this row, or -1
+     */
+    public int firstFitHorizontal(int row, int col, int length) {
+        if (length <= 0 || !inGrid(row, col)) {
+            return -1;
+        }
+        int at = firstFit(rowBits, rowStart(row), nCols, col - 1, length);
+        return at < 0 ? -1 : at + 1;
+    }
+
+    /**
+     * Walks columns outward from col and scans each one a word at a time, both ways from row. It stops once
+     * the column distance alone reaches the best match, so a nearby match is cheap, but on a mostly full grid
+     * it may scan every column: O(nCols * nRows / 64). Don't call it in tight loops.
+     *
+     * @return fitting vertical strip starting closest to (row, col), counting rows plus columns apart,
+     * or null if none fits. Ties go to the nearer column, then to starting at or after row, then to the left.
+     */
+    public GridSegment findNearestVertical(int row, int col, int length) {
+        checkOpen();
+        if (!inGrid(row, col)) {
+            throw new IllegalArgumentException("Position out of grid: " + row + ", " + col);
+        }
+        if (length <= 0 || length > nRows) {
+            return null;
+        }
+        int bestRow = -1, bestCol = -1, best = Integer.MAX_VALUE;
+        nearestLinesScanned = 0;
+        for (int d = 0; d < nCols && d < best; ++d) {
+            // Both columns at this distance are tried for a start at or after row before any start before it
+            for (int c = col - d; c <= col + d; c += Math.max(1, 2 * d)) {
+                if (c < 1 || c > nCols) {
+                    continue;
+                }
+                ++nearestLinesScanned;
+                int after = firstFit(colBits, (c - 1) * colWords, rowBase + nRows, rowBase + row - 1, length);
+                if (after >= 0 && after - rowBase + 1 - row + d < best) {
+                    bestRow = after - rowBase + 1;
+                    bestCol = c;
+                    best = bestRow - row + d;
+                }
+            }
+            for (int c = col - d; c <= col + d; c += Math.max(1, 2 * d)) {
+                if (c < 1 || c > nCols) {
+                    continue;
+                }
+                int before = lastFit(colBits, (c - 1) * colWords, rowBase, rowBase + nRows, rowBase + row - 1, length);
+                if (before >= 0 && row - (before - rowBase + 1) + d < best) {
+                    bestRow = before - rowBase + 1;
+                    bestCol = c;
+                    best = row - bestRow + d;
+                }
+            }
+        }
+        return bestRow < 0 ? null : GridSegment.GS(bestRow, bestCol, length);
+    }
+
+    /**
+     * Walks rows outward from row like {@link #findNearestVertical}, so on a mostly full grid it may scan
+     * every row: O(nRows * nCols / 64). Don't call it in tight loops.
+     *
+     * @return fitting horizontal strip starting closest to (row, col), counting rows plus columns apart,
+     * or null if none fits. Ties go to the nearer row, then to starting at or after col, then to the lower row.
+     */
+    public GridSegment findNearestHorizontal(int row, int col, int length) {
+        checkOpen();
+        if (!inGrid(row, col)) {
+            throw new IllegalArgumentException("Position out of grid: " + row + ", " + col);
+        }
+        if (length <= 0 || length > nCols) {
+            return null;
+        }
+        int bestRow = -1, bestCol = -1, best = Integer.MAX_VALUE;
+        nearestLinesScanned = 0;
+        for (int d = 0; d < nRows && d < best; ++d) {
+            for (int r = row - d; r <= row + d; r += Math.max(1, 2 * d)) {
+                if (r < 1 || r > nRows) {
+                    continue;
+                }
+                ++nearestLinesScanned;
+                int after = firstFit(rowBits, rowStart(r), nCols, col - 1, length);
+                if (after >= 0 && after + 1 - col + d < best) {
+                    bestRow = r;
+                    bestCol = after + 1;
+                    best = bestCol - col + d;
+                }
+            }
+            for (int r = row - d; r <= row + d; r += Math.max(1, 2 * d)) {
+                if (r < 1 || r > nRows) {
+                    continue;
+                }
+                int before = lastFit(rowBits, rowStart(r), 0, nCols, col - 1, length);
+                if (before >= 0 && col - (before + 1) + d < best) {
+                    bestRow = r;
+                    bestCol = before + 1;
+                    best = col - bestCol + d;
+                }
+            }
+        }
+        return bestRow < 0 ? null : GridSegment.GS(bestRow, bestCol, length);
+    }
+
+    /**
+     * @return number of positions where a free vertical strip of this length could start
+     */
+    public int countFittingVertical(int length) {
+        checkOpen();
+        return (int) verticalFits.count(length, 1);
+    }
+
+    /**
+     * @return number of positions where a free horizontal strip of this length could start
+     */
+    public int countFittingHorizontal(int length) {
+        checkOpen();
+        return (int) horizontalFits.count(length, 1);
+    }
+
+    /**
+     * @param k 1-based, positions are ordered by column, then row
+     */
+    public GridSegment getKthFittingVertical(int length, int k) {
+        checkOpen();
+        int col = verticalFits.findLine(length, 1, k);
+        int row = kthStart(colBits, (col - 1) * colWords, rowBase, rowBase + nRows, length,
+                (int) verticalFits.kInLine) - rowBase + 1;
+        return GridSegment.GS(row, col, length);
+    }
+
+    /**
+     * @param k 1-based, positions are ordered by row, then column
+     */
+    public GridSegment getKthFittingHorizontal(int length, int k) {
+        checkOpen();
+        int row = horizontalFits.findLine(length, 1, k);
+        int col = kthStart(rowBits, rowStart(row), 0, nCols, length, (int) horizontalFits.kInLine) + 1;
+        return GridSegment.GS(row, col, length);
+    }
+
+    /**
+     * @return summed weight of the positions where a free vertical strip of this length could start
+     */
+    public long weighFittingVertical(int length) {
+        checkOpen();
+        return weightedVerticalFits.count(length, 1);
+    }
+
+    /**
+     * @return summed weight of the positions where a free horizontal strip of this length could start
+     */
+    public long weighFittingHorizontal(int length) {
+        checkOpen();
+        return weightedHorizontalFits.count(length, 1);
+    }
+
+    /**
+     * @param target 1..weighFittingVertical(length); picks the position at which the running weight
+     *               sum (in getKthFittingVertical order) reaches it
+     */
+    public GridSegment getFittingVerticalByWeight(int length, long target) {
+        checkOpen();
+        int col = weightedVerticalFits.findLine(length, 1, target);
+        int row = weightedStart(colBits, (col - 1) * colWords, rowBase, rowBase + nRows, length,
+                rowWeightSums, unscaled(weightedVerticalFits.kInLine, colWeights[col])) - rowBase + 1;
+        return GridSegment.GS(row, col, length);
+    }
+
+    /**
+     * @param target 1..weighFittingHorizontal(length); picks the position at which the running weight
+     *               sum (in getKthFittingHorizontal order) reaches it
+     */
+    public GridSegment getFittingHorizontalByWeight(int length, long target) {
+        checkOpen();
+        int row = weightedHorizontalFits.findLine(length, 1, target);
+        int col = weightedStart(rowBits, rowStart(row), 0, nCols, length,
+                colWeightSums, unscaled(weightedHorizontalFits.kInLine, rowWeights[row])) + 1;
+        return GridSegment.GS(row, col, length);
+    }
+
+    /**
+     * @return number of positions where a free width x height rectangle could have its top-left cell
+     */
+    public int countFittingRects(int width, int height) {
+        checkOpen();
+        return (int) rectFits.count(width, height);
+    }
+
+    /**
+     * @param k 1-based, top-left cells are ordered by row, then column
+     */
+    public GridRect getKthFittingRect(int width, int height, int k) {
+        checkOpen();
+        int row = rectFits.findLine(width, height, k);
+        rectMask(row, width, height);
+        int col = selectBit(maskScratch, rowWords, (int) rectFits.kInLine) + 1;
+        return GridRect.GR(row, col, width, height);
+    }
+
+    /**
+     * A line's weight sums are multiplied by the line's own weight. This turns a target within
+     * such a sum into one within the unmultiplied sum: the first position reaching either is the same.
+     */
+    private static long unscaled(long target, int lineWeight) {
+        return (target + lineWeight - 1) / lineWeight;
+    }
+
+    /**
+     * @return summed weight of the top-left cells where a free width x height rectangle fits
+     */
+    public long weighFittingRects(int width, int height) {
+        checkOpen();
+        return weightedRectFits.count(width, height);
+    }
+
+    /**
+     * @param target 1..weighFittingRects(width, height); picks the top-left cell at which the running
+     *               weight sum (in getKthFittingRect order) reaches it
+     */
+    public GridRect getFittingRectByWeight(int width, int height, long target) {
+        checkOpen();
+        int row = weightedRectFits.findLine(width, height, target);
+        rectMask(row, width, height);
+        long left = unscaled(weightedRectFits.kInLine, rowWeights[row]);
+        for (int w = 0; w < rowWords; ++w) {
+            for (long word = maskScratch[w]; word != 0; word &= word - 1) {
+                int col = (w << 6) + Long.numberOfTrailingZeros(word) + 1;
+                left -= colWeights[col];
+                if (left <= 0) {
+                    return GridRect.GR(row, col, width, height);
+                }
+            }
+        }
+        throw new IllegalStateException("Fit counts out of sync with the grid");
+    }
+
+    /**
+     * Leaves in maskScratch the columns (bit c-1 = column c) where a width x height rectangle
+     * with its top-left cell in the given row fits. The row must leave room for the height.
+     */
+    private void rectMask(int top, int width, int height) {
+        for (int r = top; r < top + height; ++r) {
+            long[] dst = r == top ? maskScratch : runScratch;
+            int base = rowStart(r);
+            for (int w = 0; w < rowWords; ++w) {
+                dst[w] = ~rowBits[base + w];
+            }
+            if ((nCols & 63) != 0) {
+                dst[rowWords - 1] &= -1L >>> (64 - (nCols & 63));
+            }
+            // Bit c stays set iff cells c..c+len-1 are free; len doubles until it reaches width
+            for (int len = 1; len < width; ) {
+                int step = Math.min(len, width - len);
+                andShiftedRight(dst, rowWords, step);
+                len += step;
+            }
+            if (r != top) {
+                for (int w = 0; w < rowWords; ++w) {
+                    maskScratch[w] &= runScratch[w];
+                }
+            }
+        }
+    }
+
+    public void printGrid() {
+        System.out.println("Rows: " + nRows + " | " + "Cols: " + nCols);
+        char[] line = new char[nCols];
+        for (int r = 1; r <= nRows; ++r) {
+            for (int c = 1; c <= nCols; ++c) {
+                line[c - 1] = isFree(r, c) ? '.' : '#';
+            }
+            System.out.println(r + " " + Arrays.toString(line));
+        }
+    }
+
+    /**
+     * Fit counts (or weight sums) of one orientation or of rectangles, for the last shape asked about.
+     */
+    private final class FitIndex {
+        static final int VERTICAL = 0, HORIZONTAL = 1, RECT = 2;
+
+        final int kind;
+        private final boolean weighted;
+        private int nLines;
+        private int cachedLength = 0; // 0 = nothing counted yet; the width, for rectangles
+        private int cachedHeight = 1; // rectangles only
+        private long total;
+        private long[] lineFits = new long[1]; // 1-based
+        private long[] fenwick = new long[1];  // 1-based
+        private long[] dirty = new long[0];    // bit l-1 = line l
+        long kInLine;                          // set by findLine()
+
+        FitIndex(int kind, boolean weighted) {
+            this.kind = kind;
+            this.weighted = weighted;
+        }
+
+        void reset(int nLines) {
+            this.nLines = nLines;
+            this.cachedLength = 0;
+            if (lineFits.length < nLines + 1) {
+                lineFits = new long[nLines + 1];
+                fenwick = new long[nLines + 1];
+                dirty = new long[(nLines + 63) >>> 6];
+            }
+        }
+
+        /**
+         * Forgets the counts, e.g. after weights changed.
+         */
+        void invalidate() {
+            cachedLength = 0;
+        }
+
+        /**
+         * Cells of lines fromLine..toLine changed. For rectangles, lines are rows, and every
+         * rectangle reaching into them (top rows down to fromLine - height + 1) is affected.
+         */
+        void markDirty(int fromLine, int toLine) {
+            if (cachedLength != 0) {
+                setRange(dirty, 0, Math.max(0, fromLine - cachedHeight), toLine);
+            }
+        }
+
+        private long countLine(int line, int length, int height) {
+            switch (kind) {
+                case VERTICAL:
+                    if (!isTouched(owner.touchedCols, line - 1, line)) {
+                        return weighted ? colWeights[line] * rowWeightSums[nRows - length + 1] : nRows - length + 1;
+                    }
+                    return weighted
+                            ? colWeights[line] * weighFitting(colBits, (line - 1) * colWords, rowBase,
+                                    rowBase + nRows, length, rowWeightSums)
+                            : countFitting(colBits, (line - 1) * colWords, rowBase, rowBase + nRows, length);
+                case HORIZONTAL:
+                    if (!isTouched(owner.touchedRows, rowBase + line - 1, rowBase + line)) {
+                        return weighted ? rowWeights[line] * colWeightSums[nCols - length + 1] : nCols - length + 1;
+                    }
+                    return weighted
+                            ? rowWeights[line] * weighFitting(rowBits, rowStart(line), 0, nCols, length, colWeightSums)
+                            : countFitting(rowBits, rowStart(line), 0, nCols, length);
+                default:
+                    if (line + height - 1 > nRows || (weighted && rowWeights[line] == 0)) {
+                        return 0;
+                    }
+                    if (!isTouched(owner.touchedRows, rowBase + line - 1, rowBase + line - 1 + height)) {
+                        return weighted ? rowWeights[line] * colWeightSums[nCols - length + 1] : nCols - length + 1;
+                    }
+                    rectMask(line, length, height);
+                    long fits = 0;
+                    for (int w = 0; w < rowWords; ++w) {
+                        if (!weighted) {
+                            fits += Long.bitCount(maskScratch[w]);
+                            continue;
+                        }
+                        for (long word = maskScratch[w]; word != 0; word &= word - 1) {
+                            fits += colWeights[(w << 6) + Long.numberOfTrailingZeros(word) + 1];
+                        }
+                    }
+                    return weighted ? rowWeights[line] * fits : fits;
+            }
+        }
+
+        private void sync(int length, int height) {
+            if (length != cachedLength || height != cachedHeight) {
+                total = 0;
+                for (int line = 1; line <= nLines; ++line) {
+                    lineFits[line] = countLine(line, length, height);
+                    fenwick[line] = lineFits[line];
+                    total += lineFits[line];
+                }
+                for (int i = 1; i <= nLines; ++i) {
+                    int j = i + (i & -i);
+                    if (j <= nLines) {
+                        fenwick[j] += fenwick[i];
+                    }
+                }
+                Arrays.fill(dirty, 0, (nLines + 63) >>> 6, 0L);
+                cachedLength = length;
+                cachedHeight = height;
+                return;
+            }
+            for (int w = 0, words = (nLines + 63) >>> 6; w < words; ++w) {
+                long word = dirty[w];
+                while (word != 0) {
+                    int line = (w << 6) + Long.numberOfTrailingZeros(word) + 1;
+                    word &= word - 1;
+                    long delta = countLine(line, length, height) - lineFits[line];
+                    if (delta != 0) {
+                        lineFits[line] += delta;
+                        total += delta;
+                        for (int i = line; i <= nLines; i += i & -i) {
+                            fenwick[i] += delta;
+                        }
+                    }
+                }
+                dirty[w] = 0L;
+            }
+        }
+
+        long count(int length, int height) {
+            if (length <= 0 || height <= 0 || length > (kind == VERTICAL ? nRows : nCols)
+                    || (kind == RECT && height > nRows)) {
+                return 0;
+            }
+            sync(length, height);
+            return total;
+        }
+
+        /**
+         * @return line holding the k-th fitting position (or the position where the running weight
+         * sum reaches k); kInLine is set to what is left of k within the line
+         */
+        int findLine(int length, int height, long k) {
+            if (k < 1 || k > count(length, height)) {
+                throw new IllegalArgumentException(kind == RECT
+                        ? "No fitting space #" + k + " of size " + length + "x" + height
+                        : "No fitting space #" + k + " of length " + length);
+            }
+            int pos = 0;
+            for (int step = Integer.highestOneBit(nLines); step > 0; step >>>= 1) {
+                if (pos + step <= nLines && fenwick[pos + step] < k) {
+                    pos += step;
+                    k -= fenwick[pos];
+                }
+            }
+            kInLine = k;
+            return pos + 1;
+        }
+    }
+
+    // ---- Bit line helpers. Positions are 0-based, [from, to) ranges, base = first word of the line ----
+
+    private static long rangeMask(int word, int from, int to) {
+        long mask = -1L;
+        if (word == from >>> 6) {
+            mask &= -1L << (from & 63);
+        }
+        if (word == (to - 1) >>> 6) {
+            mask &= -1L >>> (63 - ((to - 1) & 63));
+        }
+        return mask;
+    }
+
+    private static boolean isClear(long[] bits, int base, int from, int to) {
+        for (int w = from >>> 6, last = (to - 1) >>> 6; w <= last; ++w) {
+            if ((bits[base + w] & rangeMask(w, from, to)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether any line in [from, to) was reserved in since the last clear
+     */
+    private static boolean isTouched(long[] touched, int from, int to) {
+        return !isClear(touched, 0, from, to);
+    }
+
+    private static void setRange(long[] bits, int base, int from, int to) {
+        for (int w = from >>> 6, last = (to - 1) >>> 6; w <= last; ++w) {
+            bits[base + w] |= rangeMask(w, from, to);
+        }
+    }
+
+    private static void clearRange(long[] bits, int base, int from, int to) {
+        for (int w = from >>> 6, last = (to - 1) >>> 6; w <= last; ++w) {
+            bits[base + w] &= ~rangeMask(w, from, to);
+        }
+    }
+
+    /**
+     * @return first free position at or after from, or len if there is none
+     */
+    private static int nextClear(long[] bits, int base, int len, int from) {
+        if (from >= len) {
+            return len;
+        }
+        int w = from >>> 6, words = (len + 63) >>> 6;
+        long word = ~bits[base + w] & (-1L << (from & 63));
+        while (word == 0) {
+            if (++w == words) {
+                return len;
+            }
+            word = ~bits[base + w];
+        }
+        return Math.min(len, (w << 6) + Long.numberOfTrailingZeros(word));
+    }
+
+    /**
+     * @return first taken position at or after from, or len if there is none
+     */
+    private static int nextSet(long[] bits, int base, int len, int from) {
+        if (from >= len) {
+            return len;
+        }
+        int w = from >>> 6, words = (len + 63) >>> 6;
+        long word = bits[base + w] & (-1L << (from & 63));
+        while (word == 0) {
+            if (++w == words) {
+                return len;
+            }
+            word = bits[base + w];
+        }
+        return Math.min(len, (w << 6) + Long.numberOfTrailingZeros(word));
+    }
+
+    /**
+     * @return last taken position in [lo, from], or lo - 1 if there is none
+     */
+    private static int prevSet(long[] bits, int base, int lo, int from) {
+        if (from < lo) {
+            return lo - 1;
+        }
+        int w = from >>> 6, first = lo >>> 6;
+        long word = bits[base + w] & (-1L >>> (63 - (from & 63)));
+        while (word == 0) {
+            if (--w < first) {
+                return lo - 1;
+            }
+            word = bits[base + w];
+        }
+        return Math.max(lo - 1, (w << 6) + 63 - Long.numberOfLeadingZeros(word));
+    }
+
+    /**
+     * @return last free position in [lo, from], or lo - 1 if there is none
+     */
+    private static int prevClear(long[] bits, int base, int lo, int from) {
+        if (from < lo) {
+            return lo - 1;
+        }
+        int w = from >>> 6, first = lo >>> 6;
+        long word = ~bits[base + w] & (-1L >>> (63 - (from & 63)));
+        while (word == 0) {
+            if (--w < first) {
+                return lo - 1;
+            }
+            word = ~bits[base + w];
+        }
+        return Math.max(lo - 1, (w << 6) + 63 - Long.numberOfLeadingZeros(word));
+    }
+
+    /**
+     * @return last start in [lo, at] of a free run of the given length that ends before len, or -1
+     */
+    private static int lastFit(long[] bits, int base, int lo, int len, int at, int length) {
+        int hi = Math.min(at + length, len); // runs are cut at hi, so a start found is at most at
+        while (hi - length >= lo) {
+            int taken = prevSet(bits, base, lo, hi - 1);
+            if (hi - taken - 1 >= length) {
+                return hi - length;
+            }
+            int free = prevClear(bits, base, lo, taken - 1);
+            if (free < lo) {
+                return -1;
+            }
+            hi = free + 1;
+        }
+        return -1;
+    }
+
+    private static int firstFit(long[] bits, int base, int len, int from, int length) {
+        int p = from;
+        while (true) {
+            int start = nextClear(bits, base, len, p);
+            if (start + length > len) {
+                return -1;
+            }
+            int end = nextSet(bits, base, len, start);
+            if (end - start >= length) {
+                return start;
+            }
+            p = end;
+        }
+    }
+
+    /**
+     * @return number of starts in [from, len) of free runs of the given length that end before len
+     */
+    private static int countFitting(long[] bits, int base, int from, int len, int length) {
+        int total = 0;
+        int start = nextClear(bits, base, len, from);
+        while (start < len) {
+            int end = nextSet(bits, base, len, start);
+            if (end - start >= length) {
+                total += end - start - length + 1;
+            }
+            start = nextClear(bits, base, len, end);
+        }
+        return total;
+    }
+
+    /**
+     * bits &= bits >>> shift, over a line of the given number of words
+     */
+    private static void andShiftedRight(long[] bits, int words, int shift) {
+        int ws = shift >>> 6, bs = shift & 63;
+        for (int w = 0; w < words; ++w) {
+            long lo = w + ws < words ? bits[w + ws] : 0L;
+            long hi = w + ws + 1 < words ? bits[w + ws + 1] : 0L;
+            bits[w] &= bs == 0 ? lo : (lo >>> bs) | (hi << (64 - bs));
+        }
+    }
+
+    /**
+     * @return position of the k-th (1-based) set bit
+     */
+    private static int selectBit(long[] bits, int words, int k) {
+        for (int w = 0; w < words; ++w) {
+            int n = Long.bitCount(bits[w]);
+            if (k <= n) {
+                long word = bits[w];
+                for (int i = 1; i < k; ++i) {
+                    word &= word - 1;
+                }
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            k -= n;
+        }
+        throw new IllegalStateException("Fit counts out of sync with the grid");
+    }
+
+    /**
+     * @param sums sums[i] = summed weight of the first i positions from "from"
+     * @return summed weight of the starts in [from, len) of free runs of the given length
+     */
+    private static long weighFitting(long[] bits, int base, int from, int len, int length, long[] sums) {
+        long total = 0;
+        int start = nextClear(bits, base, len, from);
+        while (start < len) {
+            int end = nextSet(bits, base, len, start);
+            if (end - start >= length) {
+                total += sums[end - length + 1 - from] - sums[start - from];
+            }
+            start = nextClear(bits, base, len, end);
+        }
+        return total;
+    }
+
+    /**
+     * @return start at which the running weight of fitting starts reaches target
+     */
+    private static int weightedStart(long[] bits, int base, int from, int len, int length, long[] sums,
+                                     long target) {
+        int start = nextClear(bits, base, len, from);
+        while (start < len) {
+            int end = nextSet(bits, base, len, start);
+            if (end - start >= length) {
+                long before = sums[start - from];
+                int lo = start, hi = end - length; // first p in [lo, hi] with sums[p + 1 - from] - before >= target
+                if (sums[hi + 1 - from] - before >= target) {
+                    while (lo < hi) {
+                        int mid = (lo + hi) >>> 1;
+                        if (sums[mid + 1 - from] - before >= target) {
+                            hi = mid;
+                        } else {
+                            lo = mid + 1;
+                        }
+                    }
+                    return lo;
+                }
+                target -= sums[hi + 1 - from] - before;
+            }
+            start = nextClear(bits, base, len, end);
+        }
+        throw new IllegalStateException("Fit counts out of sync with the grid");
+    }
+
+    private static int kthStart(long[] bits, int base, int from, int len, int length, int k) {
+        int start = nextClear(bits, base, len, from);
+        while (start < len) {
+            int end = nextSet(bits, base, len, start);
+            int fits = end - start - length + 1;
+            if (fits > 0) {
+                if (k <= fits) {
+                    return start + k - 1;
+                }
+                k -= fits;
+            }
+            start = nextClear(bits, base, len, end);
+        }
+        throw new IllegalStateException("Fit counts out of sync with the grid");
+    }
+}
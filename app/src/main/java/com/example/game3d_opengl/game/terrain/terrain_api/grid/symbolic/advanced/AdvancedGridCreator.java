@@ -2,84 +2,446 @@ package com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advance
 
 import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.BaseGridCreator;
 import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.GridCreatorWrapper;
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.GridRect;
 import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.GridSegment;
-import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advanced.segments.PartialSegmentHandler;
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.NoFittingSpaceException;
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.OccupancyGrid;
+import com.example.game3d_opengl.game.util.GameRandom;
+import com.example.game3d_opengl.game.util.RandomStream;
 
+import java.util.Arrays;
+
+/**
+ * Grid creator with random-fitting reservations. Occupancy lives in one {@link OccupancyGrid},
+ * so a reservation updates the vertical and the horizontal view at once.
+ * <p>
+ * Under another AdvancedGridCreator, the grid is a window onto the parent's grid (and so onto the
+ * outermost ancestor's): a reservation is made once, and every ancestor sees it through the shared
+ * cells. A child is created before its ancestors' grids exist, so the window is opened on first use.
+ * <p>
+ * Reservations can be made tentatively, between beginTransaction() and commit() or rollback().
+ * Rolling back frees just the logged cells, so it costs as much as the reservations did.
+ * <p>
+ * A reservation that is well-formed but finds its cells (or every fitting place) taken throws
+ * {@link NoFittingSpaceException}; positions out of the grid and bad sizes or weights throw a plain
+ * IllegalArgumentException, as they are bugs in the structure rather than a full grid.
+ */
 public class AdvancedGridCreator implements BaseGridCreator {
 
     private final int nRows, nCols;
-    private final PartialSegmentHandler vertical, horizontal;
     private final GridCreatorWrapper parent;
     private final int parentRowOffset;
+    private final RandomStream random;   // for the random-fitting reservations
+    private final GridRegionPool regions; // null if an own grid is allocated instead
+    private GridRegion region;
+    private int regionGeneration;
+    private OccupancyGrid grid;          // null until first used
+    private boolean windowed;            // grid is a window onto the parent's
+    // Closest ancestor that doesn't share the grid, and this grid's row offset in it
+    private GridCreatorWrapper forwardTo;
+    private int forwardRowOffset;
+    private boolean destroyed = false;
+    // Reservations made in the open transaction, [row, col, width, height] each
+    private boolean inTransaction = false;
+    private int[] undoLog = new int[32];
+    private int undoSize = 0;
 
     public AdvancedGridCreator(int nRows, int nCols, GridCreatorWrapper parentGrid, int parentRowOffset) {
+        this(nRows, nCols, parentGrid, parentRowOffset, GameRandom.nextSeed());
+    }
+
+    /**
+     * @param seed seed of the stream that picks random fitting spaces
+     */
+    public AdvancedGridCreator(int nRows, int nCols, GridCreatorWrapper parentGrid, int parentRowOffset,
+                               long seed) {
+        this(nRows, nCols, parentGrid, parentRowOffset, null, seed);
+    }
+
+    /**
+     * Unless the grid is a window onto the parent's, keeps it in a region taken from the pool;
+     * destroy() gives it back in O(1).
+     * @param parentRowOffset row offset of this grid in the parent's rows
+     * @param seed seed of the stream that picks random fitting spaces
+     */
+    public AdvancedGridCreator(int nRows, int nCols, GridCreatorWrapper parentGrid, int parentRowOffset,
+                               GridRegionPool regions, long seed) {
+        this.random = new RandomStream(seed);
         this.nRows = nRows;
         this.nCols = nCols;
-        this.horizontal = new PartialSegmentHandler(nRows, nCols, false);
-        this.vertical = new PartialSegmentHandler(nRows, nCols, true);
+        this.regions = regions;
         this.parentRowOffset = parentRowOffset;
         this.parent = parentGrid;
+        if (parentGrid == null) {
+            bind();
+        }
     }
 
     public AdvancedGridCreator(int nRows, int nCols) {
         this(nRows, nCols, null, 0);
     }
 
-    @Override
-    public GridSegment reserveVertical(int row, int col, int length) {
-        if (parent != null && parent.content != null) {
-            parent.content.reserveVertical(row + parentRowOffset, col, length);
+    private void bind() {
+        if (parent != null && parent.content instanceof AdvancedGridCreator) {
+            AdvancedGridCreator shared = (AdvancedGridCreator) parent.content;
+            this.grid = shared.grid().window(parentRowOffset + 1, nRows);
+            this.windowed = true;
+            this.forwardTo = shared.forwardTo;
+            this.forwardRowOffset = shared.forwardRowOffset + parentRowOffset;
+            return;
+        }
+        if (regions != null) {
+            this.region = regions.acquire(nRows, nCols);
+            this.regionGeneration = region.getGeneration();
+            this.grid = region.grid;
+        } else {
+            this.grid = new OccupancyGrid(nRows, nCols);
+        }
+        this.forwardTo = parent;
+        this.forwardRowOffset = parentRowOffset;
+    }
+
+    private OccupancyGrid grid() {
+        if (destroyed) {
+            throw new IllegalStateException("Grid used after it was destroyed");
+        }
+        if (grid == null) {
+            bind();
         }
-        vertical.reserve(row, col, length);
-        for (int r = row; r < row + length; ++r) {
-            horizontal.reserve(r, col, 1);
+        if (region != null && region.getGeneration() != regionGeneration) {
+            throw new IllegalStateException("Grid used after its region was released");
+        }
+        return grid;
+    }
+
+    private boolean forwards() {
+        return forwardTo != null && forwardTo.content != null;
+    }
+
+    private void takeVertical(OccupancyGrid grid, int row, int col, int length) {
+        checkInGrid(grid, row, col, 1, length);
+        if (!grid.isFreeVertical(row, col, length)) {
+            throw new NoFittingSpaceException("No space available for this segment");
         }
+        if (!inTransaction && forwards()) {
+            forwardTo.content.reserveVertical(row + forwardRowOffset, col, length);
+        }
+        grid.reserveVertical(row, col, length);
+        logReservation(row, col, 1, length);
+    }
+
+    private void takeHorizontal(OccupancyGrid grid, int row, int col, int length) {
+        checkInGrid(grid, row, col, length, 1);
+        if (!grid.isFreeHorizontal(row, col, length)) {
+            throw new NoFittingSpaceException("No space available for this segment");
+        }
+        if (!inTransaction && forwards()) {
+            forwardTo.content.reserveHorizontal(row + forwardRowOffset, col, length);
+        }
+        grid.reserveHorizontal(row, col, length);
+        logReservation(row, col, length, 1);
+    }
+
+    private void takeRect(OccupancyGrid grid, int row, int col, int width, int height) {
+        checkInGrid(grid, row, col, width, height);
+        if (!grid.isFreeRect(row, col, width, height)) {
+            throw new NoFittingSpaceException("No space available for this rectangle");
+        }
+        if (!inTransaction && forwards()) {
+            forwardTo.content.reserveRect(row + forwardRowOffset, col, width, height);
+        }
+        grid.reserveRect(row, col, width, height);
+        logReservation(row, col, width, height);
+    }
+
+    private static void checkSize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Size must be positive: " + width + "x" + height);
+        }
+    }
+
+    private static void checkInGrid(OccupancyGrid grid, int row, int col, int width, int height) {
+        checkSize(width, height);
+        if (row < 1 || col < 1 || row + height - 1 > grid.getRowCount() || col + width - 1 > grid.getColCount()) {
+            throw new IllegalArgumentException("Position out of grid: " + row + ", " + col
+                    + " (" + width + "x" + height + ")");
+        }
+    }
+
+    private void logReservation(int row, int col, int width, int height) {
+        if (!inTransaction) {
+            return;
+        }
+        if (undoSize + 4 > undoLog.length) {
+            undoLog = Arrays.copyOf(undoLog, 2 * undoLog.length);
+        }
+        undoLog[undoSize++] = row;
+        undoLog[undoSize++] = col;
+        undoLog[undoSize++] = width;
+        undoLog[undoSize++] = height;
+    }
+
+    /**
+     * Makes the following reservations tentative. Until commit(), they are only made in this grid
+     * (and in the ancestors sharing it), not passed on to the parent.
+     */
+    public void beginTransaction() {
+        grid();
+        if (inTransaction) {
+            throw new IllegalStateException("Transaction already open");
+        }
+        inTransaction = true;
+        undoSize = 0;
+    }
+
+    /**
+     * Keeps the reservations made since beginTransaction() and passes them on to the parent.
+     * If the parent took any of their cells in the meantime, none is passed on: the transaction
+     * stays open, to be rolled back, and NoFittingSpaceException is thrown.
+     */
+    public void commit() {
+        grid();
+        if (!inTransaction) {
+            throw new IllegalStateException("No open transaction");
+        }
+        if (forwards()) {
+            for (int i = 0; i < undoSize; i += 4) {
+                if (!forwardTo.content.isFreeRect(undoLog[i] + forwardRowOffset, undoLog[i + 1],
+                        undoLog[i + 2], undoLog[i + 3])) {
+                    throw new NoFittingSpaceException("Parent grid took cells of the open transaction");
+                }
+            }
+            for (int i = 0; i < undoSize; i += 4) {
+                int row = undoLog[i] + forwardRowOffset, col = undoLog[i + 1];
+                int width = undoLog[i + 2], height = undoLog[i + 3];
+                if (width == 1) {
+                    forwardTo.content.reserveVertical(row, col, height);
+                } else if (height == 1) {
+                    forwardTo.content.reserveHorizontal(row, col, width);
+                } else {
+                    forwardTo.content.reserveRect(row, col, width, height);
+                }
+            }
+        }
+        inTransaction = false;
+        undoSize = 0;
+    }
+
+    /**
+     * Frees the cells of every reservation made since beginTransaction().
+     * Weights set in the meantime and the random stream are not rewound.
+     */
+    public void rollback() {
+        OccupancyGrid grid = grid();
+        if (!inTransaction) {
+            throw new IllegalStateException("No open transaction");
+        }
+        for (int i = undoSize - 4; i >= 0; i -= 4) {
+            grid.releaseRect(undoLog[i], undoLog[i + 1], undoLog[i + 2], undoLog[i + 3]);
+        }
+        inTransaction = false;
+        undoSize = 0;
+    }
+
+    @Override
+    public GridSegment reserveVertical(int row, int col, int length) {
+        OccupancyGrid grid = grid();
+        takeVertical(grid, row, col, length);
         return new GridSegment(row, col, length);
     }
 
     @Override
     public GridSegment reserveHorizontal(int row, int col, int length) {
-        if (parent != null && parent.content != null) {
-            parent.content.reserveHorizontal(row + parentRowOffset, col, length);
-        }
-        horizontal.reserve(row, col, length);
-        for (int c = col; c < col + length; ++c) {
-            vertical.reserve(row, c, 1);
-        }
+        OccupancyGrid grid = grid();
+        takeHorizontal(grid, row, col, length);
         return new GridSegment(row, col, length);
     }
 
+    @Override
+    public GridRect reserveRect(int row, int col, int width, int height) {
+        OccupancyGrid grid = grid();
+        takeRect(grid, row, col, width, height);
+        return new GridRect(row, col, width, height);
+    }
+
     public GridSegment reserveRandomFittingVertical(int length) {
-        GridSegment res = vertical.reserveRandomFitting(length);
-        if (parent != null && parent.content != null) {
-            parent.content.reserveVertical(res.row + parentRowOffset, res.col, res.length);
-        }
-        for (int r = res.row; r < res.row + length; ++r) {
-            horizontal.reserve(r, res.col, 1);
+        OccupancyGrid grid = grid();
+        checkSize(1, length);
+        int total = grid.countFittingVertical(length);
+        if (total == 0) {
+            throw new NoFittingSpaceException("No fitting space of length " + length);
         }
+        GridSegment res = grid.getKthFittingVertical(length, random.nextInt(1, total));
+        takeVertical(grid, res.row, res.col, length);
         return res;
     }
 
     public GridSegment reserveRandomFittingHorizontal(int length) {
-        GridSegment res = horizontal.reserveRandomFitting(length);
-        if (parent != null && parent.content != null) {
-            parent.content.reserveHorizontal(res.row + parentRowOffset, res.col, res.length);
+        OccupancyGrid grid = grid();
+        checkSize(1, length);
+        int total = grid.countFittingHorizontal(length);
+        if (total == 0) {
+            throw new NoFittingSpaceException("No fitting space of length " + length);
+        }
+        GridSegment res = grid.getKthFittingHorizontal(length, random.nextInt(1, total));
+        takeHorizontal(grid, res.row, res.col, length);
+        return res;
+    }
+
+    /**
+     * Reserves a width x height rectangle, uniformly chosen among the positions where it fits.
+     */
+    public GridRect reserveRandomFittingRect(int width, int height) {
+        OccupancyGrid grid = grid();
+        checkSize(width, height);
+        int total = grid.countFittingRects(width, height);
+        if (total == 0) {
+            throw new NoFittingSpaceException("No fitting space of size " + width + "x" + height);
+        }
+        GridRect res = grid.getKthFittingRect(width, height, random.nextInt(1, total));
+        takeRect(grid, res.row, res.col, width, height);
+        return res;
+    }
+
+    /**
+     * Weight of the positions starting in this column, for the weighted random reservations.
+     */
+    public void setColumnWeight(int col, int weight) {
+        grid().setColumnWeight(col, weight);
+    }
+
+    /**
+     * Weight of the positions starting in rows fromRow..toRow, for the weighted random reservations.
+     */
+    public void setRowWeights(int fromRow, int toRow, int weight) {
+        grid().setRowWeights(fromRow, toRow, weight);
+    }
+
+    /**
+     * Like reserveRandomFittingVertical, but a position is picked with probability proportional
+     * to its column's weight times its row's weight.
+     */
+    public GridSegment reserveWeightedRandomFittingVertical(int length) {
+        OccupancyGrid grid = grid();
+        checkSize(1, length);
+        long total = grid.weighFittingVertical(length);
+        if (total == 0) {
+            throw new NoFittingSpaceException("No weighted fitting space of length " + length);
+        }
+        GridSegment res = grid.getFittingVerticalByWeight(length, 1 + random.nextLong(total));
+        takeVertical(grid, res.row, res.col, length);
+        return res;
+    }
+
+    /**
+     * Horizontal counterpart of {@link #reserveWeightedRandomFittingVertical}.
+     */
+    public GridSegment reserveWeightedRandomFittingHorizontal(int length) {
+        OccupancyGrid grid = grid();
+        checkSize(1, length);
+        long total = grid.weighFittingHorizontal(length);
+        if (total == 0) {
+            throw new NoFittingSpaceException("No weighted fitting space of length " + length);
         }
-        for (int c = res.col; c < res.col + length; ++c) {
-            vertical.reserve(res.row, c, 1);
+        GridSegment res = grid.getFittingHorizontalByWeight(length, 1 + random.nextLong(total));
+        takeHorizontal(grid, res.row, res.col, length);
+        return res;
+    }
+
+    /**
+     * Rectangle counterpart of {@link #reserveWeightedRandomFittingVertical}, weighted by the top-left cell.
+     */
+    public GridRect reserveWeightedRandomFittingRect(int width, int height) {
+        OccupancyGrid grid = grid();
+        checkSize(width, height);
+        long total = grid.weighFittingRects(width, height);
+        if (total == 0) {
+            throw new NoFittingSpaceException("No weighted fitting space of size " + width + "x" + height);
         }
+        GridRect res = grid.getFittingRectByWeight(width, height, 1 + random.nextLong(total));
+        takeRect(grid, res.row, res.col, width, height);
         return res;
     }
 
+    /**
+     * Reserves the free vertical strip starting closest to (row, col), by rows plus columns apart.
+     */
+    public GridSegment reserveNearestVertical(int row, int col, int length) {
+        OccupancyGrid grid = grid();
+        checkSize(1, length);
+        GridSegment res = grid.findNearestVertical(row, col, length);
+        if (res == null) {
+            throw new NoFittingSpaceException("No fitting space of length " + length);
+        }
+        takeVertical(grid, res.row, res.col, length);
+        return res;
+    }
+
+    /**
+     * Horizontal counterpart of {@link #reserveNearestVertical}.
+     */
+    public GridSegment reserveNearestHorizontal(int row, int col, int length) {
+        OccupancyGrid grid = grid();
+        checkSize(1, length);
+        GridSegment res = grid.findNearestHorizontal(row, col, length);
+        if (res == null) {
+            throw new NoFittingSpaceException("No fitting space of length " + length);
+        }
+        takeHorizontal(grid, res.row, res.col, length);
+        return res;
+    }
+
+    /**
+     * Same result as calling reserveRandomFittingVertical(length) count times.
+     * Strip starts are written to rows/cols, in draw order.
+     */
+    public void reserveRandomFittingVerticalBatch(int count, int length, int[] rows, int[] cols) {
+        for (int i = 0; i < count; ++i) {
+            GridSegment res = reserveRandomFittingVertical(length);
+            rows[i] = res.row;
+            cols[i] = res.col;
+        }
+    }
+
+    /**
+     * Horizontal counterpart of {@link #reserveRandomFittingVerticalBatch}.
+     */
+    public void reserveRandomFittingHorizontalBatch(int count, int length, int[] rows, int[] cols) {
+        for (int i = 0; i < count; ++i) {
+            GridSegment res = reserveRandomFittingHorizontal(length);
+            rows[i] = res.row;
+            cols[i] = res.col;
+        }
+    }
+
+    @Override
+    public boolean isFreeRect(int row, int col, int width, int height) {
+        return grid().isFreeRect(row, col, width, height)
+                && (!forwards() || forwardTo.content.isFreeRect(row + forwardRowOffset, col, width, height));
+    }
+
     @Override
     public void destroy(){
-        vertical.flush();
-        horizontal.flush();
+        if (inTransaction) {
+            // Its cells may be in a grid shared with the ancestors, which outlives this creator
+            rollback();
+        }
+        if (grid != null) {
+            OccupancyGrid grid = grid();
+            if (windowed) {
+                grid.close();
+            } else if (region != null) {
+                regions.release(region);
+            } else {
+                grid.clear();
+            }
+        }
+        destroyed = true;
     }
 
     @Override
     public void printGrid(){
-        vertical.printGrid();
+        grid().printGrid();
     }
 
     @Override
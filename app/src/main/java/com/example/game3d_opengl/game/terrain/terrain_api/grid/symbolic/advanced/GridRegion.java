@@ -0,0 +1,31 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advanced;
+
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.OccupancyGrid;
+
+/**
+ * Storage of one AdvancedGridCreator: its occupancy grid, reused across creators.
+ * Handed out by a {@link GridRegionPool}. Releasing it bumps the generation, so a creator
+ * still holding the region after its structure finished can tell.
+ */
+public final class GridRegion {
+    final OccupancyGrid grid;
+    private int generation = 0;
+    boolean inUse = false;
+
+    GridRegion(int nRows, int nCols) {
+        this.grid = new OccupancyGrid(nRows, nCols);
+    }
+
+    void reset(int nRows, int nCols) {
+        grid.reset(nRows, nCols);
+    }
+
+    void invalidate() {
+        ++generation;
+        inUse = false;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advanced;
+
+import java.util.Arrays;
+
+/**
+ * Recycles the storage of AdvancedGridCreators. acquire() resets a free region to the new grid size
+ * (growing its arrays only if they are too small), release() is O(1): the segments are not
+ * taken out one by one, the region's generation is bumped and it goes back on the free stack.
+ * Regions are created on demand, so the pool ends up as large as the most grids alive at once.
+ */
+public class GridRegionPool {
+    private GridRegion[] all = new GridRegion[4];
+    private int created = 0;
+    private GridRegion[] free = new GridRegion[4];
+    private int freeCount = 0;
+    private int liveCount = 0;
+    private int highWaterMark = 0;
+
+    public GridRegion acquire(int nRows, int nCols) {
+        GridRegion region;
+        if (freeCount > 0) {
+            region = free[--freeCount];
+            free[freeCount] = null;
+            region.reset(nRows, nCols);
+        } else {
+            region = new GridRegion(nRows, nCols);
+            if (created == all.length) {
+                all = Arrays.copyOf(all, created * 2);
+                free = Arrays.copyOf(free, created * 2);
+            }
+            all[created++] = region;
+        }
+        region.inUse = true;
+        ++liveCount;
+        if (liveCount > highWaterMark) {
+            highWaterMark = liveCount;
+        }
+        return region;
+    }
+
+    public void release(GridRegion region) {
+        if (!region.inUse) {
+            throw new IllegalStateException("Grid region released twice");
+        }
+        region.invalidate();
+        free[freeCount++] = region;
+        --liveCount;
+    }
+
+    /**
+     * Releases every region still in use. Grids built on them must not be touched afterwards.
+     */
+    public void reset() {
+        freeCount = 0;
+        for (int i = 0; i < created; ++i) {
+            if (all[i].inUse) {
+                all[i].invalidate();
+            }
+            free[freeCount++] = all[i];
+        }
+        liveCount = 0;
+    }
+
+    public int getCreatedCount() {
+        return created;
+    }
+
+    public int getLiveCount() {
+        return liveCount;
+    }
+
+    /**
+     * Returns the most regions that were in use at once since creation (reset() keeps it).
+     */
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+}
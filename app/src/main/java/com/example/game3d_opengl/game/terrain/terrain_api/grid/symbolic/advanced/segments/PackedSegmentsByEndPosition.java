@@ -0,0 +1,225 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advanced.segments;
+
+import java.util.Arrays;
+
+/**
+ * Same index as {@link SegmentsByEndPosition}, kept in primitive arrays: for every line
+ * (a column when vertical, a row otherwise) the free segments are stored as sorted, disjoint
+ * [start, end] pairs. Lookups are binary searches, splits shift a few ints inside the line.
+ * Nothing is allocated after construction.
+ * <p>
+ * Instead of returning GridSegment[3], reserve() leaves its result in reusable slots:
+ * slot 0 is the segment that was taken out, slots 1 and 2 the remainders put back
+ * (length 0 when absent) - the same three segments, in the same order.
+ */
+public class PackedSegmentsByEndPosition {
+
+    private final boolean vertical;
+    private int nRows, nCols;
+    private int nLines, lineCapacity;
+
+    // Line l (1-based) owns entries [(l-1)*lineCapacity, (l-1)*lineCapacity + count[l-1])
+    private int[] starts, ends;
+    private int[] count;
+    private int totalCount = 0;
+
+    // Result of the last reserve(): start, line and length of slots 0..2
+    private final int[] resultStart = new int[3], resultLine = new int[3], resultLength = new int[3];
+
+    public PackedSegmentsByEndPosition(int nRows, int nCols, boolean vertical) {
+        this.vertical = vertical;
+        reset(nRows, nCols);
+    }
+
+    /**
+     * Drops every segment and switches to a grid of the given size.
+     * The arrays are only reallocated if they are too small for it.
+     */
+    public void reset(int nRows, int nCols) {
+        this.nRows = nRows;
+        this.nCols = nCols;
+        this.nLines = vertical ? nCols : nRows;
+        int lineLength = vertical ? nRows : nCols;
+        // Disjoint segments that are not adjacent: at most every other cell starts one
+        this.lineCapacity = (lineLength + 1) / 2 + 1;
+        if (starts == null || starts.length < nLines * lineCapacity) {
+            this.starts = new int[nLines * lineCapacity];
+            this.ends = new int[nLines * lineCapacity];
+        }
+        if (count == null || count.length < nLines) {
+            this.count = new int[nLines];
+        }
+        clear();
+    }
+
+    private int lineOf(int row, int col) {
+        return vertical ? col : row;
+    }
+
+    private int posOf(int row, int col) {
+        return vertical ? row : col;
+    }
+
+    /**
+     * Index (within the line) of the first segment whose end is at or after pos.
+     */
+    private int lowerBoundByEnd(int base, int n, int pos) {
+        int lo = 0, hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ends[base + mid] < pos) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    public void insert(int row, int col, int length) {
+        int line = lineOf(row, col), start = posOf(row, col), end = start + length - 1;
+        if (line < 1 || line > nLines || length <= 0) {
+            throw new IllegalArgumentException("Invalid segment: (r" + row + ", c" + col + ", l" + length + ")");
+        }
+        int base = (line - 1) * lineCapacity, n = count[line - 1];
+        int at = lowerBoundByEnd(base, n, start);
+        assert at == n || starts[base + at] > end : "Overlapping segments";
+        insertAt(line, at, start, end);
+    }
+
+    private void insertAt(int line, int at, int start, int end) {
+        int base = (line - 1) * lineCapacity, n = count[line - 1];
+        if (n == lineCapacity) {
+            throw new IllegalStateException("Too many segments in line " + line);
+        }
+        System.arraycopy(starts, base + at, starts, base + at + 1, n - at);
+        System.arraycopy(ends, base + at, ends, base + at + 1, n - at);
+        starts[base + at] = start;
+        ends[base + at] = end;
+        count[line - 1] = n + 1;
+        ++totalCount;
+    }
+
+    private void removeAt(int line, int at) {
+        int base = (line - 1) * lineCapacity, n = count[line - 1];
+        System.arraycopy(starts, base + at + 1, starts, base + at, n - at - 1);
+        System.arraycopy(ends, base + at + 1, ends, base + at, n - at - 1);
+        count[line - 1] = n - 1;
+        --totalCount;
+    }
+
+    private void setResult(int slot, int start, int line, int length) {
+        resultStart[slot] = start;
+        resultLine[slot] = line;
+        resultLength[slot] = length;
+    }
+
+    /**
+     * Takes the given strip out of the free segment containing it.
+     * The segments involved are available through getResultRow/Col/Length afterwards.
+     */
+    public void reserve(int row, int col, int length) {
+        int line = lineOf(row, col), start = posOf(row, col);
+        int end = start + length - 1;
+        if (line < 1 || line > nLines) {
+            throw new IllegalArgumentException("No space available for this segment");
+        }
+        int base = (line - 1) * lineCapacity;
+        int at = lowerBoundByEnd(base, count[line - 1], start);
+        if (at == count[line - 1] || starts[base + at] > start || ends[base + at] < end) {
+            throw new IllegalArgumentException("No space available for this segment");
+        }
+        int cStart = starts[base + at], cEnd = ends[base + at];
+        setResult(0, cStart, line, cEnd - cStart + 1);
+        setResult(1, 0, line, 0);
+        setResult(2, 0, line, 0);
+
+        if (cStart == start) {
+            if (cEnd > end) {
+                starts[base + at] = end + 1;
+                setResult(1, end + 1, line, cEnd - end);
+            } else {
+                removeAt(line, at);
+            }
+        } else {
+            ends[base + at] = start - 1;
+            setResult(1, cStart, line, start - cStart);
+            if (cEnd > end) {
+                insertAt(line, at + 1, end + 1, cEnd);
+                setResult(2, end + 1, line, cEnd - end);
+            }
+        }
+    }
+
+    public int getResultRow(int slot) {
+        return vertical ? resultStart[slot] : resultLine[slot];
+    }
+
+    public int getResultCol(int slot) {
+        return vertical ? resultLine[slot] : resultStart[slot];
+    }
+
+    /**
+     * @return length of the segment in the slot, 0 if there is none
+     */
+    public int getResultLength(int slot) {
+        return resultLength[slot];
+    }
+
+    // ---- Iteration, for flushing and debugging --------------------------------
+
+    public int size() {
+        return totalCount;
+    }
+
+    public int getLineCount() {
+        return nLines;
+    }
+
+    public int getSegmentCount(int line) {
+        return count[line - 1];
+    }
+
+    public int getRow(int line, int i) {
+        return vertical ? starts[(line - 1) * lineCapacity + i] : line;
+    }
+
+    public int getCol(int line, int i) {
+        return vertical ? line : starts[(line - 1) * lineCapacity + i];
+    }
+
+    public int getLength(int line, int i) {
+        int at = (line - 1) * lineCapacity + i;
+        return ends[at] - starts[at] + 1;
+    }
+
+    public void clear() {
+        Arrays.fill(count, 0, nLines, 0);
+        totalCount = 0;
+    }
+
+    void printGrid(){
+        char[][] grid = new char[nRows][nCols];
+        System.out.println("Rows: "+nRows+" | "+"Cols: "+nCols);
+        for(int r=0;r<nRows;r++){
+            for(int c=0;c<nCols;c++){
+                grid[r][c] = '#';
+            }
+        }
+        for (int line = 1; line <= nLines; ++line) {
+            for (int i = 0; i < getSegmentCount(line); ++i) {
+                int row = getRow(line, i) - 1, col = getCol(line, i) - 1, len = getLength(line, i);
+                for (int k = 0; k < len; ++k) {
+                    if (vertical) {
+                        grid[row + k][col] = '.';
+                    } else {
+                        grid[row][col + k] = '.';
+                    }
+                }
+            }
+        }
+        for(int r=0;r<nRows;r++){
+            System.out.println(r+" "+ Arrays.toString(grid[r]));
+        }
+    }
+}
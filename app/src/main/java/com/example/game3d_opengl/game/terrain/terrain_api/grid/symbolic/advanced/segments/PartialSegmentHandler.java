@@ -2,19 +2,42 @@ package com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advance
 
 import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.GridSegment;
 import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advanced.segments.by_length.SegmentsByLength;
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advanced.segments.by_length.segtree_implementation.CompactHashedSegmentsByLength;
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advanced.segments.by_length.segtree_implementation.NodePool;
 import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advanced.segments.by_length.segtree_implementation.PreallocatedHashedSegmentsByLengthNodes;
-import com.example.game3d_opengl.game.util.GameRandom;
+import com.example.game3d_opengl.game.util.RandomStream;
 
 public class PartialSegmentHandler {
 
 
     private final SegmentsByLength segmentsByLength;
-    private final SegmentsByEndPosition segmentsByEndPosition;
+    private final PackedSegmentsByEndPosition segmentsByEndPosition;
+    private final boolean vertical;
 
     public PartialSegmentHandler(int nRows, int nCols, boolean vertical) {
-        this.segmentsByLength = new PreallocatedHashedSegmentsByLengthNodes(nRows, nCols, vertical);
-        this.segmentsByEndPosition = new SegmentsByEndPosition(nRows, nCols, vertical);
+        this(nRows, nCols, vertical, (NodePool) null);
+    }
+
+    /**
+     * @param nodePool pool for the segment tree nodes, or null to let the tree own one
+     */
+    public PartialSegmentHandler(int nRows, int nCols, boolean vertical, NodePool nodePool) {
+        this(nRows, nCols, vertical, nodePool == null
+                ? new PreallocatedHashedSegmentsByLengthNodes(nRows, nCols, vertical)
+                : new PreallocatedHashedSegmentsByLengthNodes(nRows, nCols, vertical, nodePool));
+    }
+
+    /**
+     * @param segmentsByLength an empty tree for a grid of this size
+     */
+    public PartialSegmentHandler(int nRows, int nCols, boolean vertical, SegmentsByLength segmentsByLength) {
+        this.vertical = vertical;
+        this.segmentsByLength = segmentsByLength;
+        this.segmentsByEndPosition = new PackedSegmentsByEndPosition(nRows, nCols, vertical);
+        fillLines(nRows, nCols);
+    }
 
+    private void fillLines(int nRows, int nCols) {
         if(vertical) {
             for (int col = 1; col <= nCols; ++col) {
                 this.segmentsByLength.insert(1, col, nRows);
@@ -28,20 +51,40 @@ public class PartialSegmentHandler {
         }
     }
 
-    public void reserve(int row, int col, int length) {
-        GridSegment[] reserve = segmentsByEndPosition.reserve(row, col, length);
-        segmentsByLength.delete(reserve[0].row, reserve[0].col, reserve[0].length);
-        if (reserve[1] != null) {
-            segmentsByLength.insert(reserve[1].row, reserve[1].col, reserve[1].length);
+    /**
+     * Makes every cell of a grid of the given size free again, reusing this handler's arrays.
+     * Only handlers built on a {@link CompactHashedSegmentsByLength} can be reset.
+     */
+    public void reset(int nRows, int nCols) {
+        if (!(segmentsByLength instanceof CompactHashedSegmentsByLength)) {
+            throw new IllegalStateException("Only handlers backed by a CompactHashedSegmentsByLength can be reset");
         }
-        if (reserve[2] != null) {
-            segmentsByLength.insert(reserve[2].row, reserve[2].col, reserve[2].length);
+        ((CompactHashedSegmentsByLength) segmentsByLength).reset(nRows, nCols);
+        segmentsByEndPosition.reset(nRows, nCols);
+        fillLines(nRows, nCols);
+    }
+
+    public void reserve(int row, int col, int length) {
+        PackedSegmentsByEndPosition byEnd = segmentsByEndPosition;
+        byEnd.reserve(row, col, length);
+        segmentsByLength.delete(byEnd.getResultRow(0), byEnd.getResultCol(0), byEnd.getResultLength(0));
+        for (int slot = 1; slot <= 2; ++slot) {
+            if (byEnd.getResultLength(slot) != 0) {
+                segmentsByLength.insert(byEnd.getResultRow(slot), byEnd.getResultCol(slot), byEnd.getResultLength(slot));
+            }
         }
     }
 
-    public GridSegment reserveRandomFitting(int length) {
+    /**
+     * @return number of positions where a free segment of this length could start
+     */
+    public int countFittingSpaces(int length) {
+        return segmentsByLength.countFittingSpaces(length);
+    }
+
+    public GridSegment reserveRandomFitting(int length, RandomStream random) {
         int total = segmentsByLength.countFittingSpaces(length);
-        int k = GameRandom.randInt(1,total);
+        int k = random.nextInt(1,total);
         GridSegment found = segmentsByLength.getKthFittingSpace(length,k);
         reserve(found.row, found.col, length);
         return found;
@@ -51,14 +94,13 @@ public class PartialSegmentHandler {
         segmentsByEndPosition.printGrid();
     }
 
+    /**
+     * Drops every segment. O(1) with a CompactHashedSegmentsByLength; a pooled tree still
+     * walks its nodes to hand them back.
+     */
     public void flush(){
-        while(!segmentsByEndPosition.tree.isEmpty()){
-            GridSegment curr = segmentsByEndPosition.tree.pollFirst();
-            segmentsByLength.delete(curr.row,curr.col,curr.length);
-        }
+        segmentsByEndPosition.clear();
         segmentsByLength.destroy();
     }
 
-
-
 }
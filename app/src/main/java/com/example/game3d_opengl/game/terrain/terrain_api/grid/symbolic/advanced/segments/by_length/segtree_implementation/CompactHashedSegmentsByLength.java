@@ -0,0 +1,317 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advanced.segments.by_length.segtree_implementation;
+
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.GridSegment;
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advanced.segments.by_length.SegmentsByLength;
+
+import java.util.Arrays;
+
+/**
+ * Same queries and segment order as {@link PreallocatedHashedSegmentsByLengthNodes}, with the tree
+ * kept as parallel int arrays instead of pooled Node objects, and walked iteratively.
+ * <p>
+ * The hash space is compressed to the segments that fit in the grid: hashes are numbered by
+ * length, then row, then column, counting only start positions where a segment of that length fits.
+ * Node ranges are implied by the path from the root, so nodes store only children and aggregates.
+ * Nodes left empty by a delete are freed right away, so the tree stays as small as its contents.
+ */
+public class CompactHashedSegmentsByLength implements SegmentsByLength {
+
+    private static final int DEFAULT_CAPACITY = 256;
+    private static final int ROOT = 1; // index 0 is the empty node: no children, all zeros
+
+    private final boolean areSegmentsVertical;
+    private int totalRows, nCols;
+    private int lineLength;
+    private int[] lengthOffset = new int[0]; // first hash of each length, lengthOffset[lineLength + 1] = hash count
+    private int leafCount;
+
+    private int[] left, right, size, totalLen;
+    private int[] freeNodes;
+    private int freeCount = 0;
+    private int nextFresh = ROOT + 1;
+
+    // Scratch for the root-to-leaf walks: nodes on the path, and the right siblings skipped on the way
+    private final int[] path = new int[33];
+    private final int[] skippedNode = new int[33], skippedLo = new int[33], skippedHi = new int[33];
+
+    public CompactHashedSegmentsByLength(int totalRows, int nCols, boolean areSegmentsVertical) {
+        this(totalRows, nCols, areSegmentsVertical, DEFAULT_CAPACITY);
+    }
+
+    public CompactHashedSegmentsByLength(int totalRows, int nCols, boolean areSegmentsVertical, int initialCapacity) {
+        this.areSegmentsVertical = areSegmentsVertical;
+        int capacity = Math.max(ROOT + 1, initialCapacity);
+        this.left = new int[capacity];
+        this.right = new int[capacity];
+        this.size = new int[capacity];
+        this.totalLen = new int[capacity];
+        this.freeNodes = new int[capacity];
+        reset(totalRows, nCols);
+    }
+
+    /**
+     * Drops every segment and switches to a grid of the given size, keeping the node arrays.
+     */
+    public void reset(int totalRows, int nCols) {
+        if (totalRows <= 0 || nCols <= 0) {
+            throw new IllegalArgumentException("Grid must not be empty: " + totalRows + "x" + nCols);
+        }
+        this.totalRows = totalRows;
+        this.nCols = nCols;
+        this.lineLength = areSegmentsVertical ? totalRows : nCols;
+        if (lengthOffset.length < lineLength + 2) {
+            lengthOffset = new int[lineLength + 2];
+        }
+        long total = 0;
+        for (int len = 1; len <= lineLength; ++len) {
+            lengthOffset[len] = (int) total;
+            total += startsPerLength(len);
+        }
+        if (total > (1 << 30)) {
+            throw new IllegalArgumentException("Grid too large: " + totalRows + "x" + nCols);
+        }
+        lengthOffset[lineLength + 1] = (int) total;
+        this.leafCount = HashedSegmentsByLength.nextPowerOfTwo((int) total);
+        destroy();
+    }
+
+    private long startsPerLength(int len) {
+        return areSegmentsVertical ? (long) (totalRows - len + 1) * nCols : (long) totalRows * (nCols - len + 1);
+    }
+
+    private int compressedHash(int row, int col, int length) {
+        boolean fits = length >= 1 && length <= lineLength && row >= 1 && col >= 1
+                && (areSegmentsVertical ? row + length - 1 <= totalRows && col <= nCols
+                                        : col + length - 1 <= nCols && row <= totalRows);
+        if (!fits) {
+            throw new IllegalArgumentException("Segment outside of grid: (r" + row + ", c" + col + ", l" + length + ")");
+        }
+        int width = areSegmentsVertical ? nCols : nCols - length + 1;
+        return lengthOffset[length] + (row - 1) * width + (col - 1);
+    }
+
+    private GridSegment kthSpaceInCompressed(int hash, int spaceSize, int k) {
+        int lo = 1, hi = lineLength; // last length whose offset is <= hash
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (lengthOffset[mid] <= hash) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        int rank = hash - lengthOffset[lo];
+        int width = areSegmentsVertical ? nCols : nCols - lo + 1;
+        int row = rank / width + 1, col = rank % width + 1;
+        assert (k > 0);
+        return areSegmentsVertical ? GridSegment.GS(row + k - 1, col, spaceSize)
+                                   : GridSegment.GS(row, col + k - 1, spaceSize);
+    }
+
+    private int newNode() {
+        int id;
+        if (freeCount > 0) {
+            id = freeNodes[--freeCount];
+        } else {
+            if (nextFresh == left.length) {
+                grow();
+            }
+            id = nextFresh++;
+        }
+        left[id] = 0;
+        right[id] = 0;
+        size[id] = 0;
+        totalLen[id] = 0;
+        return id;
+    }
+
+    private void freeNode(int id) {
+        freeNodes[freeCount++] = id;
+    }
+
+    private void grow() {
+        int capacity = left.length * 2;
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        size = Arrays.copyOf(size, capacity);
+        totalLen = Arrays.copyOf(totalLen, capacity);
+        freeNodes = Arrays.copyOf(freeNodes, capacity);
+    }
+
+    @Override
+    public void insert(int row, int col, int length) {
+        int hash = compressedHash(row, col, length);
+        int v = ROOT, lo = 0, hi = leafCount - 1, depth = 0;
+        while (lo < hi) {
+            path[depth++] = v;
+            int mid = (lo + hi) >>> 1;
+            // newNode() may grow the arrays, so it must run before left/right are indexed
+            if (hash <= mid) {
+                if (left[v] == 0) {
+                    int child = newNode();
+                    left[v] = child;
+                }
+                v = left[v];
+                hi = mid;
+            } else {
+                if (right[v] == 0) {
+                    int child = newNode();
+                    right[v] = child;
+                }
+                v = right[v];
+                lo = mid + 1;
+            }
+        }
+        if (size[v] != 0) {
+            throw new IllegalArgumentException("Segment already present: (r" + row + ", c" + col + ", l" + length + ")");
+        }
+        size[v] = 1;
+        totalLen[v] = length;
+        for (int d = 0; d < depth; ++d) {
+            ++size[path[d]];
+            totalLen[path[d]] += length;
+        }
+    }
+
+    @Override
+    public void delete(int row, int col, int length) {
+        int hash = compressedHash(row, col, length);
+        int v = ROOT, lo = 0, hi = leafCount - 1, depth = 0;
+        while (lo < hi && v != 0) {
+            path[depth++] = v;
+            int mid = (lo + hi) >>> 1;
+            if (hash <= mid) {
+                v = left[v];
+                hi = mid;
+            } else {
+                v = right[v];
+                lo = mid + 1;
+            }
+        }
+        if (v == 0 || size[v] == 0) {
+            throw new IllegalArgumentException("No such segment: (r" + row + ", c" + col + ", l" + length + ")");
+        }
+        path[depth] = v;
+        for (int d = 0; d <= depth; ++d) {
+            --size[path[d]];
+            totalLen[path[d]] -= length;
+        }
+        // The emptied nodes form a chain at the bottom of the path; cut it off below its last non-empty parent
+        int firstEmpty = depth;
+        while (firstEmpty > 1 && size[path[firstEmpty - 1]] == 0) {
+            --firstEmpty;
+        }
+        if (firstEmpty == 0) {
+            return;
+        }
+        int parent = path[firstEmpty - 1];
+        if (left[parent] == path[firstEmpty]) {
+            left[parent] = 0;
+        } else {
+            right[parent] = 0;
+        }
+        for (int d = firstEmpty; d <= depth; ++d) {
+            freeNode(path[d]);
+        }
+    }
+
+    private int countSpacesInSubtree(int v, int spaceSize) { // assumes every segment there is large enough
+        return totalLen[v] - (spaceSize - 1) * size[v];
+    }
+
+    @Override
+    public int countFittingSpaces(int spaceSize) {
+        if (spaceSize > lineLength) {
+            return 0;
+        }
+        int minHash = lengthOffset[spaceSize];
+        int res = 0;
+        int v = ROOT, lo = 0, hi = leafCount - 1;
+        while (v != 0 && lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (minHash <= mid) {
+                res += countSpacesInSubtree(right[v], spaceSize);
+                v = left[v];
+                hi = mid;
+            } else {
+                v = right[v];
+                lo = mid + 1;
+            }
+        }
+        return res + countSpacesInSubtree(v, spaceSize);
+    }
+
+    @Override
+    public GridSegment getKthFittingSpace(int spaceSize, int k) {
+        if (spaceSize > lineLength || k <= 0) {
+            throw new IllegalArgumentException("No fitting space #" + k + " of size " + spaceSize);
+        }
+        int minHash = lengthOffset[spaceSize];
+        // Walk to the leaf of minHash, remembering the right subtrees it skips (all of them are in range)
+        int v = ROOT, lo = 0, hi = leafCount - 1, skipped = 0;
+        while (v != 0 && lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (minHash <= mid) {
+                skippedNode[skipped] = right[v];
+                skippedLo[skipped] = mid + 1;
+                skippedHi[skipped] = hi;
+                ++skipped;
+                v = left[v];
+                hi = mid;
+            } else {
+                v = right[v];
+                lo = mid + 1;
+            }
+        }
+        int spacesHere = countSpacesInSubtree(v, spaceSize);
+        if (k <= spacesHere) {
+            return kthSpaceInCompressed(minHash, spaceSize, k);
+        }
+        k -= spacesHere;
+        // Deepest skipped subtree holds the smallest hashes
+        for (int s = skipped - 1; s >= 0; --s) {
+            int spaces = countSpacesInSubtree(skippedNode[s], spaceSize);
+            if (k > spaces) {
+                k -= spaces;
+                continue;
+            }
+            v = skippedNode[s];
+            lo = skippedLo[s];
+            hi = skippedHi[s];
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                int spacesInLeft = countSpacesInSubtree(left[v], spaceSize);
+                if (k <= spacesInLeft) {
+                    v = left[v];
+                    hi = mid;
+                } else {
+                    k -= spacesInLeft;
+                    v = right[v];
+                    lo = mid + 1;
+                }
+            }
+            return kthSpaceInCompressed(lo, spaceSize, k);
+        }
+        throw new IllegalArgumentException("No fitting space #" + k + " of size " + spaceSize);
+    }
+
+    /**
+     * Drops every segment in O(1); the instance stays usable.
+     */
+    @Override
+    public void destroy() {
+        freeCount = 0;
+        nextFresh = ROOT + 1;
+        left[ROOT] = 0;
+        right[ROOT] = 0;
+        size[ROOT] = 0;
+        totalLen[ROOT] = 0;
+    }
+
+    /**
+     * @return number of tree nodes in use, root included
+     */
+    public int getNodeCount() {
+        return nextFresh - 1 - freeCount;
+    }
+}
@@ -1,26 +1,43 @@
 package com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advanced.segments.by_length.segtree_implementation;
 
-class NodePool {
+/**
+ * Pool of segment tree nodes. Index 0 is a permanent "null" node whose fields are all zero.
+ * Fresh nodes are handed out with a bump pointer, freed ones are recycled through a stack,
+ * so reset() is O(1). Grows (by doubling) if the configured capacity turns out too small.
+ */
+public class NodePool {
     private Node[] nodes;
     private final PreallocatedResizableArrayStack freeIndices;
+    private int nextFresh = 1;      // first never-used index
+    private int liveCount = 0;
+    private int highWaterMark = 0;  // most nodes alive at once
 
     public NodePool(int initialCapacity) {
+        if (initialCapacity < 2) {
+            throw new IllegalArgumentException("Node pool needs room for at least one node besides the null node");
+        }
         nodes = new Node[initialCapacity];
         for (int i = 0; i < initialCapacity; i++) {
             nodes[i] = new Node(i);
         }
         freeIndices = new PreallocatedResizableArrayStack(initialCapacity);
-        for (int i = initialCapacity - 1; i >= 1; i--) {
-            freeIndices.pushBack(i);
-        }
     }
 
-    public int newNode() {
-        if (freeIndices.isEmpty()) {
-            expandPool();
+    int newNode() {
+        int index;
+        if (!freeIndices.isEmpty()) {
+            index = freeIndices.popLast();
+        } else {
+            if (nextFresh == nodes.length) {
+                expandPool();
+            }
+            index = nextFresh++;
         }
-        int index = freeIndices.popLast();
         nodes[index].clear();
+        ++liveCount;
+        if (liveCount > highWaterMark) {
+            highWaterMark = liveCount;
+        }
         return index;
     }
 
@@ -32,18 +49,40 @@ class NodePool {
         for (int i = oldCapacity; i < newCapacity; i++) {
             newNodes[i] = new Node(i);
         }
-        for (int i = newCapacity - 1; i >= oldCapacity; i--) {
-            freeIndices.pushBack(i);
-        }
         nodes = newNodes;
     }
 
-    public Node at(int index) {
+    Node at(int index) {
         return nodes[index];
     }
 
-    public void freeNode(int index) {
+    void freeNode(int index) {
         nodes[index].clear();
         freeIndices.pushBack(index);
+        --liveCount;
+    }
+
+    /**
+     * Frees every node at once. Trees still using this pool must not be touched afterwards.
+     */
+    public void reset() {
+        freeIndices.clear();
+        nextFresh = 1;
+        liveCount = 0;
+    }
+
+    public int getCapacity() {
+        return nodes.length;
+    }
+
+    public int getLiveCount() {
+        return liveCount;
+    }
+
+    /**
+     * Returns the most nodes that were alive at once since creation (reset() keeps it).
+     */
+    public int getHighWaterMark() {
+        return highWaterMark;
     }
 }
@@ -7,37 +7,51 @@ public class PreallocatedHashedSegmentsByLengthNodes extends HashedSegmentsByLen
 
     private final int LEAF_CNT;
 
-    private static final NodePool NODE_POOL = new NodePool(100000);
+    private static final int DEFAULT_POOL_CAPACITY = 1024;
+
+    private final NodePool nodePool;
 
     private final int rootInd;
     private final Node root;
 
+    /**
+     * Uses a private node pool. Handy for standalone use and tests.
+     */
     public PreallocatedHashedSegmentsByLengthNodes(int totalRows, int nCols, boolean areSegmentsVertical) {
+        this(totalRows, nCols, areSegmentsVertical, new NodePool(DEFAULT_POOL_CAPACITY));
+    }
+
+    /**
+     * Takes nodes from the given pool, so several trees can share one.
+     */
+    public PreallocatedHashedSegmentsByLengthNodes(int totalRows, int nCols, boolean areSegmentsVertical,
+                                                   NodePool nodePool) {
         super(totalRows, nCols, areSegmentsVertical);
+        this.nodePool = nodePool;
         int maxElements = totalRows * nCols * (Math.max(totalRows, nCols) + 1);
         this.LEAF_CNT = nextPowerOfTwo(maxElements);
-        this.rootInd = NODE_POOL.newNode();
+        this.rootInd = nodePool.newNode();
         makeRoot();
-        this.root = NODE_POOL.at(rootInd);
+        this.root = nodePool.at(rootInd);
     }
 
     private void makeRoot() {
-        NODE_POOL.at(rootInd).clear();
-        NODE_POOL.at(rootInd).lo = 0;
-        NODE_POOL.at(rootInd).hi = LEAF_CNT - 1;
+        nodePool.at(rootInd).clear();
+        nodePool.at(rootInd).lo = 0;
+        nodePool.at(rootInd).hi = LEAF_CNT - 1;
         }
 
     private Node appendNode(int parent, boolean isLeftChild) {
-        int id = NODE_POOL.newNode();
-        NODE_POOL.at(id).clear();
-        NODE_POOL.at(id).parent = parent;
+        int id = nodePool.newNode();
+        nodePool.at(id).clear();
+        nodePool.at(id).parent = parent;
         if(isLeftChild) {
-            NODE_POOL.at(parent).left = id;
+            nodePool.at(parent).left = id;
         }else{
-            NODE_POOL.at(parent).right = id;
+            nodePool.at(parent).right = id;
         }
-        NODE_POOL.at(id).isLeftChild = isLeftChild;
-        return NODE_POOL.at(id);
+        nodePool.at(id).isLeftChild = isLeftChild;
+        return nodePool.at(id);
     }
 
     private void addLeft(Node from) {
@@ -63,12 +77,12 @@ public class PreallocatedHashedSegmentsByLengthNodes extends HashedSegmentsByLen
 
     private void destroyRec(Node node){
         if(node.left != 0){
-            destroyRec(NODE_POOL.at(node.left));
+            destroyRec(nodePool.at(node.left));
         }
         if(node.right != 0){
-            destroyRec(NODE_POOL.at(node.right));
+            destroyRec(nodePool.at(node.right));
         }
-        NODE_POOL.freeNode(node.id);
+        nodePool.freeNode(node.id);
     }
 
     @Override
@@ -95,16 +109,16 @@ public class PreallocatedHashedSegmentsByLengthNodes extends HashedSegmentsByLen
         int minHash = segHash(0, 0, spaceSize);
         int res = 0;
         int v = rootInd;
-        while (v != 0 && !NODE_POOL.at(v).isLeaf()) {
-            int mid = (NODE_POOL.at(v).lo + NODE_POOL.at(v).hi) / 2;
+        while (v != 0 && !nodePool.at(v).isLeaf()) {
+            int mid = (nodePool.at(v).lo + nodePool.at(v).hi) / 2;
             if(minHash <= mid){
-                res += countSpacesInSubtree(NODE_POOL.at(v).right,spaceSize);
-                v = NODE_POOL.at(v).left;
+                res += countSpacesInSubtree(nodePool.at(v).right,spaceSize);
+                v = nodePool.at(v).left;
             }else{
-                v = NODE_POOL.at(v).right;
+                v = nodePool.at(v).right;
             }
         }
-        if(NODE_POOL.at(v).isLeaf() && NODE_POOL.at(v).lo >= minHash){
+        if(nodePool.at(v).isLeaf() && nodePool.at(v).lo >= minHash){
             res += countSpacesInSubtree(v,spaceSize);
         }
         return res;
@@ -114,39 +128,39 @@ public class PreallocatedHashedSegmentsByLengthNodes extends HashedSegmentsByLen
     public GridSegment getKthFittingSpace(int spaceSize, int k) {
         int minHash = segHash(0,0,spaceSize);
         int v = lowerBound(minHash);
-        if (NODE_POOL.at(v).subtreeTotalLen >= spaceSize) {
-            int spacesHere = NODE_POOL.at(v).subtreeTotalLen - spaceSize + 1;
+        if (nodePool.at(v).subtreeTotalLen >= spaceSize) {
+            int spacesHere = nodePool.at(v).subtreeTotalLen - spaceSize + 1;
             if (k <= spacesHere) {
-                return kthSpaceInSegment(NODE_POOL.at(v).lo, spaceSize, k);
+                return kthSpaceInSegment(nodePool.at(v).lo, spaceSize, k);
             } else {
                 k -= spacesHere;
             }
         }
-        boolean comingFromLeftChild = NODE_POOL.at(v).isLeftChild;
-        v = NODE_POOL.at(v).parent;
+        boolean comingFromLeftChild = nodePool.at(v).isLeftChild;
+        v = nodePool.at(v).parent;
         // Go up to LCA(our leaf with min hash , leaf with hash of segment containing k-th fitting space)
-        while (v != rootInd && !(comingFromLeftChild && countSpacesInSubtree(NODE_POOL.at(v).right, spaceSize) >= k)) {
+        while (v != rootInd && !(comingFromLeftChild && countSpacesInSubtree(nodePool.at(v).right, spaceSize) >= k)) {
             if(comingFromLeftChild) {
-                k -= countSpacesInSubtree(NODE_POOL.at(v).right, spaceSize);
+                k -= countSpacesInSubtree(nodePool.at(v).right, spaceSize);
             }
-            comingFromLeftChild = NODE_POOL.at(v).isLeftChild;
-            v = NODE_POOL.at(v).parent;
+            comingFromLeftChild = nodePool.at(v).isLeftChild;
+            v = nodePool.at(v).parent;
         }
         // Go down from LCA to the leaf with hash of segment containing k-th fitting space.
         // First step must be handled separately because v's left subtree is on the path we've already travelled.
-        v = NODE_POOL.at(v).right;
-        while(!NODE_POOL.at(v).isLeaf()){
+        v = nodePool.at(v).right;
+        while(!nodePool.at(v).isLeaf()){
             // Every segment in subtree of v is large enough.
-            int spacesInLeft = countSpacesInSubtree(NODE_POOL.at(v).left, spaceSize);
+            int spacesInLeft = countSpacesInSubtree(nodePool.at(v).left, spaceSize);
             if(spacesInLeft >= k){
-                v = NODE_POOL.at(v).left;
+                v = nodePool.at(v).left;
             }else{
                 k -= spacesInLeft;
-                v = NODE_POOL.at(v).right;
+                v = nodePool.at(v).right;
             }
         }
         // Now we are at the leaf with hash of segment containing k-th fitting space. The hash is this leaf's index.
-        int hash = NODE_POOL.at(v).lo;
+        int hash = nodePool.at(v).lo;
         return kthSpaceInSegment(hash, spaceSize, k);
     }
 
@@ -161,7 +175,7 @@ public class PreallocatedHashedSegmentsByLengthNodes extends HashedSegmentsByLen
      *  2) Otherwise, descend left/right, then post-order update
      */
     private void insertRec(int nodeId, int hash, int length) {
-        Node node = NODE_POOL.at(nodeId);
+        Node node = nodePool.at(nodeId);
         if (node.isLeaf()) {
             // This leaf corresponds uniquely to 'hash'
             node.subtreeSize = 1;
@@ -185,13 +199,13 @@ public class PreallocatedHashedSegmentsByLengthNodes extends HashedSegmentsByLen
         }
 
         // Post-order update of this node's aggregations
-        node.subtreeSize = NODE_POOL.at(node.left).subtreeSize
-                + NODE_POOL.at(node.right).subtreeSize;
+        node.subtreeSize = nodePool.at(node.left).subtreeSize
+                + nodePool.at(node.right).subtreeSize;
 
-        node.subtreeTotalLen = NODE_POOL.at(node.left).subtreeTotalLen
-                + NODE_POOL.at(node.right).subtreeTotalLen;
+        node.subtreeTotalLen = nodePool.at(node.left).subtreeTotalLen
+                + nodePool.at(node.right).subtreeTotalLen;
 
-        node.subtreeMax = Math.max(NODE_POOL.at(node.left).subtreeMax, NODE_POOL.at(node.right).subtreeMax);
+        node.subtreeMax = Math.max(nodePool.at(node.left).subtreeMax, nodePool.at(node.right).subtreeMax);
     }
 
     /**
@@ -200,7 +214,7 @@ public class PreallocatedHashedSegmentsByLengthNodes extends HashedSegmentsByLen
      *  2) Otherwise, descend left/right, then post-order update
      */
     private void deleteRec(int nodeId, int hash) {
-        Node node = NODE_POOL.at(nodeId);
+        Node node = nodePool.at(nodeId);
         if (node.isLeaf()) {
             // This leaf corresponds uniquely to 'hash'
             node.subtreeSize = 0;
@@ -220,31 +234,31 @@ public class PreallocatedHashedSegmentsByLengthNodes extends HashedSegmentsByLen
         }
 
         // Post-order update
-        node.subtreeSize = NODE_POOL.at(node.left).subtreeSize
-                + NODE_POOL.at(node.right).subtreeSize;
+        node.subtreeSize = nodePool.at(node.left).subtreeSize
+                + nodePool.at(node.right).subtreeSize;
 
-        node.subtreeTotalLen = NODE_POOL.at(node.left).subtreeTotalLen
-                + NODE_POOL.at(node.right).subtreeTotalLen;
+        node.subtreeTotalLen = nodePool.at(node.left).subtreeTotalLen
+                + nodePool.at(node.right).subtreeTotalLen;
 
-        node.subtreeMax = Math.max(NODE_POOL.at(node.left).subtreeMax, NODE_POOL.at(node.right).subtreeMax);
+        node.subtreeMax = Math.max(nodePool.at(node.left).subtreeMax, nodePool.at(node.right).subtreeMax);
     }
 
     private int lowerBound(int hash){
         int v = rootInd;
-        while(!NODE_POOL.at(v).isLeaf()){
-            int mid = (NODE_POOL.at(v).lo + NODE_POOL.at(v).hi) / 2;
-            if(hash <= mid && NODE_POOL.at(NODE_POOL.at(v).left).subtreeMax >= hash){
-                v = NODE_POOL.at(v).left;
+        while(!nodePool.at(v).isLeaf()){
+            int mid = (nodePool.at(v).lo + nodePool.at(v).hi) / 2;
+            if(hash <= mid && nodePool.at(nodePool.at(v).left).subtreeMax >= hash){
+                v = nodePool.at(v).left;
             }else{
-                v = NODE_POOL.at(v).right;
+                v = nodePool.at(v).right;
             }
         }
         return v;
     }
 
     private int countSpacesInSubtree(int v, int spaceSize) { // assumes every segment there is large enough
-        // if v=0 (nonexistent node), it returns 0, because all fields in NODE_POOL.at(0) are 0 / false.
-        return NODE_POOL.at(v).subtreeTotalLen - (spaceSize - 1) * NODE_POOL.at(v).subtreeSize;
+        // if v=0 (nonexistent node), it returns 0, because all fields in nodePool.at(0) are 0 / false.
+        return nodePool.at(v).subtreeTotalLen - (spaceSize - 1) * nodePool.at(v).subtreeSize;
     }
 
 
@@ -84,9 +84,8 @@ public class PreallocatedResizableArrayStack {
     }
 
     public void clear() {
-        while (size() > 0) {
-            removeFirst();
-        }
+        front = -1;
+        curr_size = 0;
     }
 
     /**
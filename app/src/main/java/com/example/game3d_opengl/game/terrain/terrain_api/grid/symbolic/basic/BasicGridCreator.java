@@ -2,6 +2,7 @@ package com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.basic;
 
 import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.BaseGridCreator;
 import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.GridCreatorWrapper;
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.GridRect;
 import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.GridSegment;
 
 /**
@@ -37,6 +38,20 @@ public class BasicGridCreator implements BaseGridCreator {
         return new GridSegment(row, col, length);
     }
 
+    @Override
+    public GridRect reserveRect(int row, int col, int width, int height) {
+        if (parent != null && parent.content != null) {
+            parent.content.reserveRect(row + parentRowOffset, col, width, height);
+        }
+        return new GridRect(row, col, width, height);
+    }
+
+    @Override
+    public boolean isFreeRect(int row, int col, int width, int height) {
+        return parent == null || parent.content == null
+                || parent.content.isFreeRect(row + parentRowOffset, col, width, height);
+    }
+
     @Override
     public void destroy() {
         // no-op
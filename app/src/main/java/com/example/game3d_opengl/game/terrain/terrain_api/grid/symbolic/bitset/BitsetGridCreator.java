@@ -0,0 +1,124 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.bitset;
+
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.BaseGridCreator;
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.GridCreatorWrapper;
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.GridRect;
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.GridSegment;
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.OccupancyGrid;
+
+/**
+ * Collision-checked grid creator on a bare {@link OccupancyGrid}: occupancy kept as bits per row
+ * and per column, queries done a word (64 cells) at a time, so wide grids cost about as much as
+ * narrow ones. Unlike AdvancedGridCreator it has no random-fitting reservations.
+ */
+public class BitsetGridCreator implements BaseGridCreator {
+
+    private final int nRows, nCols;
+    private final GridCreatorWrapper parent;
+    private final int parentRowOffset;
+    private final OccupancyGrid grid;
+
+    public BitsetGridCreator(int nRows, int nCols, GridCreatorWrapper parentGrid, int parentRowOffset) {
+        this.nRows = nRows;
+        this.nCols = nCols;
+        this.parent = parentGrid;
+        this.parentRowOffset = parentRowOffset;
+        this.grid = new OccupancyGrid(nRows, nCols);
+    }
+
+    public BitsetGridCreator(int nRows, int nCols) {
+        this(nRows, nCols, null, 0);
+    }
+
+    public boolean isFreeVertical(int row, int col, int length) {
+        return grid.isFreeVertical(row, col, length);
+    }
+
+    public boolean isFreeHorizontal(int row, int col, int length) {
+        return grid.isFreeHorizontal(row, col, length);
+    }
+
+    /**
+     * @return first row at or after the given one where a vertical strip fits in this column, or -1
+     */
+    public int firstFitVertical(int row, int col, int length) {
+        return grid.firstFitVertical(row, col, length);
+    }
+
+    /**
+     * @return first column at or after the given one where a horizontal strip fits in this row, or -1
+     */
+    public int firstFitHorizontal(int row, int col, int length) {
+        return grid.firstFitHorizontal(row, col, length);
+    }
+
+    /**
+     * @return number of positions where a free vertical strip of this length could start
+     */
+    public int countFittingVertical(int length) {
+        return grid.countFittingVertical(length);
+    }
+
+    /**
+     * @return number of positions where a free horizontal strip of this length could start
+     */
+    public int countFittingHorizontal(int length) {
+        return grid.countFittingHorizontal(length);
+    }
+
+    @Override
+    public GridSegment reserveVertical(int row, int col, int length) {
+        if (parent != null && parent.content != null) {
+            parent.content.reserveVertical(row + parentRowOffset, col, length);
+        }
+        grid.reserveVertical(row, col, length);
+        return new GridSegment(row, col, length);
+    }
+
+    @Override
+    public GridSegment reserveHorizontal(int row, int col, int length) {
+        if (parent != null && parent.content != null) {
+            parent.content.reserveHorizontal(row + parentRowOffset, col, length);
+        }
+        grid.reserveHorizontal(row, col, length);
+        return new GridSegment(row, col, length);
+    }
+
+    @Override
+    public GridRect reserveRect(int row, int col, int width, int height) {
+        if (parent != null && parent.content != null) {
+            parent.content.reserveRect(row + parentRowOffset, col, width, height);
+        }
+        grid.reserveRect(row, col, width, height);
+        return new GridRect(row, col, width, height);
+    }
+
+    @Override
+    public boolean isFreeRect(int row, int col, int width, int height) {
+        return grid.isFreeRect(row, col, width, height)
+                && (parent == null || parent.content == null
+                || parent.content.isFreeRect(row + parentRowOffset, col, width, height));
+    }
+
+    @Override
+    public void destroy() {
+        grid.clear();
+    }
+
+    @Override
+    public void printGrid() {
+        grid.printGrid();
+    }
+
+    @Override
+    public void printMetaData() {
+        System.out.println("GRID METADATA (Bitset): ");
+        System.out.println("rows: " + nRows + " cols: " + nCols);
+        if (parent != null && parent.content != null) {
+            System.out.println("Parent: " + parent.content.getClass().getSimpleName());
+            parent.content.printMetaData();
+        } else {
+            System.out.println("Parent: null");
+        }
+    }
+}
@@ -4,9 +4,13 @@ import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.BaseGrid
 import com.example.game3d_opengl.rendering.util3d.vector.Vector3D;
 import com.example.game3d_opengl.game.terrain.terrain_api.addon.Addon;
 import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advanced.AdvancedGridCreator;
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.GridRect;
 import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.GridSegment;
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.NoFittingSpaceException;
 import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer.CommandExecutor;
 
+import java.util.Arrays;
+
 public class AddonsCommandsExecutor implements CommandExecutor {
     // User-callable commands
     public static final int CMD_ADDONS_USER_FIRST = 33;
@@ -20,30 +24,101 @@ public class AddonsCommandsExecutor implements CommandExecutor {
     // Internal commands
     public static final int CMD_FINISH_STRUCTURE_ADDONS = 38;
 
+    // [count, length, vertical ? 1 : 0]: count random fitting strips in one command
+    public static final int CMD_RESERVE_RANDOM_BATCH = 39;
+
+    // [row, col, packRectSize(width, height)]
+    public static final int CMD_RESERVE_RECT = 40;
+    // [width, height, 0]
+    public static final int CMD_RESERVE_RANDOM_RECT = 41;
+
+    // [col, weight]
+    public static final int CMD_SET_COLUMN_WEIGHT = 42;
+    // [fromRow, toRow, weight]
+    public static final int CMD_SET_ROW_WEIGHTS = 43;
+    // [length, vertical ? 1 : 0]
+    public static final int CMD_RESERVE_WEIGHTED_RANDOM = 44;
+    // [width, height]
+    public static final int CMD_RESERVE_WEIGHTED_RANDOM_RECT = 45;
+
+    // [row, col, length]: free strip starting closest to (row, col)
+    public static final int CMD_RESERVE_NEAREST_VERTICAL = 46;
+    public static final int CMD_RESERVE_NEAREST_HORIZONTAL = 47;
+
+    // []: reservations up to the commit are kept only if all of them fit
+    public static final int CMD_BEGIN_TRANSACTION = 48;
+    public static final int CMD_COMMIT_TRANSACTION = 49;
+    public static final int CMD_ROLLBACK_TRANSACTION = 50;
+
     private final Terrain terrain;
 
+    // Strip starts of the last batch
+    private int[] batchRows = new int[16], batchCols = new int[16];
+
+    // Open transaction: its reservations are tentative, and their addons are held back until commit.
+    // Once one of them does not fit, the rest are skipped (their addons dropped).
+    private boolean inTransaction = false;
+    private boolean transactionFailed = false;
+    private Addon[] heldAddons = new Addon[16];
+    private int[] heldRows = new int[16], heldCols = new int[16];
+    private int heldCount = 0;
+
 
     public AddonsCommandsExecutor(Terrain terrain) {
         this.terrain = terrain;
     }
 
     @Override
-    public void execute(float[] buffer, int offset, int length) {
-        int code = (int) buffer[offset];
+    public void execute(int[] intLane, int intOffset, float[] floatLane, int floatOffset) {
+        int code = intLane[intOffset];
         switch (code) {
             case CMD_RESERVE_VERTICAL:
-                handleReserveVertical(buffer, offset);
-                break;
             case CMD_RESERVE_HORIZONTAL:
-                handleReserveHorizontal(buffer, offset);
-                break;
             case CMD_RESERVE_RANDOM_VERTICAL:
-                handleReserveRandomVertical(buffer, offset);
-                break;
             case CMD_RESERVE_RANDOM_HORIZONTAL:
-                handleReserveRandomHorizontal(buffer, offset);
+            case CMD_RESERVE_RANDOM_BATCH:
+            case CMD_RESERVE_RECT:
+            case CMD_RESERVE_RANDOM_RECT:
+            case CMD_RESERVE_WEIGHTED_RANDOM:
+            case CMD_RESERVE_WEIGHTED_RANDOM_RECT:
+            case CMD_RESERVE_NEAREST_VERTICAL:
+            case CMD_RESERVE_NEAREST_HORIZONTAL:
+                if (!inTransaction) {
+                    reserve(code, intLane, intOffset);
+                } else if (transactionFailed) {
+                    dropAddons(addonCount(intLane, intOffset));
+                } else {
+                    try {
+                        reserve(code, intLane, intOffset);
+                    } catch (NoFittingSpaceException e) {
+                        // Did not fit. Nothing of it was placed, and what it reserved is logged for rollback
+                        transactionFailed = true;
+                        dropAddons(addonCount(intLane, intOffset));
+                    }
+                }
+                break;
+            case CMD_SET_COLUMN_WEIGHT:
+                latestAdvanced().setColumnWeight(intLane[intOffset + 1], intLane[intOffset + 2]);
+                break;
+            case CMD_SET_ROW_WEIGHTS:
+                latestAdvanced().setRowWeights(intLane[intOffset + 1], intLane[intOffset + 2], intLane[intOffset + 3]);
+                break;
+            case CMD_BEGIN_TRANSACTION:
+                latestAdvanced().beginTransaction();
+                inTransaction = true;
+                transactionFailed = false;
+                break;
+            case CMD_COMMIT_TRANSACTION:
+                endTransaction(!transactionFailed);
+                break;
+            case CMD_ROLLBACK_TRANSACTION:
+                endTransaction(false);
                 break;
             case CMD_FINISH_STRUCTURE_ADDONS:
+                if (inTransaction) {
+                    // Left open by the structure
+                    endTransaction(false);
+                }
                 terrain.gridCreatorWrapperQueue.dequeue().content.destroy();
                 terrain.rowOffsetQueue.dequeue();
                 break;
@@ -52,10 +127,108 @@ public class AddonsCommandsExecutor implements CommandExecutor {
         }
     }
 
-    private void handleReserveVertical(float[] buffer, int offset) {
-        int row = (int) buffer[offset + 2];
-        int col = (int) buffer[offset + 3];
-        int segLength = (int) buffer[offset + 4];
+    private void reserve(int code, int[] intLane, int intOffset) {
+        switch (code) {
+            case CMD_RESERVE_VERTICAL:
+                handleReserveVertical(intLane, intOffset);
+                break;
+            case CMD_RESERVE_HORIZONTAL:
+                handleReserveHorizontal(intLane, intOffset);
+                break;
+            case CMD_RESERVE_RANDOM_VERTICAL:
+                handleReserveRandomVertical(intLane, intOffset);
+                break;
+            case CMD_RESERVE_RANDOM_HORIZONTAL:
+                handleReserveRandomHorizontal(intLane, intOffset);
+                break;
+            case CMD_RESERVE_RANDOM_BATCH:
+                handleReserveRandomBatch(intLane, intOffset);
+                break;
+            case CMD_RESERVE_RECT:
+                handleReserveRect(intLane, intOffset);
+                break;
+            case CMD_RESERVE_RANDOM_RECT:
+                handleReserveRandomRect(intLane, intOffset);
+                break;
+            case CMD_RESERVE_WEIGHTED_RANDOM:
+                handleReserveWeightedRandom(intLane, intOffset);
+                break;
+            case CMD_RESERVE_WEIGHTED_RANDOM_RECT:
+                GridRect rect = latestAdvanced().reserveWeightedRandomFittingRect(intLane[intOffset + 1], intLane[intOffset + 2]);
+                processRectAddons(rect.row, rect.col, rect.width, rect.height);
+                break;
+            case CMD_RESERVE_NEAREST_VERTICAL:
+            case CMD_RESERVE_NEAREST_HORIZONTAL:
+                handleReserveNearest(intLane, intOffset);
+                break;
+            default:
+                throw new IllegalArgumentException("Not a reservation: " + code);
+        }
+    }
+
+    /**
+     * Number of addons a reservation command takes from the addon queue.
+     */
+    private static int addonCount(int[] intLane, int offset) {
+        switch (intLane[offset]) {
+            case CMD_RESERVE_VERTICAL:
+            case CMD_RESERVE_HORIZONTAL:
+            case CMD_RESERVE_NEAREST_VERTICAL:
+            case CMD_RESERVE_NEAREST_HORIZONTAL:
+                return intLane[offset + 3];
+            case CMD_RESERVE_RANDOM_VERTICAL:
+            case CMD_RESERVE_RANDOM_HORIZONTAL:
+            case CMD_RESERVE_WEIGHTED_RANDOM:
+                return intLane[offset + 1];
+            case CMD_RESERVE_RANDOM_BATCH:
+            case CMD_RESERVE_RANDOM_RECT:
+            case CMD_RESERVE_WEIGHTED_RANDOM_RECT:
+                return intLane[offset + 1] * intLane[offset + 2];
+            case CMD_RESERVE_RECT:
+                return (intLane[offset + 3] >>> 16) * (intLane[offset + 3] & 0xFFFF);
+            default:
+                throw new IllegalArgumentException("Not a reservation: " + intLane[offset]);
+        }
+    }
+
+    private void dropAddons(int count) {
+        for (int i = 0; i < count; ++i) {
+            terrain.addonQueue.dequeue();
+        }
+    }
+
+    /**
+     * Commits (placing the held addons) or rolls back the open transaction.
+     * A commit the parent grid no longer has room for is rolled back too.
+     */
+    private void endTransaction(boolean keep) {
+        if (!inTransaction) {
+            throw new IllegalStateException("No open transaction");
+        }
+        inTransaction = false;
+        if (keep) {
+            try {
+                latestAdvanced().commit();
+            } catch (NoFittingSpaceException e) {
+                // The parent took some of the group's cells since it began
+                keep = false;
+            }
+        }
+        if (keep) {
+            for (int i = 0; i < heldCount; ++i) {
+                placeAddon(heldAddons[i], heldRows[i], heldCols[i]);
+            }
+        } else {
+            latestAdvanced().rollback();
+        }
+        Arrays.fill(heldAddons, 0, heldCount, null);
+        heldCount = 0;
+    }
+
+    private void handleReserveVertical(int[] intLane, int offset) {
+        int row = intLane[offset + 1];
+        int col = intLane[offset + 2];
+        int segLength = intLane[offset + 3];
         BaseGridCreator latest = terrain.gridCreatorWrapperQueue.peek().content;
         latest.reserveVertical(row, col, segLength);
         processAddons(row, col, segLength, false);
@@ -67,43 +240,133 @@ public class AddonsCommandsExecutor implements CommandExecutor {
             Addon addon = terrain.addonQueue.dequeue();
             int row = horizontal ? baseRow : baseRow + i;
             row += rOffset;
-            long tileId = terrain.tileManager.getTileIdForRow(row);
-            addon.setTileId(tileId);
             int col = horizontal ? baseCol + i : baseCol;
-            Vector3D[] field = terrain.tileManager.getField(row,col);
-            addon.place(field[0], field[1], field[2], field[3]);
-            terrain.addons.pushBack(addon);
+            if (inTransaction) {
+                holdAddon(addon, row, col);
+            } else {
+                placeAddon(addon, row, col);
+            }
+        }
+    }
+
+    private void placeAddon(Addon addon, int row, int col) {
+        long tileId = terrain.tileManager.getTileIdForRow(row);
+        addon.setTileId(tileId);
+        Vector3D[] field = terrain.tileManager.getField(row,col);
+        addon.place(field[0], field[1], field[2], field[3]);
+        terrain.publishAddon(addon);
+    }
+
+    private void holdAddon(Addon addon, int row, int col) {
+        if (heldCount == heldAddons.length) {
+            heldAddons = Arrays.copyOf(heldAddons, 2 * heldCount);
+            heldRows = Arrays.copyOf(heldRows, 2 * heldCount);
+            heldCols = Arrays.copyOf(heldCols, 2 * heldCount);
         }
+        heldAddons[heldCount] = addon;
+        heldRows[heldCount] = row;
+        heldCols[heldCount] = col;
+        ++heldCount;
     }
 
-    private void handleReserveHorizontal(float[] buffer, int offset) {
-        int row = (int) buffer[offset + 2];
-        int col = (int) buffer[offset + 3];
-        int segLength = (int) buffer[offset + 4];
+    private void handleReserveHorizontal(int[] intLane, int offset) {
+        int row = intLane[offset + 1];
+        int col = intLane[offset + 2];
+        int segLength = intLane[offset + 3];
         BaseGridCreator latest = terrain.gridCreatorWrapperQueue.peek().content;
         latest.reserveHorizontal(row, col, segLength);
         processAddons(row, col, segLength, true);
     }
 
-    private void handleReserveRandomVertical(float[] buffer, int offset) {
-        int segLength = (int) buffer[offset + 2];
-        assert terrain.gridCreatorWrapperQueue.peek().content instanceof AdvancedGridCreator;
-        AdvancedGridCreator latest = (AdvancedGridCreator) terrain.gridCreatorWrapperQueue.peek().content;
+    private void handleReserveRandomVertical(int[] intLane, int offset) {
+        int segLength = intLane[offset + 1];
+        AdvancedGridCreator latest = latestAdvanced();
         GridSegment found = latest.reserveRandomFittingVertical(segLength);
         processAddons(found.row, found.col, segLength, false);
     }
 
-    private void handleReserveRandomHorizontal(float[] buffer, int offset) {
-        int segLength = (int) buffer[offset + 2];
-        assert terrain.gridCreatorWrapperQueue.peek().content instanceof AdvancedGridCreator;
-        AdvancedGridCreator latest = (AdvancedGridCreator) terrain.gridCreatorWrapperQueue.peek().content;
+    private void handleReserveRandomHorizontal(int[] intLane, int offset) {
+        int segLength = intLane[offset + 1];
+        AdvancedGridCreator latest = latestAdvanced();
         GridSegment found = latest.reserveRandomFittingHorizontal(segLength);
         processAddons(found.row, found.col, segLength, true);
     }
 
+    private void handleReserveRandomBatch(int[] intLane, int offset) {
+        int count = intLane[offset + 1];
+        int segLength = intLane[offset + 2];
+        boolean vertical = intLane[offset + 3] != 0;
+        if (batchRows.length < count) {
+            batchRows = new int[Math.max(count, 2 * batchRows.length)];
+            batchCols = new int[batchRows.length];
+        }
+        AdvancedGridCreator latest = latestAdvanced();
+        if (vertical) {
+            latest.reserveRandomFittingVerticalBatch(count, segLength, batchRows, batchCols);
+        } else {
+            latest.reserveRandomFittingHorizontalBatch(count, segLength, batchRows, batchCols);
+        }
+        for (int i = 0; i < count; ++i) {
+            processAddons(batchRows[i], batchCols[i], segLength, !vertical);
+        }
+    }
+
+    /**
+     * A command record has three int arguments, so a rectangle's size shares one.
+     */
+    public static int packRectSize(int width, int height) {
+        return (width << 16) | height;
+    }
+
+    private void handleReserveRect(int[] intLane, int offset) {
+        int row = intLane[offset + 1];
+        int col = intLane[offset + 2];
+        int width = intLane[offset + 3] >>> 16;
+        int height = intLane[offset + 3] & 0xFFFF;
+        BaseGridCreator latest = terrain.gridCreatorWrapperQueue.peek().content;
+        latest.reserveRect(row, col, width, height);
+        processRectAddons(row, col, width, height);
+    }
+
+    private void handleReserveRandomRect(int[] intLane, int offset) {
+        int width = intLane[offset + 1];
+        int height = intLane[offset + 2];
+        AdvancedGridCreator latest = latestAdvanced();
+        GridRect found = latest.reserveRandomFittingRect(width, height);
+        processRectAddons(found.row, found.col, width, height);
+    }
+
+    private AdvancedGridCreator latestAdvanced() {
+        assert terrain.gridCreatorWrapperQueue.peek().content instanceof AdvancedGridCreator;
+        return (AdvancedGridCreator) terrain.gridCreatorWrapperQueue.peek().content;
+    }
+
+    private void handleReserveWeightedRandom(int[] intLane, int offset) {
+        int segLength = intLane[offset + 1];
+        boolean vertical = intLane[offset + 2] != 0;
+        GridSegment found = vertical ? latestAdvanced().reserveWeightedRandomFittingVertical(segLength)
+                : latestAdvanced().reserveWeightedRandomFittingHorizontal(segLength);
+        processAddons(found.row, found.col, segLength, !vertical);
+    }
+
+    private void handleReserveNearest(int[] intLane, int offset) {
+        int row = intLane[offset + 1];
+        int col = intLane[offset + 2];
+        int segLength = intLane[offset + 3];
+        boolean vertical = intLane[offset] == CMD_RESERVE_NEAREST_VERTICAL;
+        GridSegment found = vertical ? latestAdvanced().reserveNearestVertical(row, col, segLength)
+                : latestAdvanced().reserveNearestHorizontal(row, col, segLength);
+        processAddons(found.row, found.col, segLength, !vertical);
+    }
+
+    private void processRectAddons(int baseRow, int baseCol, int width, int height) {
+        for (int r = baseRow; r < baseRow + height; ++r) {
+            processAddons(r, baseCol, width, true);
+        }
+    }
+
     @Override
-    public boolean canHandle(float v) {
-        int command = (int) v;
-        return command >= CMD_ADDONS_USER_FIRST && command <= CMD_FINISH_STRUCTURE_ADDONS;
+    public boolean canHandle(int command) {
+        return command >= CMD_ADDONS_USER_FIRST && command <= CMD_ROLLBACK_TRANSACTION;
     }
 }
\ No newline at end of file
@@ -1,8 +1,17 @@
 package com.example.game3d_opengl.game.terrain.terrain_api.main;
 
+import com.example.game3d_opengl.game.util.RandomStream;
+
 public abstract class BaseTerrainStructure<GridBrushType extends Terrain.BaseGridBrush> {
     protected final int tilesToMake;
 
+    /**
+     * This structure's own random stream, reseeded from the terrain's seed whenever the structure
+     * starts generating. Use it (not GameRandom) in generateAddons(), so terrain is reproducible
+     * and safe to generate on a worker thread. generateTiles() of compiled structures must not use it.
+     */
+    protected final RandomStream random = new RandomStream(0L);
+
     public BaseTerrainStructure(int nTiles) {
         this.tilesToMake = nTiles;
     }
@@ -12,6 +21,15 @@ public abstract class BaseTerrainStructure<GridBrushType extends Terrain.BaseGri
 
     protected abstract GridBrushType selectBrush(Terrain terrain);
 
+    /**
+     * Key under which the landscape commands of this structure may be cached and replayed.
+     * Structures returning equal keys must emit identical commands in generateTiles()
+     * (including the children they add). Return null (default) to run generateTiles() every time.
+     */
+    protected Object getCompileKey() {
+        return null;
+    }
+
     public final void generateAddons(Terrain terrain, int nRows, int nCols){
         generateAddons(selectBrush(terrain), nRows, nCols);
     }
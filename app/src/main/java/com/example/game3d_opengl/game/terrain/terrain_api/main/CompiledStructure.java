@@ -0,0 +1,95 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.main;
+
+import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.ArrayQueue;
+import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer.CommandBuffer;
+import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer.CommandRewriter;
+import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer.RecordingCommandBuffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The landscape command stream of a structure, recorded once by running its generateTiles().
+ * Structures that report equal compile keys generate identical tile commands,
+ * so later instances can be replayed with a bulk copy instead of running Java-level generation again.
+ * Child structures added during recording are kept and re-enqueued on every replay,
+ * because their START/FINISH commands are part of the recorded stream.
+ */
+public final class CompiledStructure {
+    private final int[] intLane;
+    private final float[] floatLane;
+    private final int commandCount;
+    private final BaseTerrainStructure<?>[] children;
+
+    private CompiledStructure(RecordingCommandBuffer recorded, ArrayList<BaseTerrainStructure<?>> children) {
+        this.intLane = recorded.copyIntLane();
+        this.floatLane = recorded.copyFloatLane();
+        this.commandCount = recorded.getCommandCount();
+        this.children = children.toArray(new BaseTerrainStructure<?>[0]);
+    }
+
+    /**
+     * Records the landscape commands of the given structure through the terrain's tile brush.
+     *
+     * @param rewriter optional pass applied to the recorded stream (e.g. run fusion), may be null
+     */
+    static CompiledStructure compile(BaseTerrainStructure<?> what, Terrain.TileBrush brush,
+                                     CommandRewriter rewriter) {
+        RecordingCommandBuffer recorder = new RecordingCommandBuffer();
+        ArrayList<BaseTerrainStructure<?>> children = new ArrayList<>();
+        brush.beginRecording(recorder, children);
+        try {
+            what.generateTiles(brush);
+        } finally {
+            brush.endRecording();
+        }
+        if (rewriter != null) {
+            recorder.rewrite(rewriter);
+        }
+        return new CompiledStructure(recorder, children);
+    }
+
+    /**
+     * Enqueues the recorded children and splices the recorded commands into the buffer.
+     */
+    void emit(ArrayQueue<BaseTerrainStructure<?>> childQueue, CommandBuffer target) {
+        for (BaseTerrainStructure<?> child : children) {
+            childQueue.enqueue(child);
+        }
+        target.addCommandBlock(intLane, floatLane, commandCount);
+    }
+
+    public int getCommandCount() {
+        return commandCount;
+    }
+
+    /**
+     * Value key for structures whose tile commands depend only on their class and a few numbers.
+     */
+    public static Object key(Class<?> structureClass, float... params) {
+        return new Key(structureClass, params);
+    }
+
+    private static final class Key {
+        private final Class<?> structureClass;
+        private final float[] params;
+
+        Key(Class<?> structureClass, float[] params) {
+            this.structureClass = structureClass;
+            this.params = params;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return structureClass == other.structureClass && Arrays.equals(params, other.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * structureClass.hashCode() + Arrays.hashCode(params);
+        }
+    }
+}
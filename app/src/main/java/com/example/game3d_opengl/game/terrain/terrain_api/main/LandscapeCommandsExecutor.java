@@ -21,6 +21,12 @@ public class LandscapeCommandsExecutor implements CommandExecutor {
 
     // Internal commands
     public static final int CMD_FINISH_STRUCTURE_LANDSCAPE = 10;
+    // Emitted only by SegmentRunFuser: ints [count, flags], floats [dH, dV]
+    public static final int CMD_ADD_SEG_RUN = 11;
+
+    // Flags of CMD_ADD_SEG_RUN - which angle deltas are applied before every segment
+    public static final int RUN_TURN = 1;
+    public static final int RUN_TILT = 2;
 
     private final Terrain terrain;
 
@@ -29,48 +35,55 @@ public class LandscapeCommandsExecutor implements CommandExecutor {
     }
 
     @Override
-    public void execute(float[] buffer, int offset, int length) {
-        int code = (int) buffer[offset];
+    public void execute(int[] intLane, int intOffset, float[] floatLane, int floatOffset) {
+        int code = intLane[intOffset];
         switch (code) {
             case CMD_SET_H_ANG:
-                float angleH = buffer[offset + 2];
+                float angleH = floatLane[floatOffset];
                 terrain.tileManager.setHorizontalAngle(angleH);
                 break;
             case CMD_SET_V_ANG:
-                float angleV = buffer[offset + 2];
+                float angleV = floatLane[floatOffset];
                 terrain.tileManager.setVerticalAngle(angleV);
                 break;
             case CMD_ADD_H_ANG:
-                float deltaH = buffer[offset + 2];
+                float deltaH = floatLane[floatOffset];
                 terrain.tileManager.addHorizontalAngle(deltaH);
                 break;
             case CMD_ADD_V_ANG:
-                float deltaV = buffer[offset + 2];
+                float deltaV = floatLane[floatOffset];
                 terrain.tileManager.addVerticalAngle(deltaV);
                 break;
             case CMD_ADD_SEG:
                 terrain.tileManager.addSegment(false);
                 break;
+            case CMD_ADD_SEG_RUN:
+                int runFlags = intLane[intOffset + 2];
+                terrain.tileManager.addSegmentRun(intLane[intOffset + 1],
+                        (runFlags & RUN_TURN) != 0, floatLane[floatOffset],
+                        (runFlags & RUN_TILT) != 0, floatLane[floatOffset + 1]);
+                break;
             case CMD_ADD_EMPTY_SEG:
                 terrain.tileManager.addSegment(true);
                 break;
             case CMD_LIFT_UP:
-                float dy = buffer[offset + 2];
+                float dy = floatLane[floatOffset];
                 terrain.tileManager.liftUp(dy);
                 break;
             case CMD_START_STRUCTURE_LANDSCAPE:
-                boolean isChild = (int) (buffer[offset + 2]) != 0;
+                boolean isChild = intLane[intOffset + 1] != 0;
                 BaseTerrainStructure<?> what;
                 if(!isChild){
                     what = terrain.waitingStructuresQueue.dequeue();
                 }else{
                     what = terrain.childStructuresQueue.dequeue();
                 }
+                terrain.seedStructure(what);
                 terrain.structureStack.push(what);
                 terrain.gridCreatorWrapperStack.push(new GridCreatorWrapper());
                 if (!isChild) {
-                    what.generateTiles(terrain.tileBrush);
-                    terrain.commandBuffer.addCommand(CMD_FINISH_STRUCTURE_LANDSCAPE);
+                    terrain.emitLandscapeCommands(what);
+                    terrain.commandBuffer.addCommand0(CMD_FINISH_STRUCTURE_LANDSCAPE);
                 }
                 terrain.rowCountStack.push(terrain.tileManager.getCurrRowCount());
                 break;
@@ -80,24 +93,27 @@ public class LandscapeCommandsExecutor implements CommandExecutor {
                 GridCreatorWrapper myGridCreatorWrapper = terrain.gridCreatorWrapperStack.pop();
                 GridCreatorWrapper parentGridCreatorWrapper = terrain.gridCreatorWrapperStack.peek();
                 int nRowsAdded = terrain.tileManager.getCurrRowCount() - startRowCount;
+                // Grids count rows from their own first row, so a child sits at an offset in its parent's
+                int parentRowOffset = terrain.rowCountStack.isEmpty() ? startRowCount
+                        : startRowCount - terrain.rowCountStack.peek();
                 if(thatStructure instanceof AdvancedTerrainStructure) {
                     myGridCreatorWrapper.content = new AdvancedGridCreator(
                             nRowsAdded, terrain.nCols, parentGridCreatorWrapper,
-                            startRowCount
+                            parentRowOffset, terrain.arena.getGridRegionPool(), thatStructure.random.nextLong()
                     );
                 }else{
                     myGridCreatorWrapper.content = new BasicGridCreator(
                             nRowsAdded, terrain.nCols, parentGridCreatorWrapper,
-                            startRowCount
+                            parentRowOffset
                     );
                 }
                 terrain.gridCreatorWrapperQueue.enqueue(myGridCreatorWrapper);
                 terrain.rowOffsetQueue.enqueue(startRowCount);
                 thatStructure.generateAddons(terrain, nRowsAdded, terrain.nCols);
-                terrain.commandBuffer.addCommand(AddonsCommandsExecutor.CMD_FINISH_STRUCTURE_ADDONS);
+                terrain.commandBuffer.addCommand0(AddonsCommandsExecutor.CMD_FINISH_STRUCTURE_ADDONS);
                 break;
             case CMD_SET_ALPHAS:
-                float alphaL = buffer[offset + 2], alphaR = buffer[offset + 3];
+                float alphaL = floatLane[floatOffset], alphaR = floatLane[floatOffset + 1];
                 terrain.tileManager.setUpcomingAlphas(alphaL, alphaR);
                 break;
             default:
@@ -106,8 +122,7 @@ public class LandscapeCommandsExecutor implements CommandExecutor {
     }
 
     @Override
-    public boolean canHandle(float v) {
-        int command = (int) v;
-        return command >= CMD_LANDSCAPE_USER_FIRST && command <= CMD_FINISH_STRUCTURE_LANDSCAPE;
+    public boolean canHandle(int command) {
+        return command >= CMD_LANDSCAPE_USER_FIRST && command <= CMD_ADD_SEG_RUN;
     }
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.main;
+
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.LandscapeCommandsExecutor.CMD_ADD_H_ANG;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.LandscapeCommandsExecutor.CMD_ADD_SEG;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.LandscapeCommandsExecutor.CMD_ADD_SEG_RUN;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.LandscapeCommandsExecutor.CMD_ADD_V_ANG;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.LandscapeCommandsExecutor.RUN_TILT;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.LandscapeCommandsExecutor.RUN_TURN;
+import static com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer.CommandBuffer.FLOAT_STRIDE;
+import static com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer.CommandBuffer.INT_STRIDE;
+
+import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer.CommandRewriter;
+
+/**
+ * Peephole pass over landscape commands. A "unit" is an optional ADD_H_ANG and an optional
+ * ADD_V_ANG (in any order) followed by ADD_SEG. Two or more consecutive units with the same
+ * shape and bit-identical angles become one ADD_SEG_RUN(n, flags, dH, dV).
+ * The run replays exactly the same TileManager calls, so the tiles are bit-identical.
+ * Runs are capped at {@link #MAX_RUN} tiles to keep one command short enough for time budgets.
+ * Not thread-safe: the unit being matched is kept in fields to avoid allocating.
+ */
+final class SegmentRunFuser implements CommandRewriter {
+    static final int MAX_RUN = 32;
+
+    // Shape and angles of the unit found by the last successful matchUnit() call
+    private int unitFlags;
+    private float unitDH, unitDV;
+
+    @Override
+    public int rewrite(int[] intLane, float[] floatLane, int nCommands) {
+        int read = 0, write = 0;
+        while (read < nCommands) {
+            int len = matchUnit(intLane, floatLane, read, nCommands);
+            if (len == 0) {
+                copyRecord(intLane, floatLane, read++, write++);
+                continue;
+            }
+            int flags = unitFlags;
+            float dH = unitDH, dV = unitDV;
+            int count = 1;
+            int next = read + len;
+            while (count < MAX_RUN) {
+                int nextLen = matchUnit(intLane, floatLane, next, nCommands);
+                if (nextLen == 0 || !sameUnit(flags, dH, dV)) {
+                    break;
+                }
+                ++count;
+                next += nextLen;
+            }
+            if (count == 1) {
+                for (int i = read; i < next; ++i) {
+                    copyRecord(intLane, floatLane, i, write++);
+                }
+            } else {
+                // write <= read < next, so everything this overwrites was already consumed.
+                int intBase = write * INT_STRIDE, floatBase = write * FLOAT_STRIDE;
+                intLane[intBase] = CMD_ADD_SEG_RUN;
+                intLane[intBase + 1] = count;
+                intLane[intBase + 2] = flags;
+                intLane[intBase + 3] = 0;
+                floatLane[floatBase] = dH;
+                floatLane[floatBase + 1] = dV;
+                ++write;
+            }
+            read = next;
+        }
+        return write;
+    }
+
+    /**
+     * @return number of commands in the unit starting at {@code at}, or 0 if none starts there
+     */
+    private int matchUnit(int[] intLane, float[] floatLane, int at, int nCommands) {
+        int flags = 0;
+        float dH = 0f, dV = 0f;
+        for (int i = at; i < nCommands; ++i) {
+            int opcode = intLane[i * INT_STRIDE];
+            if (opcode == CMD_ADD_H_ANG && (flags & RUN_TURN) == 0) {
+                flags |= RUN_TURN;
+                dH = floatLane[i * FLOAT_STRIDE];
+            } else if (opcode == CMD_ADD_V_ANG && (flags & RUN_TILT) == 0) {
+                flags |= RUN_TILT;
+                dV = floatLane[i * FLOAT_STRIDE];
+            } else if (opcode == CMD_ADD_SEG) {
+                unitFlags = flags;
+                unitDH = dH;
+                unitDV = dV;
+                return i - at + 1;
+            } else {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    private boolean sameUnit(int flags, float dH, float dV) {
+        return unitFlags == flags
+                && Float.floatToRawIntBits(unitDH) == Float.floatToRawIntBits(dH)
+                && Float.floatToRawIntBits(unitDV) == Float.floatToRawIntBits(dV);
+    }
+
+    private static void copyRecord(int[] intLane, float[] floatLane, int from, int to) {
+        if (from != to) {
+            System.arraycopy(intLane, from * INT_STRIDE, intLane, to * INT_STRIDE, INT_STRIDE);
+            System.arraycopy(floatLane, from * FLOAT_STRIDE, floatLane, to * FLOAT_STRIDE, FLOAT_STRIDE);
+        }
+    }
+}
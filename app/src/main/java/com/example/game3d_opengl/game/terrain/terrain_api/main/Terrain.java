@@ -2,9 +2,22 @@ package com.example.game3d_opengl.game.terrain.terrain_api.main;
 
 import static com.example.game3d_opengl.game.terrain.terrain_api.main.LandscapeCommandsExecutor.CMD_FINISH_STRUCTURE_LANDSCAPE;
 import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_RESERVE_HORIZONTAL;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_RESERVE_RANDOM_BATCH;
 import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_RESERVE_RANDOM_HORIZONTAL;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_RESERVE_RANDOM_RECT;
 import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_RESERVE_RANDOM_VERTICAL;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_RESERVE_RECT;
 import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_RESERVE_VERTICAL;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_RESERVE_WEIGHTED_RANDOM;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_BEGIN_TRANSACTION;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_COMMIT_TRANSACTION;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_RESERVE_NEAREST_HORIZONTAL;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_ROLLBACK_TRANSACTION;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_RESERVE_NEAREST_VERTICAL;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_RESERVE_WEIGHTED_RANDOM_RECT;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_SET_COLUMN_WEIGHT;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_SET_ROW_WEIGHTS;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.packRectSize;
 import static com.example.game3d_opengl.game.terrain.terrain_api.main.LandscapeCommandsExecutor.CMD_ADD_H_ANG;
 import static com.example.game3d_opengl.game.terrain.terrain_api.main.LandscapeCommandsExecutor.CMD_ADD_SEG;
 import static com.example.game3d_opengl.game.terrain.terrain_api.main.LandscapeCommandsExecutor.CMD_ADD_EMPTY_SEG;
@@ -17,17 +30,28 @@ import static com.example.game3d_opengl.game.terrain.terrain_api.main.LandscapeC
 
 import com.example.game3d_opengl.game.LightSource;
 import com.example.game3d_opengl.game.terrain.terrain_api.addon.Addon;
+import com.example.game3d_opengl.game.terrain.terrain_api.addon.AddonStore;
 import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.GridCreatorWrapper;
 import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.ArrayQueue;
 import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.ArrayStack;
 import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.IntArrayQueue;
 import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.IntArrayStack;
-import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.FixedMaxSizeDeque;
+import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.TerrainArena;
+import com.example.game3d_opengl.game.util.GameRandom;
+import com.example.game3d_opengl.game.util.RandomStream;
 import com.example.game3d_opengl.rendering.GPUResourceOwner;
 import com.example.game3d_opengl.rendering.util3d.FColor;
 import com.example.game3d_opengl.rendering.util3d.vector.Vector3D;
+import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer.CommandBuffer;
+import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer.CommandCostModel;
 import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer.CommandExecutor;
-import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer.PreallocatedCommandBuffer;
+import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer.RecordingCommandBuffer;
+import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer.SegmentedCommandBuffer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.List;
 
 /**
  * Terrain with a fixed-size deque of tiles. We keep a `lastTile` pointer
@@ -35,7 +59,7 @@ import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer
  * All terrain is LAZILY generated - every generation "request" is quickly translated into commands.
  * These commands are at some point (which is chosen by user) "interpreted" by CommandExecutors.
  * This gives the user control over what part of the generation process should be actually completed
- * in a given frame (single generateChunks(cnt) call).
+ * in a given frame (single generateChunks(cnt) or generateFor(nanos) call).
  * The terrain system uses a command-based architecture where:
  * 1. Terrain structures generate commands (e.g., "add segment", "set angle")
  * 2. Commands are stored in a buffer
@@ -80,6 +104,30 @@ public class Terrain implements GPUResourceOwner {
         return tileManager.getTile(i);
     }
 
+    /**
+     * Broadphase for collisions: the tiles from {@code before} tiles before the one with the given ID
+     * to {@code after} tiles after it, in deque order, without looking at the others.
+     * If that tile is no longer in the deque, the window is around the first newer one.
+     *
+     * @param out receives the tiles, must hold before + after + 1
+     * @return number of tiles written to out; 0 for a negative ID
+     */
+    public int queryTilesNear(long tileId, int before, int after, Tile[] out) {
+        if (before < 0 || after < 0 || out.length < before + after + 1) {
+            throw new IllegalArgumentException("Invalid tile window: " + before + " before, " + after
+                    + " after, " + out.length + " slots");
+        }
+        int center = tileId < 0 ? -1 : tileManager.getTileIndexNear(tileId);
+        if (center < 0) {
+            return 0;
+        }
+        int from = Math.max(0, center - before), to = Math.min(tileManager.getTileCount() - 1, center + after);
+        for (int i = from; i <= to; ++i) {
+            out[i - from] = tileManager.getTile(i);
+        }
+        return to - from + 1;
+    }
+
     /**
      * Cleans up all GPU resources used by the terrain system.
      * This includes VBOs, IBOs, and other OpenGL objects.
@@ -90,8 +138,9 @@ public class Terrain implements GPUResourceOwner {
 
         // TODO this should only do GPU stuff. Make separate method for command buffers etc
 
-        commandBuffer.free();
+        discardBackgroundGeneration();
         tileManager.cleanupGPUResourcesRecursivelyOnContextLoss();
+        arena.reset();
 
         gridCreatorWrapperQueue.clear();
         gridCreatorWrapperStack.clear();
@@ -103,13 +152,35 @@ public class Terrain implements GPUResourceOwner {
         waitingStructuresQueue.clear();
         childStructuresQueue.clear();
 
-        for (Addon addon : addons) {
-            addon.cleanupGPUResourcesRecursivelyOnContextLoss();
+        for (int i = 0; i < addons.size(); ++i) {
+            addons.get(i).cleanupGPUResourcesRecursivelyOnContextLoss();
         }
         addons.clear();
     }
 
 
+    /**
+     * Stops the worker without waiting for the GL thread to make room - all its output is discarded anyway.
+     */
+    private void discardBackgroundGeneration() {
+        if (workerThread == null) {
+            return;
+        }
+        workerRunning = false;
+        eventRing.close();
+        workerThread.interrupt();
+        try {
+            workerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        tileManager.setGeometrySink(null);
+        eventRing = null;
+        workerThread = null;
+        incomingStructures.clear();
+        workerFailure = null;
+    }
+
     /**
      * Resets all GPU resources after a context loss.
      * Recreates VBOs and IBOs for all tiles and addons.
@@ -117,8 +188,8 @@ public class Terrain implements GPUResourceOwner {
     @Override
     public void reloadGPUResourcesRecursivelyOnContextLoss() {
         tileManager.reloadGPUResourcesRecursivelyOnContextLoss();
-        for (Addon addon : addons) {
-            addon.reloadGPUResourcesRecursivelyOnContextLoss();
+        for (int i = 0; i < addons.size(); ++i) {
+            addons.get(i).reloadGPUResourcesRecursivelyOnContextLoss();
         }
     }
 
@@ -129,8 +200,26 @@ public class Terrain implements GPUResourceOwner {
      * to generate the actual terrain.
      */
     public class TileBrush {
-        // Each command is stored as [commandCode, argCount, arg_1, arg_2, ..., arg_argCount].
-        // For commands with no arg (e.g. addSegment), we only store the code.
+        // Each command is one fixed-size record: [opcode, int args...] + [float args...].
+        // The typed addCommandN methods avoid allocating a varargs array per command.
+
+        // Where commands go - the terrain's command buffer, or a recorder while compiling a structure.
+        private CommandBuffer target = commandBuffer;
+        // Non-null while recording: children are collected instead of enqueued.
+        private List<BaseTerrainStructure<?>> recordedChildren = null;
+
+        void beginRecording(CommandBuffer recorder, List<BaseTerrainStructure<?>> children) {
+            if (recordedChildren != null) {
+                throw new IllegalStateException("Already recording a structure");
+            }
+            target = recorder;
+            recordedChildren = children;
+        }
+
+        void endRecording() {
+            target = commandBuffer;
+            recordedChildren = null;
+        }
 
         /**
          * Sets the horizontal angle for the next tile.
@@ -138,7 +227,7 @@ public class Terrain implements GPUResourceOwner {
          */
         @SuppressWarnings("unused")
         public void setHorizontalAng(float ang) {
-            commandBuffer.addCommand(CMD_SET_H_ANG, ang);
+            target.addCommand1(CMD_SET_H_ANG, ang);
         }
 
         /**
@@ -147,7 +236,7 @@ public class Terrain implements GPUResourceOwner {
          */
         @SuppressWarnings("unused")
         public void setVerticalAng(float ang) {
-            commandBuffer.addCommand(CMD_SET_V_ANG, ang);
+            target.addCommand1(CMD_SET_V_ANG, ang);
         }
 
         /**
@@ -156,7 +245,7 @@ public class Terrain implements GPUResourceOwner {
          */
         @SuppressWarnings("unused")
         public void addVerticalAng(float ang) {
-            commandBuffer.addCommand(CMD_ADD_V_ANG, ang);
+            target.addCommand1(CMD_ADD_V_ANG, ang);
         }
 
         /**
@@ -165,7 +254,7 @@ public class Terrain implements GPUResourceOwner {
          */
         @SuppressWarnings("unused")
         public void addHorizontalAng(float ang) {
-            commandBuffer.addCommand(CMD_ADD_H_ANG, ang);
+            target.addCommand1(CMD_ADD_H_ANG, ang);
         }
 
         /**
@@ -174,7 +263,7 @@ public class Terrain implements GPUResourceOwner {
          */
         public void addSegment() {
             // Just store the command code, no arg
-            commandBuffer.addCommand(CMD_ADD_SEG);
+            target.addCommand0(CMD_ADD_SEG);
         }
 
         /**
@@ -183,7 +272,7 @@ public class Terrain implements GPUResourceOwner {
          */
         public void addEmptySegment() {
             // Just store the command code, no arg
-            commandBuffer.addCommand(CMD_ADD_EMPTY_SEG);
+            target.addCommand0(CMD_ADD_EMPTY_SEG);
         }
 
         /**
@@ -191,7 +280,7 @@ public class Terrain implements GPUResourceOwner {
          * This creates elevation changes in the terrain.
          */
         public void liftUp(float dy) {
-            commandBuffer.addCommand(CMD_LIFT_UP, dy);
+            target.addCommand1(CMD_LIFT_UP, dy);
         }
 
         /**
@@ -199,7 +288,7 @@ public class Terrain implements GPUResourceOwner {
          * If not called, defaults to 1,1,1,1
          */
         public void setCornerAlphas(float alphaL, float alphaR) {
-            commandBuffer.addCommand(CMD_SET_ALPHAS, alphaL, alphaR);
+            target.addCommand2(CMD_SET_ALPHAS, alphaL, alphaR);
         }
 
         /**
@@ -208,10 +297,14 @@ public class Terrain implements GPUResourceOwner {
          * that depend on the parent structure's geometry.
          */
         public void addChild(BaseTerrainStructure<?> child) {
-            childStructuresQueue.enqueue(child);
-            commandBuffer.addCommand(CMD_START_STRUCTURE_LANDSCAPE, 1);
+            if (recordedChildren != null) {
+                recordedChildren.add(child);
+            } else {
+                childStructuresQueue.enqueue(child);
+            }
+            target.addCommand1(CMD_START_STRUCTURE_LANDSCAPE, 1);
             child.generateTiles(this);
-            commandBuffer.addCommand(CMD_FINISH_STRUCTURE_LANDSCAPE);
+            target.addCommand0(CMD_FINISH_STRUCTURE_LANDSCAPE);
         }
     }
 
@@ -247,7 +340,7 @@ public class Terrain implements GPUResourceOwner {
             assert col <= nCols;
             assert length > 0;
             assert addons.length == length : "Addon count doesn't match segment length";
-            commandBuffer.addCommand(CMD_RESERVE_VERTICAL, row, col, length);
+            commandBuffer.addCommand3(CMD_RESERVE_VERTICAL, row, col, length);
             for (Addon addon : addons) {
                 addonQueue.enqueue(addon);
             }
@@ -262,7 +355,7 @@ public class Terrain implements GPUResourceOwner {
             assert col <= nCols;
             assert length > 0;
             assert addons.length == length : "Addon count doesn't match segment length";
-            commandBuffer.addCommand(CMD_RESERVE_HORIZONTAL, row, col, length);
+            commandBuffer.addCommand3(CMD_RESERVE_HORIZONTAL, row, col, length);
             for (Addon addon : addons) {
                 addonQueue.enqueue(addon);
             }
@@ -273,7 +366,7 @@ public class Terrain implements GPUResourceOwner {
      * Slower but more powerful version of the grid brush.
      * It checks for situations where multiple addons occupy the same grid square.
      * Use this as the "root" terrain structure to prevent such situations.
-     * It also provides randomized queries (reserveRandomFittingHorizontal/Vertical).
+     * It also provides randomized queries (reserveRandomFittingHorizontal/Vertical/Rect).
      */
     public class AdvancedGridBrush extends BaseGridBrush {
         /**
@@ -285,7 +378,7 @@ public class Terrain implements GPUResourceOwner {
             assert col > 0;
             assert col <= nCols;
             assert length > 0;
-            commandBuffer.addCommand(CMD_RESERVE_VERTICAL, row, col, length);
+            commandBuffer.addCommand3(CMD_RESERVE_VERTICAL, row, col, length);
             for (Addon addon : addons) {
                 addonQueue.enqueue(addon);
             }
@@ -300,7 +393,7 @@ public class Terrain implements GPUResourceOwner {
             assert col > 0;
             assert col <= nCols;
             assert length > 0;
-            commandBuffer.addCommand(CMD_RESERVE_HORIZONTAL, row, col, length);
+            commandBuffer.addCommand3(CMD_RESERVE_HORIZONTAL, row, col, length);
             for (Addon addon : addons) {
                 addonQueue.enqueue(addon);
             }
@@ -313,7 +406,7 @@ public class Terrain implements GPUResourceOwner {
         public void reserveRandomFittingHorizontal(int length, Addon[] addons) {
             assert addons.length == length : "Addon count doesn't match segment length";
             assert length > 0;
-            commandBuffer.addCommand(CMD_RESERVE_RANDOM_HORIZONTAL, length);
+            commandBuffer.addCommand1(CMD_RESERVE_RANDOM_HORIZONTAL, length);
             for (Addon addon : addons) {
                 addonQueue.enqueue(addon);
             }
@@ -326,11 +419,177 @@ public class Terrain implements GPUResourceOwner {
         public void reserveRandomFittingVertical(int length, Addon[] addons) {
             assert addons.length == length : "Addon count doesn't match segment length";
             assert length > 0;
-            commandBuffer.addCommand(CMD_RESERVE_RANDOM_VERTICAL, length);
+            commandBuffer.addCommand1(CMD_RESERVE_RANDOM_VERTICAL, length);
+            for (Addon addon : addons) {
+                addonQueue.enqueue(addon);
+            }
+        }
+
+        /**
+         * Same as calling reserveRandomFittingHorizontal(length, ...) count times, as one command.
+         * The addons of all strips go in one array, strip after strip.
+         */
+        public void reserveRandomFittingHorizontalBatch(int count, int length, Addon[] addons) {
+            assert addons.length == count * length : "Addon count doesn't match segment count and length";
+            assert count > 0;
+            assert length > 0;
+            commandBuffer.addCommand3(CMD_RESERVE_RANDOM_BATCH, count, length, 0);
+            for (Addon addon : addons) {
+                addonQueue.enqueue(addon);
+            }
+        }
+
+        /**
+         * Same as calling reserveRandomFittingVertical(length, ...) count times, as one command.
+         * The addons of all strips go in one array, strip after strip.
+         */
+        public void reserveRandomFittingVerticalBatch(int count, int length, Addon[] addons) {
+            assert addons.length == count * length : "Addon count doesn't match segment count and length";
+            assert count > 0;
+            assert length > 0;
+            commandBuffer.addCommand3(CMD_RESERVE_RANDOM_BATCH, count, length, 1);
+            for (Addon addon : addons) {
+                addonQueue.enqueue(addon);
+            }
+        }
+
+        /**
+         * Reserves a rectangle (width columns x height rows, top-left at row, col) with collision checking.
+         * Addons go row after row, left to right.
+         */
+        public void reserveRect(int row, int col, int width, int height, Addon[] addons) {
+            assert addons.length == width * height : "Addon count doesn't match rectangle size";
+            assert row > 0;
+            assert col > 0;
+            assert col + width - 1 <= nCols;
+            assert width > 0 && width <= 0x7FFF;
+            assert height > 0 && height <= 0xFFFF;
+            commandBuffer.addCommand3(CMD_RESERVE_RECT, row, col, packRectSize(width, height));
+            for (Addon addon : addons) {
+                addonQueue.enqueue(addon);
+            }
+        }
+
+        /**
+         * Reserves a random rectangle of the given size, chosen among the places where it fits.
+         * Addons go row after row, left to right.
+         */
+        public void reserveRandomFittingRect(int width, int height, Addon[] addons) {
+            assert addons.length == width * height : "Addon count doesn't match rectangle size";
+            assert width > 0;
+            assert height > 0;
+            commandBuffer.addCommand3(CMD_RESERVE_RANDOM_RECT, width, height, 0);
+            for (Addon addon : addons) {
+                addonQueue.enqueue(addon);
+            }
+        }
+
+        /**
+         * Makes the weighted random reservations of this structure pick positions starting in
+         * the column proportionally more (or less) often. Weights start at 1; 0 excludes the column.
+         */
+        public void setColumnWeight(int col, int weight) {
+            assert col > 0 && col <= nCols;
+            assert weight >= 0;
+            commandBuffer.addCommand3(CMD_SET_COLUMN_WEIGHT, col, weight, 0);
+        }
+
+        /**
+         * Row counterpart of {@link #setColumnWeight}, for rows fromRow..toRow.
+         * A position's weight is its column's weight times its row's weight.
+         */
+        public void setRowWeights(int fromRow, int toRow, int weight) {
+            assert fromRow > 0 && fromRow <= toRow;
+            assert weight >= 0;
+            commandBuffer.addCommand3(CMD_SET_ROW_WEIGHTS, fromRow, toRow, weight);
+        }
+
+        /**
+         * Reserves a random vertical strip, picking positions in proportion to their weight.
+         */
+        public void reserveWeightedRandomFittingVertical(int length, Addon[] addons) {
+            assert addons.length == length : "Addon count doesn't match segment length";
+            assert length > 0;
+            commandBuffer.addCommand3(CMD_RESERVE_WEIGHTED_RANDOM, length, 1, 0);
             for (Addon addon : addons) {
                 addonQueue.enqueue(addon);
             }
         }
+
+        /**
+         * Reserves a random horizontal strip, picking positions in proportion to their weight.
+         */
+        public void reserveWeightedRandomFittingHorizontal(int length, Addon[] addons) {
+            assert addons.length == length : "Addon count doesn't match segment length";
+            assert length > 0;
+            commandBuffer.addCommand3(CMD_RESERVE_WEIGHTED_RANDOM, length, 0, 0);
+            for (Addon addon : addons) {
+                addonQueue.enqueue(addon);
+            }
+        }
+
+        /**
+         * Reserves a random rectangle, picking top-left cells in proportion to their weight.
+         * Addons go row after row, left to right.
+         */
+        public void reserveWeightedRandomFittingRect(int width, int height, Addon[] addons) {
+            assert addons.length == width * height : "Addon count doesn't match rectangle size";
+            assert width > 0;
+            assert height > 0;
+            commandBuffer.addCommand3(CMD_RESERVE_WEIGHTED_RANDOM_RECT, width, height, 0);
+            for (Addon addon : addons) {
+                addonQueue.enqueue(addon);
+            }
+        }
+
+        /**
+         * Reserves the free vertical strip starting closest to (row, col), counting rows plus columns apart.
+         */
+        public void reserveNearestVertical(int row, int col, int length, Addon[] addons) {
+            assert addons.length == length : "Addon count doesn't match segment length";
+            assert length > 0;
+            assert row > 0 && col > 0 && col <= nCols;
+            commandBuffer.addCommand3(CMD_RESERVE_NEAREST_VERTICAL, row, col, length);
+            for (Addon addon : addons) {
+                addonQueue.enqueue(addon);
+            }
+        }
+
+        /**
+         * Reserves the free horizontal strip starting closest to (row, col), counting rows plus columns apart.
+         */
+        public void reserveNearestHorizontal(int row, int col, int length, Addon[] addons) {
+            assert addons.length == length : "Addon count doesn't match segment length";
+            assert length > 0;
+            assert row > 0 && col > 0 && col <= nCols;
+            commandBuffer.addCommand3(CMD_RESERVE_NEAREST_HORIZONTAL, row, col, length);
+            for (Addon addon : addons) {
+                addonQueue.enqueue(addon);
+            }
+        }
+
+        /**
+         * Starts a group of reservations that is kept only as a whole, e.g. a run of spikes with
+         * a potion right after it. Until commitTransaction(), their addons are not placed.
+         */
+        public void beginTransaction() {
+            commandBuffer.addCommand0(CMD_BEGIN_TRANSACTION);
+        }
+
+        /**
+         * Keeps the reservations made since beginTransaction() and places their addons if all of them
+         * fitted. Otherwise frees the ones that were made and drops every addon of the group.
+         */
+        public void commitTransaction() {
+            commandBuffer.addCommand0(CMD_COMMIT_TRANSACTION);
+        }
+
+        /**
+         * Frees the reservations made since beginTransaction() and drops their addons.
+         */
+        public void rollbackTransaction() {
+            commandBuffer.addCommand0(CMD_ROLLBACK_TRANSACTION);
+        }
     }
 
     // Data structures for managing terrain generation state
@@ -347,16 +606,38 @@ public class Terrain implements GPUResourceOwner {
     final ArrayQueue<BaseTerrainStructure<?>> waitingStructuresQueue;
     final ArrayQueue<BaseTerrainStructure<?>> childStructuresQueue;
 
+    // Landscape command streams of structures, by compile key
+    private final HashMap<Object, CompiledStructure> compiledStructures = new HashMap<>();
+
+    // Optional fusion of repeated turn/tilt + segment commands into run commands
+    private boolean fuseSegmentRuns = false;
+    private final SegmentRunFuser segmentRunFuser = new SegmentRunFuser();
+    private final RecordingCommandBuffer fusionScratch = new RecordingCommandBuffer();
+    private final ArrayList<BaseTerrainStructure<?>> fusionChildren = new ArrayList<>();
+
+    // Background generation: worker thread and its handoff to the GL thread (null when synchronous)
+    private static final int DEFAULT_EVENT_RING_CAPACITY = 4096;
+    private final Object workerLock = new Object();
+    private final ConcurrentLinkedQueue<BaseTerrainStructure<?>> incomingStructures = new ConcurrentLinkedQueue<>();
+    private Thread workerThread;
+    private TerrainEventRing eventRing;
+    private volatile boolean workerRunning = false;
+    private volatile boolean workerIdle = false;    // waiting for structures, all its output published
+    private volatile Throwable workerFailure;
+
     // Core terrain components
     final TileBrush tileBrush;
     final AdvancedGridBrush advancedGridBrush;
     final BasicGridBrush basicGridBrush;
 
     /**
-     * Deque to hold all addons (objects placed on the terrain).
+     * All addons (objects placed on the terrain), bucketed by the tile they stand on.
      * Addons are managed separately from tiles and can be added/removed dynamically.
      */
-    final FixedMaxSizeDeque<Addon> addons;
+    final AddonStore addons;
+
+    // Scratch for queryAddonsOnTiles(), as large as the store so that no query outgrows it
+    private final Addon[] nearbyAddons;
 
     /**
      * The number of columns in the terrain grid.
@@ -368,18 +649,37 @@ public class Terrain implements GPUResourceOwner {
     private final GeneralExecutor generalExecutor;
     private final LandscapeCommandsExecutor landscapeCommandExecutor;
     private final AddonsCommandsExecutor addonsCommandExecutor;
+    private final CommandCostModel commandCostModel = new CommandCostModel();
+
+    // Source of the per-structure random streams, split in the order structures start
+    private final RandomStream structureSeeds = new RandomStream(GameRandom.nextSeed());
 
     public Terrain(int maxSegments, int nCols, Vector3D startMid, float segWidth, float segLength, float rowSpacing) {
+        this(maxSegments, nCols, startMid, segWidth, segLength, rowSpacing,
+                new TerrainArena(TerrainArena.Config.defaults().withMinTiles(
+                        TileManager.requiredTileSlots(maxSegments, DEFAULT_EVENT_RING_CAPACITY))));
+    }
+
+    /**
+     * Creates a terrain whose buffers all live in the given arena.
+     * The arena must not be shared with another live terrain, and its tile store needs at least
+     * {@link TileManager#requiredTileSlots}(maxSegments, 0) slots
+     * (with the event ring capacity as tiles in flight, if generating in the background).
+     */
+    public Terrain(int maxSegments, int nCols, Vector3D startMid, float segWidth, float segLength, float rowSpacing,
+                   TerrainArena arena) {
         this.nCols = nCols;
+        this.arena = arena;
 
         // Initialize the tile builder with the specified parameters
-        this.tileManager = new TileManager(maxSegments, nCols, startMid, segWidth, segLength, rowSpacing);
+        this.tileManager = new TileManager(maxSegments, nCols, startMid, segWidth, segLength, rowSpacing, arena);
 
         // Initialize the addons collection
-        this.addons = new FixedMaxSizeDeque<>(maxSegments + 1);
+        this.addons = new AddonStore(maxSegments + 1, arena.getTileStore().getCapacity());
+        this.nearbyAddons = new Addon[addons.getMaxSize()];
 
         // Initialize the command buffer for terrain generation
-        this.commandBuffer = new PreallocatedCommandBuffer();
+        this.commandBuffer = arena.getCommandBuffer();
 
         // Initialize the command execution system
         this.generalExecutor = new GeneralExecutor();
@@ -404,6 +704,9 @@ public class Terrain implements GPUResourceOwner {
         this.tileBrush = new TileBrush();
     }
 
+    /**
+     * Animates every live addon, since {@link #draw} shows all of them.
+     */
     public void updateBeforeDraw(float dt) {
         for (int i = 0; i < getAddonCount(); ++i) {
             getAddon(i).updateBeforeDraw(dt);
@@ -411,6 +714,10 @@ public class Terrain implements GPUResourceOwner {
         tileManager.updateBeforeDraw(dt);
     }
 
+    /**
+     * Draws the tiles and every live addon. Addons are not limited to the player's tile window:
+     * anything standing on the loaded terrain can be on screen, and eviction keeps only those.
+     */
     public void draw(FColor colorTheme, float[] vp, LightSource light) {
         tileManager.draw(colorTheme, vp, light);
         for (int i = 0; i < getAddonCount(); ++i) {
@@ -430,10 +737,8 @@ public class Terrain implements GPUResourceOwner {
      * This helps manage memory usage and maintain performance.
      */
     private void removeOldAddons(long playerTileId) {
-        while (!addons.isEmpty() && addons.getFirst().isGoneBy(playerTileId)) {
-            // TODO add some cleanup of stuff that's owned per-addon.
-            addons.popFirst();
-        }
+        // TODO add some cleanup of stuff that's owned per-addon.
+        addons.evictGone(playerTileId);
     }
 
     /**
@@ -449,6 +754,13 @@ public class Terrain implements GPUResourceOwner {
         return addons.size();
     }
 
+    /**
+     * The arena holding this terrain's buffers. Its high-water marks tell how much of it is really used.
+     */
+    public TerrainArena getArena() {
+        return arena;
+    }
+
     public Addon getAddon(int i) {
         if (i < 0 || i >= addons.size()) {
             throw new IndexOutOfBoundsException(ERROR_INVALID_ADDON_INDEX + i);
@@ -456,39 +768,331 @@ public class Terrain implements GPUResourceOwner {
         return addons.get(i);
     }
 
+    /**
+     * Finds the addons standing on the tiles with IDs firstTileId .. lastTileId, without looking at others.
+     * Pass the first and last tile of a {@link #queryTilesNear} window to get the addons on exactly those tiles.
+     * Read them with {@link #getNearbyAddon(int)} until the next query.
+     *
+     * @return number of addons found
+     */
+    public int queryAddonsOnTiles(long firstTileId, long lastTileId) {
+        if (firstTileId < 0 || lastTileId < firstTileId) {
+            throw new IllegalArgumentException("Invalid tile ID range: " + firstTileId + ".." + lastTileId);
+        }
+        return addons.queryNear(firstTileId, 0, (int) (lastTileId - firstTileId), nearbyAddons);
+    }
+
+    public Addon getNearbyAddon(int i) {
+        return nearbyAddons[i];
+    }
+
     /**
      * Adds a terrain structure to the waiting queue.
      * The structure will be processed later
      */
     public void enqueueStructure(BaseTerrainStructure<?> what) {
+        if (workerThread != null) {
+            incomingStructures.add(what);
+            synchronized (workerLock) {
+                workerLock.notify();
+            }
+            return;
+        }
         waitingStructuresQueue.enqueue(what);
     }
 
+    /**
+     * Makes generation reproducible: the same seed and the same structures give the same terrain
+     * and addons. Takes effect for structures that have not started yet.
+     */
+    public void setSeed(long seed) {
+        checkNotGeneratingInBackground();
+        structureSeeds.setSeed(seed);
+    }
+
+    /**
+     * Gives a structure that is starting its own stream, derived from the terrain's seed.
+     */
+    void seedStructure(BaseTerrainStructure<?> what) {
+        structureSeeds.splitInto(what.random);
+    }
+
+    /**
+     * When enabled, runs of identical "turn/tilt + add segment" commands emitted by structures
+     * are fused into single run commands before they are queued. The tiles come out bit-identical,
+     * only with less dispatch overhead and a smaller command buffer footprint.
+     * Set it before generation starts.
+     */
+    public void setSegmentRunFusion(boolean enabled) {
+        checkNotGeneratingInBackground();
+        this.fuseSegmentRuns = enabled;
+    }
+
+    /**
+     * Moves command interpretation (TileManager, grids, addon placement) to a dedicated worker thread.
+     * Finished tiles, ribbon pairs and placed addons are handed to the GL thread through a bounded
+     * event ring; call drainGeneratedGeometry() every frame to apply them.
+     * Until this is called (and after stopBackgroundGeneration()) everything runs synchronously.
+     */
+    public void startBackgroundGeneration() {
+        startBackgroundGeneration(DEFAULT_EVENT_RING_CAPACITY);
+    }
+
+    public void startBackgroundGeneration(int eventRingCapacity) {
+        if (workerThread != null) {
+            throw new IllegalStateException("Background generation already running");
+        }
+        // Every event in the ring may be a tile that is not in the deque yet
+        tileManager.checkTileStoreCapacity(eventRingCapacity);
+        eventRing = new TerrainEventRing(eventRingCapacity);
+        tileManager.setGeometrySink(eventRing);
+        workerFailure = null;
+        workerIdle = false;
+        workerRunning = true;
+        workerThread = new Thread(new GenerationWorker(), "TerrainGeneration");
+        workerThread.start();
+    }
+
+    /**
+     * Stops the worker after the command it is executing and applies everything it produced.
+     * Remaining commands and structures stay queued and can be generated synchronously.
+     */
+    public void stopBackgroundGeneration() {
+        if (workerThread == null) {
+            return;
+        }
+        workerRunning = false;
+        synchronized (workerLock) {
+            workerLock.notify();
+        }
+        // Keep draining, the worker may be waiting for space in the ring.
+        while (workerThread.isAlive()) {
+            eventRing.drain(tileManager.getDirectSink(), addons);
+            try {
+                workerThread.join(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        finishBackgroundGeneration();
+        BaseTerrainStructure<?> what;
+        while ((what = incomingStructures.poll()) != null) {
+            waitingStructuresQueue.enqueue(what);
+        }
+    }
+
+    /**
+     * Applies tiles, ribbon pairs and addons produced by the background worker. GL thread only.
+     *
+     * @return number of geometry events applied (0 when generating synchronously)
+     */
+    public int drainGeneratedGeometry() {
+        return drainGeneratedGeometry(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Same as above, but stops after the command during which maxEvents events were applied,
+     * leaving the rest for the next frame.
+     */
+    public int drainGeneratedGeometry(int maxEvents) {
+        if (workerFailure != null) {
+            throw new IllegalStateException("Terrain generation failed on worker thread", workerFailure);
+        }
+        if (eventRing == null) {
+            return 0;
+        }
+        return eventRing.drain(tileManager.getDirectSink(), addons, maxEvents);
+    }
+
+    /**
+     * @return true while enqueued structures are still being turned into tiles and addons:
+     * waiting structures or commands, or (in background) geometry not yet drained
+     */
+    public boolean isGenerationPending() {
+        if (workerThread == null) {
+            return commandBuffer.hasAnyCommands() || !waitingStructuresQueue.isEmpty();
+        }
+        // In this order: the worker marks itself idle only after taking every incoming
+        // structure and publishing everything it generated from them
+        return !incomingStructures.isEmpty() || !workerIdle || !eventRing.isDrained();
+    }
+
+    public boolean isGeneratingInBackground() {
+        return workerThread != null;
+    }
+
+    private void finishBackgroundGeneration() {
+        eventRing.drain(tileManager.getDirectSink(), addons);
+        tileManager.setGeometrySink(null);
+        eventRing = null;
+        workerThread = null;
+    }
+
+    /**
+     * Makes a placed addon visible - directly, or through the event ring when generating in background.
+     */
+    void publishAddon(Addon addon) {
+        if (eventRing != null) {
+            eventRing.pushAddon(addon);
+        } else {
+            addons.add(addon);
+        }
+    }
+
+    private void checkNotGeneratingInBackground() {
+        if (workerThread != null) {
+            throw new IllegalStateException("Terrain is being generated on the worker thread");
+        }
+    }
+
+    /**
+     * Emits the landscape commands of a structure that was just dequeued for interpretation.
+     * Structures with a compile key are generated once and replayed from the cache afterwards.
+     */
+    void emitLandscapeCommands(BaseTerrainStructure<?> what) {
+        Object key = what.getCompileKey();
+        if (key == null) {
+            if (fuseSegmentRuns) {
+                emitFused(what);
+            } else {
+                what.generateTiles(tileBrush);
+            }
+            return;
+        }
+        CompiledStructure compiled = compiledStructures.get(key);
+        if (compiled == null) {
+            compiled = CompiledStructure.compile(what, tileBrush, fuseSegmentRuns ? segmentRunFuser : null);
+            compiledStructures.put(key, compiled);
+        }
+        compiled.emit(childStructuresQueue, commandBuffer);
+    }
+
+    /**
+     * Records the structure's landscape commands into a reused scratch buffer,
+     * fuses segment runs and splices the result into the command buffer.
+     */
+    private void emitFused(BaseTerrainStructure<?> what) {
+        fusionScratch.clear();
+        tileBrush.beginRecording(fusionScratch, fusionChildren);
+        try {
+            what.generateTiles(tileBrush);
+        } finally {
+            tileBrush.endRecording();
+        }
+        for (int i = 0; i < fusionChildren.size(); ++i) {
+            childStructuresQueue.enqueue(fusionChildren.get(i));
+        }
+        fusionChildren.clear();
+        fusionScratch.rewrite(segmentRunFuser);
+        fusionScratch.replayInto(commandBuffer);
+    }
+
     /**
      * Generates terrain chunks by executing pending commands.
      * The number of chunks generated is limited to control frame time.
      */
     public void generateChunks(int nChunks) {
+        checkNotGeneratingInBackground();
         while (nChunks != 0) {
-            if (!commandBuffer.hasAnyCommands()) {
-                if (!waitingStructuresQueue.isEmpty()) {
-                    // Only now generate commands of structures waiting for generation of commands.
-                    // This is because there are no "fresh" commands to execute.
-                    commandBuffer.addCommand(CMD_START_STRUCTURE_LANDSCAPE, 0);
-                } else {
-                    // No commands waiting to execute AND no structures with ungenerated commands.
-                    break;
-                }
+            if (!ensureCommandAvailable()) {
+                break;
             }
             commandBuffer.executeFirstCommand(generalExecutor);
             --nChunks;
         }
     }
 
+    /**
+     * Executes pending commands until the wall-clock budget is used up.
+     * Stops before a command whose learned average cost would overrun the budget,
+     * but always executes at least one command so generation keeps progressing.
+     *
+     * @return nanoseconds actually spent (may exceed the budget by one command's misestimate)
+     */
+    public long generateFor(long budgetNanos) {
+        checkNotGeneratingInBackground();
+        final long start = System.nanoTime();
+        long used = 0;
+        boolean executedAny = false;
+        while (ensureCommandAvailable()) {
+            int opcode = commandBuffer.peekOpcode();
+            if (executedAny && used + commandCostModel.estimate(opcode) > budgetNanos) {
+                break;
+            }
+            long before = System.nanoTime();
+            commandBuffer.executeFirstCommand(generalExecutor);
+            long after = System.nanoTime();
+            commandCostModel.record(opcode, after - before);
+            used = after - start;
+            executedAny = true;
+        }
+        return used;
+    }
+
+    /**
+     * Makes sure there is a command to execute, starting the next waiting structure if needed.
+     *
+     * @return false if there is nothing left to generate
+     */
+    private boolean ensureCommandAvailable() {
+        if (commandBuffer.hasAnyCommands()) {
+            return true;
+        }
+        if (waitingStructuresQueue.isEmpty()) {
+            // No commands waiting to execute AND no structures with ungenerated commands.
+            return false;
+        }
+        // Only now generate commands of structures waiting for generation of commands.
+        // This is because there are no "fresh" commands to execute.
+        commandBuffer.addCommand1(CMD_START_STRUCTURE_LANDSCAPE, 0);
+        return true;
+    }
+
     /**
      * The command buffer that stores all pending terrain generation commands.
      */
-    final PreallocatedCommandBuffer commandBuffer;
+    final SegmentedCommandBuffer commandBuffer;
+
+    /**
+     * Owns the preallocated buffers of this terrain (rows, commands, segment tree nodes).
+     */
+    final TerrainArena arena;
+
+    /**
+     * Interprets commands on the worker thread, sleeping while there is nothing to generate.
+     */
+    private class GenerationWorker implements Runnable {
+        @Override
+        public void run() {
+            try {
+                while (workerRunning) {
+                    workerIdle = false;
+                    BaseTerrainStructure<?> what;
+                    while ((what = incomingStructures.poll()) != null) {
+                        waitingStructuresQueue.enqueue(what);
+                    }
+                    if (ensureCommandAvailable()) {
+                        commandBuffer.executeFirstCommand(generalExecutor);
+                        eventRing.endCommand();
+                        continue;
+                    }
+                    synchronized (workerLock) {
+                        workerIdle = true;
+                        if (workerRunning && incomingStructures.isEmpty()) {
+                            workerLock.wait();
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException | Error e) {
+                workerFailure = e;
+            } finally {
+                eventRing.publish();
+            }
+        }
+    }
 
     /**
      * General executor that dispatches commands to appropriate specialized executors.
@@ -497,19 +1101,19 @@ public class Terrain implements GPUResourceOwner {
      */
     private class GeneralExecutor implements CommandExecutor {
         @Override
-        public void execute(float[] buffer, int offset, int length) {
-            int code = (int) buffer[offset];
+        public void execute(int[] intLane, int intOffset, float[] floatLane, int floatOffset) {
+            int code = intLane[intOffset];
             if (landscapeCommandExecutor.canHandle(code)) {
-                landscapeCommandExecutor.execute(buffer, offset, length);
+                landscapeCommandExecutor.execute(intLane, intOffset, floatLane, floatOffset);
             } else if (addonsCommandExecutor.canHandle(code)) {
-                addonsCommandExecutor.execute(buffer, offset, length);
+                addonsCommandExecutor.execute(intLane, intOffset, floatLane, floatOffset);
             } else {
                 throw new IllegalArgumentException("Unhandled command code in GeneralExecutor: " + code);
             }
         }
 
         @Override
-        public boolean canHandle(float v) {
+        public boolean canHandle(int v) {
             return landscapeCommandExecutor.canHandle(v) || addonsCommandExecutor.canHandle(v);
         }
     }
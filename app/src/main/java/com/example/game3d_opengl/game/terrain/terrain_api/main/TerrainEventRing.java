@@ -0,0 +1,247 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.main;
+
+import com.example.game3d_opengl.game.terrain.terrain_api.addon.Addon;
+import com.example.game3d_opengl.game.terrain.terrain_api.addon.AddonStore;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded single-producer/single-consumer ring of geometry events.
+ * The generating thread writes tile/pair/addon events; the GL thread drains them
+ * into the tile deque, the landscape renderer and the addon deque.
+ * All slots are preallocated. Events become visible to the consumer only on publish(),
+ * which the producer calls after every finished command (see endCommand()), so the GL thread
+ * never sees half of an addSegment() (unless one command alone overflows the ring).
+ */
+class TerrainEventRing implements TileManager.GeometrySink {
+    private static final int EV_PUSH_TILE = 1;
+    private static final int EV_POP_TILE = 2;
+    private static final int EV_PUSH_PAIR = 3;
+    private static final int EV_POP_PAIR = 4;
+    private static final int EV_MARK_GAP = 5;
+    private static final int EV_PUSH_ADDON = 6;
+    private static final int EV_REPLACE_PAIR = 7;
+    private static final int EV_PATCH_TILE = 8;
+    private static final int EV_END_COMMAND = 9;
+
+    private static final int PAIR_FLOATS = 8;
+
+    private static final long FULL_RING_PARK_NANOS = 100_000L;
+
+    private final int mask;
+    private final int[] types;
+    private final Object[] refs;         // Tile / Addon
+    private final float[] pairs;         // 8 per slot: left xyz, right xyz, alphaL, alphaR (or a corner's xyz)
+
+    private final AtomicLong published = new AtomicLong(); // written by producer
+    private final AtomicLong consumed = new AtomicLong();  // written by consumer
+    private long writeIndex = 0;                           // producer-local
+
+    private volatile boolean closed = false;
+
+    /**
+     * @param capacity number of event slots, rounded up to a power of two
+     */
+    TerrainEventRing(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.types = new int[size];
+        this.refs = new Object[size];
+        this.pairs = new float[PAIR_FLOATS * size];
+    }
+
+    // ---- Producer side ------------------------------------------------------
+
+    private int claimSlot(int type) {
+        if (writeIndex - consumed.get() > mask) {
+            // Let the consumer see what we have so far, otherwise it could never free space.
+            publish();
+            while (writeIndex - consumed.get() > mask) {
+                if (closed) {
+                    throw new IllegalStateException("Event ring closed while waiting for space");
+                }
+                LockSupport.parkNanos(FULL_RING_PARK_NANOS);
+            }
+        }
+        int slot = (int) (writeIndex++ & mask);
+        types[slot] = type;
+        return slot;
+    }
+
+    /**
+     * Makes all events written so far visible to the consumer.
+     */
+    void publish() {
+        published.lazySet(writeIndex);
+    }
+
+    /**
+     * Marks the end of a command's events, where a limited drain may stop, and publishes them.
+     */
+    void endCommand() {
+        claimSlot(EV_END_COMMAND);
+        publish();
+    }
+
+    @Override
+    public boolean canAcceptTile() {
+        // Backpressure is applied by the ring filling up while the GL thread's deque is full.
+        return true;
+    }
+
+    @Override
+    public void pushTile(Tile tile) {
+        refs[claimSlot(EV_PUSH_TILE)] = tile;
+    }
+
+    @Override
+    public void popLastTile() {
+        claimSlot(EV_POP_TILE);
+    }
+
+    @Override
+    public void pushPair(float lx, float ly, float lz, float rx, float ry, float rz, float alphaL, float alphaR) {
+        writePair(claimSlot(EV_PUSH_PAIR), lx, ly, lz, rx, ry, rz, alphaL, alphaR);
+    }
+
+    @Override
+    public void replaceLastPair(float lx, float ly, float lz, float rx, float ry, float rz, float alphaL, float alphaR) {
+        writePair(claimSlot(EV_REPLACE_PAIR), lx, ly, lz, rx, ry, rz, alphaL, alphaR);
+    }
+
+    private void writePair(int slot, float lx, float ly, float lz, float rx, float ry, float rz, float alphaL, float alphaR) {
+        int base = PAIR_FLOATS * slot;
+        pairs[base] = lx;
+        pairs[base + 1] = ly;
+        pairs[base + 2] = lz;
+        pairs[base + 3] = rx;
+        pairs[base + 4] = ry;
+        pairs[base + 5] = rz;
+        pairs[base + 6] = alphaL;
+        pairs[base + 7] = alphaR;
+    }
+
+    @Override
+    public void patchFarLeft(Tile tile, float x, float y, float z) {
+        int slot = claimSlot(EV_PATCH_TILE);
+        refs[slot] = tile;
+        int base = PAIR_FLOATS * slot;
+        pairs[base] = x;
+        pairs[base + 1] = y;
+        pairs[base + 2] = z;
+    }
+
+    @Override
+    public void popPair() {
+        claimSlot(EV_POP_PAIR);
+    }
+
+    @Override
+    public void markGap() {
+        claimSlot(EV_MARK_GAP);
+    }
+
+    void pushAddon(Addon addon) {
+        refs[claimSlot(EV_PUSH_ADDON)] = addon;
+    }
+
+    // ---- Consumer side ------------------------------------------------------
+
+    /**
+     * Applies published events in order. Stops early (leaving the rest in the ring)
+     * when the tile or addon deque has no room for the next event.
+     *
+     * @return number of events applied
+     */
+    int drain(TileManager.GeometrySink target, AddonStore addons) {
+        return drain(target, addons, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Same as above, but also stops at the end of the first command that brings the number
+     * of applied events to maxEvents, so a frame's work is bounded without splitting a command.
+     */
+    int drain(TileManager.GeometrySink target, AddonStore addons, int maxEvents) {
+        long read = consumed.get();
+        final long end = published.get();
+        int applied = 0;
+        while (read < end) {
+            int slot = (int) (read & mask);
+            final int type = types[slot];
+            switch (type) {
+                case EV_PUSH_TILE:
+                    if (!target.canAcceptTile()) {
+                        consumed.lazySet(read);
+                        return applied;
+                    }
+                    target.pushTile((Tile) refs[slot]);
+                    break;
+                case EV_POP_TILE:
+                    target.popLastTile();
+                    break;
+                case EV_PATCH_TILE:
+                    int corner = PAIR_FLOATS * slot;
+                    target.patchFarLeft((Tile) refs[slot], pairs[corner], pairs[corner + 1], pairs[corner + 2]);
+                    break;
+                case EV_PUSH_PAIR:
+                    int base = PAIR_FLOATS * slot;
+                    target.pushPair(pairs[base], pairs[base + 1], pairs[base + 2],
+                            pairs[base + 3], pairs[base + 4], pairs[base + 5],
+                            pairs[base + 6], pairs[base + 7]);
+                    break;
+                case EV_REPLACE_PAIR:
+                    int at = PAIR_FLOATS * slot;
+                    target.replaceLastPair(pairs[at], pairs[at + 1], pairs[at + 2],
+                            pairs[at + 3], pairs[at + 4], pairs[at + 5],
+                            pairs[at + 6], pairs[at + 7]);
+                    break;
+                case EV_POP_PAIR:
+                    target.popPair();
+                    break;
+                case EV_MARK_GAP:
+                    target.markGap();
+                    break;
+                case EV_PUSH_ADDON:
+                    if (addons.isFull()) {
+                        consumed.lazySet(read);
+                        return applied;
+                    }
+                    addons.add((Addon) refs[slot]);
+                    break;
+                case EV_END_COMMAND:
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown event type: " + types[slot]);
+            }
+            refs[slot] = null;
+            ++read;
+            ++applied;
+            if (type == EV_END_COMMAND && applied >= maxEvents) {
+                break;
+            }
+        }
+        consumed.lazySet(read);
+        return applied;
+    }
+
+    /**
+     * @return true if every published event has been drained
+     */
+    boolean isDrained() {
+        return consumed.get() == published.get();
+    }
+
+    /**
+     * Wakes a producer blocked on a full ring with an exception, so its thread can exit.
+     */
+    void close() {
+        closed = true;
+    }
+}
@@ -13,9 +13,57 @@ import com.example.game3d_opengl.rendering.util3d.vector.Vector3D;
  * Represents a single tile in the terrain system.
  * Each tile is defined by four corner vertices and contains the geometry
  * needed for rendering and collision detection.
+ * The corners are stored in a {@link TileStore}; this object is a reusable view of one of its slots.
  */
 public class Tile implements PlayerInteractable {
-    private final long id;
+    // Flyweight over one slot of a TileStore; rebound when the slot is reused
+    private final TileStore store;
+    private final int slot;
+
+    private long id;
+    private boolean isEmptySegment;
+
+    // Object forms of the corners, created on first use (debugging, tests) and dropped on rebind
+    private Vector3D nearLeft, nearRight, farLeft, farRight;
+    private Vector3D[][] triangles;
+    // Only refers to this view, so it outlives rebinds
+    private final PlayerJumpInfo.PlayerHasFooting footingInfo;
+
+    // Per triangle: unit normal facing up and its offset (n.p = offset on the plane), then the two
+    // dual vectors of the triangle's edges with their offsets, so that p = v0 + a.(p-v0) e1 + b.(p-v0) e2
+    // for p in the plane. Computed whenever the corners are written, so collision queries never do it.
+    private static final int PLANE_FLOATS = 12;
+    private final float[] planes = new float[2 * PLANE_FLOATS];
+
+    Tile(TileStore store, int slot) {
+        this.store = store;
+        this.slot = slot;
+        this.footingInfo = new PlayerJumpInfo.PlayerHasFooting(this);
+    }
+
+    /**
+     * Points this view at a new tile. Its corners are written next, followed by cornersChanged().
+     */
+    void rebind(long id, boolean isEmptySegment) {
+        this.id = id;
+        this.isEmptySegment = isEmptySegment;
+        nearLeft = nearRight = farLeft = farRight = null;
+        triangles = null;
+    }
+
+    /**
+     * Recomputes everything derived from the corners, after they were written to the store.
+     */
+    void cornersChanged() {
+        nearLeft = nearRight = farLeft = farRight = null;
+        triangles = null;
+        computePlane(0, TileStore.NEAR_LEFT, TileStore.NEAR_RIGHT, TileStore.FAR_RIGHT);
+        computePlane(1, TileStore.NEAR_LEFT, TileStore.FAR_LEFT, TileStore.FAR_RIGHT);
+    }
+
+    int getSlot() {
+        return slot;
+    }
 
     public long getID() {
         return id;
@@ -29,58 +77,80 @@ public class Tile implements PlayerInteractable {
         return isEmptySegment;
     }
 
-    private final boolean isEmptySegment;
-
     /**
-     * All four corners of this tile:
+     * Coordinates of one of the four corners, see {@link TileStore#NEAR_LEFT} etc.:
      * nearLeft, nearRight = "close edge" (closer to player)
      * farLeft,  farRight  = "far edge" (farther from player)
      * These vertices are already de-facto in world space.
      * The terrain doesn't move, the player does. And the camera follows him around.
      */
-    public final Vector3D nearLeft, nearRight, farLeft, farRight;
-    
+    public float getX(int corner) {
+        return store.getX(slot, corner);
+    }
+
+    public float getY(int corner) {
+        return store.getY(slot, corner);
+    }
+
+    public float getZ(int corner) {
+        return store.getZ(slot, corner);
+    }
+
+    public Vector3D getNearLeft() {
+        if (nearLeft == null) {
+            nearLeft = corner(TileStore.NEAR_LEFT);
+        }
+        return nearLeft;
+    }
+
+    public Vector3D getNearRight() {
+        if (nearRight == null) {
+            nearRight = corner(TileStore.NEAR_RIGHT);
+        }
+        return nearRight;
+    }
+
+    public Vector3D getFarLeft() {
+        if (farLeft == null) {
+            farLeft = corner(TileStore.FAR_LEFT);
+        }
+        return farLeft;
+    }
+
+    public Vector3D getFarRight() {
+        if (farRight == null) {
+            farRight = corner(TileStore.FAR_RIGHT);
+        }
+        return farRight;
+    }
+
+    private Vector3D corner(int corner) {
+        return new Vector3D(getX(corner), getY(corner), getZ(corner));
+    }
+
     /**
      * The two triangles that make up this tile's surface.
      * Triangle 0: nearLeft -> nearRight -> farRight
      * Triangle 1: nearLeft -> farLeft -> farRight
-     * Used for collision detection and physics calculations.
-     */
-    public final Vector3D[][] triangles;
-
-    /**
-     * Constructs a Tile using 4 corners plus slope.
-     * The Polygon3D is created separately via factory method.
-     *\
-     * @param nl near-left corner vertex
-     * @param nr near-right corner vertex  
-     * @param fl far-left corner vertex
-     * @param fr far-right corner vertex
-     * @param l unique identifier for this tile
-     * @param isEmptySegment whether this tile represents empty space
+     * Built on first use after a rebind; collision and physics use the precomputed planes instead
+     * (see {@link #footingDistance}).
      */
-    Tile(Vector3D nl, Vector3D nr, Vector3D fl, Vector3D fr, long l, boolean isEmptySegment) {
-        this.nearLeft = nl;
-        this.nearRight = nr;
-        this.farLeft = fl;
-        this.farRight = fr;
-        this.id = l;
-        this.isEmptySegment = isEmptySegment;
-
-        // Create the two triangles that make up this tile
-        // This allows for proper collision detection and physics
-        this.triangles = new Vector3D[][]{
-                new Vector3D[]{this.nearLeft,this.nearRight,this.farRight},
-                new Vector3D[]{this.nearLeft,this.farLeft,this.farRight}
-        };
+    public Vector3D[][] getTriangles() {
+        if (triangles == null) {
+            triangles = new Vector3D[][]{
+                    new Vector3D[]{getNearLeft(), getNearRight(), getFarRight()},
+                    new Vector3D[]{getNearLeft(), getFarLeft(), getFarRight()}
+            };
+        }
+        return triangles;
     }
 
     @NonNull
     @Override
     public String toString() {
         return "TILE["
-                + "NEAR L=" + nearLeft + ", R=" + nearRight+"\n"
-                + "FAR  L=" + farLeft  + ", R=" + farRight+"\n"
+                + "NEAR L=" + getNearLeft() + ", R=" + getNearRight() + "\n"
+                + "FAR  L=" + getFarLeft() + ", R=" + getFarRight() + "\n"
                 + "]";
     }
 
@@ -88,30 +158,81 @@ public class Tile implements PlayerInteractable {
     public void interactWithPlayer(Player.InteractableAPI api) {
         if (isEmptySegment()) return;
         // do collision test against both triangles using player position and triangle normals
-        Vector3D playerPos = new Vector3D(api.getPlayerX(), api.getPlayerY(), api.getPlayerZ());
-        // Prepare jump info when collision is detected
-        if (collidesPlayer(playerPos)) {
-            PlayerJumpInfo.PlayerHasFooting info =
-                    new PlayerJumpInfo.PlayerHasFooting(this, triangles);
-            api.addInfo(info);
+        if (collidesPlayer(api.getPlayerX(), api.getPlayerY(), api.getPlayerZ())) {
+            api.addInfo(footingInfo);
         }
     }
 
-    private boolean collidesPlayer(Vector3D playerPos){
+    private boolean collidesPlayer(float x, float y, float z) {
         // For a collision, cast ray along inverted normal direction towards the tile and test distance
-        Vector3D n1 = GameMath.getNormal(triangles[0]);
-        Vector3D n2 = GameMath.getNormal(triangles[1]);
-        float d1 = GameMath.rayTriangleDistance(
-                playerPos,
-                n1.mult(-Math.signum(n1.y)),
-                triangles[0][0], triangles[0][1], triangles[0][2]
-        );
+        float d1 = footingDistance(0, x, y, z);
         if (!Float.isInfinite(d1) && d1 / Player.PLAYER_HEIGHT < 1.05f) return true;
-        float d2 = GameMath.rayTriangleDistance(
-                playerPos,
-                n2.mult(-Math.signum(n2.y)),
-                triangles[1][0], triangles[1][1], triangles[1][2]
-        );
+        float d2 = footingDistance(1, x, y, z);
         return !Float.isInfinite(d2) && d2 / Player.PLAYER_HEIGHT < 1.05f;
     }
+
+    /**
+     * Distance from the point down to triangle {@code tri} of {@link #getTriangles()}, along the
+     * triangle's normal. Positive infinity if the point is not above the triangle.
+     */
+    public float footingDistance(int tri, float x, float y, float z) {
+        final float[] p = planes;
+        final int b = tri * PLANE_FLOATS;
+        float t = p[b] * x + p[b + 1] * y + p[b + 2] * z - p[b + 3];
+        if (!(t > GameMath.EPSILON)) { // also false for a triangle that can't be stood on (NaN)
+            return Float.POSITIVE_INFINITY;
+        }
+        float u = p[b + 4] * x + p[b + 5] * y + p[b + 6] * z - p[b + 7];
+        if (u < 0f || u > 1f) {
+            return Float.POSITIVE_INFINITY;
+        }
+        float v = p[b + 8] * x + p[b + 9] * y + p[b + 10] * z - p[b + 11];
+        if (v < 0f || u + v > 1f) {
+            return Float.POSITIVE_INFINITY;
+        }
+        return t;
+    }
+
+    /**
+     * Writes the vector projected onto the plane of triangle {@code tri} to out[0..2].
+     */
+    public void projectOnto(int tri, float x, float y, float z, float[] out) {
+        final int b = tri * PLANE_FLOATS;
+        float nx = planes[b], ny = planes[b + 1], nz = planes[b + 2];
+        float along = nx * x + ny * y + nz * z;
+        out[0] = x - along * nx;
+        out[1] = y - along * ny;
+        out[2] = z - along * nz;
+    }
+
+    private void computePlane(int tri, int c0, int c1, int c2) {
+        final float x0 = getX(c0), y0 = getY(c0), z0 = getZ(c0);
+        final float e1x = getX(c1) - x0, e1y = getY(c1) - y0, e1z = getZ(c1) - z0;
+        final float e2x = getX(c2) - x0, e2y = getY(c2) - y0, e2z = getZ(c2) - z0;
+        final float nx = e1y * e2z - e1z * e2y;
+        final float ny = e1z * e2x - e1x * e2z;
+        final float nz = e1x * e2y - e1y * e2x;
+        final float sq = nx * nx + ny * ny + nz * nz;
+        final int b = tri * PLANE_FLOATS;
+        // Vertical or degenerate: a ray along the normal never hits it from above
+        if (ny == 0f || sq < GameMath.EPSILON * GameMath.EPSILON) {
+            planes[b + 3] = Float.NaN;
+            return;
+        }
+        final float up = (float) (Math.signum(ny) / Math.sqrt(sq));
+        planes[b] = nx * up;
+        planes[b + 1] = ny * up;
+        planes[b + 2] = nz * up;
+        planes[b + 3] = planes[b] * x0 + planes[b + 1] * y0 + planes[b + 2] * z0;
+        // a = (e2 x n) / |n|^2, b = (n x e1) / |n|^2
+        final float inv = 1f / sq;
+        planes[b + 4] = (e2y * nz - e2z * ny) * inv;
+        planes[b + 5] = (e2z * nx - e2x * nz) * inv;
+        planes[b + 6] = (e2x * ny - e2y * nx) * inv;
+        planes[b + 7] = planes[b + 4] * x0 + planes[b + 5] * y0 + planes[b + 6] * z0;
+        planes[b + 8] = (ny * e1z - nz * e1y) * inv;
+        planes[b + 9] = (nz * e1x - nx * e1z) * inv;
+        planes[b + 10] = (nx * e1y - ny * e1x) * inv;
+        planes[b + 11] = planes[b + 8] * x0 + planes[b + 9] * y0 + planes[b + 10] * z0;
+    }
 }
\ No newline at end of file
@@ -2,18 +2,23 @@ package com.example.game3d_opengl.game.terrain.terrain_api.main;
 
 import static com.example.game3d_opengl.game.util.GameMath.EPSILON;
 import static com.example.game3d_opengl.game.util.GameMath.PI;
-import static com.example.game3d_opengl.game.util.GameMath.rotateAroundTwoPoints;
 import static com.example.game3d_opengl.game.util.GameMath.tan;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.TileStore.FAR_LEFT;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.TileStore.FAR_RIGHT;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.TileStore.NEAR_LEFT;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.TileStore.NEAR_RIGHT;
+import static com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.OverflowingPreallocatedRowInfoBuffer.LS;
+import static com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.OverflowingPreallocatedRowInfoBuffer.LS_LAST;
+import static com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.OverflowingPreallocatedRowInfoBuffer.RS;
+import static com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.OverflowingPreallocatedRowInfoBuffer.RS_LAST;
 import static com.example.game3d_opengl.rendering.util3d.vector.Vector3D.V3;
 import static java.lang.Math.abs;
-import static java.lang.Math.max;
-import static java.lang.Math.min;
 import static java.lang.Math.sqrt;
 
 import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.FixedMaxSizeDeque;
 import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.OverflowingPreallocatedRowInfoBuffer;
 import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.OverflowingPreallocatedCoordinateBuffer;
-import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.OverflowingPreallocatedSegmentHistoryBuffer;
+import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.TerrainArena;
 import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.TerrainLandscapeRenderer;
 import com.example.game3d_opengl.rendering.GPUResourceOwner;
 import com.example.game3d_opengl.rendering.util3d.FColor;
@@ -25,6 +30,8 @@ import com.example.game3d_opengl.game.LightSource;
  * – left edge points, right edge points and per-row metadata – that are always
  * size-synchronised.  Row placement is driven by a single "centre-line"
  * distance counter so it remains consistent even when the tile turns.
+ * Tile corners and segment history live in a {@link TileStore}; all geometry is computed
+ * on primitive floats, so adding segments does not allocate.
  */
 public class TileManager implements GPUResourceOwner {
 
@@ -37,12 +44,24 @@ public class TileManager implements GPUResourceOwner {
     private final OverflowingPreallocatedCoordinateBuffer leftSideBuffer;
     private final OverflowingPreallocatedCoordinateBuffer rightSideBuffer;
     private final OverflowingPreallocatedRowInfoBuffer rowInfoBuffer;
-    private final OverflowingPreallocatedSegmentHistoryBuffer segmentHistoryBuffer;
+    private final TileStore tileStore;
 
     private final FixedMaxSizeDeque<Tile> tiles;    // includes the guardian
+    // Number of tiles ever pushed to the deque minus those popped from its back, and its value
+    // when the tile in each store slot was pushed: deque index = that value - (pushed - size)
+    private int dequePushes = 0;
+    private final int[] dequePushesBySlot;
     private final TerrainLandscapeRenderer landscapeRenderer;
 
-    private Tile lastTile;                          // newest tile (back of deque)
+    // Newest tile and the one before it, as seen by the generating thread.
+    // Tracked here instead of read from the deque, because with a background generator
+    // the deque is owned by the GL thread and lags behind generation.
+    private Tile lastTile;
+    private Tile prevTile;
+
+    // Where tiles and ribbon pairs go: straight into the deque/renderer, or to an event ring
+    private final GeometrySink directSink = new DirectSink();
+    private GeometrySink sink = directSink;
 
     /*–––––––––––– Information about the state of the geometry ––––––––––––*/
     private float dHorizontalAng = 0f, currHorizontalAng = 0f, currVerticalAng = 0f;
@@ -50,6 +69,12 @@ public class TileManager implements GPUResourceOwner {
     private long nextId = 0L;
 
     private float alphaL = 1, alphaR = 1;
+    // Alphas of the newest ribbon pair (the far edge of lastTile)
+    private float lastPairAlphaL = 1, lastPairAlphaR = 1;
+
+    // When false, the last tile is removed and re-added instead of patched (kept for comparison tests).
+    // Both give the same geometry and ribbon; only the patched tile's ID differs (see patchLastTile)
+    private boolean patchFarEdge = true;
 
     // ============================================================================
     // PUBLIC CONSTRUCTOR
@@ -59,33 +84,71 @@ public class TileManager implements GPUResourceOwner {
                        Vector3D startMid,
                        float segWidth, float segLength,
                        float rowSpacing) {
+        this(maxSegments, nCols, startMid, segWidth, segLength, rowSpacing,
+                new TerrainArena(TerrainArena.Config.defaults().withMinTiles(requiredTileSlots(maxSegments, 0))));
+    }
+
+    /**
+     * Same as above, but keeps rows and tiles in the buffers of the given arena.
+     */
+    public TileManager(int maxSegments, int nCols,
+                       Vector3D startMid,
+                       float segWidth, float segLength,
+                       float rowSpacing,
+                       TerrainArena arena) {
 
         this.rowSpacing = rowSpacing;
         this.segLength = segLength;
         this.nCols = nCols;
 
         /*–––– data structures ––––*/
-        this.leftSideBuffer = new OverflowingPreallocatedCoordinateBuffer();
-        this.rightSideBuffer = new OverflowingPreallocatedCoordinateBuffer();
-        this.rowInfoBuffer = new OverflowingPreallocatedRowInfoBuffer();
+        this.leftSideBuffer = arena.getLeftSideBuffer();
+        this.rightSideBuffer = arena.getRightSideBuffer();
+        this.rowInfoBuffer = arena.getRowInfoBuffer();
 
         this.tiles = new FixedMaxSizeDeque<>(maxSegments + 1);
-        this.segmentHistoryBuffer = new OverflowingPreallocatedSegmentHistoryBuffer();
+        this.tileStore = arena.getTileStore();
+        checkTileStoreCapacity(0);
+        this.dequePushesBySlot = new int[tileStore.getCapacity()];
 
         /*–––– guardian tile (length close to 0) ––––*/
-        Vector3D startLeft = V3(startMid.sub(segWidth / 2, 0, 0));
-        Vector3D startRight = V3(startMid.add(segWidth / 2, 0, 0));
+        float half = segWidth / 2;
+        float lx = startMid.x - half, rx = startMid.x + half;
 
         this.landscapeRenderer = new TerrainLandscapeRenderer();
 
-        addTile(startLeft,
-                startRight,
-                startLeft.sub(0, 0, 0.01f),   // farLeft = nearLeft shifted a bit so len>0
-                startRight.sub(0, 0, 0.01f),  // farRight
+        // farLeft/farRight = near corners shifted a bit so len>0
+        addTile(lx, startMid.y, startMid.z,
+                rx, startMid.y, startMid.z,
+                lx, startMid.y, startMid.z - 0.01f,
+                rx, startMid.y, startMid.z - 0.01f,
                 true, false, false);
 
     }
 
+    /**
+     * Number of tile store slots needed so that no tile that can still be referenced
+     * (in the deque, or in flight to it) shares its slot with a newer one.
+     * Every new segment uses two IDs (the previous tile is re-added under one of them, or it is
+     * skipped when the tile is patched), hence the factor of two.
+     *
+     * @param tilesInFlight tiles generated but not yet in the deque (e.g. in an event ring)
+     */
+    public static int requiredTileSlots(int maxSegments, int tilesInFlight) {
+        return 2 * (maxSegments + 1 + tilesInFlight) + 4;
+    }
+
+    /**
+     * Throws if the tile store is too small for this manager's deque plus the given tiles in flight.
+     */
+    void checkTileStoreCapacity(int tilesInFlight) {
+        int required = requiredTileSlots(tiles.getMaxSize() - 1, tilesInFlight);
+        if (tileStore.getCapacity() < required) {
+            throw new IllegalArgumentException("Tile store has " + tileStore.getCapacity()
+                    + " slots, but " + required + " are needed");
+        }
+    }
+
     // ============================================================================
     // PUBLIC METHODS (THE API)
     // ============================================================================
@@ -94,60 +157,213 @@ public class TileManager implements GPUResourceOwner {
      * Creates one additional tile, continuing from {@code lastTile}'s far edge.
      */
     public void addSegment(boolean isEmpty) {
-        if (tiles.size() == tiles.getMaxSize()) {
+        if (!sink.canAcceptTile()) {
             throw new IllegalStateException("Already at capacity");
         }
 
-        Vector3D l1 = lastTile.farLeft;
-        Vector3D r1 = lastTile.farRight;
-        Vector3D near_l1 = lastTile.nearLeft;
+        final int last = lastTile.getSlot();
+        final float l1x = tileStore.getX(last, FAR_LEFT), l1y = tileStore.getY(last, FAR_LEFT), l1z = tileStore.getZ(last, FAR_LEFT);
+        final float r1x = tileStore.getX(last, FAR_RIGHT), r1y = tileStore.getY(last, FAR_RIGHT), r1z = tileStore.getZ(last, FAR_RIGHT);
 
-        Vector3D axis = V3(0, -1, 0);
+        // Far-left edge direction, flattened
+        float line1x = l1x - tileStore.getX(last, NEAR_LEFT);
+        float line1y = 0f;
+        float line1z = l1z - tileStore.getZ(last, NEAR_LEFT);
+        float baseX = r1x - l1x, baseY = r1y - l1y, baseZ = r1z - l1z;
+        float dLen = (float) (Math.sqrt(baseX * baseX + baseY * baseY + baseZ * baseZ) * tan(dHorizontalAng));
 
-        Vector3D line1 = l1.sub(near_l1).setY(0);
-        Vector3D baseLen = r1.sub(l1);
-        float dLen = (float) (Math.sqrt(baseLen.sqlen()) * tan(dHorizontalAng));
+        // Move the far-left corner back along the edge, so the tile turns around its far-right corner
+        float shift = (float) ((double) (dLen) / sqrt(line1x * line1x + line1y * line1y + line1z * line1z));
+        final float newL1x = l1x - line1x * shift;
+        final float newL1y = l1y - line1y * shift;
+        final float newL1z = l1z - line1z * shift;
 
-        Vector3D newL1 = l1.sub(line1.withLen(dLen));
-
-        assert abs(newL1.y - r1.y) < 0.01f;
+        assert abs(newL1y - r1y) < 0.01f;
 
         dHorizontalAng = 0.0f;
 
-        Vector3D dir = rotateAroundTwoPoints(
-                V3(0, 0, 0),
-                r1.sub(newL1),
-                axis,
-                PI / 2 + currVerticalAng).withLen(segLength);
-
-        Vector3D l2 = newL1.add(dir);
-        Vector3D r2 = r1.add(dir);
-
+        // Direction of the new tile: "down" rotated around the far edge by 90 degrees + tilt
+        computeSegmentDirection(r1x - newL1x, r1y - newL1y, r1z - newL1z, PI / 2 + currVerticalAng);
+        final float dirX = dirOutX, dirY = dirOutY, dirZ = dirOutZ;
 
         // Update the last tile's far edge by replacing it with [newL1,newR1].
-        SegmentHistory lastHistory = segmentHistoryBuffer.get(segmentHistoryBuffer.size()-1);
-        boolean wasLastLiftedUp = lastHistory.isFirstLiftedUp;
-        Tile oldLast = removeLastTile();
-
-        if(tiles.isEmpty()){ // re-adding guardian - oldLast.isEmptySegment() -> true
-            // so oldLast.isFirstLiftedUp() -> false, and isFirstLiftedUp doesn't matter
-            addTile(oldLast.nearLeft, oldLast.nearRight, newL1, r1, oldLast.isEmptySegment(), false, false);
-        }else{
-            addTile(oldLast.nearLeft, oldLast.nearRight, newL1, r1, oldLast.isEmptySegment(), tiles.getLast().isEmptySegment(), wasLastLiftedUp);
+        final boolean wasLastEmpty = lastTile.isEmptySegment();
+        if (patchFarEdge) {
+            patchLastTile(newL1x, newL1y, newL1z);
+        } else {
+            boolean wasLastLiftedUp = tileStore.isFirstLiftedUp[last];
+            Tile oldLast = removeLastTile();
+            int old = oldLast.getSlot();
+            float onlX = tileStore.getX(old, NEAR_LEFT), onlY = tileStore.getY(old, NEAR_LEFT), onlZ = tileStore.getZ(old, NEAR_LEFT);
+            float onrX = tileStore.getX(old, NEAR_RIGHT), onrY = tileStore.getY(old, NEAR_RIGHT), onrZ = tileStore.getZ(old, NEAR_RIGHT);
+
+            if(lastTile == null){ // re-adding guardian - oldLast.isEmptySegment() -> true
+                // so oldLast.isFirstLiftedUp() -> false, and isFirstLiftedUp doesn't matter
+                addTile(onlX, onlY, onlZ, onrX, onrY, onrZ, newL1x, newL1y, newL1z, r1x, r1y, r1z,
+                        oldLast.isEmptySegment(), false, false);
+            }else{
+                addTile(onlX, onlY, onlZ, onrX, onrY, onrZ, newL1x, newL1y, newL1z, r1x, r1y, r1z,
+                        oldLast.isEmptySegment(), lastTile.isEmptySegment(), wasLastLiftedUp);
+            }
         }
 
         // Add the new segment tile.
-        addTile(newL1.addY(pendingLift),
-                r1.addY(pendingLift),
-                l2.addY(pendingLift),
-                r2.addY(pendingLift), isEmpty, oldLast.isEmptySegment(), (abs(pendingLift) > EPSILON));
+        float lift = pendingLift;
+        addTile(newL1x, newL1y + lift, newL1z,
+                r1x, r1y + lift, r1z,
+                newL1x + dirX, (newL1y + dirY) + lift, newL1z + dirZ,
+                r1x + dirX, (r1y + dirY) + lift, r1z + dirZ,
+                isEmpty, wasLastEmpty, (abs(pendingLift) > EPSILON));
         pendingLift = 0;
     }
 
+    /**
+     * Moves the far-left corner of the last tile and updates only what depends on it:
+     * the tile's left side points, its rows and the newest ribbon pair.
+     * Geometry and ribbon are the same as after removeLastTile() followed by re-adding the tile.
+     * The tile keeps its ID and slot; the ID the re-added tile would have taken is skipped,
+     * so IDs still advance by two per segment.
+     */
+    private void patchLastTile(float flX, float flY, float flZ) {
+        final Tile tile = lastTile;
+        final int slot = tile.getSlot();
+        final boolean moved = Float.floatToRawIntBits(flX) != Float.floatToRawIntBits(tileStore.getX(slot, FAR_LEFT))
+                || Float.floatToRawIntBits(flY) != Float.floatToRawIntBits(tileStore.getY(slot, FAR_LEFT))
+                || Float.floatToRawIntBits(flZ) != Float.floatToRawIntBits(tileStore.getZ(slot, FAR_LEFT));
+
+        ++nextId;
+        if (moved) {
+            // The tile may already be in the deque of another thread, so the sink writes the corner
+            sink.patchFarLeft(tile, flX, flY, flZ);
+        }
+
+        if (tile.isEmptySegment()) {
+            // No rows. Removing a tile always pops the newest pair, even for empty tiles that pushed none.
+            // Done here as well, so both paths leave the same ribbon.
+            sink.popPair();
+            return;
+        }
+
+        if (moved) {
+            regenerateLeftSide(tile, flX, flY, flZ);
+        }
+
+        final float frX = tileStore.getX(slot, FAR_RIGHT), frY = tileStore.getY(slot, FAR_RIGHT), frZ = tileStore.getZ(slot, FAR_RIGHT);
+        if (prevTile.isEmptySegment()) {
+            // The tile starts a span. Re-adding it pushed its near pair a second time and marked
+            // a gap before it, which also masks the first quad of the ribbon; do the same.
+            sink.popPair();
+            sink.pushPair(tileStore.getX(slot, NEAR_LEFT), tileStore.getY(slot, NEAR_LEFT), tileStore.getZ(slot, NEAR_LEFT),
+                    tileStore.getX(slot, NEAR_RIGHT), tileStore.getY(slot, NEAR_RIGHT), tileStore.getZ(slot, NEAR_RIGHT),
+                    alphaL, alphaR);
+            sink.markGap();
+            sink.pushPair(flX, flY, flZ, frX, frY, frZ, alphaL, alphaR);
+            if (tileStore.isFirstLiftedUp[slot]) {
+                sink.markGap();
+            }
+        } else if (moved || alphaL != lastPairAlphaL || alphaR != lastPairAlphaR) {
+            // Masks of the pair are kept, so a gap marked for a lifted next tile stays
+            sink.replaceLastPair(flX, flY, flZ, frX, frY, frZ, alphaL, alphaR);
+        }
+        lastPairAlphaL = alphaL;
+        lastPairAlphaR = alphaR;
+    }
+
+    /**
+     * Redoes the left side points and the rows of the last tile after its far-left corner moved
+     * to (flX, flY, flZ). The right side does not depend on that corner, so it is kept.
+     */
+    private void regenerateLeftSide(Tile tile, float flX, float flY, float flZ) {
+        final int slot = tile.getSlot();
+        final int prev = prevTile.getSlot();
+        final boolean bridged = prevTile.isEmptySegment() || tileStore.isFirstLiftedUp[slot];
+        final int bridge = bridged ? 1 : 0;
+
+        for (int i = bridge; i < tileStore.leftAddedCnt[slot]; ++i) {
+            leftSideBuffer.removeLast();
+        }
+        for (int i = 0; i < tileStore.rowsAddedCnt[slot]; ++i) {
+            rowInfoBuffer.removeLast();
+        }
+
+        final float nlX = tileStore.getX(slot, NEAR_LEFT), nlY = tileStore.getY(slot, NEAR_LEFT), nlZ = tileStore.getZ(slot, NEAR_LEFT);
+        final float eLx = flX - nlX;
+        final float eLy = flY - nlY;
+        final float eLz = flZ - nlZ;
+        float lenL = (float) sqrt(eLx * eLx + eLy * eLy + eLz * eLz);
+
+        float prevLeftoverL = tileStore.leftoverL[prev];
+        int cntL = bridge + addSidePoints(leftSideBuffer, nlX, nlY, nlZ, eLx, eLy, eLz, lenL,
+                rowSpacing - (bridged ? 0 : prevLeftoverL));
+
+        int nextRowLeft = bridged ? leftSideBuffer.size() - cntL + 1 : tileStore.nextRowLeftInd[prev];
+        int nextRowRight = bridged
+                ? rightSideBuffer.size() - tileStore.rightAddedCnt[slot] + 1 : tileStore.nextRowRightInd[prev];
+        int cntRows = addRows(tile.getID(), nextRowLeft, nextRowRight);
+
+        tileStore.setHistory(slot, cntL, tileStore.rightAddedCnt[slot], cntRows,
+                tileStore.isFirstLiftedUp[slot],
+                nextRowLeft + cntRows,
+                nextRowRight + cntRows,
+                (prevLeftoverL + lenL) % rowSpacing, tileStore.leftoverR[slot]);
+    }
+
+    // Output of computeSegmentDirection(), kept in fields to avoid allocating
+    private float dirOutX, dirOutY, dirOutZ;
+
+    /**
+     * Rotates (0,-1,0) around the axis (ax,ay,az) by the given angle (Rodrigues' formula)
+     * and scales the result to the segment length.
+     * Same arithmetic, in the same order, as GameMath.rotateAroundTwoPoints(...).withLen(segLength).
+     */
+    private void computeSegmentDirection(float ax, float ay, float az, float angle) {
+        // translated point to rotate: (0,-1,0)
+        final float tx = 0f, ty = -1f, tz = 0f;
+
+        float axisLen = (float) sqrt(ax * ax + ay * ay + az * az);
+        float kx = ax / axisLen, ky = ay / axisLen, kz = az / axisLen;
+
+        float cosTheta = (float) Math.cos(angle);
+        float sinTheta = (float) Math.sin(angle);
+
+        float term1x = tx * cosTheta, term1y = ty * cosTheta, term1z = tz * cosTheta;
+        float term2x = (ky * tz - kz * ty) * sinTheta;
+        float term2y = (kz * tx - kx * tz) * sinTheta;
+        float term2z = (kx * ty - ky * tx) * sinTheta;
+        float k3 = (kx * tx + ky * ty + kz * tz) * (1 - cosTheta);
+        float term3x = kx * k3, term3y = ky * k3, term3z = kz * k3;
+
+        // + 0f: translating back by the axis start point (the origin) - keeps the sign of zeros identical
+        float rx = ((term1x + term2x) + term3x) + 0f;
+        float ry = ((term1y + term2y) + term3y) + 0f;
+        float rz = ((term1z + term2z) + term3z) + 0f;
+
+        float scale = (float) ((double) (segLength) / sqrt(rx * rx + ry * ry + rz * rz));
+        dirOutX = rx * scale;
+        dirOutY = ry * scale;
+        dirOutZ = rz * scale;
+    }
+
     public void liftUp(float dy) {
         this.pendingLift += dy;
     }
 
+    /**
+     * Adds {@code count} tiles in one go. Same as repeating, for every tile:
+     * addHorizontalAngle(dH) if {@code turn}, addVerticalAngle(dV) if {@code tilt}, addSegment(false).
+     */
+    public void addSegmentRun(int count, boolean turn, float dH, boolean tilt, float dV) {
+        for (int i = 0; i < count; ++i) {
+            if (turn) {
+                addHorizontalAngle(dH);
+            }
+            if (tilt) {
+                addVerticalAngle(dV);
+            }
+            addSegment(false);
+        }
+    }
+
     public void addVerticalAngle(float angle) {
         currVerticalAng += angle;
     }
@@ -183,10 +399,9 @@ public class TileManager implements GPUResourceOwner {
         landscapeRenderer.cleanupGPUResourcesRecursivelyOnContextLoss();
 
         // TODO this should only do GPU stuff. Make separate method for buffers etc
-        leftSideBuffer.free();
-        rightSideBuffer.free();
-        rowInfoBuffer.free();
-        segmentHistoryBuffer.free();
+        leftSideBuffer.clear();
+        rightSideBuffer.clear();
+        rowInfoBuffer.clear();
     }
 
     /**
@@ -215,16 +430,44 @@ public class TileManager implements GPUResourceOwner {
         return tiles.get(i);
     }
 
+    /**
+     * @return deque index of the tile with the given ID or, if it isn't in the deque (the ID was
+     * skipped, the tile was re-added under a newer ID, or removed), of the first tile with a greater ID; the last tile
+     * if there is none. -1 if there are no tiles.
+     */
+    public int getTileIndexNear(long tileId) {
+        int size = tiles.size();
+        if (size == 0) {
+            return -1;
+        }
+        if (tileId >= tiles.getFirst().getID() && tileId <= tiles.getLast().getID()) {
+            int i = dequePushesBySlot[tileStore.slotOf(tileId)] - (dequePushes - size);
+            if (i >= 0 && i < size && tiles.get(i).getID() == tileId) {
+                return i;
+            }
+        }
+        int lo = 0, hi = size - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (tiles.get(mid).getID() < tileId) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
     public long getTileIdForRow(int row) {
         if (row <= 0) {
             // Guardian row or invalid – fall back to first real row.
-            return rowInfoBuffer.get(0).tileID;
+            return rowInfoBuffer.getTileID(0);
         }
-        return rowInfoBuffer.get(row - 1).tileID;
+        return rowInfoBuffer.getTileID(row - 1);
     }
 
     public Vector3D[] getField(int row, int col) {
-        GridRowInfo info = rowInfoBuffer.get(row - 1);
+        int info = row - 1;
         return new Vector3D[]{
                 getGridPoint(info, col - 1, true),
                 getGridPoint(info, col, true),
@@ -257,6 +500,13 @@ public class TileManager implements GPUResourceOwner {
         return res;
     }
 
+    /**
+     * @see TerrainLandscapeRenderer#toArrayDebug()
+     */
+    float[] ribbonToArrayDebug() {
+        return landscapeRenderer.toArrayDebug();
+    }
+
     public void setUpcomingAlphas(float alphaL, float alphaR){
         this.alphaL = alphaL;
         this.alphaR = alphaR;
@@ -269,89 +519,107 @@ public class TileManager implements GPUResourceOwner {
     /**
      * Helper: builds a new tile and fully integrates it with row/buffer tracking.
      */
-    private void addTile(Vector3D nl, Vector3D nr, Vector3D fl, Vector3D fr, boolean isEmptySegment, boolean wasPreviousEmpty, boolean isFirstLiftedUp) {
-
-        Tile tile = new Tile(nl, nr, fl, fr, nextId++, isEmptySegment);
-        tiles.pushBack(tile);
+    private void addTile(float nlX, float nlY, float nlZ,
+                         float nrX, float nrY, float nrZ,
+                         float flX, float flY, float flZ,
+                         float frX, float frY, float frZ,
+                         boolean isEmptySegment, boolean wasPreviousEmpty, boolean isFirstLiftedUp) {
+
+        Tile tile = tileStore.bind(nextId++, isEmptySegment);
+        int slot = tile.getSlot();
+        tileStore.setCorner(slot, NEAR_LEFT, nlX, nlY, nlZ);
+        tileStore.setCorner(slot, NEAR_RIGHT, nrX, nrY, nrZ);
+        tileStore.setCorner(slot, FAR_LEFT, flX, flY, flZ);
+        tileStore.setCorner(slot, FAR_RIGHT, frX, frY, frZ);
+        tile.cornersChanged();
+
+        sink.pushTile(tile);
         if(!isEmptySegment) {
             if (wasPreviousEmpty) {
                 // Start a new visible span: add the near edge of this tile
-                landscapeRenderer.pushBack(nl, nr, alphaL, alphaR);
+                sink.pushPair(nlX, nlY, nlZ, nrX, nrY, nrZ, alphaL, alphaR);
                 // Mark the gap between previous (last) pair and this new near edge so it won't render
-                landscapeRenderer.markGapBetweenLastTwoPairs();
+                sink.markGap();
             }
             // Always append far edge; next tile will reuse it as its near edge
-            landscapeRenderer.pushBack(fl, fr, alphaL, alphaR);
+            sink.pushPair(flX, flY, flZ, frX, frY, frZ, alphaL, alphaR);
+            lastPairAlphaL = alphaL;
+            lastPairAlphaR = alphaR;
             if (isFirstLiftedUp) {
                 // If the next tile will be vertically lifted, mask out the seam across to the next near edge
-                landscapeRenderer.markGapBetweenLastTwoPairs();
+                sink.markGap();
             }
         }
 
         generateRowsForTile(tile, wasPreviousEmpty, isFirstLiftedUp);
 
+        prevTile = lastTile;
         lastTile = tile;
     }
 
     /**
      * Removes the current last tile (never the guardian) and rolls back all
      * associated buffers so the builder can overwrite that tile.
+     * The returned tile keeps its data in the store until its slot is reused.
      */
     private Tile removeLastTile() {
         // It is legal to remove the guardian (only inside addSegment() ) – the very
         // next addTile() will immediately create a proper first tile.  We only
         // forbid popping when the deque is already empty (should never happen).
-        if (tiles.isEmpty()) {
+        if (lastTile == null) {
             throw new IllegalStateException("Tile deque is empty");
         }
 
-        Tile oldLast = tiles.popLast();
+        Tile oldLast = lastTile;
+        sink.popLastTile();
 
-        SegmentHistory history = segmentHistoryBuffer.pop();
-        for (int i = 0; i < history.leftAddedCnt; ++i) {
-            leftSideBuffer.pop();
+        int slot = oldLast.getSlot();
+        for (int i = 0; i < tileStore.leftAddedCnt[slot]; ++i) {
+            leftSideBuffer.removeLast();
         }
-        for (int i = 0; i < history.rightAddedCnt; ++i) {
-            rightSideBuffer.pop();
+        for (int i = 0; i < tileStore.rightAddedCnt[slot]; ++i) {
+            rightSideBuffer.removeLast();
         }
-        for (int i = 0; i < history.rowsAddedCnt; ++i) rowInfoBuffer.removeLast();
+        for (int i = 0; i < tileStore.rowsAddedCnt[slot]; ++i) rowInfoBuffer.removeLast();
 
 
-        landscapeRenderer.popBack();
-        lastTile = tiles.peekLast();
+        sink.popPair();
+        // Only one level of undo is needed: the next addTile() always follows.
+        lastTile = prevTile;
+        prevTile = null;
         return oldLast;
     }
 
     private void generateRowsForTile(Tile tile, boolean wasPreviousEmpty, boolean isFirstLiftedUp) {
-        Vector3D nl = tile.nearLeft;
-        Vector3D nr = tile.nearRight;
-        Vector3D fl = tile.farLeft;
-        Vector3D fr = tile.farRight;
+        final int slot = tile.getSlot();
 
         if (tile.isEmptySegment()) {
-            segmentHistoryBuffer.add(
+            tileStore.setHistory(slot,
                     0, 0,
                     0,
                     false,
-                    // segment history objects corresponding to empty segments should never be used.
+                    // segment history of empty segments should never be used.
                     // hopefully these values will crash the program whenever this rule is broken
                     -1000000000, -1000000000,
-                    0, 0,
-                    nl, nr
+                    0, 0
             );
             return;
         }
 
-        SegmentHistory lastHistory = segmentHistoryBuffer.get(segmentHistoryBuffer.size() - 1);
+        final float nlX = tileStore.getX(slot, NEAR_LEFT), nlY = tileStore.getY(slot, NEAR_LEFT), nlZ = tileStore.getZ(slot, NEAR_LEFT);
+        final float nrX = tileStore.getX(slot, NEAR_RIGHT), nrY = tileStore.getY(slot, NEAR_RIGHT), nrZ = tileStore.getZ(slot, NEAR_RIGHT);
 
+        // History of the tile this one continues (the current last tile)
+        final int lastSlot = lastTile.getSlot();
+        final float prevLeftoverL = tileStore.leftoverL[lastSlot], prevLeftoverR = tileStore.leftoverR[lastSlot];
 
-        float lastLeftOverL = lastHistory.leftoverL, lastLeftOverR = lastHistory.leftoverR;
+        float lastLeftOverL = prevLeftoverL, lastLeftOverR = prevLeftoverR;
         int cntL = 0, cntR = 0, cntRows = 0;
 
         if (wasPreviousEmpty || isFirstLiftedUp) {
             // First real tile – add bridging row along its near edge so the grid starts flush.
-            leftSideBuffer.addPos(nl.x, nl.y, nl.z);
-            rightSideBuffer.addPos(nr.x, nr.y, nr.z);
+            leftSideBuffer.addPos(nlX, nlY, nlZ);
+            rightSideBuffer.addPos(nrX, nrY, nrZ);
             ++cntL;
             ++cntR;
             lastLeftOverL = 0;
@@ -359,82 +627,79 @@ public class TileManager implements GPUResourceOwner {
         }
 
         int nextRowLeft = (wasPreviousEmpty || isFirstLiftedUp)
-                ? leftSideBuffer.size() : lastHistory.nextRowLeftInd;
+                ? leftSideBuffer.size() : tileStore.nextRowLeftInd[lastSlot];
         int nextRowRight = (wasPreviousEmpty || isFirstLiftedUp)
-                ? rightSideBuffer.size() : lastHistory.nextRowRightInd;
+                ? rightSideBuffer.size() : tileStore.nextRowRightInd[lastSlot];
 
-        Vector3D eL = fl.sub(nl);
-        Vector3D eR = fr.sub(nr);
+        final float eLx = tileStore.getX(slot, FAR_LEFT) - nlX;
+        final float eLy = tileStore.getY(slot, FAR_LEFT) - nlY;
+        final float eLz = tileStore.getZ(slot, FAR_LEFT) - nlZ;
+        final float eRx = tileStore.getX(slot, FAR_RIGHT) - nrX;
+        final float eRy = tileStore.getY(slot, FAR_RIGHT) - nrY;
+        final float eRz = tileStore.getZ(slot, FAR_RIGHT) - nrZ;
 
-        float lenL = (float) sqrt(eL.sqlen());
-        float lenR = (float) sqrt(eR.sqlen());
+        float lenL = (float) sqrt(eLx * eLx + eLy * eLy + eLz * eLz);
+        float lenR = (float) sqrt(eRx * eRx + eRy * eRy + eRz * eRz);
 
 
         // distance from tile.near edge to first potential row position
-        float firstDistL = (rowSpacing - lastLeftOverL);
-        for (float d = firstDistL; d <= lenL; d += rowSpacing) {
-            float fraction = d / lenL;
-            Vector3D leftP = nl.add(eL.mult(fraction));
-            leftSideBuffer.addPos(leftP.x, leftP.y, leftP.z);
-            ++cntL;
-        }
-
+        cntL += addSidePoints(leftSideBuffer, nlX, nlY, nlZ, eLx, eLy, eLz, lenL, rowSpacing - lastLeftOverL);
+        cntR += addSidePoints(rightSideBuffer, nrX, nrY, nrZ, eRx, eRy, eRz, lenR, rowSpacing - lastLeftOverR);
 
-        float firstDistR = (rowSpacing - lastLeftOverR);
-        for (float d = firstDistR; d <= lenR; d += rowSpacing) {
-            float fraction = d / lenR;
-            Vector3D rightP = nr.add(eR.mult(fraction));
+        cntRows = addRows(tile.getID(), nextRowLeft, nextRowRight);
+        nextRowLeft += cntRows;
+        nextRowRight += cntRows;
 
-            rightSideBuffer.addPos(rightP.x, rightP.y, rightP.z);
-            ++cntR;
-        }
+        float currLeftoverL = (prevLeftoverL + lenL) % rowSpacing;
+        float currLeftoverR = (prevLeftoverR + lenR) % rowSpacing;
 
-        for (; nextRowLeft < leftSideBuffer.size() && nextRowRight < rightSideBuffer.size();
-             ++nextRowLeft, ++nextRowRight) {
-            Vector3D leftP = V3(
-                    leftSideBuffer.getX(nextRowLeft),
-                    leftSideBuffer.getY(nextRowLeft),
-                    leftSideBuffer.getZ(nextRowLeft)
-            );
-            Vector3D rightP = V3(
-                    rightSideBuffer.getX(nextRowRight),
-                    rightSideBuffer.getY(nextRowRight),
-                    rightSideBuffer.getZ(nextRowRight)
-            );
-            Vector3D lastLeftP = V3(
-                    leftSideBuffer.getX(nextRowLeft - 1),
-                    leftSideBuffer.getY(nextRowLeft - 1),
-                    leftSideBuffer.getZ(nextRowLeft - 1)
-            );
-            Vector3D lastRightP = V3(
-                    rightSideBuffer.getX(nextRowRight - 1),
-                    rightSideBuffer.getY(nextRowRight - 1),
-                    rightSideBuffer.getZ(nextRowRight - 1)
-            );
-            rowInfoBuffer.add(tile.getID(),leftP, rightP,
-                    lastLeftP, lastRightP);
-            ++cntRows;
-        }
-
-
-        float currLeftoverL = (lastHistory.leftoverL + lenL) % rowSpacing;
-        float currLeftoverR = (lastHistory.leftoverR + lenR) % rowSpacing;
-
-        segmentHistoryBuffer.add(cntL, cntR, cntRows,
+        tileStore.setHistory(slot, cntL, cntR, cntRows,
                 isFirstLiftedUp,
                 nextRowLeft,
                 nextRowRight,
-                currLeftoverL, currLeftoverR, nl, nr);
+                currLeftoverL, currLeftoverR);
 
     }
 
-    private Vector3D getGridPoint(GridRowInfo rowInfo, int c, boolean isTop) {
-        if (isTop) {
-            Vector3D edge = rowInfo.RS.sub(rowInfo.LS);
-            return rowInfo.LS.add(edge.mult((float) c / nCols));
+    /**
+     * Adds points along the edge (ex,ey,ez) from (nx,ny,nz), every rowSpacing starting at firstDist.
+     *
+     * @return number of points added
+     */
+    private int addSidePoints(OverflowingPreallocatedCoordinateBuffer side,
+                              float nx, float ny, float nz,
+                              float ex, float ey, float ez,
+                              float len, float firstDist) {
+        int cnt = 0;
+        for (float d = firstDist; d <= len; d += rowSpacing) {
+            float fraction = d / len;
+            side.addPos(nx + ex * fraction, ny + ey * fraction, nz + ez * fraction);
+            ++cnt;
+        }
+        return cnt;
+    }
+
+    /**
+     * Pairs side points from the given indices on, as long as both sides have one.
+     *
+     * @return number of rows added
+     */
+    private int addRows(long tileId, int nextRowLeft, int nextRowRight) {
+        int cnt = 0;
+        for (; nextRowLeft < leftSideBuffer.size() && nextRowRight < rightSideBuffer.size();
+             ++nextRowLeft, ++nextRowRight) {
+            rowInfoBuffer.add(tileId, leftSideBuffer, nextRowLeft, rightSideBuffer, nextRowRight);
+            ++cnt;
         }
-        Vector3D edge = rowInfo.RS_last.sub(rowInfo.LS_last);
-        return rowInfo.LS_last.add(edge.mult((float) c / nCols));
+        return cnt;
+    }
+
+    private Vector3D getGridPoint(int row, int c, boolean isTop) {
+        int l = isTop ? LS : LS_LAST, r = isTop ? RS : RS_LAST;
+        Vector3D left = V3(rowInfoBuffer.getX(row, l), rowInfoBuffer.getY(row, l), rowInfoBuffer.getZ(row, l));
+        Vector3D right = V3(rowInfoBuffer.getX(row, r), rowInfoBuffer.getY(row, r), rowInfoBuffer.getZ(row, r));
+        Vector3D edge = right.sub(left);
+        return left.add(edge.mult((float) c / nCols));
     }
 
     public void updateBeforeDraw(float dt){
@@ -448,58 +713,103 @@ public class TileManager implements GPUResourceOwner {
     public void updateAfterDraw(float dt){
     }
 
+    /**
+     * Chooses how addSegment() moves the previous tile's far edge: patched in place (the default),
+     * or the tile removed and re-added. Both give the same geometry; the slower path is kept
+     * for comparison tests.
+     */
+    void setFarEdgePatching(boolean enabled) {
+        this.patchFarEdge = enabled;
+    }
+
+    /**
+     * Routes finished tiles and ribbon pairs to another sink (e.g. an event ring read by the GL thread).
+     * Pass null to write straight into this manager's deque and renderer again.
+     */
+    void setGeometrySink(GeometrySink sink) {
+        this.sink = sink == null ? directSink : sink;
+    }
+
+    /**
+     * @return sink that writes straight into this manager's deque and renderer (GL thread only)
+     */
+    GeometrySink getDirectSink() {
+        return directSink;
+    }
+
     // ============================================================================
     // INNER CLASSES
     // ============================================================================
 
-    public static class SegmentHistory {
+    /**
+     * Receives the output of tile generation, in generation order.
+     */
+    interface GeometrySink {
+        boolean canAcceptTile();
+
+        void pushTile(Tile tile);
+
+        void popLastTile();
 
-        public int leftAddedCnt = 0, rightAddedCnt = 0, rowsAddedCnt = 0;
-        public boolean isFirstLiftedUp = false;
-        public int nextRowLeftInd = 0, nextRowRightInd = 0;
-        public float leftoverL, leftoverR;
-        public Vector3D nl = V3(0, 0, 0), nr = V3(0, 0, 0);
+        void pushPair(float lx, float ly, float lz, float rx, float ry, float rz, float alphaL, float alphaR);
 
+        void popPair();
+
+        /**
+         * Moves the far-left corner of a tile that was already pushed.
+         */
+        void patchFarLeft(Tile tile, float x, float y, float z);
+
+        /**
+         * Replaces the newest pair, keeping its gap marks.
+         */
+        void replaceLastPair(float lx, float ly, float lz, float rx, float ry, float rz, float alphaL, float alphaR);
+
+        void markGap();
+    }
 
-        public SegmentHistory() {
+    private class DirectSink implements GeometrySink {
+        @Override
+        public boolean canAcceptTile() {
+            return tiles.size() < tiles.getMaxSize();
         }
 
-        public void set(int leftAddedCnt, int rightAddedCnt,
-                        int rowsAddedCnt,
-                        boolean isFirstLiftedUp,
-                        int nextRowLeftInd, int nextRowRightInd,
-                        float leftoverL, float leftoverR,
-                        Vector3D nl, Vector3D nr) {
-            this.leftAddedCnt = leftAddedCnt;
-            this.rightAddedCnt = rightAddedCnt;
-            this.rowsAddedCnt = rowsAddedCnt;
-            this.isFirstLiftedUp = isFirstLiftedUp;
-            this.nextRowLeftInd = nextRowLeftInd;
-            this.nextRowRightInd = nextRowRightInd;
-            this.leftoverL = leftoverL;
-            this.leftoverR = leftoverR;
-            this.nl = nl;
-            this.nr = nr;
+        @Override
+        public void pushTile(Tile tile) {
+            tiles.pushBack(tile);
+            dequePushesBySlot[tile.getSlot()] = dequePushes++;
+        }
+
+        @Override
+        public void popLastTile() {
+            tiles.popLast();
+            --dequePushes;
         }
-    }
 
-    public static class GridRowInfo {
+        @Override
+        public void pushPair(float lx, float ly, float lz, float rx, float ry, float rz, float alphaL, float alphaR) {
+            landscapeRenderer.pushBack(lx, ly, lz, rx, ry, rz, alphaL, alphaR);
+        }
 
-        public long tileID = -1;
-        public Vector3D LS = V3(0, 0, 0), RS = V3(0, 0, 0);
-        public Vector3D LS_last = V3(0, 0, 0), RS_last = V3(0, 0, 0);
+        @Override
+        public void patchFarLeft(Tile tile, float x, float y, float z) {
+            tileStore.setCorner(tile.getSlot(), FAR_LEFT, x, y, z);
+            tile.cornersChanged();
+        }
+
+        @Override
+        public void popPair() {
+            landscapeRenderer.popBack();
+        }
 
-        public GridRowInfo() {
+        @Override
+        public void replaceLastPair(float lx, float ly, float lz, float rx, float ry, float rz, float alphaL, float alphaR) {
+            landscapeRenderer.replaceBack(lx, ly, lz, rx, ry, rz, alphaL, alphaR);
         }
 
-        public void set(long tileID,
-                        Vector3D LS, Vector3D RS,
-                        Vector3D LS_last, Vector3D RS_last) {
-            this.tileID = tileID;
-            this.LS = LS;
-            this.RS = RS;
-            this.LS_last = LS_last;
-            this.RS_last = RS_last;
+        @Override
+        public void markGap() {
+            landscapeRenderer.markGapBetweenLastTwoPairs();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,106 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.main;
+
+/**
+ * Primitive storage for tiles. Corners and per-tile segment history live in flat arrays,
+ * in the slot {@code id & (capacity - 1)} of the tile's ID. Every slot has one {@link Tile}
+ * object that is rebound whenever the slot is reused, so adding a tile allocates nothing
+ * once the store has wrapped around.
+ * <p>
+ * The capacity must cover the range of tile IDs that can be alive at once
+ * (see {@link TileManager#requiredTileSlots}). A Tile reference kept for longer than that
+ * sees whatever tile was written into its slot later.
+ */
+public class TileStore {
+    public static final int NEAR_LEFT = 0, NEAR_RIGHT = 1, FAR_LEFT = 2, FAR_RIGHT = 3;
+    static final int FLOATS_PER_TILE = 12;   // 4 corners * xyz
+
+    private final int mask;
+    private final Tile[] views;
+
+    final float[] corners;
+
+    // Segment history: how many side points and rows adding the tile produced (so it can be undone),
+    // where row pairing continues and how far past the last row each side ended.
+    final int[] leftAddedCnt, rightAddedCnt, rowsAddedCnt;
+    final int[] nextRowLeftInd, nextRowRightInd;
+    final boolean[] isFirstLiftedUp;
+    final float[] leftoverL, leftoverR;
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two
+     */
+    public TileStore(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Tile store capacity must be positive: " + capacity);
+        }
+        int slots = Integer.highestOneBit(capacity);
+        if (slots < capacity) {
+            slots <<= 1;
+        }
+        this.mask = slots - 1;
+        this.views = new Tile[slots];
+        this.corners = new float[slots * FLOATS_PER_TILE];
+        this.leftAddedCnt = new int[slots];
+        this.rightAddedCnt = new int[slots];
+        this.rowsAddedCnt = new int[slots];
+        this.nextRowLeftInd = new int[slots];
+        this.nextRowRightInd = new int[slots];
+        this.isFirstLiftedUp = new boolean[slots];
+        this.leftoverL = new float[slots];
+        this.leftoverR = new float[slots];
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    int slotOf(long tileId) {
+        return (int) (tileId & mask);
+    }
+
+    /**
+     * Points the slot of the given ID at a new tile and returns its view.
+     * Corners and history of the slot still hold the previous tile's values until written.
+     */
+    Tile bind(long tileId, boolean isEmptySegment) {
+        int slot = slotOf(tileId);
+        Tile view = views[slot];
+        if (view == null) {
+            view = views[slot] = new Tile(this, slot);
+        }
+        view.rebind(tileId, isEmptySegment);
+        return view;
+    }
+
+    void setCorner(int slot, int corner, float x, float y, float z) {
+        int base = slot * FLOATS_PER_TILE + corner * 3;
+        corners[base] = x;
+        corners[base + 1] = y;
+        corners[base + 2] = z;
+    }
+
+    float getX(int slot, int corner) {
+        return corners[slot * FLOATS_PER_TILE + corner * 3];
+    }
+
+    float getY(int slot, int corner) {
+        return corners[slot * FLOATS_PER_TILE + corner * 3 + 1];
+    }
+
+    float getZ(int slot, int corner) {
+        return corners[slot * FLOATS_PER_TILE + corner * 3 + 2];
+    }
+
+    void setHistory(int slot, int leftAdded, int rightAdded, int rowsAdded,
+                    boolean firstLiftedUp, int nextRowLeft, int nextRowRight,
+                    float leftL, float leftR) {
+        leftAddedCnt[slot] = leftAdded;
+        rightAddedCnt[slot] = rightAdded;
+        rowsAddedCnt[slot] = rowsAdded;
+        isFirstLiftedUp[slot] = firstLiftedUp;
+        nextRowLeftInd[slot] = nextRowLeft;
+        nextRowRightInd[slot] = nextRowRight;
+        leftoverL[slot] = leftL;
+        leftoverR[slot] = leftR;
+    }
+}
@@ -1,10 +1,22 @@
 package com.example.game3d_opengl.game.terrain.terrain_api.main;
 
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_BEGIN_TRANSACTION;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_COMMIT_TRANSACTION;
 import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_FINISH_STRUCTURE_ADDONS;
 import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_RESERVE_HORIZONTAL;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_RESERVE_RANDOM_BATCH;
 import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_RESERVE_RANDOM_HORIZONTAL;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_RESERVE_RANDOM_RECT;
 import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_RESERVE_RANDOM_VERTICAL;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_RESERVE_RECT;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_ROLLBACK_TRANSACTION;
 import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_RESERVE_VERTICAL;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_RESERVE_WEIGHTED_RANDOM;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_RESERVE_NEAREST_HORIZONTAL;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_RESERVE_NEAREST_VERTICAL;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_RESERVE_WEIGHTED_RANDOM_RECT;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_SET_COLUMN_WEIGHT;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_SET_ROW_WEIGHTS;
 import static com.example.game3d_opengl.game.terrain.terrain_api.main.AddonsCommandsExecutor.CMD_START_STRUCTURE_ADDONS;
 import static com.example.game3d_opengl.game.terrain.terrain_api.main.LandscapeCommandsExecutor.CMD_ADD_H_ANG;
 import static com.example.game3d_opengl.game.terrain.terrain_api.main.LandscapeCommandsExecutor.CMD_ADD_SEG;
@@ -16,16 +28,16 @@ import static com.example.game3d_opengl.game.terrain.terrain_api.main.LandscapeC
 
 @SuppressWarnings("unused")
 class Util {
-    static void printCommand(float[] buffer, int offset) {
-        int code = (int)(buffer[offset]);
+    static void printCommand(int[] intLane, int intOffset, float[] floatLane, int floatOffset) {
+        int code = intLane[intOffset];
         if (code == CMD_SET_H_ANG) {
-            System.out.println("SET H ANG " + buffer[offset + 2]);
+            System.out.println("SET H ANG " + floatLane[floatOffset]);
         } else if (code == CMD_SET_V_ANG) {
-            System.out.println("SET V ANG " + buffer[offset + 2]);
+            System.out.println("SET V ANG " + floatLane[floatOffset]);
         } else if (code == CMD_ADD_V_ANG) {
-            System.out.println("ADD V ANG " + buffer[offset + 2]);
+            System.out.println("ADD V ANG " + floatLane[floatOffset]);
         } else if (code == CMD_ADD_H_ANG) {
-            System.out.println("ADD H ANG " + buffer[offset + 2]);
+            System.out.println("ADD H ANG " + floatLane[floatOffset]);
         } else if (code == CMD_ADD_SEG) {
             System.out.println("ADD SEG");
         } else if (code == CMD_START_STRUCTURE_LANDSCAPE) {
@@ -33,19 +45,47 @@ class Util {
         } else if (code == CMD_FINISH_STRUCTURE_LANDSCAPE) {
             System.out.println("FINISH STRUCTURE LANDSCAPE");
         } else if (code == CMD_RESERVE_VERTICAL) {
-            int row = (int) buffer[offset + 2];
-            int col = (int) buffer[offset + 3];
-            int segLength = (int) buffer[offset + 4];
+            int row = intLane[intOffset + 1];
+            int col = intLane[intOffset + 2];
+            int segLength = intLane[intOffset + 3];
             System.out.println("RESERVE VERTICAL" + row + "," + col + "," + segLength);
         } else if (code == CMD_RESERVE_HORIZONTAL) {
-            int row = (int) buffer[offset + 2];
-            int col = (int) buffer[offset + 3];
-            int segLength = (int) buffer[offset + 4];
+            int row = intLane[intOffset + 1];
+            int col = intLane[intOffset + 2];
+            int segLength = intLane[intOffset + 3];
             System.out.println("RESERVE HORIZONTAL " + row + "," + col + "," + segLength);
         } else if (code == CMD_RESERVE_RANDOM_VERTICAL) {
-            System.out.println("RESERVE RANDOM VERTICAL " + buffer[offset + 2]);
+            System.out.println("RESERVE RANDOM VERTICAL " + intLane[intOffset + 1]);
         } else if (code == CMD_RESERVE_RANDOM_HORIZONTAL) {
-            System.out.println("RESERVE RANDOM HORIZONTAL " + buffer[offset + 2]);
+            System.out.println("RESERVE RANDOM HORIZONTAL " + intLane[intOffset + 1]);
+        } else if (code == CMD_RESERVE_RANDOM_BATCH) {
+            System.out.println("RESERVE RANDOM BATCH " + intLane[intOffset + 1] + " x " + intLane[intOffset + 2]
+                    + (intLane[intOffset + 3] != 0 ? " VERTICAL" : " HORIZONTAL"));
+        } else if (code == CMD_RESERVE_RECT) {
+            int size = intLane[intOffset + 3];
+            System.out.println("RESERVE RECT " + intLane[intOffset + 1] + "," + intLane[intOffset + 2]
+                    + " " + (size >>> 16) + "x" + (size & 0xFFFF));
+        } else if (code == CMD_RESERVE_RANDOM_RECT) {
+            System.out.println("RESERVE RANDOM RECT " + intLane[intOffset + 1] + "x" + intLane[intOffset + 2]);
+        } else if (code == CMD_SET_COLUMN_WEIGHT) {
+            System.out.println("SET COLUMN WEIGHT " + intLane[intOffset + 1] + " = " + intLane[intOffset + 2]);
+        } else if (code == CMD_SET_ROW_WEIGHTS) {
+            System.out.println("SET ROW WEIGHTS " + intLane[intOffset + 1] + ".." + intLane[intOffset + 2]
+                    + " = " + intLane[intOffset + 3]);
+        } else if (code == CMD_RESERVE_WEIGHTED_RANDOM) {
+            System.out.println("RESERVE WEIGHTED RANDOM " + (intLane[intOffset + 2] != 0 ? "VERTICAL " : "HORIZONTAL ")
+                    + intLane[intOffset + 1]);
+        } else if (code == CMD_RESERVE_WEIGHTED_RANDOM_RECT) {
+            System.out.println("RESERVE WEIGHTED RANDOM RECT " + intLane[intOffset + 1] + "x" + intLane[intOffset + 2]);
+        } else if (code == CMD_RESERVE_NEAREST_VERTICAL || code == CMD_RESERVE_NEAREST_HORIZONTAL) {
+            System.out.println("RESERVE NEAREST " + (code == CMD_RESERVE_NEAREST_VERTICAL ? "VERTICAL " : "HORIZONTAL ")
+                    + intLane[intOffset + 1] + "," + intLane[intOffset + 2] + " " + intLane[intOffset + 3]);
+        } else if (code == CMD_BEGIN_TRANSACTION) {
+            System.out.println("BEGIN TRANSACTION");
+        } else if (code == CMD_COMMIT_TRANSACTION) {
+            System.out.println("COMMIT TRANSACTION");
+        } else if (code == CMD_ROLLBACK_TRANSACTION) {
+            System.out.println("ROLLBACK TRANSACTION");
         } else if (code == CMD_FINISH_STRUCTURE_ADDONS) {
             System.out.println("FINISH STRUCTURE ADDONS");
         } else if (code == CMD_START_STRUCTURE_ADDONS) {
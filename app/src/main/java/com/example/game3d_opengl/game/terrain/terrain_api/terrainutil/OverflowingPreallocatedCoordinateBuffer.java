@@ -3,15 +3,27 @@ package com.example.game3d_opengl.game.terrain.terrain_api.terrainutil;
 public class OverflowingPreallocatedCoordinateBuffer {
     private final OverflowingPreallocatedFloatBuffer floatBuffer;
 
-    public void free(){
-        clear();
-        floatBuffer.free();
-    }
-
     public OverflowingPreallocatedCoordinateBuffer() {
         this.floatBuffer = new OverflowingPreallocatedFloatBuffer();
     }
 
+    /**
+     * Uses the given array as storage; its length should be a multiple of 3.
+     */
+    public OverflowingPreallocatedCoordinateBuffer(float[] storage) {
+        if (storage.length % 3 != 0) {
+            throw new IllegalArgumentException("Storage length must be a multiple of 3: " + storage.length);
+        }
+        this.floatBuffer = new OverflowingPreallocatedFloatBuffer(storage);
+    }
+
+    /**
+     * Returns the largest number of coordinates held at once since creation (clear() keeps it).
+     */
+    public int getHighWaterMark() {
+        return floatBuffer.getHighWaterMark() / 3;
+    }
+
     /**
      * Adds one 3D coordinate (x, y, z) to the buffer.
      * Internally, this consumes three floats in the floatBuffer.
@@ -58,6 +70,18 @@ public class OverflowingPreallocatedCoordinateBuffer {
         floatBuffer.clear();
     }
 
+    /**
+     * Drops the newest coordinate.
+     */
+    public void removeLast() {
+        if (size() == 0) {
+            throw new IllegalStateException("Empty buffer");
+        }
+        floatBuffer.pop();
+        floatBuffer.pop();
+        floatBuffer.pop();
+    }
+
     public float[] pop(){
         if(size() == 0){
             throw new IllegalStateException("Empty buffer");
@@ -1,43 +1,31 @@
 package com.example.game3d_opengl.game.terrain.terrain_api.terrainutil;
 
 public class OverflowingPreallocatedFloatBuffer {
-    private static final int MAX_SIZE = 100_000;
-    private static final int MAX_BUFFER_COUNT = 4;
-    private static final float[][] BUFFERS = new float[MAX_BUFFER_COUNT][MAX_SIZE];
-    private static final boolean[] isTaken = new boolean[MAX_BUFFER_COUNT];
+    private static final int DEFAULT_CAPACITY = 100_000;
 
-    private static int findFreeSlot() {
-        for (int i = 0; i < MAX_BUFFER_COUNT; i++) {
-            if (!isTaken[i]) {
-                return i;
-            }
-        }
-        return -1;
-    }
-
-    private final int mySlot;
     private final float[] myBuffer;
+    private final int capacity;
 
     // Tracks the “start” (front) of the buffer in myBuffer (cyclic index).
     private int head = 0;
     // Number of elements currently stored in the buffer.
     private int mySize = 0;
+    // Largest size reached since creation (clear() keeps it)
+    private int highWaterMark = 0;
 
     public OverflowingPreallocatedFloatBuffer() {
-        int slot = findFreeSlot();
-        if (slot == -1) {
-            throw new IllegalStateException("No more available preallocated buffers.");
-        }
-        mySlot = slot;
-        myBuffer = BUFFERS[mySlot];
-        isTaken[mySlot] = true;
+        this(new float[DEFAULT_CAPACITY]);
     }
 
     /**
-     * Releases this buffer slot so it can be reused by another instance.
+     * Uses the given array as storage (e.g. owned by a TerrainArena). Its length is the capacity.
      */
-    public void free() {
-        isTaken[mySlot] = false;
+    public OverflowingPreallocatedFloatBuffer(float[] storage) {
+        if (storage.length == 0) {
+            throw new IllegalArgumentException("Storage must not be empty");
+        }
+        this.myBuffer = storage;
+        this.capacity = storage.length;
     }
 
     /**
@@ -45,19 +33,22 @@ public class OverflowingPreallocatedFloatBuffer {
      * If the buffer is at capacity, overwrites (removes) the first element.
      */
     public void add(float x) {
-        if (mySize < MAX_SIZE) {
+        if (mySize < capacity) {
             // There is space; put the element at the end.
-            myBuffer[(head + mySize) % MAX_SIZE] = x;
+            myBuffer[(head + mySize) % capacity] = x;
             mySize++;
+            if (mySize > highWaterMark) {
+                highWaterMark = mySize;
+            }
         } else {
             // Buffer is full; overwrite the oldest element (at 'head').
             myBuffer[head] = x;
-            head = (head + 1) % MAX_SIZE; // Move head forward.
+            head = (head + 1) % capacity; // Move head forward.
         }
     }
 
     /**
-     * Empties this buffer (but does not release its slot).
+     * Empties this buffer in O(1). Storage is kept.
      */
     public void clear() {
         head = 0;
@@ -71,6 +62,17 @@ public class OverflowingPreallocatedFloatBuffer {
         return mySize;
     }
 
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the largest number of floats held at once since creation (clear() keeps it).
+     */
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+
     /**
      * Returns the float at the specified index i, starting from the oldest element.
      */
@@ -78,7 +80,7 @@ public class OverflowingPreallocatedFloatBuffer {
         if (i < 0 || i >= mySize) {
             throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + mySize);
         }
-        return myBuffer[(head + i) % MAX_SIZE];
+        return myBuffer[(head + i) % capacity];
     }
 
     /**
@@ -89,8 +91,8 @@ public class OverflowingPreallocatedFloatBuffer {
         if (mySize == 0) {
             throw new IllegalStateException("Cannot pop from an empty buffer.");
         }
-        // The most recently added float is at index = (head + mySize - 1) modulo MAX_SIZE
-        int idx = (head + mySize - 1) % MAX_SIZE;
+        // The most recently added float is at index = (head + mySize - 1) modulo capacity
+        int idx = (head + mySize - 1) % capacity;
         float value = myBuffer[idx];
         mySize--;
         return value;
@@ -1,108 +1,118 @@
 package com.example.game3d_opengl.game.terrain.terrain_api.terrainutil;
 
-import com.example.game3d_opengl.game.terrain.terrain_api.main.TileManager.GridRowInfo;
-import com.example.game3d_opengl.rendering.util3d.vector.Vector3D;
-
 /**
- * All objects are pre-allocated once and then reused.
- * A call to add(Vector3D, Vector3D, Vector3D, Vector3D, Vector3D) updates the fields of the
- * next buffer slot instead of allocating a new helper instance. This eliminates per-row object
- * creation while retaining constant-time FIFO behaviour.
+ * Per-row metadata kept in flat primitive arrays: the ID of the tile a row belongs to and
+ * the four edge points of the row (its left/right points and those of the previous row).
+ * Adding a row copies floats, nothing is allocated.
+ * Acts like a deque that overwrites its oldest entry when full.
  */
 public class OverflowingPreallocatedRowInfoBuffer {
 
-    private static final int MAX_SIZE = 100_000;
-    private static final int MAX_BUFFER_COUNT = 2;
-
-    private static final GridRowInfo[][] BUFFERS = new GridRowInfo[MAX_BUFFER_COUNT][MAX_SIZE];
-    private static final boolean[] IS_TAKEN = new boolean[MAX_BUFFER_COUNT];
+    /** Edge points of a row, for getX/getY/getZ. */
+    public static final int LS = 0, RS = 1, LS_LAST = 2, RS_LAST = 3;
 
-    static {
-        // Pre-instantiate every GridRowHelper so they can be reused without allocation.
-        for (int i = 0; i < MAX_BUFFER_COUNT; i++) {
-            for (int j = 0; j < MAX_SIZE; j++) {
-                BUFFERS[i][j] = new GridRowInfo();
-            }
-        }
-    }
+    private static final int DEFAULT_CAPACITY = 100_000;
+    private static final int FLOATS_PER_ROW = 12;   // 4 points * xyz
 
-    private final GridRowInfo[] myBuffer;
-    private final int mySlot;
+    private final long[] tileIds;
+    private final float[] points;
+    private final int capacity;
 
     // Circular indices
     private int head = 0; // points to oldest element
     private int size = 0; // number of valid elements
+    private int highWaterMark = 0;
 
-    private static int findFreeSlot() {
-        for (int i = 0; i < MAX_BUFFER_COUNT; i++) {
-            if (!IS_TAKEN[i]) return i;
-        }
-        return -1;
+    public OverflowingPreallocatedRowInfoBuffer() {
+        this(DEFAULT_CAPACITY);
     }
 
-    public OverflowingPreallocatedRowInfoBuffer() {
-        int slot = findFreeSlot();
-        if (slot == -1) {
-            throw new IllegalStateException("No more available preallocated row-info buffers.");
+    public OverflowingPreallocatedRowInfoBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
         }
-        this.mySlot = slot;
-        this.myBuffer = BUFFERS[slot];
-        IS_TAKEN[slot] = true;
+        this.capacity = capacity;
+        this.tileIds = new long[capacity];
+        this.points = new float[capacity * FLOATS_PER_ROW];
     }
 
-    /** Release this buffer slot so it can be reused by another instance. */
-    public void free() {
-        IS_TAKEN[mySlot] = false;
+    /** Returns the largest number of elements held at once since creation (clear() keeps it). */
+    public int getHighWaterMark() {
+        return highWaterMark;
     }
 
     public int size() {
         return size;
     }
 
-    public GridRowInfo get(int i) {
+    private int physicalIndex(int i) {
         if (i < 0 || i >= size) {
             throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
         }
-        return myBuffer[(head + i) % MAX_SIZE];
+        return (head + i) % capacity;
+    }
+
+    public long getTileID(int i) {
+        return tileIds[physicalIndex(i)];
+    }
+
+    /**
+     * @param point one of LS, RS, LS_LAST, RS_LAST
+     */
+    public float getX(int i, int point) {
+        return points[physicalIndex(i) * FLOATS_PER_ROW + point * 3];
+    }
+
+    public float getY(int i, int point) {
+        return points[physicalIndex(i) * FLOATS_PER_ROW + point * 3 + 1];
+    }
+
+    public float getZ(int i, int point) {
+        return points[physicalIndex(i) * FLOATS_PER_ROW + point * 3 + 2];
     }
 
     public void removeLast() {
         if (size == 0) {
             throw new IllegalStateException("Cannot pop from an empty buffer.");
         }
-        int idx = (head + size - 1) % MAX_SIZE;
-        GridRowInfo res = myBuffer[idx];
         size--;
     }
 
-    public GridRowInfo pop(){
-        GridRowInfo res = get(size()-1);
-        removeLast();
-        return res;
-    }
-
-
     public void clear() {
         head = 0;
         size = 0;
     }
 
     /**
-     * Overwrite / initialise the next element of the buffer with provided values.
+     * Appends a row whose edge points are the {@code leftInd}-th and {@code rightInd}-th side points,
+     * and whose previous edge points are the ones just before them.
      * Acts like a push-back; overwrites the oldest entry when the buffer is full.
      */
     public void add(long tileID,
-                    Vector3D LS, Vector3D RS,
-                    Vector3D LS_last, Vector3D RS_last) {
+                    OverflowingPreallocatedCoordinateBuffer left, int leftInd,
+                    OverflowingPreallocatedCoordinateBuffer right, int rightInd) {
         int writeIdx;
-        if (size < MAX_SIZE) {
-            writeIdx = (head + size) % MAX_SIZE;
+        if (size < capacity) {
+            writeIdx = (head + size) % capacity;
             size++;
+            if (size > highWaterMark) {
+                highWaterMark = size;
+            }
         } else {
             writeIdx = head;
-            head = (head + 1) % MAX_SIZE; // drop oldest
+            head = (head + 1) % capacity; // drop oldest
         }
-        GridRowInfo helper = myBuffer[writeIdx];
-        helper.set(tileID, LS, RS, LS_last, RS_last);
+        tileIds[writeIdx] = tileID;
+        int base = writeIdx * FLOATS_PER_ROW;
+        copyPoint(base + LS * 3, left, leftInd);
+        copyPoint(base + RS * 3, right, rightInd);
+        copyPoint(base + LS_LAST * 3, left, leftInd - 1);
+        copyPoint(base + RS_LAST * 3, right, rightInd - 1);
+    }
+
+    private void copyPoint(int at, OverflowingPreallocatedCoordinateBuffer from, int i) {
+        points[at] = from.getX(i);
+        points[at + 1] = from.getY(i);
+        points[at + 2] = from.getZ(i);
     }
-}
\ No newline at end of file
+}
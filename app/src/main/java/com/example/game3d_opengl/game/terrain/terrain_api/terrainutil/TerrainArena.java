@@ -0,0 +1,138 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.terrainutil;
+
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advanced.GridRegionPool;
+import com.example.game3d_opengl.game.terrain.terrain_api.main.TileStore;
+import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer.SegmentedCommandBuffer;
+
+/**
+ * Owns every preallocated buffer used by one Terrain: edge coordinates, row metadata,
+ * tiles (corners and segment history), the command ring and the regions grid creators
+ * keep their segments in.
+ * Everything but the grid regions (created as grids are, then recycled) is allocated
+ * once, up front, from a {@link Config}.
+ * Several terrains can live side by side, each with its own arena.
+ */
+public class TerrainArena {
+    private static final int COMMANDS_PER_BLOCK = 1024;
+
+    /**
+     * Sizes of the arena. Rows bound the row-indexed buffers, tiles the tile store
+     * (a range of tile IDs, see TileManager.requiredTileSlots). Commands are what the
+     * command buffer preallocates; it can still grow.
+     */
+    public static final class Config {
+        public static final int DEFAULT_MAX_TILES = 16_384;
+
+        public final int maxRows;
+        public final int maxCommands;
+        public final int maxTiles;
+
+        public Config(int maxRows, int maxCommands) {
+            this(maxRows, maxCommands, DEFAULT_MAX_TILES);
+        }
+
+        public Config(int maxRows, int maxCommands, int maxTiles) {
+            if (maxRows <= 0 || maxCommands <= 0 || maxTiles <= 0) {
+                throw new IllegalArgumentException("Invalid arena sizes: rows=" + maxRows
+                        + ", commands=" + maxCommands + ", tiles=" + maxTiles);
+            }
+            this.maxRows = maxRows;
+            this.maxCommands = maxCommands;
+            this.maxTiles = maxTiles;
+        }
+
+        public static Config defaults() {
+            return new Config(100_000, 10_000);
+        }
+
+        /**
+         * Same sizes, but with room for at least {@code tiles} tile slots.
+         */
+        public Config withMinTiles(int tiles) {
+            return tiles <= maxTiles ? this : new Config(maxRows, maxCommands, tiles);
+        }
+    }
+
+    private final Config config;
+
+    private final OverflowingPreallocatedCoordinateBuffer leftSideBuffer;
+    private final OverflowingPreallocatedCoordinateBuffer rightSideBuffer;
+    private final OverflowingPreallocatedRowInfoBuffer rowInfoBuffer;
+    private final TileStore tileStore;
+    private final SegmentedCommandBuffer commandBuffer;
+    private final GridRegionPool gridRegionPool = new GridRegionPool();
+
+    public TerrainArena() {
+        this(Config.defaults());
+    }
+
+    public TerrainArena(Config config) {
+        this.config = config;
+        this.leftSideBuffer = new OverflowingPreallocatedCoordinateBuffer(new float[3 * config.maxRows]);
+        this.rightSideBuffer = new OverflowingPreallocatedCoordinateBuffer(new float[3 * config.maxRows]);
+        this.rowInfoBuffer = new OverflowingPreallocatedRowInfoBuffer(config.maxRows);
+        this.tileStore = new TileStore(config.maxTiles);
+        this.commandBuffer = new SegmentedCommandBuffer(COMMANDS_PER_BLOCK,
+                (config.maxCommands + COMMANDS_PER_BLOCK - 1) / COMMANDS_PER_BLOCK);
+    }
+
+    /**
+     * Empties every buffer in O(1). Nothing is reallocated and high-water marks are kept,
+     * so the arena can be reused for a fresh terrain.
+     */
+    public void reset() {
+        leftSideBuffer.clear();
+        rightSideBuffer.clear();
+        rowInfoBuffer.clear();
+        commandBuffer.clear();
+        gridRegionPool.reset();
+    }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    public OverflowingPreallocatedCoordinateBuffer getLeftSideBuffer() {
+        return leftSideBuffer;
+    }
+
+    public OverflowingPreallocatedCoordinateBuffer getRightSideBuffer() {
+        return rightSideBuffer;
+    }
+
+    public OverflowingPreallocatedRowInfoBuffer getRowInfoBuffer() {
+        return rowInfoBuffer;
+    }
+
+    public TileStore getTileStore() {
+        return tileStore;
+    }
+
+    public SegmentedCommandBuffer getCommandBuffer() {
+        return commandBuffer;
+    }
+
+    public GridRegionPool getGridRegionPool() {
+        return gridRegionPool;
+    }
+
+    /**
+     * Most rows ever held at once (the row-info buffer is kept in sync with the edge buffers).
+     * Useful for sizing {@link Config#maxRows}.
+     */
+    public int getRowsHighWaterMark() {
+        return rowInfoBuffer.getHighWaterMark();
+    }
+
+    public int getCommandsHighWaterMark() {
+        return commandBuffer.getHighWaterMark();
+    }
+
+    /**
+     * Most command blocks linked at once. Times the block size, it's the maxCommands
+     * that keeps command emission allocation-free.
+     */
+    public int getCommandBlocksHighWaterMark() {
+        return commandBuffer.getPeakBlockCount();
+    }
+}
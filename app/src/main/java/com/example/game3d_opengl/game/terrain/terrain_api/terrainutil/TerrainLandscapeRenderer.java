@@ -1,7 +1,5 @@
 package com.example.game3d_opengl.game.terrain.terrain_api.terrainutil;
 
-import static com.example.game3d_opengl.rendering.util3d.vector.Vector3D.V3;
-
 import android.opengl.GLES20;
 import android.os.Build;
 
@@ -104,14 +102,18 @@ public class TerrainLandscapeRenderer implements GPUResourceOwner {
 
     /** Append a new (L,R) pair to the back. Evicts front if at capacity and eviction enabled. */
     public void pushBack(Vector3D newLeft, Vector3D newRight, float alphaL, float alphaR) {
+        pushBack(newLeft.x, newLeft.y, newLeft.z, newRight.x, newRight.y, newRight.z, alphaL, alphaR);
+    }
+
+    /** Same as above, with the points given as coordinates. Does not allocate. */
+    public void pushBack(float lx, float ly, float lz, float rx, float ry, float rz, float alphaL, float alphaR) {
         if (sizePairs == capacityPairs) {
             if (EVICT_OLDEST_ON_OVERFLOW) popFront(); else return;
         }
-        System.out.println("alphas: " + alphaL + "," + alphaR); // seems to output correct values.
         int pairIndex = (headPair + sizePairs) % capacityPairs;
 
         // 1) CPU mirror (authoritative source) - add with temp normal
-        writePairIntoCpuMirror(pairIndex, newLeft, newRight, V3(0,1,0), V3(0,1,0), 1f, 1f, alphaL, alphaR);
+        writePairIntoCpuMirror(pairIndex, lx, ly, lz, rx, ry, rz, 0, 1, 0, 0, 1, 0, 1f, 1f, alphaL, alphaR);
 
         // 2) GPU cache (if GL buffers exist, update them too)
         if (vboId != 0) {
@@ -127,6 +129,25 @@ public class TerrainLandscapeRenderer implements GPUResourceOwner {
         }
     }
 
+    /** Overwrite positions and alphas of the newest pair in place, keeping its masks. */
+    public void replaceBack(float lx, float ly, float lz, float rx, float ry, float rz, float alphaL, float alphaR) {
+        if (sizePairs == 0) return;
+        int pairIndex = (headPair + sizePairs - 1) % capacityPairs;
+        final int base = pairIndex * FLOATS_PER_VERTEX * VERTICES_PER_PAIR;
+        cpuMirrorFB.put(base, lx).put(base + 1, ly).put(base + 2, lz).put(base + 7, alphaL);
+        cpuMirrorFB.put(base + FLOATS_PER_VERTEX, rx).put(base + FLOATS_PER_VERTEX + 1, ry)
+                .put(base + FLOATS_PER_VERTEX + 2, rz).put(base + FLOATS_PER_VERTEX + 7, alphaR);
+
+        if (vboId != 0) {
+            uploadOnePairFromCpu(pairIndex);
+        }
+
+        // The previous pair's normals depend on this one
+        if (sizePairs >= 3) {
+            updateNormalsForMiddlePair();
+        }
+    }
+
     /** Remove newest pair at the back, if any. */
     public void popBack() {
         if (sizePairs == 0) return;
@@ -144,6 +165,22 @@ public class TerrainLandscapeRenderer implements GPUResourceOwner {
 
     public int getSize() { return sizePairs; }
 
+    /**
+     * Copy of the CPU mirror of every pair, front to back: per pair the left then the right vertex,
+     * each as position, mask, normal and alpha.
+     */
+    public float[] toArrayDebug() {
+        final int floatsPerPair = FLOATS_PER_VERTEX * VERTICES_PER_PAIR;
+        float[] res = new float[sizePairs * floatsPerPair];
+        for (int i = 0; i < sizePairs; ++i) {
+            int base = ((headPair + i) % capacityPairs) * floatsPerPair;
+            for (int k = 0; k < floatsPerPair; ++k) {
+                res[i * floatsPerPair + k] = cpuMirrorFB.get(base + k);
+            }
+        }
+        return res;
+    }
+
     /**
      * Draw as a triangle strip ribbon using the currently bound InfillShaderPair.
      * Assumes the caller has bound the program and uploaded uniforms.
@@ -405,49 +442,46 @@ public class TerrainLandscapeRenderer implements GPUResourceOwner {
         indicesDirty = false;
     }
 
-    private void writePairIntoCpuMirror(int pairIndex, Vector3D L, Vector3D R, Vector3D nL, Vector3D nR, float maskL, float maskR, float alphaL, float alphaR) {
+    private void writePairIntoCpuMirror(int pairIndex,
+                                        float lx, float ly, float lz, float rx, float ry, float rz,
+                                        float nlx, float nly, float nlz, float nrx, float nry, float nrz,
+                                        float maskL, float maskR, float alphaL, float alphaR) {
         final int floatOffset = pairIndex * FLOATS_PER_VERTEX * VERTICES_PER_PAIR;
         cpuMirrorFB.position(floatOffset);
-        cpuMirrorFB.put(L.x).put(L.y).put(L.z).put(maskL);
-        cpuMirrorFB.put(nL.x).put(nL.y).put(nL.z).put(alphaL);
-        cpuMirrorFB.put(R.x).put(R.y).put(R.z).put(maskR);
-        cpuMirrorFB.put(nR.x).put(nR.y).put(nR.z).put(alphaR);
+        cpuMirrorFB.put(lx).put(ly).put(lz).put(maskL);
+        cpuMirrorFB.put(nlx).put(nly).put(nlz).put(alphaL);
+        cpuMirrorFB.put(rx).put(ry).put(rz).put(maskR);
+        cpuMirrorFB.put(nrx).put(nry).put(nrz).put(alphaR);
     }
 
     private void updateNormalsForMiddlePair() {
         int idx2 = (headPair + sizePairs - 1) % capacityPairs;
         int idx1 = (headPair + sizePairs - 2 + capacityPairs) % capacityPairs;
-        int idx0 = (headPair + sizePairs - 3 + capacityPairs) % capacityPairs;
-
-        Vector3D L0 = getPos(idx0, 0);
-        Vector3D R0 = getPos(idx0, 1);
-        Vector3D L1 = getPos(idx1, 0);
-        Vector3D R1 = getPos(idx1, 1);
-        Vector3D L2 = getPos(idx2, 0);
-        Vector3D R2 = getPos(idx2, 1);
-        float maskL0 = getMask(idx0, 0);
-        float maskR0 = getMask(idx0, 1);
-        float maskL2 = getMask(idx2, 0);
-        float maskR2 = getMask(idx2, 1);
-        float alphaL1 = getAlpha(idx1, 0);
-        float alphaR1 = getAlpha(idx1, 1);
-
-        Vector3D tanL, tanR;
-
-        tanL = L2.sub(L1);
-        tanR = R2.sub(R1);
-
-        Vector3D across = R1.sub(L1);
-        Vector3D normalL = across.crossProduct(tanL).normalized();
-        Vector3D normalR = across.crossProduct(tanR).normalized();
-
-        writePairIntoCpuMirror(idx1, L1, R1, normalL, normalR, getMask(idx1,0), getMask(idx1,1), alphaL1, alphaR1);
-        uploadOnePairFromCpu(idx1);
+
+        final float l1x = getPos(idx1, 0, 0), l1y = getPos(idx1, 0, 1), l1z = getPos(idx1, 0, 2);
+        final float r1x = getPos(idx1, 1, 0), r1y = getPos(idx1, 1, 1), r1z = getPos(idx1, 1, 2);
+
+        // tangents along the ribbon, and the direction across it
+        float tLx = getPos(idx2, 0, 0) - l1x, tLy = getPos(idx2, 0, 1) - l1y, tLz = getPos(idx2, 0, 2) - l1z;
+        float tRx = getPos(idx2, 1, 0) - r1x, tRy = getPos(idx2, 1, 1) - r1y, tRz = getPos(idx2, 1, 2) - r1z;
+        float ax = r1x - l1x, ay = r1y - l1y, az = r1z - l1z;
+
+        // normal = normalized(across x tangent)
+        float nLx = ay * tLz - az * tLy, nLy = az * tLx - ax * tLz, nLz = ax * tLy - ay * tLx;
+        float nRx = ay * tRz - az * tRy, nRy = az * tRx - ax * tRz, nRz = ax * tRy - ay * tRx;
+        float lenL = (float) Math.sqrt(nLx * nLx + nLy * nLy + nLz * nLz);
+        float lenR = (float) Math.sqrt(nRx * nRx + nRy * nRy + nRz * nRz);
+
+        writePairIntoCpuMirror(idx1, l1x, l1y, l1z, r1x, r1y, r1z,
+                nLx / lenL, nLy / lenL, nLz / lenL, nRx / lenR, nRy / lenR, nRz / lenR,
+                getMask(idx1, 0), getMask(idx1, 1), getAlpha(idx1, 0), getAlpha(idx1, 1));
+        if (vboId != 0) {
+            uploadOnePairFromCpu(idx1);
+        }
     }
 
-    private Vector3D getPos(int pairIndex, int side) { // 0=L, 1=R
-        final int floatOffset = pairIndex * FLOATS_PER_VERTEX * VERTICES_PER_PAIR + side * FLOATS_PER_VERTEX;
-        return V3(cpuMirrorFB.get(floatOffset), cpuMirrorFB.get(floatOffset+1), cpuMirrorFB.get(floatOffset+2));
+    private float getPos(int pairIndex, int side, int axis) { // side: 0=L, 1=R; axis: 0=x, 1=y, 2=z
+        return cpuMirrorFB.get(pairIndex * FLOATS_PER_VERTEX * VERTICES_PER_PAIR + side * FLOATS_PER_VERTEX + axis);
     }
 
     private float getMask(int pairIndex, int side) {
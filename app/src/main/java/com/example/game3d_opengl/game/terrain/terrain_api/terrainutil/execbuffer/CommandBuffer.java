@@ -1,8 +1,41 @@
 package com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer;
 
+/**
+ * FIFO of fixed-arity commands. Every command is an int opcode plus at most
+ * {@link #MAX_INT_ARGS} int arguments (int lane) and {@link #MAX_FLOAT_ARGS} float arguments
+ * (float lane). Typed entry points avoid varargs arrays, so emitting commands never allocates.
+ */
 public interface CommandBuffer {
-    void addCommand(float... args);
+    int MAX_INT_ARGS = 3;
+    int MAX_FLOAT_ARGS = 2;
+
+    /** Ints per command in the int lane: [opcode, i0, i1, i2]. */
+    int INT_STRIDE = 1 + MAX_INT_ARGS;
+    /** Floats per command in the float lane: [f0, f1]. */
+    int FLOAT_STRIDE = MAX_FLOAT_ARGS;
+
+    void addCommand0(int opcode);
+
+    void addCommand1(int opcode, int arg0);
+
+    void addCommand1(int opcode, float arg0);
+
+    void addCommand2(int opcode, float arg0, float arg1);
+
+    void addCommand3(int opcode, int arg0, int arg1, int arg2);
+
+    /**
+     * Appends {@code nCommands} ready-made records, laid out exactly like the lanes of this buffer
+     * (INT_STRIDE ints and FLOAT_STRIDE floats per command).
+     */
+    void addCommandBlock(int[] intLane, float[] floatLane, int nCommands);
+
     void executeFirstCommand(CommandExecutor executor);
 
+    /**
+     * @return opcode of the command that executeFirstCommand() would run next
+     */
+    int peekOpcode();
+
     boolean hasAnyCommands();
 }
@@ -0,0 +1,43 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer;
+
+/**
+ * Learns how long each opcode takes to execute, as an exponential moving average.
+ * Used to stop executing commands before one that would overrun a time budget.
+ * Opcodes never seen before are estimated at 0ns, so they always get tried once.
+ */
+public class CommandCostModel {
+    public static final int MAX_OPCODE = 63;
+
+    // Weight of the newest sample in the moving average
+    private static final float SMOOTHING = 0.125f;
+
+    private final float[] avgNanos = new float[MAX_OPCODE + 1];
+    private final boolean[] seen = new boolean[MAX_OPCODE + 1];
+
+    /**
+     * @return expected execution time of the opcode, in nanoseconds
+     */
+    public long estimate(int opcode) {
+        checkOpcode(opcode);
+        return (long) avgNanos[opcode];
+    }
+
+    /**
+     * Adds a measured execution time of the opcode to its moving average.
+     */
+    public void record(int opcode, long nanos) {
+        checkOpcode(opcode);
+        if (!seen[opcode]) {
+            avgNanos[opcode] = nanos;
+            seen[opcode] = true;
+        } else {
+            avgNanos[opcode] += SMOOTHING * (nanos - avgNanos[opcode]);
+        }
+    }
+
+    private static void checkOpcode(int opcode) {
+        if (opcode < 0 || opcode > MAX_OPCODE) {
+            throw new IllegalArgumentException("Opcode out of range: " + opcode);
+        }
+    }
+}
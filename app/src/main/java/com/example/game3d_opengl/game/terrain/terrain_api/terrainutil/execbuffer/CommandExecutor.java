@@ -1,7 +1,11 @@
 package com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer;
 
 public interface CommandExecutor {
-    void execute(float[] buffer, int offset, int length);
+    /**
+     * Executes one command. {@code intLane[intOffset]} is the opcode, its int arguments follow it.
+     * Float arguments start at {@code floatLane[floatOffset]}.
+     */
+    void execute(int[] intLane, int intOffset, float[] floatLane, int floatOffset);
 
-    boolean canHandle(float v);
+    boolean canHandle(int opcode);
 }
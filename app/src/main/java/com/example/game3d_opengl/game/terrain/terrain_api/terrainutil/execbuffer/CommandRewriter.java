@@ -0,0 +1,14 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer;
+
+/**
+ * Rewrites a recorded command stream in place, e.g. to fuse several commands into one.
+ */
+public interface CommandRewriter {
+    /**
+     * @param intLane   records laid out like in a {@link CommandBuffer} (INT_STRIDE ints per command)
+     * @param floatLane records laid out like in a {@link CommandBuffer} (FLOAT_STRIDE floats per command)
+     * @param nCommands number of records to rewrite
+     * @return number of records after rewriting; they occupy the start of both lanes
+     */
+    int rewrite(int[] intLane, float[] floatLane, int nCommands);
+}
@@ -1,146 +1,163 @@
 package com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer;
 
 public class PreallocatedCommandBuffer implements CommandBuffer {
-    private static final int MAX_SIZE = 20_000;
-    private static final int MAX_BUFFER_COUNT = 2;
-    private static final float[][] BUFFERS = new float[MAX_BUFFER_COUNT][MAX_SIZE];
-    private static final boolean[] isTaken = new boolean[MAX_BUFFER_COUNT];
-
-    private static int findFreeSlot() {
-        for (int i = 0; i < MAX_BUFFER_COUNT; i++) {
-            if (!isTaken[i]) {
-                return i;
-            }
-        }
-        return -1;
-    }
+    private static final int DEFAULT_MAX_COMMANDS = 10_000;
 
-    private final int mySlot;
-    private final float[] myBuffer;
-    private int mySize = 0;     // number of floats stored in the buffer
-    private int readPos = 0;    // index of the next command in the ring buffer
+    private final int maxCommands;
+    private final int[] myInts;
+    private final float[] myFloats;
+    private int mySize = 0;     // number of commands stored in the buffer
+    private int readPos = 0;    // index (in commands) of the next command in the ring buffer
+    private int highWaterMark = 0;
 
     public PreallocatedCommandBuffer() {
-        int slot = findFreeSlot();
-        if (slot == -1) {
-            throw new IllegalStateException("No more available preallocated buffers.");
-        }
-        mySlot = slot;
-        myBuffer = BUFFERS[mySlot];
-        isTaken[mySlot] = true;
+        this(new int[DEFAULT_MAX_COMMANDS * INT_STRIDE], new float[DEFAULT_MAX_COMMANDS * FLOAT_STRIDE]);
     }
 
     /**
-     * Releases this buffer slot for reuse by another instance.
+     * Uses the given lanes as storage (e.g. owned by a TerrainArena).
+     * Capacity is intLane.length / INT_STRIDE commands; floatLane must match it.
      */
-    public void free() {
-        isTaken[mySlot] = false;
+    public PreallocatedCommandBuffer(int[] intLane, float[] floatLane) {
+        int commands = intLane.length / INT_STRIDE;
+        if (commands == 0 || intLane.length % INT_STRIDE != 0 || floatLane.length != commands * FLOAT_STRIDE) {
+            throw new IllegalArgumentException("Lane sizes don't describe the same number of commands: "
+                    + intLane.length + ", " + floatLane.length);
+        }
+        this.maxCommands = commands;
+        this.myInts = intLane;
+        this.myFloats = floatLane;
     }
 
     /**
-     * Adds a command to the buffer in the form:
-     *   [commandCode, argCount, arg1, arg2, ..., argN].
-     *
-     * We interpret args[0] as 'commandCode'.
-     * All subsequent floats (if any) are considered 'arguments.'
-     *
-     * So, if the caller does: addCommand(123f, 10f, 20f),
-     * we store:
-     *   [ 123f, 2, 10f, 20f ]
-     *
-     * The ring buffer approach is used here. If we don't have enough space,
-     * we throw an exception.
+     * Drops all commands in O(1).
      */
-    @Override
-    public void addCommand(float... args) {
-        if (args.length < 1) {
-            throw new IllegalArgumentException("At least one float (the command code) is required.");
-        }
+    public void clear() {
+        mySize = 0;
+        readPos = 0;
+    }
 
-        // The command code is the first float
-        float commandCode = args[0];
-        // The number of arguments is everything after the first float
-        int argCount = args.length - 1;
+    /**
+     * Returns the largest number of commands held at once since creation (clear() keeps it).
+     */
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
 
-        // We need space for exactly (2 + argCount) floats:
-        //   [commandCode, argCount, arg1, arg2, ..., argN]
-        int total = 2 + argCount;
-        if (mySize + total > MAX_SIZE) {
+    /**
+     * Reserves the next command record and writes its opcode.
+     * Every command takes exactly one record: INT_STRIDE ints and FLOAT_STRIDE floats,
+     * so a record never wraps around the end of the ring.
+     *
+     * @return index of the reserved record (in commands)
+     */
+    private int beginCommand(int opcode) {
+        if (mySize == maxCommands) {
             throw new IllegalStateException("Buffer is full – cannot add this command.");
         }
-
-        // Write commandCode
-        int writePos = (readPos + mySize) % MAX_SIZE;
-        myBuffer[writePos] = commandCode;
-        mySize++;
-
-        // Write argCount
-        writePos = (readPos + mySize) % MAX_SIZE;
-        myBuffer[writePos] = argCount;
+        int writePos = readPos + mySize;
+        if (writePos >= maxCommands) {
+            writePos -= maxCommands;
+        }
+        myInts[writePos * INT_STRIDE] = opcode;
         mySize++;
-
-        // Write the actual arguments
-        for (int i = 1; i < args.length; i++) {
-            writePos = (readPos + mySize) % MAX_SIZE;
-            myBuffer[writePos] = args[i];
-            mySize++;
+        if (mySize > highWaterMark) {
+            highWaterMark = mySize;
         }
+        return writePos;
     }
 
-    /**
-     * Executes the first command by:
-     *  - reading commandCode and argumentCount
-     *  - reading that many argument floats
-     *  - calling executor.execute(...) with that entire chunk
-     *  - removing the command from the buffer
-     * If there are no complete commands, throws an exception.
-     */
     @Override
-    public void executeFirstCommand(CommandExecutor executor) {
-        if (!hasAnyCommands()) {
-            throw new IllegalStateException("No complete commands to execute.");
-        }
+    public void addCommand0(int opcode) {
+        beginCommand(opcode);
+    }
 
-        int countIndex = (readPos + 1) % MAX_SIZE;
-        int argCount = (int) myBuffer[countIndex];
+    @Override
+    public void addCommand1(int opcode, int arg0) {
+        int rec = beginCommand(opcode);
+        myInts[rec * INT_STRIDE + 1] = arg0;
+    }
 
-        // total floats = 2 + argCount
-        int total = 2 + argCount;
+    @Override
+    public void addCommand1(int opcode, float arg0) {
+        int rec = beginCommand(opcode);
+        myFloats[rec * FLOAT_STRIDE] = arg0;
+    }
 
-        // We'll hand these floats [commandCode, argCount, arg1, ..., argCount] to the executor
-        executor.execute(myBuffer, readPos, total);
+    @Override
+    public void addCommand2(int opcode, float arg0, float arg1) {
+        int rec = beginCommand(opcode);
+        myFloats[rec * FLOAT_STRIDE] = arg0;
+        myFloats[rec * FLOAT_STRIDE + 1] = arg1;
+    }
 
-        // Now remove these floats from the ring buffer
-        readPos = (readPos + total) % MAX_SIZE;
-        mySize -= total;
+    @Override
+    public void addCommand3(int opcode, int arg0, int arg1, int arg2) {
+        int rec = beginCommand(opcode);
+        int base = rec * INT_STRIDE;
+        myInts[base + 1] = arg0;
+        myInts[base + 2] = arg1;
+        myInts[base + 3] = arg2;
     }
 
     /**
-     * Returns true if there is at least one complete command in the buffer.
-     * A complete command requires at least 2 floats: [commandCode, argCount],
-     * plus 'argCount' floats of arguments. So we need mySize >= (2 + argCount).
+     * Splices a block of records into the ring with at most two array copies per lane.
      */
     @Override
-    public boolean hasAnyCommands() {
-        if (mySize < 2) {
-            return false; // not enough data for even [cmdCode, argCount]
+    public void addCommandBlock(int[] intLane, float[] floatLane, int nCommands) {
+        if (nCommands > maxCommands - mySize) {
+            throw new IllegalStateException("Buffer is full – cannot add " + nCommands + " commands.");
+        }
+        int writePos = readPos + mySize;
+        if (writePos >= maxCommands) {
+            writePos -= maxCommands;
+        }
+        int firstPart = Math.min(nCommands, maxCommands - writePos);
+        int secondPart = nCommands - firstPart;
+        System.arraycopy(intLane, 0, myInts, writePos * INT_STRIDE, firstPart * INT_STRIDE);
+        System.arraycopy(floatLane, 0, myFloats, writePos * FLOAT_STRIDE, firstPart * FLOAT_STRIDE);
+        if (secondPart > 0) {
+            System.arraycopy(intLane, firstPart * INT_STRIDE, myInts, 0, secondPart * INT_STRIDE);
+            System.arraycopy(floatLane, firstPart * FLOAT_STRIDE, myFloats, 0, secondPart * FLOAT_STRIDE);
         }
+        mySize += nCommands;
+        if (mySize > highWaterMark) {
+            highWaterMark = mySize;
+        }
+    }
 
-        // Safely read the command code (though we don't truly need it here).
-        float commandCode = myBuffer[readPos];
+    /**
+     * Executes the first command by handing its record in both lanes to the executor,
+     * then removes the command from the buffer.
+     * If there are no commands, throws an exception.
+     */
+    @Override
+    public void executeFirstCommand(CommandExecutor executor) {
+        if (!hasAnyCommands()) {
+            throw new IllegalStateException("No complete commands to execute.");
+        }
+        int rec = readPos;
+        // The record stays counted while the executor reads it, so commands the executor enqueues
+        // go after it and can never overwrite it, even when the ring is full.
+        try {
+            executor.execute(myInts, rec * INT_STRIDE, myFloats, rec * FLOAT_STRIDE);
+        } finally {
+            readPos = readPos + 1 == maxCommands ? 0 : readPos + 1;
+            mySize--;
+        }
+    }
 
-        // Read the argumentCount
-        int countIndex = (readPos + 1) % MAX_SIZE;
-        int argCount = (int) myBuffer[countIndex];
-        if (argCount < 0) {
-            // If for some reason someone wrote a negative argCount,
-            // you might decide to handle that or treat as incomplete.
-            return false;
+    @Override
+    public int peekOpcode() {
+        if (!hasAnyCommands()) {
+            throw new IllegalStateException("No commands in buffer.");
         }
+        return myInts[readPos * INT_STRIDE];
+    }
 
-        // total needed to have a complete command
-        int total = 2 + argCount;
-        return (mySize >= total);
+    @Override
+    public boolean hasAnyCommands() {
+        return mySize > 0;
     }
 
 }
@@ -0,0 +1,140 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer;
+
+import java.util.Arrays;
+
+/**
+ * Growable command buffer used to record a command stream once, so it can later be
+ * replayed into another buffer with {@link CommandBuffer#addCommandBlock}.
+ * Allocates while growing - not meant for per-frame use.
+ */
+public class RecordingCommandBuffer implements CommandBuffer {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] ints = new int[INITIAL_CAPACITY * INT_STRIDE];
+    private float[] floats = new float[INITIAL_CAPACITY * FLOAT_STRIDE];
+    private int size = 0;       // number of commands recorded
+    private int readPos = 0;    // index (in commands) of the next command to execute
+
+    private int beginCommand(int opcode) {
+        if (size * INT_STRIDE == ints.length) {
+            ints = Arrays.copyOf(ints, ints.length * 2);
+            floats = Arrays.copyOf(floats, floats.length * 2);
+        }
+        ints[size * INT_STRIDE] = opcode;
+        return size++;
+    }
+
+    @Override
+    public void addCommand0(int opcode) {
+        beginCommand(opcode);
+    }
+
+    @Override
+    public void addCommand1(int opcode, int arg0) {
+        int rec = beginCommand(opcode);
+        ints[rec * INT_STRIDE + 1] = arg0;
+    }
+
+    @Override
+    public void addCommand1(int opcode, float arg0) {
+        int rec = beginCommand(opcode);
+        floats[rec * FLOAT_STRIDE] = arg0;
+    }
+
+    @Override
+    public void addCommand2(int opcode, float arg0, float arg1) {
+        int rec = beginCommand(opcode);
+        floats[rec * FLOAT_STRIDE] = arg0;
+        floats[rec * FLOAT_STRIDE + 1] = arg1;
+    }
+
+    @Override
+    public void addCommand3(int opcode, int arg0, int arg1, int arg2) {
+        int rec = beginCommand(opcode);
+        int base = rec * INT_STRIDE;
+        ints[base + 1] = arg0;
+        ints[base + 2] = arg1;
+        ints[base + 3] = arg2;
+    }
+
+    @Override
+    public void addCommandBlock(int[] intLane, float[] floatLane, int nCommands) {
+        int needed = size + nCommands;
+        if (needed * INT_STRIDE > ints.length) {
+            int capacity = Math.max(needed, 2 * ints.length / INT_STRIDE);
+            ints = Arrays.copyOf(ints, capacity * INT_STRIDE);
+            floats = Arrays.copyOf(floats, capacity * FLOAT_STRIDE);
+        }
+        System.arraycopy(intLane, 0, ints, size * INT_STRIDE, nCommands * INT_STRIDE);
+        System.arraycopy(floatLane, 0, floats, size * FLOAT_STRIDE, nCommands * FLOAT_STRIDE);
+        size = needed;
+    }
+
+    @Override
+    public void executeFirstCommand(CommandExecutor executor) {
+        if (!hasAnyCommands()) {
+            throw new IllegalStateException("No complete commands to execute.");
+        }
+        int rec = readPos++;
+        executor.execute(ints, rec * INT_STRIDE, floats, rec * FLOAT_STRIDE);
+    }
+
+    @Override
+    public int peekOpcode() {
+        if (!hasAnyCommands()) {
+            throw new IllegalStateException("No commands in buffer.");
+        }
+        return ints[readPos * INT_STRIDE];
+    }
+
+    @Override
+    public boolean hasAnyCommands() {
+        return readPos < size;
+    }
+
+    /**
+     * Forgets all recorded commands. Keeps the grown lanes, so recording again does not allocate.
+     */
+    public void clear() {
+        size = 0;
+        readPos = 0;
+    }
+
+    /**
+     * Rewrites the recorded commands in place. Only allowed before any of them was executed.
+     */
+    public void rewrite(CommandRewriter rewriter) {
+        if (readPos != 0) {
+            throw new IllegalStateException("Cannot rewrite a partially executed recording");
+        }
+        size = rewriter.rewrite(ints, floats, size);
+    }
+
+    /**
+     * Appends all recorded commands to the target buffer without copying them first.
+     */
+    public void replayInto(CommandBuffer target) {
+        target.addCommandBlock(ints, floats, size);
+    }
+
+    /**
+     * @return number of recorded commands (including already executed ones)
+     */
+    public int getCommandCount() {
+        return size;
+    }
+
+    /**
+     * @return trimmed copy of the int lane of all recorded commands
+     */
+    public int[] copyIntLane() {
+        return Arrays.copyOf(ints, size * INT_STRIDE);
+    }
+
+    /**
+     * @return trimmed copy of the float lane of all recorded commands
+     */
+    public float[] copyFloatLane() {
+        return Arrays.copyOf(floats, size * FLOAT_STRIDE);
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer;
+
+/**
+ * Command FIFO built from a chain of fixed-size blocks. When the last block fills up,
+ * another one is linked in, so the buffer never runs out of room and nothing is copied.
+ * Consumed blocks go back to a free list and are reused; once the free list holds as many
+ * blocks as the peak demand, adding and executing commands does not allocate.
+ */
+public class SegmentedCommandBuffer implements CommandBuffer {
+    private static final int DEFAULT_COMMANDS_PER_BLOCK = 1024;
+    private static final int DEFAULT_PREALLOCATED_BLOCKS = 10;
+
+    private static final class Block {
+        final int[] ints;
+        final float[] floats;
+        Block next;      // next block in the chain, or in the free list
+        int readPos;     // index (in commands) of the next command to execute
+        int writePos;    // index (in commands) of the next free record
+
+        Block(int commandsPerBlock) {
+            ints = new int[commandsPerBlock * INT_STRIDE];
+            floats = new float[commandsPerBlock * FLOAT_STRIDE];
+        }
+    }
+
+    private final int commandsPerBlock;
+
+    private Block head;              // block holding the next command to execute
+    private Block tail;              // block receiving new commands
+    private Block freeBlocks;        // singly-linked free list
+    private int mySize = 0;          // number of commands stored
+    private int chainLength = 1;     // blocks currently linked from head to tail
+    private int allocatedBlocks = 0;
+    private int peakBlockCount = 1;
+    private int highWaterMark = 0;
+
+    public SegmentedCommandBuffer() {
+        this(DEFAULT_COMMANDS_PER_BLOCK, DEFAULT_PREALLOCATED_BLOCKS);
+    }
+
+    /**
+     * @param commandsPerBlock     records per block
+     * @param preallocatedBlocks   blocks created up front (at least one); more are created on demand
+     */
+    public SegmentedCommandBuffer(int commandsPerBlock, int preallocatedBlocks) {
+        if (commandsPerBlock <= 0 || preallocatedBlocks <= 0) {
+            throw new IllegalArgumentException("Invalid block configuration: " + commandsPerBlock
+                    + " commands per block, " + preallocatedBlocks + " blocks");
+        }
+        this.commandsPerBlock = commandsPerBlock;
+        for (int i = 0; i < preallocatedBlocks; ++i) {
+            Block b = new Block(commandsPerBlock);
+            ++allocatedBlocks;
+            b.next = freeBlocks;
+            freeBlocks = b;
+        }
+        head = tail = takeBlock();
+    }
+
+    private Block takeBlock() {
+        Block b = freeBlocks;
+        if (b == null) {
+            b = new Block(commandsPerBlock);
+            ++allocatedBlocks;
+        } else {
+            freeBlocks = b.next;
+        }
+        b.next = null;
+        b.readPos = 0;
+        b.writePos = 0;
+        return b;
+    }
+
+    private void recycle(Block b) {
+        b.next = freeBlocks;
+        freeBlocks = b;
+    }
+
+    private void linkNewTail() {
+        Block b = takeBlock();
+        tail.next = b;
+        tail = b;
+        ++chainLength;
+        if (chainLength > peakBlockCount) {
+            peakBlockCount = chainLength;
+        }
+    }
+
+    /**
+     * Drops all commands in O(1): every block but the head is spliced back into the free list.
+     */
+    public void clear() {
+        if (head != tail) {
+            tail.next = freeBlocks;
+            freeBlocks = head.next;
+            head.next = null;
+            tail = head;
+        }
+        head.readPos = 0;
+        head.writePos = 0;
+        chainLength = 1;
+        mySize = 0;
+    }
+
+    /**
+     * Returns the most blocks that were linked at once. Preallocating that many blocks
+     * keeps the buffer allocation-free.
+     */
+    public int getPeakBlockCount() {
+        return peakBlockCount;
+    }
+
+    /**
+     * Returns how many blocks were ever created (in use or in the free list).
+     */
+    public int getAllocatedBlockCount() {
+        return allocatedBlocks;
+    }
+
+    public int getCommandsPerBlock() {
+        return commandsPerBlock;
+    }
+
+    /**
+     * Returns the largest number of commands held at once since creation (clear() keeps it).
+     */
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    public int size() {
+        return mySize;
+    }
+
+    /**
+     * Reserves the next record in the tail block and writes its opcode.
+     *
+     * @return index of the record inside {@link #tail}
+     */
+    private int beginCommand(int opcode) {
+        if (tail.writePos == commandsPerBlock) {
+            linkNewTail();
+        }
+        int rec = tail.writePos++;
+        tail.ints[rec * INT_STRIDE] = opcode;
+        mySize++;
+        if (mySize > highWaterMark) {
+            highWaterMark = mySize;
+        }
+        return rec;
+    }
+
+    @Override
+    public void addCommand0(int opcode) {
+        beginCommand(opcode);
+    }
+
+    @Override
+    public void addCommand1(int opcode, int arg0) {
+        int rec = beginCommand(opcode);
+        tail.ints[rec * INT_STRIDE + 1] = arg0;
+    }
+
+    @Override
+    public void addCommand1(int opcode, float arg0) {
+        int rec = beginCommand(opcode);
+        tail.floats[rec * FLOAT_STRIDE] = arg0;
+    }
+
+    @Override
+    public void addCommand2(int opcode, float arg0, float arg1) {
+        int rec = beginCommand(opcode);
+        tail.floats[rec * FLOAT_STRIDE] = arg0;
+        tail.floats[rec * FLOAT_STRIDE + 1] = arg1;
+    }
+
+    @Override
+    public void addCommand3(int opcode, int arg0, int arg1, int arg2) {
+        int rec = beginCommand(opcode);
+        int base = rec * INT_STRIDE;
+        tail.ints[base + 1] = arg0;
+        tail.ints[base + 2] = arg1;
+        tail.ints[base + 3] = arg2;
+    }
+
+    /**
+     * Copies the records block by block, linking new blocks as needed.
+     */
+    @Override
+    public void addCommandBlock(int[] intLane, float[] floatLane, int nCommands) {
+        int copied = 0;
+        while (copied < nCommands) {
+            if (tail.writePos == commandsPerBlock) {
+                linkNewTail();
+            }
+            int n = Math.min(nCommands - copied, commandsPerBlock - tail.writePos);
+            System.arraycopy(intLane, copied * INT_STRIDE, tail.ints, tail.writePos * INT_STRIDE, n * INT_STRIDE);
+            System.arraycopy(floatLane, copied * FLOAT_STRIDE, tail.floats, tail.writePos * FLOAT_STRIDE, n * FLOAT_STRIDE);
+            tail.writePos += n;
+            copied += n;
+        }
+        mySize += nCommands;
+        if (mySize > highWaterMark) {
+            highWaterMark = mySize;
+        }
+    }
+
+    /**
+     * Executes the first command, then removes it from the buffer.
+     * If there are no commands, throws an exception.
+     */
+    @Override
+    public void executeFirstCommand(CommandExecutor executor) {
+        if (!hasAnyCommands()) {
+            throw new IllegalStateException("No complete commands to execute.");
+        }
+        Block b = head;
+        int rec = b.readPos++;
+        mySize--;
+        executor.execute(b.ints, rec * INT_STRIDE, b.floats, rec * FLOAT_STRIDE);
+        // Only now, once the executor is done with the record, may its block be reused.
+        if (mySize == 0) {
+            clear();
+        } else if (head.readPos == commandsPerBlock) {
+            Block next = head.next;
+            recycle(head);
+            head = next;
+            --chainLength;
+        }
+    }
+
+    @Override
+    public int peekOpcode() {
+        if (!hasAnyCommands()) {
+            throw new IllegalStateException("No commands in buffer.");
+        }
+        return head.ints[head.readPos * INT_STRIDE];
+    }
+
+    @Override
+    public boolean hasAnyCommands() {
+        return mySize > 0;
+    }
+}
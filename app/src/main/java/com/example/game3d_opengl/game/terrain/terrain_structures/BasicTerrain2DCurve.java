@@ -1,10 +1,10 @@
 package com.example.game3d_opengl.game.terrain.terrain_structures;
 
 import com.example.game3d_opengl.game.terrain.terrain_api.addon.Addon;
+import com.example.game3d_opengl.game.terrain.terrain_api.main.CompiledStructure;
 import com.example.game3d_opengl.game.terrain.terrain_api.main.BasicTerrainStructure;
 import com.example.game3d_opengl.game.terrain.terrain_api.main.Terrain;
 import com.example.game3d_opengl.game.terrain.track_elements.spike.DeathSpike;
-import com.example.game3d_opengl.game.util.GameRandom;
 
 public class BasicTerrain2DCurve extends BasicTerrainStructure {
 
@@ -16,6 +16,11 @@ public class BasicTerrain2DCurve extends BasicTerrainStructure {
         this.dAngVer = dAngVer;
     }
 
+    @Override
+    protected Object getCompileKey() {
+        return CompiledStructure.key(getClass(), tilesToMake, dAngHor, dAngVer);
+    }
+
     @Override
     protected void generateTiles(Terrain.TileBrush brush) {
         float angHorPerTile = dAngHor / (float) (tilesToMake);
@@ -30,7 +35,7 @@ public class BasicTerrain2DCurve extends BasicTerrainStructure {
     @Override
     protected void generateAddons(Terrain.BasicGridBrush brush, int nRows, int nCols) {
         if (nRows <= 0 || nCols <= 0) return;
-        int variant = GameRandom.randInt(0, 2);
+        int variant = random.nextInt(0, 2);
         switch (variant) {
             case 0:
                 placeCenterShort(brush, nRows, nCols);
@@ -71,7 +76,7 @@ public class BasicTerrain2DCurve extends BasicTerrainStructure {
 
     private Addon[] makeSpikes(int length) {
         Addon[] addons = new Addon[length];
-        for (int j = 0; j < addons.length; ++j) addons[j] = DeathSpike.createDeathSpike();
+        for (int j = 0; j < addons.length; ++j) addons[j] = DeathSpike.createDeathSpike(random);
         return addons;
     }
 }
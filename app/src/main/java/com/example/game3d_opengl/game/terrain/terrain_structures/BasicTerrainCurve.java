@@ -1,11 +1,11 @@
 package com.example.game3d_opengl.game.terrain.terrain_structures;
 
 import com.example.game3d_opengl.game.terrain.terrain_api.addon.Addon;
+import com.example.game3d_opengl.game.terrain.terrain_api.main.CompiledStructure;
 import com.example.game3d_opengl.game.terrain.terrain_api.main.BasicTerrainStructure;
 import com.example.game3d_opengl.game.terrain.terrain_api.main.Terrain;
 import com.example.game3d_opengl.game.terrain.track_elements.spike.DeathSpike;
 import com.example.game3d_opengl.game.terrain.track_elements.potion.Potion;
-import com.example.game3d_opengl.game.util.GameRandom;
 
 public class BasicTerrainCurve extends BasicTerrainStructure {
 
@@ -16,6 +16,11 @@ public class BasicTerrainCurve extends BasicTerrainStructure {
         this.dAngHor = dAngHor;
     }
 
+    @Override
+    protected Object getCompileKey() {
+        return CompiledStructure.key(getClass(), tilesToMake, dAngHor);
+    }
+
     @Override
     protected void generateTiles(Terrain.TileBrush brush) {
         float angHorPerTile = dAngHor / (float) (tilesToMake);
@@ -28,7 +33,7 @@ public class BasicTerrainCurve extends BasicTerrainStructure {
     @Override
     protected void generateAddons(Terrain.BasicGridBrush brush, int nRows, int nCols) {
         if (nRows <= 0 || nCols <= 0) return;
-        int variant = GameRandom.randInt(0, 2);
+        int variant = random.nextInt(0, 2);
         switch (variant) {
             case 0:
                 placeStartVerticalSet(brush, nRows, nCols);
@@ -46,7 +51,7 @@ public class BasicTerrainCurve extends BasicTerrainStructure {
         int col = Math.max(1, Math.min(nCols, nCols / 3 + 1));
         int length = Math.min(nRows, 5);
         Addon[] addons = new Addon[length];
-        for (int j = 0; j < addons.length; ++j) addons[j] = DeathSpike.createDeathSpike();
+        for (int j = 0; j < addons.length; ++j) addons[j] = DeathSpike.createDeathSpike(random);
         brush.reserveVertical(1, col, length, addons);
     }
 
@@ -62,7 +67,7 @@ public class BasicTerrainCurve extends BasicTerrainStructure {
         int length = Math.min(nRows, 4);
         for (int c = 1; c <= nCols; c += 2) {
             Addon[] addons = new Addon[length];
-            for (int j = 0; j < addons.length; ++j) addons[j] = DeathSpike.createDeathSpike();
+            for (int j = 0; j < addons.length; ++j) addons[j] = DeathSpike.createDeathSpike(random);
             brush.reserveVertical(1, c, length, addons);
         }
     }
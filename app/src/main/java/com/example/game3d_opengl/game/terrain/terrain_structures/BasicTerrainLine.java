@@ -1,10 +1,10 @@
 package com.example.game3d_opengl.game.terrain.terrain_structures;
 
 import com.example.game3d_opengl.game.terrain.terrain_api.addon.Addon;
+import com.example.game3d_opengl.game.terrain.terrain_api.main.CompiledStructure;
 import com.example.game3d_opengl.game.terrain.terrain_api.main.BasicTerrainStructure;
 import com.example.game3d_opengl.game.terrain.terrain_api.main.Terrain;
 import com.example.game3d_opengl.game.terrain.track_elements.spike.DeathSpike;
-import com.example.game3d_opengl.game.util.GameRandom;
 
 public class BasicTerrainLine extends BasicTerrainStructure {
 
@@ -12,6 +12,11 @@ public class BasicTerrainLine extends BasicTerrainStructure {
         super(tilesToMake);
     }
 
+    @Override
+    protected Object getCompileKey() {
+        return CompiledStructure.key(getClass(), tilesToMake);
+    }
+
     @Override
     protected void generateTiles(Terrain.TileBrush brush) {
         for (int i = 0; i < tilesToMake; ++i) {
@@ -23,7 +28,7 @@ public class BasicTerrainLine extends BasicTerrainStructure {
     protected void generateAddons(Terrain.BasicGridBrush brush, int nRows, int nCols) {
         if (nRows <= 0 || nCols <= 0) return;
 
-        int variant = GameRandom.randInt(0, 2);
+        int variant = random.nextInt(0, 2);
         switch (variant) {
             case 0:
                 placeCenterVerticalStripe(brush, nRows, nCols);
@@ -65,7 +70,7 @@ public class BasicTerrainLine extends BasicTerrainStructure {
     private Addon[] makeSpikes(int length) {
         Addon[] addons = new Addon[length];
         for (int j = 0; j < addons.length; ++j) {
-            addons[j] = DeathSpike.createDeathSpike();
+            addons[j] = DeathSpike.createDeathSpike(random);
         }
         return addons;
     }
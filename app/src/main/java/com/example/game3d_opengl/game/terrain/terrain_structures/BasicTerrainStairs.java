@@ -1,11 +1,11 @@
 package com.example.game3d_opengl.game.terrain.terrain_structures;
 
 import com.example.game3d_opengl.game.terrain.terrain_api.addon.Addon;
+import com.example.game3d_opengl.game.terrain.terrain_api.main.CompiledStructure;
 import com.example.game3d_opengl.game.terrain.terrain_api.main.BasicTerrainStructure;
 import com.example.game3d_opengl.game.terrain.terrain_api.main.Terrain;
 import com.example.game3d_opengl.game.terrain.track_elements.spike.DeathSpike;
 import com.example.game3d_opengl.game.terrain.track_elements.potion.Potion;
-import com.example.game3d_opengl.game.util.GameRandom;
 
 public class BasicTerrainStairs extends BasicTerrainStructure {
 
@@ -25,6 +25,11 @@ public class BasicTerrainStairs extends BasicTerrainStructure {
         this.emptyBetween = emptyBetween;
     }
 
+    @Override
+    protected Object getCompileKey() {
+        return CompiledStructure.key(getClass(), tilesPerStair, cntStairs, emptyBetween, dAngHor, jump);
+    }
+
     @Override
     protected void generateTiles(Terrain.TileBrush brush) {
         brush.setCornerAlphas(0.5f,0.5f);
@@ -48,7 +53,7 @@ public class BasicTerrainStairs extends BasicTerrainStructure {
     @Override
     protected void generateAddons(Terrain.BasicGridBrush brush, int nRows, int nCols) {
         if (nRows <= 0 || nCols <= 0) return;
-        int variant = GameRandom.randInt(0, 2);
+        int variant = random.nextInt(0, 2);
         switch (variant) {
             case 0:
                 placeCenterColumn(brush, nRows, nCols);
@@ -67,7 +72,7 @@ public class BasicTerrainStairs extends BasicTerrainStructure {
         int len = Math.min(nRows, 5);
         if (len <= 0) return;
         Addon[] spikes = new Addon[len];
-        for (int j = 0; j < spikes.length; ++j) spikes[j] = DeathSpike.createDeathSpike();
+        for (int j = 0; j < spikes.length; ++j) spikes[j] = DeathSpike.createDeathSpike(random);
         brush.reserveVertical(1, col, len, spikes);
     }
 
@@ -86,7 +91,7 @@ public class BasicTerrainStairs extends BasicTerrainStructure {
         int right = Math.max(1, Math.min(nCols, (2 * nCols) / 3 + 1));
         Addon[] a = new Addon[len];
         Addon[] b = new Addon[len];
-        for (int j = 0; j < len; ++j) { a[j] = DeathSpike.createDeathSpike(); b[j] = DeathSpike.createDeathSpike(); }
+        for (int j = 0; j < len; ++j) { a[j] = DeathSpike.createDeathSpike(random); b[j] = DeathSpike.createDeathSpike(random); }
         brush.reserveVertical(1, left, len, a);
         brush.reserveVertical(1, right, len, b);
     }
@@ -39,7 +39,7 @@ public class EmptySegmentTestStructure extends AdvancedTerrainStructure {
         // Try to place addons - they should be prevented from appearing in empty segments
         Addon[] addons = new Addon[3];
         for (int j = 0; j < addons.length; j++) {
-            addons[j] = DeathSpike.createDeathSpike();
+            addons[j] = DeathSpike.createDeathSpike(random);
         }
         brush.reserveRandomFittingVertical(addons.length, addons);
     }
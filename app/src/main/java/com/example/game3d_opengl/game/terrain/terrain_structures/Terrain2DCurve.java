@@ -2,6 +2,7 @@ package com.example.game3d_opengl.game.terrain.terrain_structures;
 
 import static java.lang.Math.min;
 
+import com.example.game3d_opengl.game.terrain.terrain_api.main.CompiledStructure;
 import com.example.game3d_opengl.game.terrain.terrain_api.main.AdvancedTerrainStructure;
 import com.example.game3d_opengl.game.terrain.terrain_api.main.Terrain;
 import com.example.game3d_opengl.game.terrain.terrain_api.addon.Addon;
@@ -18,6 +19,11 @@ public class Terrain2DCurve extends AdvancedTerrainStructure {
         this.dAngVer = dAngVer;
     }
 
+    @Override
+    protected Object getCompileKey() {
+        return CompiledStructure.key(getClass(), tilesToMake, dAngHor, dAngVer);
+    }
+
     @Override
     protected void generateTiles(Terrain.TileBrush brush) {
         float angHorPerTile = dAngHor / (float) (tilesToMake);
@@ -36,7 +42,7 @@ public class Terrain2DCurve extends AdvancedTerrainStructure {
         for(int i=0;i<min(2,nRows);++i){
             Addon[] addons = new Addon[min(3,nCols)];
             for(int j = 0; j <addons.length; ++j){
-                addons[j] = DeathSpike.createDeathSpike();
+                addons[j] = DeathSpike.createDeathSpike(random);
             }
             brush.reserveRandomFittingHorizontal(addons.length,addons);
         }
@@ -1,5 +1,6 @@
 package com.example.game3d_opengl.game.terrain.terrain_structures;
 
+import com.example.game3d_opengl.game.terrain.terrain_api.main.CompiledStructure;
 import com.example.game3d_opengl.game.terrain.terrain_api.main.AdvancedTerrainStructure;
 import com.example.game3d_opengl.game.terrain.terrain_api.main.Terrain;
 import com.example.game3d_opengl.game.terrain.terrain_api.addon.Addon;
@@ -15,6 +16,11 @@ public class TerrainCurve extends AdvancedTerrainStructure {
         this.dAngHor = dAngHor;
     }
 
+    @Override
+    protected Object getCompileKey() {
+        return CompiledStructure.key(getClass(), tilesToMake, dAngHor);
+    }
+
     @Override
     protected void generateTiles(Terrain.TileBrush brush) {
         float angHorPerTile = dAngHor / (float) (tilesToMake);
@@ -26,20 +32,16 @@ public class TerrainCurve extends AdvancedTerrainStructure {
 
     @Override
     protected void generateAddons(Terrain.AdvancedGridBrush brush, int nRows, int nCols) {
-        for (int i = 0; i < 2; ++i) {
-            Addon[] addons = new Addon[5];
-            for (int j = 0; j < addons.length; ++j) {
-                addons[j] = DeathSpike.createDeathSpike();
-            }
-            brush.reserveRandomFittingVertical(addons.length, addons);
+        Addon[] spikes = new Addon[2 * 5];
+        for (int j = 0; j < spikes.length; ++j) {
+            spikes[j] = DeathSpike.createDeathSpike(random);
         }
-        for (int i = 0; i < 2; ++i) {
-            Potion[] addons = new Potion[1];
-            for (int j = 0; j < addons.length; ++j) {
-                addons[j] = Potion.createPotion();
-            }
-            brush.reserveRandomFittingVertical(addons.length, addons);
+        brush.reserveRandomFittingVerticalBatch(2, 5, spikes);
+        Potion[] potions = new Potion[2];
+        for (int j = 0; j < potions.length; ++j) {
+            potions[j] = Potion.createPotion();
         }
+        brush.reserveRandomFittingVerticalBatch(potions.length, 1, potions);
 
     }
 }
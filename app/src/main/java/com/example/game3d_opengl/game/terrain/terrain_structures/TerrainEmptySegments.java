@@ -1,5 +1,6 @@
 package com.example.game3d_opengl.game.terrain.terrain_structures;
 
+import com.example.game3d_opengl.game.terrain.terrain_api.main.CompiledStructure;
 import com.example.game3d_opengl.game.terrain.terrain_api.main.AdvancedTerrainStructure;
 import com.example.game3d_opengl.game.terrain.terrain_api.main.Terrain;
 
@@ -12,6 +13,11 @@ public class TerrainEmptySegments extends AdvancedTerrainStructure {
         super(emptySegments);
     }
 
+    @Override
+    protected Object getCompileKey() {
+        return CompiledStructure.key(getClass(), tilesToMake);
+    }
+
     @Override
     protected void generateTiles(Terrain.TileBrush brush) {
         for (int i = 0; i < tilesToMake; ++i) {
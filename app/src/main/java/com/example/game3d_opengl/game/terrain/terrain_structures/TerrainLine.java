@@ -2,6 +2,7 @@ package com.example.game3d_opengl.game.terrain.terrain_structures;
 
 import static java.lang.Math.min;
 
+import com.example.game3d_opengl.game.terrain.terrain_api.main.CompiledStructure;
 import com.example.game3d_opengl.game.terrain.terrain_api.main.AdvancedTerrainStructure;
 import com.example.game3d_opengl.game.terrain.terrain_api.main.Terrain;
 import com.example.game3d_opengl.game.terrain.terrain_api.addon.Addon;
@@ -13,6 +14,11 @@ public class TerrainLine extends AdvancedTerrainStructure {
         super(tilesToMake);
     }
 
+    @Override
+    protected Object getCompileKey() {
+        return CompiledStructure.key(getClass(), tilesToMake);
+    }
+
     @Override
     protected void generateTiles(Terrain.TileBrush brush) {
         for(int i=0;i<tilesToMake;++i){
@@ -24,13 +30,13 @@ public class TerrainLine extends AdvancedTerrainStructure {
     protected void generateAddons(Terrain.AdvancedGridBrush brush, int nRows, int nCols){
         for(int i=0;i<min(3,nRows);++i){
             brush.reserveRandomFittingHorizontal(2,new Addon[]{
-                    DeathSpike.createDeathSpike(), DeathSpike.createDeathSpike()
+                    DeathSpike.createDeathSpike(random), DeathSpike.createDeathSpike(random)
             });
         }
         for(int i=0;i<min(1,nCols);++i) {
             Addon[] addons = new Addon[min(nRows,10)];
             for (int j = 0; j < addons.length; ++j) {
-                addons[j] = DeathSpike.createDeathSpike();
+                addons[j] = DeathSpike.createDeathSpike(random);
             }
             brush.reserveRandomFittingVertical(addons.length, addons);
         }
@@ -2,6 +2,7 @@ package com.example.game3d_opengl.game.terrain.terrain_structures;
 
 import static java.lang.Math.min;
 
+import com.example.game3d_opengl.game.terrain.terrain_api.main.CompiledStructure;
 import com.example.game3d_opengl.game.terrain.terrain_api.main.AdvancedTerrainStructure;
 import com.example.game3d_opengl.game.terrain.terrain_api.main.Terrain;
 import com.example.game3d_opengl.game.terrain.track_elements.potion.Potion;
@@ -13,6 +14,11 @@ public class TerrainLineWithSpikeRect extends AdvancedTerrainStructure {
         super(nTiles);
     }
 
+    @Override
+    protected Object getCompileKey() {
+        return CompiledStructure.key(getClass(), tilesToMake);
+    }
+
     @Override
     protected void generateTiles(Terrain.TileBrush brush) {
         for (int i = 0; i < tilesToMake; ++i) {
@@ -27,7 +33,7 @@ public class TerrainLineWithSpikeRect extends AdvancedTerrainStructure {
         DeathSpike[][] spikes = new DeathSpike[4][sideSize - 1];
         for (int i = 0; i < spikes.length; ++i) {
             for (int j = 0; j < spikes[i].length; ++j) {
-                spikes[i][j] = DeathSpike.createDeathSpike();
+                spikes[i][j] = DeathSpike.createDeathSpike(random);
             }
         }
         final int topLeftRow = 1 + (nRows - sideSize) / 2;
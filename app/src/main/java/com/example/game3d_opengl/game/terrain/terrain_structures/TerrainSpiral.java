@@ -2,6 +2,7 @@ package com.example.game3d_opengl.game.terrain.terrain_structures;
 
 import static java.lang.Math.min;
 
+import com.example.game3d_opengl.game.terrain.terrain_api.main.CompiledStructure;
 import com.example.game3d_opengl.game.terrain.terrain_api.main.AdvancedTerrainStructure;
 import com.example.game3d_opengl.game.terrain.terrain_api.main.Terrain;
 import com.example.game3d_opengl.game.terrain.terrain_api.addon.Addon;
@@ -17,6 +18,11 @@ public class TerrainSpiral extends AdvancedTerrainStructure {
         this.angVer = angVer;
     }
 
+    @Override
+    protected Object getCompileKey() {
+        return CompiledStructure.key(getClass(), tilesToMake, dAngHor, angVer);
+    }
+
     @Override
     protected void generateTiles(Terrain.TileBrush brush) {
         float angHorPerTile = dAngHor / (float) (tilesToMake);
@@ -33,7 +39,7 @@ public class TerrainSpiral extends AdvancedTerrainStructure {
         for(int i=0;i<min(nRows,2);++i){
             Addon[] addons = new Addon[nCols];
             for(int j = 0; j <addons.length; ++j){
-                addons[j] = DeathSpike.createDeathSpike();
+                addons[j] = DeathSpike.createDeathSpike(random);
             }
             brush.reserveRandomFittingHorizontal(addons.length,addons);
         }
@@ -9,6 +9,7 @@ import android.opengl.GLES20;
 
 import com.example.game3d_opengl.game.player.Player;
 import com.example.game3d_opengl.game.util.GameRandom;
+import com.example.game3d_opengl.game.util.RandomStream;
 import com.example.game3d_opengl.rendering.util3d.vector.Vector3D;
 import com.example.game3d_opengl.game.terrain.terrain_api.addon.Addon;
 import com.example.game3d_opengl.rendering.util3d.FColor;
@@ -75,8 +76,19 @@ public class DeathSpike extends Addon {
         this.height = height;
     }
     
+    private static final float MIN_HEIGHT = 0.225f, MAX_HEIGHT = 0.5f;
+    private static final int HEIGHT_DIGITS = 5;
+
     public static DeathSpike createDeathSpike() {
-        float height = GameRandom.randFloat(0.225f, 0.5f, 5);
+        float height = GameRandom.randFloat(MIN_HEIGHT, MAX_HEIGHT, HEIGHT_DIGITS);
+        return new DeathSpike(height); // object3D will be set in onPlace
+    }
+
+    /**
+     * Same as above, with the height drawn from the given stream (e.g. the placing structure's).
+     */
+    public static DeathSpike createDeathSpike(RandomStream random) {
+        float height = random.nextFloat(MIN_HEIGHT, MAX_HEIGHT, HEIGHT_DIGITS);
         return new DeathSpike(height); // object3D will be set in onPlace
     }
 
@@ -1,9 +1,12 @@
 package com.example.game3d_opengl.game.util;
 
-import static java.lang.Math.pow;
-
 import java.util.Random;
 
+/**
+ * Process-wide random helpers, backed by one {@link RandomStream}.
+ * Not thread-safe, and shared by everything that uses it. Terrain generation uses
+ * per-structure streams instead, so it is reproducible and can run on a worker thread.
+ */
 public class GameRandom {
 
     private static final int seed = new Random().nextInt(1000);
@@ -11,24 +14,28 @@ public class GameRandom {
     static{
         System.out.println("SEED: "+seed);
     }
-    private static Random RANDOM = new Random(seed);
+    private static final RandomStream RANDOM = new RandomStream(seed);
+
+    /**
+     * Restarts the shared sequence, e.g. to replay a session.
+     */
+    public static void setSeed(long newSeed){
+        RANDOM.setSeed(newSeed);
+    }
+
+    /**
+     * Returns a seed for a new independent stream.
+     */
+    public static long nextSeed(){
+        return RANDOM.nextLong();
+    }
 
     public static int randInt(int l, int r){
-        return l+RANDOM.nextInt(r-l+1);
+        return RANDOM.nextInt(l, r);
     }
 
     public static float randFloat(float min, float max, int decimalDigits) {
-        if (min > max || decimalDigits < 0) {
-            throw new IllegalArgumentException("Invalid input values");
-        }
-        if(min==max){
-            return min;
-        }
-        Random random = new Random();
-        double randomValue = min + (random.nextDouble() * (max - min));
-        double scaleFactor = pow(10, decimalDigits);
-
-        return (float) (Math.round(randomValue * scaleFactor) / scaleFactor);
+        return RANDOM.nextFloat(min, max, decimalDigits);
     }
 
     public static float randFloatRanges(int decimalDigits, float... args){
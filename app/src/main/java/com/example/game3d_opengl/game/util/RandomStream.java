@@ -0,0 +1,122 @@
+package com.example.game3d_opengl.game.util;
+
+import static java.lang.Math.pow;
+
+/**
+ * SplitMix64 generator: 64 bits of state, no allocation per draw, and cheap to split
+ * into independent streams. The same seed always gives the same sequence, on any thread.
+ * A single stream is not thread-safe; give each thread (or structure) its own split.
+ */
+public final class RandomStream {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private long state;
+
+    public RandomStream(long seed) {
+        this.state = seed;
+    }
+
+    public void setSeed(long seed) {
+        this.state = seed;
+    }
+
+    /**
+     * SplitMix64 output function (Stafford's "Mix13").
+     */
+    public static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public long nextLong() {
+        return mix64(state += GOLDEN_GAMMA);
+    }
+
+    public int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    /**
+     * Uniform in [0, bound). Multiply-shift with rejection, so there is no modulo bias.
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive: " + bound);
+        }
+        long m = (nextLong() >>> 32) * bound;
+        long low = m & 0xFFFFFFFFL;
+        if (low < bound) {
+            long threshold = (0x100000000L - bound) % bound;
+            while (low < threshold) {
+                m = (nextLong() >>> 32) * bound;
+                low = m & 0xFFFFFFFFL;
+            }
+        }
+        return (int) (m >>> 32);
+    }
+
+    /**
+     * Uniform in [0, bound). Draws falling into the last, partial block of bound values are redrawn,
+     * so there is no modulo bias.
+     */
+    public long nextLong(long bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive: " + bound);
+        }
+        long u = nextLong() >>> 1;
+        long r = u % bound;
+        while (u - r + (bound - 1) < 0) { // overflowed: u is in the partial block
+            u = nextLong() >>> 1;
+            r = u % bound;
+        }
+        return r;
+    }
+
+    /**
+     * Uniform in [l, r], both inclusive.
+     */
+    public int nextInt(int l, int r) {
+        if (l > r) {
+            throw new IllegalArgumentException("Empty range: [" + l + ", " + r + "]");
+        }
+        return l + nextInt(r - l + 1);
+    }
+
+    /**
+     * Uniform in [0, 1).
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * Uniform in [min, max], rounded to the given number of decimal digits.
+     */
+    public float nextFloat(float min, float max, int decimalDigits) {
+        if (min > max || decimalDigits < 0) {
+            throw new IllegalArgumentException("Invalid input values");
+        }
+        if (min == max) {
+            return min;
+        }
+        double randomValue = min + (nextDouble() * (max - min));
+        double scaleFactor = pow(10, decimalDigits);
+        return (float) (Math.round(randomValue * scaleFactor) / scaleFactor);
+    }
+
+    /**
+     * Returns a new stream, independent of this one. Advances this stream by one draw.
+     */
+    public RandomStream split() {
+        return new RandomStream(nextLong());
+    }
+
+    /**
+     * Same as {@link #split()}, but reseeds an existing stream instead of allocating one.
+     */
+    public void splitInto(RandomStream child) {
+        child.state = nextLong();
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.addon;
+
+import com.example.game3d_opengl.game.player.Player;
+import com.example.game3d_opengl.rendering.util3d.vector.Vector3D;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class AddonStoreTest {
+
+    private static class Marker extends Addon {
+        Marker(long tileId) {
+            setTileId(tileId);
+            Vector3D zero = new Vector3D(0, 0, 0);
+            place(zero, zero, zero, zero);
+        }
+
+        @Override
+        protected void onPlace(Vector3D fieldNearLeft, Vector3D fieldNearRight,
+                               Vector3D fieldFarLeft, Vector3D fieldFarRight) {
+        }
+
+        @Override
+        public void interactWithPlayer(Player.InteractableAPI api) {
+        }
+
+        @Override
+        public void updateBeforeDraw(float dt) {
+        }
+
+        @Override
+        public void updateAfterDraw(float dt) {
+        }
+
+        @Override
+        public void draw(float[] mvpMatrix) {
+        }
+
+        @Override
+        public void cleanupGPUResourcesRecursivelyOnContextLoss() {
+        }
+
+        @Override
+        public void reloadGPUResourcesRecursivelyOnContextLoss() {
+        }
+    }
+
+    private static Set<Addon> near(AddonStore store, long tileId, int before, int after) {
+        Addon[] out = new Addon[store.getMaxSize()];
+        int n = store.queryNear(tileId, before, after, out);
+        return new HashSet<>(Arrays.asList(out).subList(0, n));
+    }
+
+    @Test
+    public void query_returns_addons_on_nearby_tiles_after_removals() {
+        AddonStore store = new AddonStore(16, 16);
+        Marker a = new Marker(3), b = new Marker(3), c = new Marker(3);
+        Marker d = new Marker(5), e = new Marker(9);
+        for (Marker m : new Marker[]{a, b, c, d, e}) {
+            store.add(m);
+        }
+        assertEquals(new HashSet<Addon>(Arrays.asList(a, b, c, d)), near(store, 4, 1, 1));
+        assertEquals(new HashSet<Addon>(Arrays.asList(e)), near(store, 9, 0, 0));
+        assertTrue(near(store, 7, 1, 1).isEmpty());
+
+        // Removing from the middle of a bucket moves e into a's slot; both lists must stay intact
+        store.remove(a);
+        store.remove(c);
+        assertEquals(3, store.size());
+        assertEquals(new HashSet<Addon>(Arrays.asList(b, d)), near(store, 4, 1, 1));
+        assertEquals(new HashSet<Addon>(Arrays.asList(e)), near(store, 9, 0, 0));
+
+        Addon[] small = new Addon[1];
+        assertEquals(2, store.queryNear(4, 1, 1, small));
+        assertNotNull(small[0]);
+    }
+
+    @Test
+    public void eviction_drops_exactly_the_tiles_left_behind() {
+        AddonStore store = new AddonStore(16, 64);
+        Marker old = new Marker(10), older = new Marker(2), recent = new Marker(40);
+        store.add(old);
+        store.add(older);
+        store.add(recent);
+
+        store.evictGone(55); // only tile 2 is more than 50 tiles behind
+        assertEquals(new HashSet<Addon>(Arrays.asList(old, recent)), near(store, 25, 30, 30));
+
+        store.evictGone(70);
+        assertEquals(1, store.size());
+        assertSame(recent, store.get(0));
+
+        store.evictGone(100);
+        assertEquals(0, store.size());
+        store.add(new Marker(104)); // same bucket as tile 40, free again after eviction
+        assertEquals(1, near(store, 104, 0, 0).size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void tiles_sharing_a_bucket_are_rejected() {
+        AddonStore store = new AddonStore(4, 4);
+        store.add(new Marker(1));
+        store.add(new Marker(5));
+    }
+}
@@ -0,0 +1,409 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic;
+
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advanced.segments.PartialSegmentHandler;
+import com.example.game3d_opengl.game.util.RandomStream;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OccupancyGridTest {
+
+    @Test
+    public void kth_fitting_spaces_follow_line_order() {
+        OccupancyGrid grid = new OccupancyGrid(4, 3);
+        grid.reserveHorizontal(2, 1, 3); // row 2 is full, so columns split into rows 1 and 3..4
+        assertEquals(0, grid.countFittingVertical(3));
+        assertEquals(3, grid.countFittingVertical(2));
+        assertEquals(GridSegment.GS(3, 1, 2), grid.getKthFittingVertical(2, 1));
+        assertEquals(GridSegment.GS(3, 3, 2), grid.getKthFittingVertical(2, 3));
+        assertEquals(6, grid.countFittingHorizontal(2));
+        assertEquals(GridSegment.GS(3, 1, 2), grid.getKthFittingHorizontal(2, 3));
+    }
+
+    @Test
+    public void fit_counts_match_per_orientation_segment_handlers() {
+        // The segment handlers are the model this core replaced: one per orientation, kept in sync cell by cell
+        RandomStream random = new RandomStream(16L);
+        for (int trial = 0; trial < 20; ++trial) {
+            int nRows = random.nextInt(1, 40), nCols = random.nextInt(1, 10);
+            OccupancyGrid grid = new OccupancyGrid(nRows, nCols);
+            PartialSegmentHandler vertical = new PartialSegmentHandler(nRows, nCols, true);
+            PartialSegmentHandler horizontal = new PartialSegmentHandler(nRows, nCols, false);
+            for (int step = 0; step < 60; ++step) {
+                int row = random.nextInt(1, nRows), col = random.nextInt(1, nCols);
+                if (random.nextInt(0, 1) == 0) {
+                    int length = random.nextInt(1, Math.min(4, nRows - row + 1));
+                    if (!grid.isFreeVertical(row, col, length)) {
+                        continue;
+                    }
+                    grid.reserveVertical(row, col, length);
+                    vertical.reserve(row, col, length);
+                    for (int r = row; r < row + length; ++r) {
+                        horizontal.reserve(r, col, 1);
+                    }
+                } else {
+                    int length = random.nextInt(1, Math.min(4, nCols - col + 1));
+                    if (!grid.isFreeHorizontal(row, col, length)) {
+                        continue;
+                    }
+                    grid.reserveHorizontal(row, col, length);
+                    horizontal.reserve(row, col, length);
+                    for (int c = col; c < col + length; ++c) {
+                        vertical.reserve(row, c, 1);
+                    }
+                }
+                for (int length = 1; length <= 4; ++length) {
+                    assertEquals(vertical.countFittingSpaces(length), grid.countFittingVertical(length));
+                    assertEquals(horizontal.countFittingSpaces(length), grid.countFittingHorizontal(length));
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void kth_beyond_count_is_rejected() {
+        OccupancyGrid grid = new OccupancyGrid(4, 3);
+        grid.getKthFittingVertical(4, 4);
+    }
+
+    @Test
+    public void reset_grows_and_frees_everything() {
+        OccupancyGrid grid = new OccupancyGrid(3, 2);
+        grid.reserveVertical(1, 1, 3);
+        assertEquals(3, grid.countFittingHorizontal(1));
+        grid.reset(70, 100);
+        assertEquals(70 * 100, grid.countFittingHorizontal(1));
+        assertEquals(100, grid.countFittingVertical(70));
+    }
+
+    @Test
+    public void rectangles_block_strips_and_other_rectangles() {
+        OccupancyGrid grid = new OccupancyGrid(6, 5);
+        assertEquals(4 * 3, grid.countFittingRects(3, 3));
+        grid.reserveRect(2, 2, 3, 2); // rows 2..3, cols 2..4
+        assertFalse(grid.isFreeVertical(1, 3, 2));
+        assertTrue(grid.isFreeHorizontal(3, 5, 1));
+        assertEquals(2, grid.countFittingRects(5, 2)); // full rows 4..6 hold two
+        assertEquals(GridRect.GR(5, 1, 5, 2), grid.getKthFittingRect(5, 2, 2));
+        assertEquals(6 * 5 - 6, grid.countFittingRects(1, 1));
+        grid.reserveHorizontal(5, 1, 1);
+        assertEquals(0, grid.countFittingRects(5, 2));
+        assertEquals(6 * 5 - 7, grid.countFittingHorizontal(1));
+    }
+
+    @Test
+    public void windows_share_cells_with_their_owner() {
+        OccupancyGrid owner = new OccupancyGrid(20, 4);
+        OccupancyGrid window = owner.window(6, 10);      // owner rows 6..15
+        OccupancyGrid inner = window.window(3, 5);       // owner rows 8..12
+        assertEquals(20, inner.countFittingHorizontal(1));
+        inner.reserveVertical(1, 2, 2);                  // owner rows 8..9
+        assertFalse(owner.isFree(8, 2));
+        assertFalse(window.isFree(4, 2));
+        assertEquals(80 - 2, owner.countFittingHorizontal(1));
+        assertEquals(40 - 2, window.countFittingHorizontal(1));
+        assertEquals(20 - 2, inner.countFittingHorizontal(1));
+
+        owner.reserveHorizontal(12, 1, 4);               // inner row 5
+        assertEquals(3, inner.countFittingVertical(4)); // every column but the 2nd
+        assertEquals(GridSegment.GS(1, 3, 4), inner.getKthFittingVertical(4, 2));
+        assertEquals(8, window.firstFitVertical(1, 2, 3)); // window rows 3, 4 and 7 are taken
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void closed_window_cannot_be_used() {
+        OccupancyGrid owner = new OccupancyGrid(20, 4);
+        OccupancyGrid window = owner.window(6, 10);
+        window.close();
+        window.reserveVertical(1, 1, 1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void reset_closes_windows() {
+        OccupancyGrid owner = new OccupancyGrid(20, 4);
+        OccupancyGrid window = owner.window(1, 20);
+        owner.reset(20, 4);
+        window.countFittingVertical(1);
+    }
+
+    @Test
+    public void clearing_a_window_keeps_the_rest_of_its_columns() {
+        OccupancyGrid owner = new OccupancyGrid(130, 3);
+        OccupancyGrid window = owner.window(61, 10);
+        owner.reserveVertical(1, 2, 130);
+        owner.reserveHorizontal(100, 1, 1);
+        assertEquals(2 * (10 - 2 + 1), window.countFittingVertical(2));
+        window.clear();
+        assertEquals(3 * (10 - 2 + 1), window.countFittingVertical(2));
+        assertEquals(30, window.countFittingRects(1, 1));
+        assertFalse(owner.isFree(60, 2));
+        assertTrue(owner.isFreeVertical(61, 2, 10));
+        assertFalse(owner.isFree(71, 2));
+        assertEquals(129 + 10 + 130, owner.countFittingVertical(1));
+
+        owner.reset(60, 200); // the old bits are laid out for 3 columns
+        assertEquals(60 * 200, owner.countFittingHorizontal(1));
+        assertEquals(200, owner.countFittingVertical(60));
+        assertTrue(owner.isFreeRect(1, 1, 200, 60));
+    }
+
+    @Test
+    public void weighted_picks_follow_the_running_weight_sum() {
+        RandomStream random = new RandomStream(23L);
+        OccupancyGrid owner = new OccupancyGrid(12, 5);
+        OccupancyGrid grid = owner.window(3, 7);
+        boolean[][] taken = new boolean[9][7];
+        for (int i = 0; i < 6; ++i) {
+            int row = random.nextInt(1, 7), col = random.nextInt(1, 5);
+            if (grid.isFree(row, col)) {
+                grid.reserveVertical(row, col, 1);
+                taken[row][col] = true;
+            }
+        }
+        int[] rowWeight = new int[8], colWeight = new int[6];
+        for (int r = 1; r <= 7; ++r) {
+            rowWeight[r] = random.nextInt(0, 3);
+            grid.setRowWeights(r, r, rowWeight[r]);
+        }
+        for (int c = 1; c <= 5; ++c) {
+            colWeight[c] = random.nextInt(0, 3);
+            grid.setColumnWeight(c, colWeight[c]);
+        }
+
+        for (int shape = 0; shape < 3; ++shape) {
+            int width = shape == 0 ? 1 : 2, height = shape == 1 ? 1 : 2;
+            long total = shape == 0 ? grid.weighFittingVertical(height)
+                    : shape == 1 ? grid.weighFittingHorizontal(width) : grid.weighFittingRects(width, height);
+            long expectedTotal = 0;
+            for (int target = 1; ; ++target) {
+                // Walk positions in pick order: column-major for vertical strips, row-major otherwise
+                long sum = 0;
+                int pickRow = -1, pickCol = -1;
+                for (int i = 1; i <= 35 && pickRow < 0; ++i) {
+                    int r = shape == 0 ? (i - 1) % 7 + 1 : (i - 1) / 5 + 1;
+                    int c = shape == 0 ? (i - 1) / 7 + 1 : (i - 1) % 5 + 1;
+                    boolean fits = r + height - 1 <= 7 && c + width - 1 <= 5;
+                    for (int dr = 0; fits && dr < height; ++dr) {
+                        for (int dc = 0; fits && dc < width; ++dc) {
+                            fits = !taken[r + dr][c + dc];
+                        }
+                    }
+                    if (fits) {
+                        sum += (long) rowWeight[r] * colWeight[c];
+                        if (sum >= target) {
+                            pickRow = r;
+                            pickCol = c;
+                        }
+                    }
+                }
+                if (pickRow < 0) {
+                    expectedTotal = sum;
+                    break;
+                }
+                if (shape == 0) {
+                    assertEquals(GridSegment.GS(pickRow, pickCol, height), grid.getFittingVerticalByWeight(height, target));
+                } else if (shape == 1) {
+                    assertEquals(GridSegment.GS(pickRow, pickCol, width), grid.getFittingHorizontalByWeight(width, target));
+                } else {
+                    assertEquals(GridRect.GR(pickRow, pickCol, width, height), grid.getFittingRectByWeight(width, height, target));
+                }
+            }
+            assertEquals(expectedTotal, total);
+        }
+    }
+
+    @Test
+    public void matches_cell_by_cell_model_for_strips_and_rectangles() {
+        RandomStream random = new RandomStream(11L);
+        OccupancyGrid grid = new OccupancyGrid(1, 1);
+        for (int trial = 0; trial < 15; ++trial) {
+            int nRows = random.nextInt(1, 130), nCols = random.nextInt(1, 90);
+            grid.reset(nRows, nCols);
+            boolean[][] taken = new boolean[nRows + 2][nCols + 2];
+            for (int step = 0; step < 300; ++step) {
+                int row = random.nextInt(1, nRows), col = random.nextInt(1, nCols);
+                int width = random.nextInt(1, 6), height = random.nextInt(1, 6);
+                int shape = random.nextInt(3); // vertical strip, horizontal strip, rectangle
+                if (shape == 0) {
+                    width = 1;
+                } else if (shape == 1) {
+                    height = 1;
+                }
+                if (grid.isFreeRect(row, col, width, height)) {
+                    if (shape == 0) {
+                        grid.reserveVertical(row, col, height);
+                    } else if (shape == 1) {
+                        grid.reserveHorizontal(row, col, width);
+                    } else {
+                        grid.reserveRect(row, col, width, height);
+                    }
+                    for (int r = row; r < row + height; ++r) {
+                        for (int c = col; c < col + width; ++c) {
+                            taken[r][c] = true;
+                        }
+                    }
+                }
+
+                int query = random.nextInt(1, 6);
+                int verticalFits = grid.countFittingVertical(query);
+                int horizontalFits = grid.countFittingHorizontal(query);
+                assertEquals(modelCount(taken, nRows, nCols, query, true), verticalFits);
+                assertEquals(modelCount(taken, nRows, nCols, query, false), horizontalFits);
+                if (verticalFits > 0) {
+                    GridSegment s = grid.getKthFittingVertical(query, random.nextInt(1, verticalFits));
+                    assertTrue(grid.isFreeVertical(s.row, s.col, query));
+                }
+                if (horizontalFits > 0) {
+                    GridSegment s = grid.getKthFittingHorizontal(query, random.nextInt(1, horizontalFits));
+                    assertTrue(grid.isFreeHorizontal(s.row, s.col, query));
+                }
+                int rectFits = grid.countFittingRects(width, height);
+                assertEquals(modelRectCount(taken, nRows, nCols, width, height), rectFits);
+                if (rectFits > 0) {
+                    GridRect rect = grid.getKthFittingRect(width, height, random.nextInt(1, rectFits));
+                    assertTrue(grid.isFreeRect(rect.row, rect.col, width, height));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void nearest_strip_matches_closest_free_start() {
+        RandomStream random = new RandomStream(31L);
+        OccupancyGrid owner = new OccupancyGrid(150, 70);
+        OccupancyGrid grid = owner.window(9, 130); // rows cross word boundaries inside the window
+        int nRows = 130, nCols = 70;
+        boolean[][] taken = new boolean[nRows + 2][nCols + 2];
+        for (int i = 0; i < 6000; ++i) {
+            int row = random.nextInt(1, nRows), col = random.nextInt(1, nCols);
+            if (!taken[row][col]) {
+                grid.reserveVertical(row, col, 1);
+                taken[row][col] = true;
+            }
+            if (i % 1000 == 0) { // a stretch of full rows and columns to skip over
+                int full = random.nextInt(1, nRows);
+                for (int c = 1; c <= nCols; ++c) {
+                    if (!taken[full][c]) {
+                        grid.reserveVertical(full, c, 1);
+                        taken[full][c] = true;
+                    }
+                }
+            }
+            if (i % 50 != 0) {
+                continue;
+            }
+            for (int q = 0; q < 10; ++q) {
+                int atRow = random.nextInt(1, nRows), atCol = random.nextInt(1, nCols), length = random.nextInt(1, 7);
+                for (int vertical = 0; vertical < 2; ++vertical) {
+                    GridSegment found = vertical == 1 ? grid.findNearestVertical(atRow, atCol, length)
+                            : grid.findNearestHorizontal(atRow, atCol, length);
+                    int best = Integer.MAX_VALUE;
+                    for (int r = 1; r <= nRows; ++r) {
+                        for (int c = 1; c <= nCols; ++c) {
+                            boolean fits = vertical == 1 ? r + length - 1 <= nRows : c + length - 1 <= nCols;
+                            for (int k = 0; fits && k < length; ++k) {
+                                fits = !(vertical == 1 ? taken[r + k][c] : taken[r][c + k]);
+                            }
+                            if (fits) {
+                                best = Math.min(best, Math.abs(r - atRow) + Math.abs(c - atCol));
+                            }
+                        }
+                    }
+                    if (best == Integer.MAX_VALUE) {
+                        assertNull(found);
+                    } else {
+                        assertNotNull(found);
+                        assertEquals(best, Math.abs(found.row - atRow) + Math.abs(found.col - atCol));
+                        assertTrue(vertical == 1 ? grid.isFreeVertical(found.row, found.col, length)
+                                : grid.isFreeHorizontal(found.row, found.col, length));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void nearest_strip_ties_go_to_nearer_line_then_forward_then_left_or_lower() {
+        // Every pair is two cells apart from (5, 5)
+        assertEquals(GridSegment.GS(3, 5, 1), fullExcept(9, 9, 3, 5, 6, 6).findNearestVertical(5, 5, 1));
+        assertEquals(GridSegment.GS(6, 5, 1), fullExcept(9, 9, 4, 5, 6, 5).findNearestVertical(5, 5, 1));
+        assertEquals(GridSegment.GS(6, 6, 1), fullExcept(9, 9, 4, 4, 6, 6).findNearestVertical(5, 5, 1));
+        assertEquals(GridSegment.GS(6, 4, 1), fullExcept(9, 9, 6, 4, 6, 6).findNearestVertical(5, 5, 1));
+        assertEquals(GridSegment.GS(4, 4, 1), fullExcept(9, 9, 4, 6, 4, 4).findNearestVertical(5, 5, 1));
+
+        assertEquals(GridSegment.GS(5, 3, 1), fullExcept(9, 9, 5, 3, 6, 6).findNearestHorizontal(5, 5, 1));
+        assertEquals(GridSegment.GS(5, 6, 1), fullExcept(9, 9, 5, 4, 5, 6).findNearestHorizontal(5, 5, 1));
+        assertEquals(GridSegment.GS(6, 6, 1), fullExcept(9, 9, 4, 4, 6, 6).findNearestHorizontal(5, 5, 1));
+        assertEquals(GridSegment.GS(4, 6, 1), fullExcept(9, 9, 6, 6, 4, 6).findNearestHorizontal(5, 5, 1));
+        assertEquals(GridSegment.GS(4, 4, 1), fullExcept(9, 9, 6, 4, 4, 4).findNearestHorizontal(5, 5, 1));
+    }
+
+    @Test
+    public void nearest_strip_stops_once_line_distance_reaches_best_match() {
+        // Best match 9 apart in the target line, then 3 lines + 2 cells away: lines up to distance 4 are scanned
+        OccupancyGrid vertical = fullExcept(20, 30, 1, 15, 12, 12);
+        assertEquals(GridSegment.GS(12, 12, 1), vertical.findNearestVertical(10, 15, 1));
+        assertEquals(1 + 2 * 4, vertical.nearestLinesScanned);
+
+        OccupancyGrid horizontal = fullExcept(30, 20, 15, 1, 12, 12);
+        assertEquals(GridSegment.GS(12, 12, 1), horizontal.findNearestHorizontal(15, 10, 1));
+        assertEquals(1 + 2 * 4, horizontal.nearestLinesScanned);
+
+        // A free target needs only its own line
+        assertEquals(GridSegment.GS(1, 15, 1), vertical.findNearestVertical(1, 15, 1));
+        assertEquals(1, vertical.nearestLinesScanned);
+    }
+
+    /**
+     * A grid with every cell taken except the given (row, col) pairs.
+     */
+    private static OccupancyGrid fullExcept(int nRows, int nCols, int... free) {
+        boolean[][] keep = new boolean[nRows + 1][nCols + 1];
+        for (int i = 0; i < free.length; i += 2) {
+            keep[free[i]][free[i + 1]] = true;
+        }
+        OccupancyGrid grid = new OccupancyGrid(nRows, nCols);
+        for (int r = 1; r <= nRows; ++r) {
+            for (int c = 1; c <= nCols; ++c) {
+                if (!keep[r][c]) {
+                    grid.reserveVertical(r, c, 1);
+                }
+            }
+        }
+        return grid;
+    }
+
+    private static int modelCount(boolean[][] taken, int nRows, int nCols, int length, boolean vertical) {
+        int total = 0;
+        for (int r = 1; r <= nRows; ++r) {
+            for (int c = 1; c <= nCols; ++c) {
+                boolean fits = vertical ? r + length - 1 <= nRows : c + length - 1 <= nCols;
+                for (int i = 0; fits && i < length; ++i) {
+                    fits = !(vertical ? taken[r + i][c] : taken[r][c + i]);
+                }
+                if (fits) {
+                    ++total;
+                }
+            }
+        }
+        return total;
+    }
+
+    private static int modelRectCount(boolean[][] taken, int nRows, int nCols, int width, int height) {
+        int total = 0;
+        for (int r = 1; r + height - 1 <= nRows; ++r) {
+            for (int c = 1; c + width - 1 <= nCols; ++c) {
+                boolean fits = true;
+                for (int i = 0; fits && i < height; ++i) {
+                    for (int j = 0; fits && j < width; ++j) {
+                        fits = !taken[r + i][c + j];
+                    }
+                }
+                if (fits) {
+                    ++total;
+                }
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advanced;
+
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.GridCreatorWrapper;
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.GridRect;
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.GridSegment;
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.NoFittingSpaceException;
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.bitset.BitsetGridCreator;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AdvancedGridCreatorTest {
+
+    @Test
+    public void batch_matches_sequential_random_reservations() {
+        GridCreatorWrapper parentA = new GridCreatorWrapper(), parentB = new GridCreatorWrapper();
+        parentA.content = new BitsetGridCreator(100, 5);
+        parentB.content = new BitsetGridCreator(100, 5);
+        AdvancedGridCreator sequential = new AdvancedGridCreator(60, 5, parentA, 20, new GridRegionPool(), 77L);
+        AdvancedGridCreator batched = new AdvancedGridCreator(60, 5, parentB, 20, new GridRegionPool(), 77L);
+        int[] rows = new int[10], cols = new int[10];
+
+        batched.reserveRandomFittingVerticalBatch(2, 5, rows, cols);
+        for (int i = 0; i < 2; ++i) {
+            assertEquals(sequential.reserveRandomFittingVertical(5), new GridSegment(rows[i], cols[i], 5));
+        }
+        batched.reserveRandomFittingHorizontalBatch(10, 2, rows, cols);
+        for (int i = 0; i < 10; ++i) {
+            assertEquals(sequential.reserveRandomFittingHorizontal(2), new GridSegment(rows[i], cols[i], 2));
+        }
+        batched.reserveRandomFittingVerticalBatch(8, 1, rows, cols);
+        for (int i = 0; i < 8; ++i) {
+            assertEquals(sequential.reserveRandomFittingVertical(1), new GridSegment(rows[i], cols[i], 1));
+        }
+
+        // Same cells taken in both grids and in their parents
+        BitsetGridCreator a = (BitsetGridCreator) parentA.content, b = (BitsetGridCreator) parentB.content;
+        assertEquals(a.countFittingHorizontal(1), b.countFittingHorizontal(1));
+        assertEquals(100 * 5 - (2 * 5 + 10 * 2 + 8), b.countFittingHorizontal(1));
+    }
+
+    @Test
+    public void random_rectangles_fill_the_grid_and_reach_the_parent() {
+        GridCreatorWrapper parent = new GridCreatorWrapper();
+        BitsetGridCreator root = new BitsetGridCreator(40, 6);
+        parent.content = root;
+        AdvancedGridCreator grid = new AdvancedGridCreator(12, 6, parent, 10, new GridRegionPool(), 5L);
+        grid.reserveRect(1, 1, 6, 1);
+        for (int i = 0; i < 4; ++i) {
+            GridRect rect = grid.reserveRandomFittingRect(3, 2);
+            assertTrue(rect.row >= 2 && rect.row + 1 <= 12);
+            assertFalse(root.isFreeHorizontal(rect.row + 10, rect.col, 1));
+        }
+        assertEquals(40 * 6 - 6 - 4 * 6, root.countFittingHorizontal(1));
+    }
+
+    @Test
+    public void nested_grids_reserve_once_in_the_outermost_grid() {
+        GridCreatorWrapper top = new GridCreatorWrapper(), root = new GridCreatorWrapper(), child = new GridCreatorWrapper();
+        top.content = new BitsetGridCreator(50, 4);
+        GridRegionPool pool = new GridRegionPool();
+        // Children are created before their parents' grids, as during generation
+        child.content = new AdvancedGridCreator(10, 4, root, 5, pool, 1L);
+        AdvancedGridCreator grandchild = new AdvancedGridCreator(4, 4, child, 2, pool, 2L);
+        root.content = new AdvancedGridCreator(30, 4, top, 10, pool, 3L);
+
+        grandchild.reserveVertical(1, 1, 3); // root rows 8..10
+        assertFalse(((BitsetGridCreator) top.content).isFreeVertical(18, 1, 1));
+        assertTrue(((BitsetGridCreator) top.content).isFreeVertical(21, 1, 1));
+        try {
+            root.content.reserveHorizontal(9, 1, 1);
+            fail("Root grid should see the grandchild's reservation");
+        } catch (IllegalArgumentException expected) {
+            // already taken
+        }
+        // Random picks in the child avoid it too
+        for (int i = 0; i < 10 * 4 - 3; ++i) {
+            ((AdvancedGridCreator) child.content).reserveRandomFittingHorizontal(1);
+        }
+        assertEquals(1, pool.getCreatedCount());
+        grandchild.destroy();
+        child.content.destroy();
+        root.content.destroy();
+        assertEquals(0, pool.getLiveCount());
+    }
+
+    @Test
+    public void rollback_frees_tentative_reservations_and_commit_forwards_them() {
+        GridCreatorWrapper parent = new GridCreatorWrapper(), shared = new GridCreatorWrapper();
+        BitsetGridCreator root = new BitsetGridCreator(40, 5);
+        parent.content = root;
+        AdvancedGridCreator outer = new AdvancedGridCreator(30, 5, parent, 10, new GridRegionPool(), 3L);
+        shared.content = outer;
+        AdvancedGridCreator inner = new AdvancedGridCreator(10, 5, shared, 5, new GridRegionPool(), 4L);
+        inner.reserveVertical(1, 1, 3);
+
+        inner.beginTransaction();
+        inner.reserveHorizontal(5, 1, 5);
+        inner.reserveRect(1, 3, 2, 2);
+        try {
+            inner.reserveVertical(4, 3, 3); // crosses the tentative row 5
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(40 * 5 - 3, root.countFittingHorizontal(1)); // nothing forwarded yet
+        inner.rollback();
+
+        inner.beginTransaction();
+        inner.reserveVertical(4, 3, 3);
+        inner.reserveRect(8, 4, 2, 2);
+        inner.commit();
+        assertEquals(40 * 5 - 3 - 3 - 4, root.countFittingHorizontal(1));
+        assertFalse(root.isFreeVertical(19, 3, 3)); // inner row 4 is root row 19
+        assertTrue(root.isFreeHorizontal(20, 1, 2));
+        assertTrue(root.isFreeHorizontal(16, 3, 2));
+
+        inner.beginTransaction();
+        inner.reserveHorizontal(10, 1, 5);
+        inner.destroy(); // rolls back the open transaction
+        outer.reserveHorizontal(15, 1, 5); // inner row 10 is outer row 15
+    }
+
+    @Test
+    public void commit_forwards_nothing_if_the_parent_took_a_cell_meanwhile() {
+        GridCreatorWrapper parent = new GridCreatorWrapper();
+        BitsetGridCreator root = new BitsetGridCreator(40, 5);
+        parent.content = root;
+        AdvancedGridCreator grid = new AdvancedGridCreator(20, 5, parent, 10, new GridRegionPool(), 6L);
+
+        grid.beginTransaction();
+        grid.reserveHorizontal(1, 1, 5);
+        grid.reserveRect(3, 1, 2, 2);
+        grid.reserveVertical(6, 4, 3);
+        root.reserveVertical(17, 4, 1); // grid row 7, under the last tentative strip
+        try {
+            grid.commit();
+            fail();
+        } catch (NoFittingSpaceException expected) {
+        }
+        assertEquals(40 * 5 - 1, root.countFittingHorizontal(1)); // none of the group reached the parent
+
+        grid.rollback(); // still open
+        assertEquals(GridSegment.GS(1, 1, 5), grid.reserveHorizontal(1, 1, 5));
+        assertFalse(root.isFreeHorizontal(11, 1, 1));
+    }
+
+    @Test
+    public void zero_weights_keep_weighted_picks_away() {
+        AdvancedGridCreator grid = new AdvancedGridCreator(40, 5, null, 0, new GridRegionPool(), 8L);
+        grid.setColumnWeight(1, 0);
+        grid.setColumnWeight(5, 0);
+        grid.setRowWeights(1, 20, 0);
+        grid.setRowWeights(21, 40, 3);
+        for (int i = 0; i < 30; ++i) {
+            GridSegment s = grid.reserveWeightedRandomFittingHorizontal(1);
+            assertTrue(s.col > 1 && s.col < 5 && s.row > 20);
+        }
+        // Column 1 was never picked
+        assertEquals(GridSegment.GS(21, 1, 20), grid.reserveVertical(21, 1, 20));
+    }
+}
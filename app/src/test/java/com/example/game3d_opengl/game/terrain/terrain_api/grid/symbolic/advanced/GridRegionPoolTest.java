@@ -0,0 +1,60 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advanced;
+
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.GridSegment;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GridRegionPoolTest {
+
+    @Test
+    public void released_regions_are_reused_and_empty() {
+        GridRegionPool pool = new GridRegionPool();
+        AdvancedGridCreator first = new AdvancedGridCreator(10, 4, null, 0, pool, 1L);
+        first.reserveVertical(1, 1, 10);
+        first.destroy();
+
+        AdvancedGridCreator second = new AdvancedGridCreator(30, 6, null, 0, pool, 1L);
+        assertEquals(1, pool.getCreatedCount());
+        // The whole (larger) grid is free again
+        second.reserveVertical(1, 1, 30);
+        second.reserveHorizontal(30, 2, 5);
+        assertEquals(1, pool.getLiveCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void grid_cannot_be_used_after_release() {
+        GridRegionPool pool = new GridRegionPool();
+        AdvancedGridCreator grid = new AdvancedGridCreator(10, 4, null, 0, pool, 1L);
+        grid.destroy();
+        new AdvancedGridCreator(10, 4, null, 0, pool, 1L); // takes the same region
+        grid.reserveVertical(1, 1, 2);
+    }
+
+    @Test
+    public void reset_releases_every_region() {
+        GridRegionPool pool = new GridRegionPool();
+        new AdvancedGridCreator(10, 4, null, 0, pool, 1L);
+        new AdvancedGridCreator(10, 4, null, 0, pool, 1L);
+        pool.reset();
+        assertEquals(0, pool.getLiveCount());
+        assertEquals(2, pool.getHighWaterMark());
+        new AdvancedGridCreator(10, 4, null, 0, pool, 1L);
+        assertEquals(2, pool.getCreatedCount());
+    }
+
+    @Test
+    public void own_and_reused_region_grids_pick_the_same_random_spaces() {
+        GridRegionPool pool = new GridRegionPool();
+        AdvancedGridCreator used = new AdvancedGridCreator(5, 2, null, 0, pool, 3L);
+        used.reserveHorizontal(2, 1, 2);
+        used.destroy(); // a too small, dirty region waits in the pool, and gets grown
+        AdvancedGridCreator expected = new AdvancedGridCreator(80, 6, null, 0, 9L);
+        AdvancedGridCreator actual = new AdvancedGridCreator(80, 6, null, 0, pool, 9L);
+        for (int i = 0; i < 60; ++i) {
+            GridSegment a = (i & 1) == 0 ? expected.reserveRandomFittingVertical(3) : expected.reserveRandomFittingHorizontal(2);
+            GridSegment b = (i & 1) == 0 ? actual.reserveRandomFittingVertical(3) : actual.reserveRandomFittingHorizontal(2);
+            assertEquals(a, b);
+        }
+    }
+}
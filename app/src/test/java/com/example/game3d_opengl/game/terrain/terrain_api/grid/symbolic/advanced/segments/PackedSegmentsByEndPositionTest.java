@@ -0,0 +1,122 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advanced.segments;
+
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.GridSegment;
+import com.example.game3d_opengl.game.util.AllocationMeter;
+import com.example.game3d_opengl.game.util.RandomStream;
+import org.junit.Test;
+
+import java.util.Iterator;
+
+import static org.junit.Assert.*;
+
+public class PackedSegmentsByEndPositionTest {
+
+    @Test
+    public void reserve_in_middle_reports_taken_and_both_remainders() {
+        PackedSegmentsByEndPosition s = new PackedSegmentsByEndPosition(20, 5, true);
+        s.insert(3, 4, 10); // col=4, rows 3..12
+
+        s.reserve(7, 4, 4); // rows 7..10
+        assertSlot(s, 0, new GridSegment(3, 4, 10));
+        assertSlot(s, 1, new GridSegment(3, 4, 4));
+        assertSlot(s, 2, new GridSegment(11, 4, 2));
+        assertEquals(2, s.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void reserve_across_a_gap_is_rejected() {
+        PackedSegmentsByEndPosition s = new PackedSegmentsByEndPosition(3, 10, false);
+        s.insert(2, 1, 10);
+        s.reserve(2, 4, 2);
+        s.reserve(2, 3, 3);
+    }
+
+    @Test
+    public void matches_tree_implementation_on_random_reservations() {
+        RandomStream random = new RandomStream(11L);
+        for (int trial = 0; trial < 40; ++trial) {
+            boolean vertical = (trial & 1) == 0;
+            int nRows = random.nextInt(1, 60), nCols = random.nextInt(1, 12);
+            runDifferential(random, nRows, nCols, vertical);
+        }
+    }
+
+    private static void runDifferential(RandomStream random, int nRows, int nCols, boolean vertical) {
+        SegmentsByEndPosition tree = new SegmentsByEndPosition(nRows, nCols, vertical);
+        PackedSegmentsByEndPosition packed = new PackedSegmentsByEndPosition(nRows, nCols, vertical);
+        int nLines = vertical ? nCols : nRows, lineLength = vertical ? nRows : nCols;
+        for (int line = 1; line <= nLines; ++line) {
+            int row = vertical ? 1 : line, col = vertical ? line : 1;
+            tree.insert(row, col, lineLength);
+            packed.insert(row, col, lineLength);
+        }
+        boolean[][] taken = new boolean[nLines + 1][lineLength + 1];
+
+        for (int step = 0; step < 300; ++step) {
+            int line = random.nextInt(1, nLines);
+            int start = random.nextInt(1, lineLength);
+            int length = random.nextInt(1, Math.min(4, lineLength - start + 1));
+            int row = vertical ? start : line, col = vertical ? line : start;
+
+            boolean free = true;
+            for (int p = start; p < start + length; ++p) {
+                free &= !taken[line][p];
+            }
+            if (!free) {
+                try {
+                    packed.reserve(row, col, length);
+                    fail("Reserved a taken cell");
+                } catch (IllegalArgumentException expected) {
+                    continue;
+                }
+            }
+            for (int p = start; p < start + length; ++p) {
+                taken[line][p] = true;
+            }
+
+            GridSegment[] expected = tree.reserve(row, col, length);
+            packed.reserve(row, col, length);
+            for (int slot = 0; slot < 3; ++slot) {
+                if (expected[slot] == null) {
+                    assertEquals(0, packed.getResultLength(slot));
+                } else {
+                    assertSlot(packed, slot, expected[slot]);
+                }
+            }
+        }
+        assertSameSegments(tree, packed);
+    }
+
+    private static void assertSameSegments(SegmentsByEndPosition tree, PackedSegmentsByEndPosition packed) {
+        assertEquals(tree.tree.size(), packed.size());
+        // Both iterate by line, then by position
+        Iterator<GridSegment> it = tree.tree.iterator();
+        for (int line = 1; line <= packed.getLineCount(); ++line) {
+            for (int i = 0; i < packed.getSegmentCount(line); ++i) {
+                assertEquals(it.next(), new GridSegment(packed.getRow(line, i), packed.getCol(line, i), packed.getLength(line, i)));
+            }
+        }
+    }
+
+    private static void assertSlot(PackedSegmentsByEndPosition s, int slot, GridSegment expected) {
+        assertEquals(expected, new GridSegment(s.getResultRow(slot), s.getResultCol(slot), s.getResultLength(slot)));
+    }
+
+    @Test
+    public void reserve_does_not_allocate() {
+        PackedSegmentsByEndPosition s = new PackedSegmentsByEndPosition(200, 32, true);
+        fillAndSplit(s);
+
+        assertEquals(0L, AllocationMeter.measure(() -> fillAndSplit(s)));
+    }
+
+    private static void fillAndSplit(PackedSegmentsByEndPosition s) {
+        s.clear();
+        for (int col = 1; col <= 32; ++col) {
+            s.insert(1, col, 200);
+            for (int row = 2; row < 200; row += 2) {
+                s.reserve(row, col, 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advanced.segments.by_length;
+
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.GridSegment;
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advanced.segments.by_length.segtree_implementation.CompactHashedSegmentsByLength;
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advanced.segments.by_length.segtree_implementation.PreallocatedHashedSegmentsByLengthNodes;
+import com.example.game3d_opengl.game.util.RandomStream;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CompactHashedSegmentsByLengthTest {
+
+    @Test
+    public void count_and_kth_horizontal_segments() {
+        CompactHashedSegmentsByLength s = new CompactHashedSegmentsByLength(5, 7, false);
+        s.insert(2, 1, 5);
+        s.insert(2, 6, 2);
+        s.insert(4, 2, 3);
+
+        assertEquals(4, s.countFittingSpaces(3));
+        assertEquals(new GridSegment(4, 2, 3), s.getKthFittingSpace(3, 1));
+        assertEquals(new GridSegment(2, 1, 3), s.getKthFittingSpace(3, 2));
+        assertEquals(new GridSegment(2, 3, 3), s.getKthFittingSpace(3, 4));
+    }
+
+    @Test
+    public void deleting_everything_frees_all_nodes() {
+        CompactHashedSegmentsByLength s = new CompactHashedSegmentsByLength(200, 6, true, 4);
+        for (int col = 1; col <= 6; ++col) {
+            s.insert(1, col, 200);
+            s.insert(col * 10, col, 3);
+        }
+        assertTrue(s.getNodeCount() > 1);
+        for (int col = 1; col <= 6; ++col) {
+            s.delete(1, col, 200);
+            s.delete(col * 10, col, 3);
+        }
+        assertEquals(1, s.getNodeCount());
+        assertEquals(0, s.countFittingSpaces(1));
+    }
+
+    @Test
+    public void matches_pooled_tree_on_random_segments() {
+        RandomStream random = new RandomStream(21L);
+        for (int trial = 0; trial < 30; ++trial) {
+            boolean vertical = (trial & 1) == 1;
+            int nRows = random.nextInt(1, 40), nCols = random.nextInt(1, 12);
+            int lineLength = vertical ? nRows : nCols;
+            PreallocatedHashedSegmentsByLengthNodes expected =
+                    new PreallocatedHashedSegmentsByLengthNodes(nRows, nCols, vertical);
+            CompactHashedSegmentsByLength actual = new CompactHashedSegmentsByLength(nRows, nCols, vertical, 2);
+            List<GridSegment> present = new ArrayList<>();
+
+            for (int step = 0; step < 200; ++step) {
+                if (!present.isEmpty() && random.nextInt(3) == 0) {
+                    GridSegment seg = present.remove(random.nextInt(present.size()));
+                    expected.delete(seg.row, seg.col, seg.length);
+                    actual.delete(seg.row, seg.col, seg.length);
+                } else {
+                    int length = random.nextInt(1, lineLength);
+                    int row = vertical ? random.nextInt(1, nRows - length + 1) : random.nextInt(1, nRows);
+                    int col = vertical ? random.nextInt(1, nCols) : random.nextInt(1, nCols - length + 1);
+                    GridSegment seg = new GridSegment(row, col, length);
+                    if (present.contains(seg)) {
+                        continue;
+                    }
+                    present.add(seg);
+                    expected.insert(row, col, length);
+                    actual.insert(row, col, length);
+                }
+                for (int spaceSize = 1; spaceSize <= lineLength; ++spaceSize) {
+                    int count = expected.countFittingSpaces(spaceSize);
+                    assertEquals(count, actual.countFittingSpaces(spaceSize));
+                    if (count > 0) {
+                        int k = random.nextInt(1, count);
+                        assertEquals(expected.getKthFittingSpace(spaceSize, k), actual.getKthFittingSpace(spaceSize, k));
+                    }
+                }
+            }
+            expected.destroy();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advanced.segments.by_length;
+
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.GridSegment;
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advanced.segments.PackedSegmentsByEndPosition;
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advanced.segments.by_length.segtree_implementation.CompactHashedSegmentsByLength;
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advanced.segments.by_length.segtree_implementation.NodePool;
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.advanced.segments.by_length.segtree_implementation.PreallocatedHashedSegmentsByLengthNodes;
+import com.example.game3d_opengl.game.util.RandomStream;
+
+/**
+ * Not a unit test: run main() by hand to compare SegmentsByLength implementations on the workload
+ * of PartialSegmentHandler (fill a grid, then random-fitting reservations until it is mostly taken).
+ */
+public class SegmentsByLengthBenchmark {
+
+    private static final int ROWS = 200;
+    private static final int ROUNDS = 200;
+
+    private interface Factory {
+        SegmentsByLength create(int nRows, int nCols, boolean vertical);
+    }
+
+    public static void main(String[] args) {
+        final NodePool pool = new NodePool(1 << 16);
+        Factory pooled = new Factory() {
+            @Override
+            public SegmentsByLength create(int nRows, int nCols, boolean vertical) {
+                return new PreallocatedHashedSegmentsByLengthNodes(nRows, nCols, vertical, pool);
+            }
+        };
+        Factory compact = new Factory() {
+            @Override
+            public SegmentsByLength create(int nRows, int nCols, boolean vertical) {
+                return new CompactHashedSegmentsByLength(nRows, nCols, vertical);
+            }
+        };
+        for (int pass = 0; pass < 2; ++pass) { // first pass is warm-up
+            for (int nCols : new int[]{6, 32}) {
+                for (boolean vertical : new boolean[]{true, false}) {
+                    long a = run(pooled, nCols, vertical), b = run(compact, nCols, vertical);
+                    if (pass == 1) {
+                        System.out.printf("%dx%d %s: pooled %.1f ms, compact %.1f ms (x%.2f)%n",
+                                ROWS, nCols, vertical ? "vertical" : "horizontal",
+                                a / 1e6, b / 1e6, (double) a / b);
+                    }
+                }
+            }
+        }
+    }
+
+    private static long run(Factory factory, int nCols, boolean vertical) {
+        RandomStream random = new RandomStream(1L);
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; ++round) {
+            SegmentsByLength byLength = factory.create(ROWS, nCols, vertical);
+            PackedSegmentsByEndPosition byEnd = new PackedSegmentsByEndPosition(ROWS, nCols, vertical);
+            int lines = vertical ? nCols : ROWS, lineLength = vertical ? ROWS : nCols;
+            for (int line = 1; line <= lines; ++line) {
+                int row = vertical ? 1 : line, col = vertical ? line : 1;
+                byLength.insert(row, col, lineLength);
+                byEnd.insert(row, col, lineLength);
+            }
+            for (int i = 0; i < ROWS * nCols / 3; ++i) {
+                int length = 1 + random.nextInt(Math.min(3, lineLength));
+                int total = byLength.countFittingSpaces(length);
+                if (total == 0) {
+                    break;
+                }
+                GridSegment found = byLength.getKthFittingSpace(length, random.nextInt(1, total));
+                byEnd.reserve(found.row, found.col, length);
+                byLength.delete(byEnd.getResultRow(0), byEnd.getResultCol(0), byEnd.getResultLength(0));
+                for (int slot = 1; slot <= 2; ++slot) {
+                    if (byEnd.getResultLength(slot) != 0) {
+                        byLength.insert(byEnd.getResultRow(slot), byEnd.getResultCol(slot), byEnd.getResultLength(slot));
+                    }
+                }
+                checksum += found.row + found.col;
+            }
+            byLength.destroy();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (checksum == 42) {
+            System.out.println();
+        }
+        return elapsed;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.bitset;
+
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.GridCreatorWrapper;
+import com.example.game3d_opengl.game.util.RandomStream;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BitsetGridCreatorTest {
+
+    @Test
+    public void crossing_strips_collide() {
+        BitsetGridCreator grid = new BitsetGridCreator(10, 5);
+        grid.reserveVertical(2, 3, 4); // col 3, rows 2..5
+        assertFalse(grid.isFreeHorizontal(4, 1, 5));
+        assertTrue(grid.isFreeHorizontal(4, 4, 2));
+        assertEquals(1, grid.firstFitHorizontal(4, 1, 2));
+        assertEquals(4, grid.firstFitHorizontal(4, 2, 2));
+        assertEquals(6, grid.firstFitVertical(1, 3, 3));
+        assertEquals(-1, grid.firstFitVertical(1, 3, 6));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void reserving_a_taken_cell_is_rejected() {
+        BitsetGridCreator grid = new BitsetGridCreator(10, 5);
+        grid.reserveHorizontal(3, 1, 5);
+        grid.reserveVertical(1, 2, 3);
+    }
+
+    @Test
+    public void reservations_reach_the_parent_with_row_offset() {
+        GridCreatorWrapper parent = new GridCreatorWrapper();
+        BitsetGridCreator root = new BitsetGridCreator(30, 4);
+        parent.content = root;
+        BitsetGridCreator child = new BitsetGridCreator(10, 4, parent, 12);
+        child.reserveVertical(2, 1, 3);
+        assertFalse(root.isFreeVertical(14, 1, 1));
+        assertTrue(root.isFreeVertical(17, 1, 1));
+    }
+
+    @Test
+    public void matches_cell_by_cell_model_on_wide_grids() {
+        RandomStream random = new RandomStream(3L);
+        for (int trial = 0; trial < 20; ++trial) {
+            int nRows = random.nextInt(1, 150), nCols = random.nextInt(1, 140);
+            BitsetGridCreator grid = new BitsetGridCreator(nRows, nCols);
+            boolean[][] taken = new boolean[nRows + 2][nCols + 2];
+            for (int step = 0; step < 400; ++step) {
+                boolean vertical = random.nextInt(2) == 0;
+                int row = random.nextInt(1, nRows), col = random.nextInt(1, nCols);
+                int length = random.nextInt(1, 70);
+
+                boolean free = vertical ? row + length - 1 <= nRows : col + length - 1 <= nCols;
+                for (int i = 0; free && i < length; ++i) {
+                    free = !(vertical ? taken[row + i][col] : taken[row][col + i]);
+                }
+                assertEquals(free, vertical ? grid.isFreeVertical(row, col, length)
+                        : grid.isFreeHorizontal(row, col, length));
+                assertEquals(modelFirstFit(taken, nRows, nCols, row, col, length, vertical),
+                        vertical ? grid.firstFitVertical(row, col, length)
+                                : grid.firstFitHorizontal(row, col, length));
+
+                if (free) {
+                    for (int i = 0; i < length; ++i) {
+                        if (vertical) {
+                            taken[row + i][col] = true;
+                        } else {
+                            taken[row][col + i] = true;
+                        }
+                    }
+                    if (vertical) {
+                        grid.reserveVertical(row, col, length);
+                    } else {
+                        grid.reserveHorizontal(row, col, length);
+                    }
+                }
+            }
+            for (int length = 1; length <= 5; ++length) {
+                assertEquals(modelCount(taken, nRows, nCols, length, true), grid.countFittingVertical(length));
+                assertEquals(modelCount(taken, nRows, nCols, length, false), grid.countFittingHorizontal(length));
+            }
+        }
+    }
+
+    private static boolean fits(boolean[][] taken, int nRows, int nCols, int row, int col, int length, boolean vertical) {
+        if (vertical ? row + length - 1 > nRows : col + length - 1 > nCols) {
+            return false;
+        }
+        for (int i = 0; i < length; ++i) {
+            if (vertical ? taken[row + i][col] : taken[row][col + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int modelFirstFit(boolean[][] taken, int nRows, int nCols, int row, int col, int length, boolean vertical) {
+        for (int p = vertical ? row : col; p <= (vertical ? nRows : nCols); ++p) {
+            if (vertical ? fits(taken, nRows, nCols, p, col, length, true) : fits(taken, nRows, nCols, row, p, length, false)) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    private static int modelCount(boolean[][] taken, int nRows, int nCols, int length, boolean vertical) {
+        int total = 0;
+        for (int r = 1; r <= nRows; ++r) {
+            for (int c = 1; c <= nCols; ++c) {
+                if (fits(taken, nRows, nCols, r, c, length, vertical)) {
+                    ++total;
+                }
+            }
+        }
+        return total;
+    }
+}
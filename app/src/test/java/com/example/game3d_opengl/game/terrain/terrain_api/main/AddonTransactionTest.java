@@ -0,0 +1,134 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.main;
+
+import com.example.game3d_opengl.game.player.Player;
+import com.example.game3d_opengl.game.terrain.terrain_api.addon.Addon;
+import com.example.game3d_opengl.game.terrain.terrain_api.grid.symbolic.NoFittingSpaceException;
+import com.example.game3d_opengl.rendering.util3d.vector.Vector3D;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AddonTransactionTest {
+
+    private static class Marker extends Addon {
+        @Override
+        protected void onPlace(Vector3D fieldNearLeft, Vector3D fieldNearRight,
+                               Vector3D fieldFarLeft, Vector3D fieldFarRight) {
+        }
+
+        @Override
+        public void interactWithPlayer(Player.InteractableAPI api) {
+        }
+
+        @Override
+        public void updateBeforeDraw(float dt) {
+        }
+
+        @Override
+        public void updateAfterDraw(float dt) {
+        }
+
+        @Override
+        public void draw(float[] mvpMatrix) {
+        }
+
+        @Override
+        public void cleanupGPUResourcesRecursivelyOnContextLoss() {
+        }
+
+        @Override
+        public void reloadGPUResourcesRecursivelyOnContextLoss() {
+        }
+    }
+
+    private static Addon[] markers(int n) {
+        Addon[] res = new Addon[n];
+        for (int i = 0; i < n; ++i) {
+            res[i] = new Marker();
+        }
+        return res;
+    }
+
+    private static class Tentative extends AdvancedTerrainStructure {
+        Tentative() {
+            super(10);
+        }
+
+        @Override
+        protected void generateTiles(Terrain.TileBrush brush) {
+            for (int i = 0; i < tilesToMake; ++i) {
+                brush.addSegment();
+            }
+        }
+
+        @Override
+        protected void generateAddons(Terrain.AdvancedGridBrush brush, int nRows, int nCols) {
+            brush.reserveVertical(1, 1, 2, markers(2));
+
+            // Second strip overlaps the first one, so the whole group is dropped
+            brush.beginTransaction();
+            brush.reserveHorizontal(3, 1, 2, markers(2));
+            brush.reserveVertical(2, 1, 1, markers(1));
+            brush.reserveHorizontal(4, 1, 1, markers(1));
+            brush.commitTransaction();
+
+            // Fits, because the group above freed row 3
+            brush.beginTransaction();
+            brush.reserveHorizontal(3, 1, 2, markers(2));
+            brush.reserveRandomFittingVertical(2, markers(2));
+            brush.commitTransaction();
+
+            brush.beginTransaction();
+            brush.reserveHorizontal(5, 1, 1, markers(1));
+            brush.rollbackTransaction();
+
+            // Left open: rolled back when the structure finishes
+            brush.beginTransaction();
+            brush.reserveHorizontal(5, 1, 1, markers(1));
+        }
+    }
+
+    private static class OutOfGrid extends AdvancedTerrainStructure {
+        OutOfGrid() {
+            super(10);
+        }
+
+        @Override
+        protected void generateTiles(Terrain.TileBrush brush) {
+            for (int i = 0; i < tilesToMake; ++i) {
+                brush.addSegment();
+            }
+        }
+
+        @Override
+        protected void generateAddons(Terrain.AdvancedGridBrush brush, int nRows, int nCols) {
+            brush.beginTransaction();
+            brush.reserveNearestVertical(nRows + 1, 1, 1, markers(1));
+            brush.commitTransaction();
+        }
+    }
+
+    @Test
+    public void only_committed_groups_that_fit_place_their_addons() {
+        Terrain terrain = new Terrain(1000, 5, new Vector3D(0, 0, 0), 2f, 1f, 0.5f);
+        terrain.setSeed(7L);
+        terrain.enqueueStructure(new Tentative());
+        terrain.enqueueStructure(new Tentative());
+        terrain.generateChunks(-1);
+
+        assertEquals(2 * (2 + 4), terrain.getAddonCount());
+    }
+
+    @Test
+    public void a_reservation_out_of_the_grid_is_not_dropped_as_a_failed_group() {
+        Terrain terrain = new Terrain(1000, 5, new Vector3D(0, 0, 0), 2f, 1f, 0.5f);
+        terrain.enqueueStructure(new OutOfGrid());
+        try {
+            terrain.generateChunks(-1);
+            fail("A structure bug should surface");
+        } catch (IllegalArgumentException e) {
+            assertFalse(e instanceof NoFittingSpaceException);
+        }
+    }
+}
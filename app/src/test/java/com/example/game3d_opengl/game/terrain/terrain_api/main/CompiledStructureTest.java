@@ -0,0 +1,123 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.main;
+
+import com.example.game3d_opengl.rendering.util3d.vector.Vector3D;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CompiledStructureTest {
+
+    private static int generateTilesCalls;
+
+    private static class Flat extends BasicTerrainStructure {
+        Flat(int nTiles) {
+            super(nTiles);
+        }
+
+        @Override
+        protected void generateTiles(Terrain.TileBrush brush) {
+            for (int i = 0; i < tilesToMake; ++i) {
+                brush.addSegment();
+            }
+        }
+
+        @Override
+        protected void generateAddons(Terrain.BasicGridBrush brush, int nRows, int nCols) {
+        }
+    }
+
+    private static class Wavy extends AdvancedTerrainStructure {
+        private final boolean cacheable;
+
+        Wavy(int nTiles, boolean cacheable) {
+            super(nTiles);
+            this.cacheable = cacheable;
+        }
+
+        @Override
+        protected Object getCompileKey() {
+            return cacheable ? CompiledStructure.key(getClass(), tilesToMake) : null;
+        }
+
+        @Override
+        protected void generateTiles(Terrain.TileBrush brush) {
+            ++generateTilesCalls;
+            brush.setCornerAlphas(0.5f, 0.5f);
+            for (int i = 0; i < tilesToMake; ++i) {
+                brush.addHorizontalAng(0.05f);
+                brush.addVerticalAng(i % 2 == 0 ? 0.02f : -0.02f);
+                brush.addSegment();
+                if (i == tilesToMake / 2) {
+                    brush.addChild(new Flat(3));
+                }
+            }
+            brush.liftUp(0.3f);
+            brush.addEmptySegment();
+            brush.addSegment();
+            brush.setCornerAlphas(1f, 1f);
+        }
+
+        @Override
+        protected void generateAddons(Terrain.AdvancedGridBrush brush, int nRows, int nCols) {
+        }
+    }
+
+    @Before
+    public void setUp() {
+        generateTilesCalls = 0;
+    }
+
+    private static Terrain newTerrain() {
+        return new Terrain(500, 5, new Vector3D(0, 0, 0), 2f, 1f, 0.5f);
+    }
+
+    @Test
+    public void equal_keys_generate_once() {
+        Terrain terrain = newTerrain();
+        try {
+            for (int i = 0; i < 4; ++i) {
+                terrain.enqueueStructure(new Wavy(12, true));
+            }
+            terrain.generateChunks(-1);
+            assertEquals(1, generateTilesCalls);
+        } finally {
+            terrain.cleanupGPUResourcesRecursivelyOnContextLoss();
+        }
+    }
+
+    @Test
+    public void replayed_structures_produce_identical_tiles() {
+        Terrain compiled = newTerrain();
+        Terrain direct = newTerrain();
+        try {
+            for (int i = 0; i < 3; ++i) {
+                compiled.enqueueStructure(new Wavy(12, true));
+                direct.enqueueStructure(new Wavy(12, false));
+            }
+            compiled.generateChunks(-1);
+            direct.generateChunks(-1);
+
+            assertEquals(direct.getTileCount(), compiled.getTileCount());
+            assertEquals(direct.tileManager.getCurrRowCount(), compiled.tileManager.getCurrRowCount());
+            for (int i = 0; i < direct.getTileCount(); ++i) {
+                Tile expected = direct.getTile(i), actual = compiled.getTile(i);
+                assertEquals(expected.isEmptySegment(), actual.isEmptySegment());
+                assertSameVector(expected.getNearLeft(), actual.getNearLeft());
+                assertSameVector(expected.getNearRight(), actual.getNearRight());
+                assertSameVector(expected.getFarLeft(), actual.getFarLeft());
+                assertSameVector(expected.getFarRight(), actual.getFarRight());
+            }
+        } finally {
+            compiled.cleanupGPUResourcesRecursivelyOnContextLoss();
+            direct.cleanupGPUResourcesRecursivelyOnContextLoss();
+        }
+    }
+
+    private static void assertSameVector(Vector3D expected, Vector3D actual) {
+        assertEquals(expected.x, actual.x, 0f);
+        assertEquals(expected.y, actual.y, 0f);
+        assertEquals(expected.z, actual.z, 0f);
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.main;
+
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.LandscapeCommandsExecutor.CMD_ADD_EMPTY_SEG;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.LandscapeCommandsExecutor.CMD_ADD_H_ANG;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.LandscapeCommandsExecutor.CMD_ADD_SEG;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.LandscapeCommandsExecutor.CMD_ADD_SEG_RUN;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.LandscapeCommandsExecutor.CMD_ADD_V_ANG;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.LandscapeCommandsExecutor.RUN_TILT;
+import static com.example.game3d_opengl.game.terrain.terrain_api.main.LandscapeCommandsExecutor.RUN_TURN;
+import static com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer.CommandBuffer.FLOAT_STRIDE;
+import static com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer.CommandBuffer.INT_STRIDE;
+
+import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer.RecordingCommandBuffer;
+import com.example.game3d_opengl.rendering.util3d.vector.Vector3D;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SegmentRunFuserTest {
+
+    private static class Stairs extends AdvancedTerrainStructure {
+        private final boolean cacheable;
+
+        Stairs(int nTiles, boolean cacheable) {
+            super(nTiles);
+            this.cacheable = cacheable;
+        }
+
+        @Override
+        protected Object getCompileKey() {
+            return cacheable ? CompiledStructure.key(getClass(), tilesToMake) : null;
+        }
+
+        @Override
+        protected void generateTiles(Terrain.TileBrush brush) {
+            float turn = 0.4f / tilesToMake;
+            for (int stair = 0; stair < 4; ++stair) {
+                for (int i = 0; i < tilesToMake / 4; ++i) {
+                    brush.addHorizontalAng(turn);
+                    brush.addSegment();
+                }
+                brush.addEmptySegment();
+                brush.liftUp(0.5f);
+            }
+        }
+
+        @Override
+        protected void generateAddons(Terrain.AdvancedGridBrush brush, int nRows, int nCols) {
+        }
+    }
+
+    private static class Curve extends BasicTerrainStructure {
+        Curve(int nTiles) {
+            super(nTiles);
+        }
+
+        @Override
+        protected void generateTiles(Terrain.TileBrush brush) {
+            for (int i = 0; i < tilesToMake; ++i) {
+                brush.addHorizontalAng(0.013f);
+                brush.addVerticalAng(-0.007f);
+                brush.addSegment();
+                if (i == tilesToMake / 2) {
+                    brush.addChild(new Stairs(8, false));
+                }
+            }
+            brush.addVerticalAng(0.007f * tilesToMake);
+            for (int i = 0; i < 5; ++i) {
+                brush.addSegment();
+            }
+        }
+
+        @Override
+        protected void generateAddons(Terrain.BasicGridBrush brush, int nRows, int nCols) {
+        }
+    }
+
+    @Test
+    public void fuses_only_identical_units() {
+        RecordingCommandBuffer stream = new RecordingCommandBuffer();
+        for (int i = 0; i < 3; ++i) {
+            stream.addCommand1(CMD_ADD_H_ANG, 0.1f);
+            stream.addCommand1(CMD_ADD_V_ANG, 0.2f);
+            stream.addCommand0(CMD_ADD_SEG);
+        }
+        // Same shape, different angle: starts a new (single-unit) group.
+        stream.addCommand1(CMD_ADD_H_ANG, 0.3f);
+        stream.addCommand1(CMD_ADD_V_ANG, 0.2f);
+        stream.addCommand0(CMD_ADD_SEG);
+        stream.addCommand0(CMD_ADD_EMPTY_SEG);
+        stream.addCommand0(CMD_ADD_SEG);
+        stream.addCommand0(CMD_ADD_SEG);
+
+        stream.rewrite(new SegmentRunFuser());
+        int[] ints = stream.copyIntLane();
+        float[] floats = stream.copyFloatLane();
+
+        assertEquals(6, stream.getCommandCount());
+        assertEquals(CMD_ADD_SEG_RUN, ints[0]);
+        assertEquals(3, ints[1]);
+        assertEquals(RUN_TURN | RUN_TILT, ints[2]);
+        assertEquals(0.1f, floats[0], 0f);
+        assertEquals(0.2f, floats[1], 0f);
+        assertEquals(CMD_ADD_H_ANG, ints[INT_STRIDE]);
+        assertEquals(0.3f, floats[FLOAT_STRIDE], 0f);
+        assertEquals(CMD_ADD_V_ANG, ints[2 * INT_STRIDE]);
+        assertEquals(CMD_ADD_SEG, ints[3 * INT_STRIDE]);
+        assertEquals(CMD_ADD_EMPTY_SEG, ints[4 * INT_STRIDE]);
+        assertEquals(CMD_ADD_SEG_RUN, ints[5 * INT_STRIDE]);
+        assertEquals(2, ints[5 * INT_STRIDE + 1]);
+        assertEquals(0, ints[5 * INT_STRIDE + 2]);
+    }
+
+    @Test
+    public void long_runs_are_split() {
+        RecordingCommandBuffer stream = new RecordingCommandBuffer();
+        int n = 2 * SegmentRunFuser.MAX_RUN + 1;
+        for (int i = 0; i < n; ++i) {
+            stream.addCommand1(CMD_ADD_H_ANG, 0.1f);
+            stream.addCommand0(CMD_ADD_SEG);
+        }
+        stream.rewrite(new SegmentRunFuser());
+        int[] ints = stream.copyIntLane();
+
+        assertEquals(4, stream.getCommandCount());
+        assertEquals(SegmentRunFuser.MAX_RUN, ints[1]);
+        assertEquals(SegmentRunFuser.MAX_RUN, ints[INT_STRIDE + 1]);
+        assertEquals(CMD_ADD_H_ANG, ints[2 * INT_STRIDE]);
+        assertEquals(CMD_ADD_SEG, ints[3 * INT_STRIDE]);
+    }
+
+    private static Terrain newTerrain(boolean fused) {
+        Terrain terrain = new Terrain(1000, 5, new Vector3D(0, 0, 0), 2f, 1f, 0.5f);
+        terrain.setSegmentRunFusion(fused);
+        terrain.enqueueStructure(new Stairs(40, true));
+        terrain.enqueueStructure(new Curve(30));
+        terrain.enqueueStructure(new Stairs(40, true));
+        terrain.enqueueStructure(new Stairs(20, false));
+        return terrain;
+    }
+
+    @Test
+    public void fused_commands_produce_bit_identical_tiles() {
+        Terrain plain = newTerrain(false);
+        Terrain fused = newTerrain(true);
+        try {
+            plain.generateChunks(-1);
+            fused.generateChunks(-1);
+
+            assertEquals(plain.getTileCount(), fused.getTileCount());
+            for (int i = 0; i < plain.getTileCount(); ++i) {
+                Tile expected = plain.getTile(i), actual = fused.getTile(i);
+                assertEquals(expected.getID(), actual.getID());
+                assertEquals(expected.isEmptySegment(), actual.isEmptySegment());
+                assertSameBits(expected.getNearLeft(), actual.getNearLeft());
+                assertSameBits(expected.getNearRight(), actual.getNearRight());
+                assertSameBits(expected.getFarLeft(), actual.getFarLeft());
+                assertSameBits(expected.getFarRight(), actual.getFarRight());
+            }
+        } finally {
+            plain.cleanupGPUResourcesRecursivelyOnContextLoss();
+            fused.cleanupGPUResourcesRecursivelyOnContextLoss();
+        }
+    }
+
+    private static void assertSameBits(Vector3D expected, Vector3D actual) {
+        assertEquals(Float.floatToRawIntBits(expected.x), Float.floatToRawIntBits(actual.x));
+        assertEquals(Float.floatToRawIntBits(expected.y), Float.floatToRawIntBits(actual.y));
+        assertEquals(Float.floatToRawIntBits(expected.z), Float.floatToRawIntBits(actual.z));
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.main;
+
+import com.example.game3d_opengl.game.player.Player;
+import com.example.game3d_opengl.game.terrain.terrain_api.addon.Addon;
+import com.example.game3d_opengl.rendering.util3d.vector.Vector3D;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TerrainAddonQueryTest {
+
+    private static class Marker extends Addon {
+        @Override
+        protected void onPlace(Vector3D fieldNearLeft, Vector3D fieldNearRight,
+                               Vector3D fieldFarLeft, Vector3D fieldFarRight) {
+        }
+
+        @Override
+        public void interactWithPlayer(Player.InteractableAPI api) {
+        }
+
+        @Override
+        public void updateBeforeDraw(float dt) {
+        }
+
+        @Override
+        public void updateAfterDraw(float dt) {
+        }
+
+        @Override
+        public void draw(float[] mvpMatrix) {
+        }
+
+        @Override
+        public void cleanupGPUResourcesRecursivelyOnContextLoss() {
+        }
+
+        @Override
+        public void reloadGPUResourcesRecursivelyOnContextLoss() {
+        }
+    }
+
+    /**
+     * One addon on every row.
+     */
+    private static class MarkedLine extends AdvancedTerrainStructure {
+        MarkedLine(int tiles) {
+            super(tiles);
+        }
+
+        @Override
+        protected void generateTiles(Terrain.TileBrush brush) {
+            for (int i = 0; i < tilesToMake; ++i) {
+                brush.addSegment();
+            }
+        }
+
+        @Override
+        protected void generateAddons(Terrain.AdvancedGridBrush brush, int nRows, int nCols) {
+            for (int row = 1; row <= nRows; ++row) {
+                brush.reserveHorizontal(row, 1, 1, new Addon[]{new Marker()});
+            }
+        }
+    }
+
+    @Test
+    public void addons_on_a_tile_window_are_those_on_its_tiles() {
+        Terrain terrain = new Terrain(1000, 5, new Vector3D(0, 0, 0), 2f, 1f, 0.5f);
+        terrain.enqueueStructure(new MarkedLine(40));
+        terrain.generateChunks(-1);
+
+        Tile[] window = new Tile[2 + 4 + 1];
+        for (int center = 0; center < terrain.getTileCount(); ++center) {
+            int n = terrain.queryTilesNear(terrain.getTile(center).getID(), 2, 4, window);
+            Set<Long> windowIds = new HashSet<>();
+            for (int i = 0; i < n; ++i) {
+                windowIds.add(window[i].getID());
+            }
+            Set<Addon> expected = new HashSet<>();
+            for (int i = 0; i < terrain.getAddonCount(); ++i) {
+                if (windowIds.contains(terrain.getAddon(i).getTileId())) {
+                    expected.add(terrain.getAddon(i));
+                }
+            }
+
+            int found = terrain.queryAddonsOnTiles(window[0].getID(), window[n - 1].getID());
+            Set<Addon> actual = new HashSet<>();
+            for (int i = 0; i < found; ++i) {
+                actual.add(terrain.getNearbyAddon(i));
+            }
+            assertFalse(expected.isEmpty());
+            assertEquals(expected, actual);
+        }
+    }
+}
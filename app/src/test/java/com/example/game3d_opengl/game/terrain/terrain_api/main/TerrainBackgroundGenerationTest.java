@@ -0,0 +1,176 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.main;
+
+import com.example.game3d_opengl.game.player.Player;
+import com.example.game3d_opengl.game.terrain.terrain_api.addon.Addon;
+import com.example.game3d_opengl.rendering.util3d.vector.Vector3D;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TerrainBackgroundGenerationTest {
+
+    private static class Marker extends Addon {
+        Vector3D placedAt;
+
+        @Override
+        protected void onPlace(Vector3D fieldNearLeft, Vector3D fieldNearRight,
+                               Vector3D fieldFarLeft, Vector3D fieldFarRight) {
+            placedAt = fieldNearLeft;
+        }
+
+        @Override
+        public void interactWithPlayer(Player.InteractableAPI api) {
+        }
+
+        @Override
+        public void updateBeforeDraw(float dt) {
+        }
+
+        @Override
+        public void updateAfterDraw(float dt) {
+        }
+
+        @Override
+        public void draw(float[] mvpMatrix) {
+        }
+
+        @Override
+        public void cleanupGPUResourcesRecursivelyOnContextLoss() {
+        }
+
+        @Override
+        public void reloadGPUResourcesRecursivelyOnContextLoss() {
+        }
+    }
+
+    private static class Hills extends AdvancedTerrainStructure {
+        Hills(int nTiles) {
+            super(nTiles);
+        }
+
+        @Override
+        protected void generateTiles(Terrain.TileBrush brush) {
+            for (int i = 0; i < tilesToMake; ++i) {
+                brush.addHorizontalAng(0.03f);
+                brush.addVerticalAng(i % 3 == 0 ? 0.04f : -0.02f);
+                brush.addSegment();
+                if (i % 7 == 6) {
+                    brush.liftUp(0.2f);
+                    brush.addEmptySegment();
+                }
+            }
+        }
+
+        @Override
+        protected void generateAddons(Terrain.AdvancedGridBrush brush, int nRows, int nCols) {
+            brush.reserveVertical(1, 1, 2, new Addon[]{new Marker(), new Marker()});
+            brush.reserveHorizontal(3, 2, 3, new Addon[]{new Marker(), new Marker(), new Marker()});
+            // Random placement: both terrains share a seed, so it must match too
+            int length = random.nextInt(1, 3);
+            Addon[] markers = new Addon[length];
+            for (int i = 0; i < length; ++i) {
+                markers[i] = new Marker();
+            }
+            brush.reserveRandomFittingVertical(length, markers);
+        }
+    }
+
+    private static Terrain newTerrain() {
+        Terrain terrain = new Terrain(1000, 5, new Vector3D(0, 0, 0), 2f, 1f, 0.5f);
+        terrain.setSeed(1234L);
+        return terrain;
+    }
+
+    private static void enqueueAll(Terrain terrain) {
+        for (int i = 0; i < 12; ++i) {
+            terrain.enqueueStructure(new Hills(20 + i));
+        }
+    }
+
+    @Test
+    public void background_generation_matches_synchronous() throws InterruptedException {
+        Terrain sync = newTerrain();
+        Terrain async = newTerrain();
+        try {
+            enqueueAll(sync);
+            sync.generateChunks(-1);
+
+            // Tiny ring so the worker keeps blocking on a full ring.
+            async.startBackgroundGeneration(16);
+            assertTrue(async.isGeneratingInBackground());
+            enqueueAll(async);
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (async.getAddonCount() < sync.getAddonCount() && System.currentTimeMillis() < deadline) {
+                if (async.drainGeneratedGeometry() == 0) {
+                    Thread.sleep(1);
+                }
+            }
+            async.stopBackgroundGeneration();
+            assertFalse(async.isGeneratingInBackground());
+            // Whatever the worker did not get to is finished synchronously.
+            async.generateChunks(-1);
+
+            assertEquals(sync.getTileCount(), async.getTileCount());
+            for (int i = 0; i < sync.getTileCount(); ++i) {
+                Tile expected = sync.getTile(i), actual = async.getTile(i);
+                assertEquals(expected.getID(), actual.getID());
+                assertEquals(expected.isEmptySegment(), actual.isEmptySegment());
+                assertSameVector(expected.getNearLeft(), actual.getNearLeft());
+                assertSameVector(expected.getFarRight(), actual.getFarRight());
+            }
+            assertEquals(sync.getAddonCount(), async.getAddonCount());
+            for (int i = 0; i < sync.getAddonCount(); ++i) {
+                assertSameVector(((Marker) sync.getAddon(i)).placedAt, ((Marker) async.getAddon(i)).placedAt);
+            }
+        } finally {
+            sync.cleanupGPUResourcesRecursivelyOnContextLoss();
+            async.cleanupGPUResourcesRecursivelyOnContextLoss();
+        }
+    }
+
+    @Test
+    public void capped_draining_catches_up_and_pending_work_is_reported() throws InterruptedException {
+        Terrain sync = newTerrain();
+        Terrain async = newTerrain();
+        try {
+            enqueueAll(sync);
+            assertTrue(sync.isGenerationPending());
+            sync.generateChunks(-1);
+            assertFalse(sync.isGenerationPending());
+
+            async.startBackgroundGeneration();
+            enqueueAll(async);
+            assertTrue(async.isGenerationPending());
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (async.isGenerationPending() && System.currentTimeMillis() < deadline) {
+                if (async.drainGeneratedGeometry(1) == 0) {
+                    Thread.sleep(1);
+                }
+            }
+            assertFalse(async.isGenerationPending());
+            assertEquals(sync.getTileCount(), async.getTileCount());
+            assertEquals(sync.getAddonCount(), async.getAddonCount());
+        } finally {
+            sync.cleanupGPUResourcesRecursivelyOnContextLoss();
+            async.cleanupGPUResourcesRecursivelyOnContextLoss();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void synchronous_generation_is_rejected_while_worker_runs() {
+        Terrain terrain = newTerrain();
+        try {
+            terrain.startBackgroundGeneration();
+            terrain.generateChunks(1);
+        } finally {
+            terrain.cleanupGPUResourcesRecursivelyOnContextLoss();
+        }
+    }
+
+    private static void assertSameVector(Vector3D expected, Vector3D actual) {
+        assertEquals(expected.x, actual.x, 0f);
+        assertEquals(expected.y, actual.y, 0f);
+        assertEquals(expected.z, actual.z, 0f);
+    }
+}
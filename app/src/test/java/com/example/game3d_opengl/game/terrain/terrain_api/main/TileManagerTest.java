@@ -0,0 +1,188 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.main;
+
+import com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.TerrainArena;
+import com.example.game3d_opengl.game.util.AllocationMeter;
+import com.example.game3d_opengl.game.util.GameMath;
+import com.example.game3d_opengl.game.util.RandomStream;
+import com.example.game3d_opengl.rendering.util3d.vector.Vector3D;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TileManagerTest {
+
+    private static final int MAX_SEGMENTS = 200;
+
+    private static TileManager newManager(int maxTiles) {
+        TerrainArena arena = new TerrainArena(new TerrainArena.Config(50_000, 16, maxTiles));
+        return new TileManager(MAX_SEGMENTS, 5, new Vector3D(0, 0, 0), 2f, 1f, 0.5f, arena);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void too_small_tile_store_is_rejected() {
+        newManager(TileManager.requiredTileSlots(MAX_SEGMENTS, 0) / 2);
+    }
+
+    @Test
+    public void tile_views_read_the_store() {
+        TileManager manager = newManager(TileManager.requiredTileSlots(MAX_SEGMENTS, 0));
+        manager.addHorizontalAngle(0.2f);
+        manager.addSegment(false);
+        manager.liftUp(1f);
+        manager.addSegment(false);
+
+        Tile last = manager.getTile(manager.getTileCount() - 1);
+        Tile prev = manager.getTile(manager.getTileCount() - 2);
+        assertEquals(last.getX(TileStore.NEAR_LEFT), last.getNearLeft().x, 0f);
+        assertEquals(last.getY(TileStore.FAR_RIGHT), last.getFarRight().y, 0f);
+        assertEquals(prev.getFarLeft().y + 1f, last.getNearLeft().y, 1e-6f);
+        assertEquals(2, last.getTriangles().length);
+    }
+
+    @Test
+    public void tile_index_lookup_follows_pushes_and_removals() {
+        TileManager manager = newManager(TileManager.requiredTileSlots(MAX_SEGMENTS, 0));
+        assertEquals(0, manager.getTileIndexNear(0L)); // the guardian
+        for (int i = 0; i < 180; ++i) {
+            manager.addSegment(i % 13 == 4);
+            if (i % 40 == 39) {
+                manager.removeOldTiles(manager.getTile(manager.getTileCount() - 1).getID());
+            }
+        }
+        int count = manager.getTileCount();
+        for (int i = 0; i < count; ++i) {
+            long id = manager.getTile(i).getID();
+            assertEquals(i, manager.getTileIndexNear(id));
+            if (i > 0 && manager.getTile(i - 1).getID() < id - 1) { // an ID given up when a tile was re-added
+                assertEquals(i, manager.getTileIndexNear(id - 1));
+            }
+        }
+        assertEquals(0, manager.getTileIndexNear(0L));
+        assertEquals(count - 1, manager.getTileIndexNear(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void precomputed_planes_match_ray_triangle_tests() {
+        TileManager manager = newManager(TileManager.requiredTileSlots(MAX_SEGMENTS, 0));
+        for (int i = 0; i < 12; ++i) {
+            manager.addHorizontalAngle(0.1f);
+            manager.addVerticalAngle(-0.05f);
+            manager.addSegment(false);
+        }
+        RandomStream random = new RandomStream(9L);
+        float[] slide = new float[3];
+        for (int i = 1; i < manager.getTileCount(); ++i) {
+            Tile tile = manager.getTile(i);
+            Vector3D[][] triangles = tile.getTriangles();
+            for (int tri = 0; tri < 2; ++tri) {
+                Vector3D[] t = triangles[tri];
+                Vector3D n = GameMath.getNormal(t);
+                for (int k = 0; k < 50; ++k) {
+                    // Around the triangle, mostly above it
+                    float a = (float) random.nextDouble() * 1.4f - 0.2f, b = (float) random.nextDouble() * 1.4f - 0.2f;
+                    float h = (float) random.nextDouble() * 2f - 0.3f;
+                    Vector3D p = t[0].add(t[1].sub(t[0]).mult(a)).add(t[2].sub(t[0]).mult(b))
+                            .add(n.mult(h * Math.signum(n.y)));
+                    float expected = GameMath.rayTriangleDistance(p, n.mult(-Math.signum(n.y)), t[0], t[1], t[2]);
+                    float actual = tile.footingDistance(tri, p.x, p.y, p.z);
+                    if (a > 0.01f && b > 0.01f && a + b < 0.99f && h > 0.01f) {
+                        assertEquals(expected, actual, 1e-3f);
+                    } else if (a < -0.01f || b < -0.01f || a + b > 1.01f || h < -0.01f) {
+                        assertTrue(Float.isInfinite(expected));
+                        assertTrue(Float.isInfinite(actual));
+                    }
+                }
+                tile.projectOnto(tri, 0.3f, 0.5f, -1f, slide);
+                assertEquals(0f, slide[0] * n.x + slide[1] * n.y + slide[2] * n.z, 1e-5f);
+            }
+        }
+    }
+
+    @Test
+    public void far_edge_patching_matches_remove_and_re_add() {
+        TileManager patched = newManager(TileManager.requiredTileSlots(MAX_SEGMENTS, 0));
+        TileManager readded = newManager(TileManager.requiredTileSlots(MAX_SEGMENTS, 0));
+        readded.setFarEdgePatching(false);
+        for (TileManager manager : new TileManager[]{patched, readded}) {
+            for (int i = 0; i < 150; ++i) {
+                if (i % 7 == 0) {
+                    manager.addHorizontalAngle(0.05f * (i % 3 - 1));
+                }
+                if (i % 11 == 0) {
+                    manager.addVerticalAngle(-0.03f);
+                }
+                if (i % 23 == 5) {
+                    manager.liftUp(0.7f);
+                }
+                if (i % 31 == 0) {
+                    manager.setUpcomingAlphas(0.5f + i / 300f, 1f);
+                }
+                manager.addSegment(i % 19 == 9 || i % 19 == 10);
+            }
+        }
+
+        // A patched tile keeps its ID; re-adding gave it the next one, which patching skips
+        assertEquals(readded.getTileCount(), patched.getTileCount());
+        long lastId = readded.getTile(readded.getTileCount() - 1).getID();
+        for (int i = 0; i < readded.getTileCount(); ++i) {
+            Tile expected = readded.getTile(i), actual = patched.getTile(i);
+            assertEquals(patchedId(expected.getID(), lastId), actual.getID());
+            assertEquals(expected.isEmptySegment(), actual.isEmptySegment());
+            for (int corner = TileStore.NEAR_LEFT; corner <= TileStore.FAR_RIGHT; ++corner) {
+                assertSameBits(expected.getX(corner), actual.getX(corner));
+                assertSameBits(expected.getY(corner), actual.getY(corner));
+                assertSameBits(expected.getZ(corner), actual.getZ(corner));
+            }
+        }
+        assertEquals(readded.getCurrRowCount(), patched.getCurrRowCount());
+        for (int row = 1; row <= readded.getCurrRowCount(); ++row) {
+            assertEquals(patchedId(readded.getTileIdForRow(row), lastId), patched.getTileIdForRow(row));
+            for (int col = 1; col <= 5; ++col) {
+                Vector3D[] expected = readded.getField(row, col), actual = patched.getField(row, col);
+                for (int k = 0; k < expected.length; ++k) {
+                    assertSameBits(expected[k].x, actual[k].x);
+                    assertSameBits(expected[k].y, actual[k].y);
+                    assertSameBits(expected[k].z, actual[k].z);
+                }
+            }
+        }
+        assertEquals(readded.leftSideToArrayDebug().length, patched.leftSideToArrayDebug().length);
+        assertEquals(readded.rightSideToArrayDebug().length, patched.rightSideToArrayDebug().length);
+
+        // Ribbon pairs with their masks (gap marks), normals and alphas
+        float[] expectedRibbon = readded.ribbonToArrayDebug(), actualRibbon = patched.ribbonToArrayDebug();
+        assertEquals(expectedRibbon.length, actualRibbon.length);
+        for (int i = 0; i < expectedRibbon.length; ++i) {
+            assertSameBits(expectedRibbon[i], actualRibbon[i]);
+        }
+    }
+
+    private static long patchedId(long readdedId, long lastId) {
+        return readdedId == lastId ? readdedId : readdedId - 1;
+    }
+
+    private static void assertSameBits(float expected, float actual) {
+        assertEquals(Float.floatToRawIntBits(expected), Float.floatToRawIntBits(actual));
+    }
+
+    @Test
+    public void steady_state_add_segment_does_not_allocate() {
+        TileManager manager = newManager(TileManager.requiredTileSlots(MAX_SEGMENTS, 0));
+        // Wraps the tile store, so every slot already has its view.
+        addSegments(manager, 4000);
+
+        long allocated = AllocationMeter.measure(() -> addSegments(manager, 2000));
+
+        assertEquals(0L, allocated);
+    }
+
+    private static void addSegments(TileManager manager, int n) {
+        for (int i = 0; i < n; ++i) {
+            manager.addHorizontalAngle((i & 1) == 0 ? 0.01f : -0.01f);
+            manager.addVerticalAngle(i % 40 < 20 ? 0.002f : -0.002f);
+            manager.addSegment(i % 17 == 0);
+            manager.removeOldTiles(manager.getTile(manager.getTileCount() - 1).getID());
+        }
+    }
+}
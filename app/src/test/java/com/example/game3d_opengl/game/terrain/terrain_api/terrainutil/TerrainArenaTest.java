@@ -0,0 +1,44 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.terrainutil;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TerrainArenaTest {
+
+    private static TerrainArena small() {
+        return new TerrainArena(new TerrainArena.Config(64, 32));
+    }
+
+    @Test
+    public void arenas_do_not_share_storage() {
+        TerrainArena a = small();
+        TerrainArena b = small();
+        a.getLeftSideBuffer().addPos(1, 2, 3);
+        a.getCommandBuffer().addCommand0(7);
+
+        assertEquals(1, a.getLeftSideBuffer().size());
+        assertEquals(0, b.getLeftSideBuffer().size());
+        assertTrue(a.getCommandBuffer().hasAnyCommands());
+        assertFalse(b.getCommandBuffer().hasAnyCommands());
+    }
+
+    @Test
+    public void reset_empties_everything_and_keeps_high_water_marks() {
+        TerrainArena arena = small();
+        arena.getLeftSideBuffer().addPos(0, 0, 0);
+        arena.getLeftSideBuffer().addPos(0, 0, 1);
+        arena.getRightSideBuffer().addPos(1, 0, 0);
+        arena.getRightSideBuffer().addPos(1, 0, 1);
+        for (int i = 0; i < 10; ++i) {
+            arena.getRowInfoBuffer().add(i, arena.getLeftSideBuffer(), 1, arena.getRightSideBuffer(), 1);
+            arena.getCommandBuffer().addCommand0(1);
+        }
+        arena.reset();
+
+        assertEquals(0, arena.getRowInfoBuffer().size());
+        assertFalse(arena.getCommandBuffer().hasAnyCommands());
+        assertEquals(10, arena.getRowsHighWaterMark());
+        assertEquals(10, arena.getCommandsHighWaterMark());
+    }
+}
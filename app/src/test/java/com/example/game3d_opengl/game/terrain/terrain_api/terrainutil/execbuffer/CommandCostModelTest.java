@@ -0,0 +1,40 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CommandCostModelTest {
+
+    @Test
+    public void unseen_opcode_costs_nothing() {
+        CommandCostModel model = new CommandCostModel();
+        assertEquals(0L, model.estimate(5));
+    }
+
+    @Test
+    public void first_sample_is_taken_as_is_then_averaged() {
+        CommandCostModel model = new CommandCostModel();
+        model.record(10, 8_000);
+        assertEquals(8_000L, model.estimate(10));
+        model.record(10, 16_000);
+        assertEquals(9_000L, model.estimate(10));
+        // other opcodes are tracked separately
+        assertEquals(0L, model.estimate(1));
+    }
+
+    @Test
+    public void converges_to_new_cost() {
+        CommandCostModel model = new CommandCostModel();
+        model.record(1, 100);
+        for (int i = 0; i < 200; ++i) {
+            model.record(1, 5_000);
+        }
+        assertTrue(Math.abs(model.estimate(1) - 5_000) <= 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejects_out_of_range_opcode() {
+        new CommandCostModel().record(CommandCostModel.MAX_OPCODE + 1, 1);
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer;
+
+import com.example.game3d_opengl.game.util.AllocationMeter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PreallocatedCommandBufferTest {
+
+    /**
+     * Records the last executed command into preallocated fields.
+     */
+    private static class RecordingExecutor implements CommandExecutor {
+        int opcode, i0, i1, i2;
+        float f0, f1;
+        long checksum;
+
+        @Override
+        public void execute(int[] intLane, int intOffset, float[] floatLane, int floatOffset) {
+            opcode = intLane[intOffset];
+            i0 = intLane[intOffset + 1];
+            i1 = intLane[intOffset + 2];
+            i2 = intLane[intOffset + 3];
+            f0 = floatLane[floatOffset];
+            f1 = floatLane[floatOffset + 1];
+            checksum += opcode + i0 + i1 + i2 + (long) f0 + (long) f1;
+        }
+
+        @Override
+        public boolean canHandle(int opcode) {
+            return true;
+        }
+    }
+
+    private PreallocatedCommandBuffer buffer;
+    private RecordingExecutor executor;
+
+    @Before
+    public void setUp() {
+        buffer = new PreallocatedCommandBuffer();
+        executor = new RecordingExecutor();
+    }
+
+    @Test
+    public void commands_round_trip_in_fifo_order() {
+        buffer.addCommand0(5);
+        buffer.addCommand1(1, 0.25f);
+        buffer.addCommand1(35, 4);
+        buffer.addCommand2(9, 0.5f, 0.75f);
+        buffer.addCommand3(33, 2, 3, 4);
+
+        buffer.executeFirstCommand(executor);
+        assertEquals(5, executor.opcode);
+
+        buffer.executeFirstCommand(executor);
+        assertEquals(1, executor.opcode);
+        assertEquals(0.25f, executor.f0, 0f);
+
+        buffer.executeFirstCommand(executor);
+        assertEquals(35, executor.opcode);
+        assertEquals(4, executor.i0);
+
+        buffer.executeFirstCommand(executor);
+        assertEquals(9, executor.opcode);
+        assertEquals(0.5f, executor.f0, 0f);
+        assertEquals(0.75f, executor.f1, 0f);
+
+        buffer.executeFirstCommand(executor);
+        assertEquals(33, executor.opcode);
+        assertEquals(2, executor.i0);
+        assertEquals(3, executor.i1);
+        assertEquals(4, executor.i2);
+
+        assertFalse(buffer.hasAnyCommands());
+    }
+
+    @Test
+    public void records_survive_wrap_around() {
+        // Keep a few commands in flight while pushing far more than the ring capacity through.
+        for (int i = 0; i < 3; ++i) {
+            buffer.addCommand3(33, i, i + 1, i + 2);
+        }
+        for (int i = 3; i < 50_000; ++i) {
+            buffer.addCommand3(33, i, i + 1, i + 2);
+            buffer.executeFirstCommand(executor);
+            assertEquals(i - 3, executor.i0);
+            assertEquals(i - 2, executor.i1);
+            assertEquals(i - 1, executor.i2);
+        }
+    }
+
+    @Test
+    public void executor_can_enqueue_while_executing() {
+        CommandExecutor chaining = new CommandExecutor() {
+            @Override
+            public void execute(int[] intLane, int intOffset, float[] floatLane, int floatOffset) {
+                int depth = intLane[intOffset + 1];
+                executor.execute(intLane, intOffset, floatLane, floatOffset);
+                if (depth > 0) {
+                    buffer.addCommand1(8, depth - 1);
+                }
+            }
+
+            @Override
+            public boolean canHandle(int opcode) {
+                return true;
+            }
+        };
+        buffer.addCommand1(8, 3);
+        int executed = 0;
+        while (buffer.hasAnyCommands()) {
+            buffer.executeFirstCommand(chaining);
+            ++executed;
+        }
+        assertEquals(4, executed);
+        assertEquals(0, executor.i0);
+    }
+
+    @Test
+    public void recorded_block_splices_across_wrap() {
+        RecordingCommandBuffer recorder = new RecordingCommandBuffer();
+        for (int i = 0; i < 100; ++i) {
+            recorder.addCommand3(33, i, 2 * i, 3 * i);
+            recorder.addCommand2(9, i, -i);
+        }
+        int[] ints = recorder.copyIntLane();
+        float[] floats = recorder.copyFloatLane();
+
+        // Move the read position close to the end of the ring.
+        for (int i = 0; i < 9_950; ++i) {
+            buffer.addCommand0(5);
+            buffer.executeFirstCommand(executor);
+        }
+        buffer.addCommandBlock(ints, floats, recorder.getCommandCount());
+        for (int i = 0; i < 100; ++i) {
+            buffer.executeFirstCommand(executor);
+            assertEquals(33, executor.opcode);
+            assertEquals(i, executor.i0);
+            assertEquals(2 * i, executor.i1);
+            assertEquals(3 * i, executor.i2);
+            buffer.executeFirstCommand(executor);
+            assertEquals(9, executor.opcode);
+            assertEquals(i, executor.f0, 0f);
+            assertEquals(-i, executor.f1, 0f);
+        }
+        assertFalse(buffer.hasAnyCommands());
+    }
+
+    @Test
+    public void executor_cannot_overwrite_the_record_it_is_reading() {
+        buffer = new PreallocatedCommandBuffer(new int[2 * CommandBuffer.INT_STRIDE],
+                new float[2 * CommandBuffer.FLOAT_STRIDE]);
+        buffer.addCommand3(33, 1, 2, 3);
+        buffer.addCommand3(33, 4, 5, 6);
+        CommandExecutor enqueuing = new CommandExecutor() {
+            @Override
+            public void execute(int[] intLane, int intOffset, float[] floatLane, int floatOffset) {
+                try {
+                    buffer.addCommand3(33, 7, 8, 9);
+                    fail("The full ring accepted a command");
+                } catch (IllegalStateException expected) {
+                    // the record being executed still takes its slot
+                }
+                executor.execute(intLane, intOffset, floatLane, floatOffset);
+            }
+
+            @Override
+            public boolean canHandle(int opcode) {
+                return true;
+            }
+        };
+
+        buffer.executeFirstCommand(enqueuing);
+        assertEquals(1, executor.i0);
+        assertEquals(3, executor.i2);
+
+        // Once executed, the slot is free again and the order is kept
+        buffer.addCommand3(33, 7, 8, 9);
+        buffer.executeFirstCommand(executor);
+        assertEquals(4, executor.i0);
+        buffer.executeFirstCommand(executor);
+        assertEquals(7, executor.i0);
+        assertFalse(buffer.hasAnyCommands());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void execute_on_empty_buffer_throws() {
+        buffer.executeFirstCommand(executor);
+    }
+
+    @Test
+    public void emitting_and_executing_does_not_allocate() {
+        // Warm up so that class loading and JIT do not show up in the measurement.
+        emitAndDrain(10_000);
+
+        assertEquals(0L, AllocationMeter.measure(() -> emitAndDrain(10_000)));
+        assertTrue(executor.checksum != 0);
+    }
+
+    private void emitAndDrain(int nCommands) {
+        for (int i = 0; i < nCommands; i += 5) {
+            buffer.addCommand0(5);
+            buffer.addCommand1(3, 0.1f);
+            buffer.addCommand1(35, 2);
+            buffer.addCommand2(9, 1f, 1f);
+            buffer.addCommand3(33, 1, 2, 3);
+        }
+        while (buffer.hasAnyCommands()) {
+            buffer.executeFirstCommand(executor);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.game3d_opengl.game.terrain.terrain_api.terrainutil.execbuffer;
+
+import com.example.game3d_opengl.game.util.AllocationMeter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SegmentedCommandBufferTest {
+
+    private static class RecordingExecutor implements CommandExecutor {
+        int opcode, i0;
+        float f0, f1;
+        long checksum;
+
+        @Override
+        public void execute(int[] intLane, int intOffset, float[] floatLane, int floatOffset) {
+            opcode = intLane[intOffset];
+            i0 = intLane[intOffset + 1];
+            f0 = floatLane[floatOffset];
+            f1 = floatLane[floatOffset + 1];
+            checksum += opcode + i0;
+        }
+
+        @Override
+        public boolean canHandle(int opcode) {
+            return true;
+        }
+    }
+
+    private SegmentedCommandBuffer buffer;
+    private RecordingExecutor executor;
+
+    @Before
+    public void setUp() {
+        buffer = new SegmentedCommandBuffer(8, 2);
+        executor = new RecordingExecutor();
+    }
+
+    @Test
+    public void grows_past_preallocated_blocks_instead_of_throwing() {
+        for (int i = 0; i < 1000; ++i) {
+            buffer.addCommand1(35, i);
+        }
+        assertEquals(1000, buffer.size());
+        assertEquals(125, buffer.getPeakBlockCount());
+        for (int i = 0; i < 1000; ++i) {
+            assertEquals(35, buffer.peekOpcode());
+            buffer.executeFirstCommand(executor);
+            assertEquals(i, executor.i0);
+        }
+        assertFalse(buffer.hasAnyCommands());
+    }
+
+    @Test
+    public void consumed_blocks_are_reused() {
+        for (int round = 0; round < 100; ++round) {
+            for (int i = 0; i < 20; ++i) {
+                buffer.addCommand1(35, i);
+            }
+            while (buffer.hasAnyCommands()) {
+                buffer.executeFirstCommand(executor);
+            }
+        }
+        // 20 commands span at most 4 blocks of 8; nothing beyond that was ever created.
+        assertTrue(buffer.getAllocatedBlockCount() <= 4);
+        assertEquals(buffer.getAllocatedBlockCount(), buffer.getPeakBlockCount());
+    }
+
+    @Test
+    public void executor_can_enqueue_across_block_boundaries() {
+        CommandExecutor chaining = new CommandExecutor() {
+            @Override
+            public void execute(int[] intLane, int intOffset, float[] floatLane, int floatOffset) {
+                int depth = intLane[intOffset + 1];
+                // Enqueue first, then read the record again: it must not have been overwritten.
+                if (depth > 0) {
+                    buffer.addCommand1(8, depth - 1);
+                }
+                executor.execute(intLane, intOffset, floatLane, floatOffset);
+                assertEquals(depth, executor.i0);
+            }
+
+            @Override
+            public boolean canHandle(int opcode) {
+                return true;
+            }
+        };
+        buffer.addCommand1(8, 100);
+        int executed = 0;
+        while (buffer.hasAnyCommands()) {
+            buffer.executeFirstCommand(chaining);
+            ++executed;
+        }
+        assertEquals(101, executed);
+        assertEquals(2, buffer.getPeakBlockCount());
+    }
+
+    @Test
+    public void recorded_block_spans_several_blocks() {
+        RecordingCommandBuffer recorder = new RecordingCommandBuffer();
+        for (int i = 0; i < 30; ++i) {
+            recorder.addCommand2(9, i, -i);
+        }
+        buffer.addCommand0(5);
+        buffer.addCommandBlock(recorder.copyIntLane(), recorder.copyFloatLane(), recorder.getCommandCount());
+        assertEquals(31, buffer.size());
+
+        buffer.executeFirstCommand(executor);
+        assertEquals(5, executor.opcode);
+        for (int i = 0; i < 30; ++i) {
+            buffer.executeFirstCommand(executor);
+            assertEquals(9, executor.opcode);
+            assertEquals(i, executor.f0, 0f);
+            assertEquals(-i, executor.f1, 0f);
+        }
+    }
+
+    @Test
+    public void clear_returns_blocks_to_the_pool() {
+        for (int i = 0; i < 40; ++i) {
+            buffer.addCommand0(5);
+        }
+        int allocated = buffer.getAllocatedBlockCount();
+        buffer.clear();
+        assertFalse(buffer.hasAnyCommands());
+        for (int i = 0; i < 40; ++i) {
+            buffer.addCommand0(5);
+        }
+        assertEquals(allocated, buffer.getAllocatedBlockCount());
+        assertEquals(40, buffer.getHighWaterMark());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void execute_on_empty_buffer_throws() {
+        buffer.executeFirstCommand(executor);
+    }
+
+    @Test
+    public void warm_buffer_does_not_allocate() {
+        // Warms up the JIT and fills the free list up to the peak demand.
+        emitAndDrain(10_000);
+
+        long allocated = AllocationMeter.measure(() -> emitAndDrain(10_000));
+
+        assertEquals(0L, allocated);
+        assertTrue(executor.checksum != 0);
+    }
+
+    private void emitAndDrain(int nCommands) {
+        for (int i = 0; i < nCommands; i += 2) {
+            buffer.addCommand1(35, i);
+            buffer.addCommand2(9, 1f, 1f);
+        }
+        while (buffer.hasAnyCommands()) {
+            buffer.executeFirstCommand(executor);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.game3d_opengl.game.util;
+
+import org.junit.Assume;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures how many bytes a piece of code allocates on the calling thread.
+ * Tests that use it are skipped on JVMs without per-thread allocation counters.
+ */
+public final class AllocationMeter {
+
+    private static final int ROUNDS = 3;
+
+    private AllocationMeter() {
+    }
+
+    /**
+     * Runs {@code action} a few times and returns the fewest bytes any run allocated.
+     * The JIT may still allocate a few bytes on this thread now and then, so the best
+     * run is the one that reflects the code under test. Warm up before calling this.
+     */
+    public static long measure(Runnable action) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(sunBean.isThreadAllocatedMemorySupported());
+        sunBean.setThreadAllocatedMemoryEnabled(true);
+        long tid = Thread.currentThread().getId();
+
+        long allocated = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; ++round) {
+            long before = sunBean.getThreadAllocatedBytes(tid);
+            action.run();
+            allocated = Math.min(allocated, sunBean.getThreadAllocatedBytes(tid) - before);
+        }
+        return allocated;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.game3d_opengl.game.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RandomStreamTest {
+
+    @Test
+    public void matches_reference_splitmix64() {
+        RandomStream random = new RandomStream(0L);
+        assertEquals(0xE220A8397B1DCDAFL, random.nextLong());
+        assertEquals(0x6E789E6AA1B965F4L, random.nextLong());
+        assertEquals(0x06C45D188009454FL, random.nextLong());
+    }
+
+    @Test
+    public void same_seed_gives_same_sequence() {
+        RandomStream a = new RandomStream(42L), b = new RandomStream(7L);
+        b.setSeed(42L);
+        for (int i = 0; i < 100; ++i) {
+            assertEquals(a.nextInt(-5, 5), b.nextInt(-5, 5));
+            assertEquals(a.nextFloat(0.2f, 0.5f, 3), b.nextFloat(0.2f, 0.5f, 3), 0f);
+        }
+    }
+
+    @Test
+    public void ranges_are_inclusive_and_covered() {
+        RandomStream random = new RandomStream(99L);
+        boolean[] seen = new boolean[7];
+        for (int i = 0; i < 1000; ++i) {
+            int v = random.nextInt(3, 9);
+            assertTrue(v >= 3 && v <= 9);
+            seen[v - 3] = true;
+            float f = random.nextFloat(0.225f, 0.5f, 5);
+            assertTrue(f >= 0.225f && f <= 0.5f);
+        }
+        for (boolean s : seen) {
+            assertTrue(s);
+        }
+        assertEquals(4, random.nextInt(4, 4));
+    }
+
+    @Test
+    public void split_streams_are_reproducible_and_distinct() {
+        RandomStream parent = new RandomStream(5L), child = new RandomStream(0L);
+        parent.splitInto(child);
+        RandomStream again = new RandomStream(5L).split();
+        RandomStream sibling = parent.split();
+        long first = child.nextLong();
+        assertEquals(first, again.nextLong());
+        assertNotEquals(first, sibling.nextLong());
+    }
+
+    @Test
+    public void long_bounds_beyond_int_range_are_covered() {
+        RandomStream random = new RandomStream(17L);
+        long bound = 3L << 40;
+        boolean low = false, high = false;
+        for (int i = 0; i < 1000; ++i) {
+            long v = random.nextLong(bound);
+            assertTrue(v >= 0 && v < bound);
+            low |= v < bound / 3;
+            high |= v >= 2 * (bound / 3);
+        }
+        assertTrue(low && high);
+        assertEquals(0L, random.nextLong(1L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void empty_range_is_rejected() {
+        new RandomStream(1L).nextInt(3, 2);
+    }
+}